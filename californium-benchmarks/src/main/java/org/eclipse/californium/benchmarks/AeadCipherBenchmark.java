@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.californium.scandium.dtls.cipher.AeadBlockCipher;
+import org.eclipse.californium.scandium.dtls.cipher.CCMBlockCipher;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.dtls.cipher.RandomManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link AeadBlockCipher} and {@link CCMBlockCipher}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AeadCipherBenchmark {
+
+	@Param({ "TLS_PSK_WITH_AES_128_CCM_8", "TLS_PSK_WITH_AES_128_CCM", "TLS_PSK_WITH_AES_128_GCM_SHA256" })
+	public String cipherSuite;
+
+	@Param({ "64", "1024" })
+	public int payloadSize;
+
+	private CipherSuite suite;
+	private SecretKey key;
+	private byte[] nonce;
+	private byte[] additionalData;
+	private byte[] payload;
+	private byte[] crypted;
+
+	@Setup
+	public void setup() throws GeneralSecurityException {
+		suite = CipherSuite.valueOf(cipherSuite);
+		key = new SecretKeySpec(randomBytes(suite.getEncKeyLength()), "AES");
+		nonce = randomBytes(suite.getFixedIvLength() + suite.getRecordIvLength());
+		additionalData = randomBytes(13);
+		payload = randomBytes(payloadSize);
+		crypted = AeadBlockCipher.encrypt(suite, key, nonce, additionalData, payload);
+	}
+
+	@Benchmark
+	public byte[] encrypt() throws GeneralSecurityException {
+		return AeadBlockCipher.encrypt(suite, key, nonce, additionalData, payload);
+	}
+
+	@Benchmark
+	public byte[] decrypt() throws GeneralSecurityException {
+		return AeadBlockCipher.decrypt(suite, key, nonce, additionalData, crypted, suite.getRecordIvLength(),
+				crypted.length - suite.getRecordIvLength());
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] data = new byte[length];
+		RandomManager.currentSecureRandom().nextBytes(data);
+		return data;
+	}
+}
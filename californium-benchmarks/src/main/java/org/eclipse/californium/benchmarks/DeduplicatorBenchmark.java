@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.Exchange.Origin;
+import org.eclipse.californium.core.network.KeyMID;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.deduplication.Deduplicator;
+import org.eclipse.californium.core.network.deduplication.DeduplicatorFactory;
+import org.eclipse.californium.elements.util.ExecutorsUtil;
+import org.eclipse.californium.elements.util.NamedThreadFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the {@link Deduplicator} implementations.
+ *
+ * The deduplicator is shared by all benchmark threads. Run with
+ * {@code -t <threads>} to measure the contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DeduplicatorBenchmark {
+
+	@Param({ NetworkConfig.Keys.DEDUPLICATOR_MARK_AND_SWEEP, NetworkConfig.Keys.DEDUPLICATOR_PEERS_MARK_AND_SWEEP,
+			NetworkConfig.Keys.DEDUPLICATOR_CROP_ROTATION })
+	public String deduplicator;
+
+	@Param({ "1000" })
+	public int peers;
+
+	private ScheduledExecutorService executor;
+	private Deduplicator dedup;
+	private KeyMID[] keys;
+	private Exchange exchange;
+
+	@Setup
+	public void setup() throws UnknownHostException {
+		NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+		config.setString(NetworkConfig.Keys.DEDUPLICATOR, deduplicator);
+		executor = ExecutorsUtil.newSingleThreadScheduledExecutor(new NamedThreadFactory("Deduplicator#"));
+		dedup = DeduplicatorFactory.getDeduplicatorFactory().createDeduplicator(config);
+		dedup.setExecutor(executor);
+		dedup.start();
+		keys = new KeyMID[peers * 64];
+		for (int peer = 0; peer < peers; ++peer) {
+			InetAddress address = InetAddress.getByAddress(
+					new byte[] { 10, (byte) (peer >> 16), (byte) (peer >> 8), (byte) peer });
+			InetSocketAddress socketAddress = new InetSocketAddress(address, 5683);
+			for (int mid = 0; mid < 64; ++mid) {
+				keys[peer * 64 + mid] = new KeyMID(mid, socketAddress);
+			}
+		}
+		exchange = new Exchange(Request.newGet(), Origin.REMOTE, null);
+	}
+
+	@TearDown
+	public void tearDown() {
+		dedup.stop();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Mostly new messages, with duplicates, when the keys are reused.
+	 *
+	 * @return previous exchange, or {@code null}, if not a duplicate.
+	 */
+	@Benchmark
+	public Exchange findPrevious() {
+		KeyMID key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+		return dedup.findPrevious(key, exchange);
+	}
+
+	@Benchmark
+	public Exchange find() {
+		KeyMID key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+		return dedup.find(key);
+	}
+}
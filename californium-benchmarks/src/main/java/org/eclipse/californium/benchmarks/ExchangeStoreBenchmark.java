@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.Exchange.Origin;
+import org.eclipse.californium.core.network.InMemoryMessageExchangeStore;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.elements.AddressEndpointContext;
+import org.eclipse.californium.elements.util.ExecutorsUtil;
+import org.eclipse.californium.elements.util.NamedThreadFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link InMemoryMessageExchangeStore}.
+ *
+ * Registers an outbound request, looks it up by MID and token and removes it
+ * again. The store is shared by all benchmark threads. Run with
+ * {@code -t <threads>} to measure the contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExchangeStoreBenchmark {
+
+	@Param({ "1000" })
+	public int peers;
+
+	private ScheduledExecutorService executor;
+	private InMemoryMessageExchangeStore store;
+	private AddressEndpointContext[] destinations;
+
+	@Setup
+	public void setup() throws UnknownHostException {
+		NetworkConfig config = NetworkConfig.createStandardWithoutFile();
+		executor = ExecutorsUtil.newSingleThreadScheduledExecutor(new NamedThreadFactory("ExchangeStore#"));
+		store = new InMemoryMessageExchangeStore(config);
+		store.setExecutor(executor);
+		store.start();
+		destinations = new AddressEndpointContext[peers];
+		for (int peer = 0; peer < peers; ++peer) {
+			InetAddress address = InetAddress.getByAddress(
+					new byte[] { 10, (byte) (peer >> 16), (byte) (peer >> 8), (byte) peer });
+			destinations[peer] = new AddressEndpointContext(new InetSocketAddress(address, 5683));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		store.stop();
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public Exchange registerAndRemove() {
+		Request request = Request.newGet();
+		request.setDestinationContext(destinations[ThreadLocalRandom.current().nextInt(peers)]);
+		Exchange exchange = new Exchange(request, Origin.LOCAL, null);
+		store.registerOutboundRequest(exchange);
+		Exchange found = store.get(exchange.getKeyMID());
+		store.get(exchange.getKeyToken());
+		store.remove(exchange.getKeyMID(), exchange);
+		store.remove(exchange.getKeyToken(), exchange);
+		return found;
+	}
+}
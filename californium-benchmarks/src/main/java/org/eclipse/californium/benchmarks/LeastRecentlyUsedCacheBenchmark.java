@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link LeastRecentlyUsedCache}.
+ *
+ * The cache is shared by all benchmark threads. Run with {@code -t <threads>}
+ * to measure the contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LeastRecentlyUsedCacheBenchmark {
+
+	@Param({ "100000" })
+	public int capacity;
+
+	private LeastRecentlyUsedCache<Integer, String> cache;
+	private Integer[] keys;
+
+	@Setup
+	public void setup() {
+		// threshold 0, all entries are stale and evicted, if required.
+		cache = new LeastRecentlyUsedCache<>(capacity, capacity, 0);
+		cache.setEvictingOnReadAccess(false);
+		keys = new Integer[capacity * 2];
+		for (int index = 0; index < keys.length; ++index) {
+			keys[index] = index;
+			if (index < capacity) {
+				cache.put(keys[index], "value-" + index);
+			}
+		}
+	}
+
+	private Integer nextKey(int range) {
+		return keys[ThreadLocalRandom.current().nextInt(range)];
+	}
+
+	@Benchmark
+	public String get() {
+		return cache.get(nextKey(capacity));
+	}
+
+	@Benchmark
+	public boolean update() {
+		return cache.update(nextKey(capacity));
+	}
+
+	@Benchmark
+	public boolean put() {
+		return cache.put(nextKey(keys.length), "value");
+	}
+
+	@Benchmark
+	public String getOrPut() {
+		Integer key = nextKey(keys.length);
+		String value = cache.get(key);
+		if (value == null) {
+			cache.put(key, "value");
+		}
+		return value;
+	}
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
+import org.eclipse.californium.core.coap.Option;
+import org.eclipse.californium.core.coap.OptionSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark for {@link OptionSet} manipulation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OptionSetBenchmark {
+
+	private static final byte[] ETAG = { 0x0a, 0x0b, 0x0c, 0x0d };
+
+	private OptionSet options;
+
+	@Setup
+	public void setup() {
+		options = createOptions();
+	}
+
+	/**
+	 * Create options of a typical request.
+	 *
+	 * @return created options
+	 */
+	private static OptionSet createOptions() {
+		OptionSet options = new OptionSet();
+		options.setUriHost("coap.example.org");
+		options.setUriPath("sensors/temperature/inside");
+		options.setUriQuery("unit=celsius&precision=2");
+		options.setAccept(MediaTypeRegistry.APPLICATION_CBOR);
+		options.setContentFormat(MediaTypeRegistry.TEXT_PLAIN);
+		options.addETag(ETAG);
+		options.setObserve(0);
+		options.setBlock2(2, false, 0);
+		return options;
+	}
+
+	@Benchmark
+	public OptionSet create() {
+		return createOptions();
+	}
+
+	@Benchmark
+	public OptionSet copy() {
+		return new OptionSet(options);
+	}
+
+	@Benchmark
+	public List<Option> asSortedList() {
+		return options.asSortedList();
+	}
+
+	@Benchmark
+	public void get(Blackhole blackhole) {
+		blackhole.consume(options.getUriPathString());
+		blackhole.consume(options.getUriQueryString());
+		blackhole.consume(options.getAccept());
+		blackhole.consume(options.containsETag(ETAG));
+		blackhole.consume(options.hasObserve());
+		blackhole.consume(options.getBlock2());
+	}
+
+	@Benchmark
+	public OptionSet modify() {
+		options.setObserve((options.getObserve() + 1) & 0xffffff);
+		options.removeBlock2();
+		options.setBlock2(2, false, 1);
+		return options;
+	}
+}
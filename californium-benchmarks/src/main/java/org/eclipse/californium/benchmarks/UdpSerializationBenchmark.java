@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.benchmarks;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.CoAP.Type;
+import org.eclipse.californium.core.coap.MediaTypeRegistry;
+import org.eclipse.californium.core.coap.Message;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.core.network.serialization.UdpDataParser;
+import org.eclipse.californium.core.network.serialization.UdpDataSerializer;
+import org.eclipse.californium.elements.AddressEndpointContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link UdpDataParser} and {@link UdpDataSerializer}.
+ *
+ * Uses a typical GET request and a notification with a payload of the
+ * provided size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class UdpSerializationBenchmark {
+
+	@Param({ "16", "256", "1024" })
+	public int payloadSize;
+
+	private UdpDataParser parser;
+	private UdpDataSerializer serializer;
+	private Request request;
+	private Response response;
+	private byte[] requestBytes;
+	private byte[] responseBytes;
+
+	@Setup
+	public void setup() {
+		parser = new UdpDataParser();
+		serializer = new UdpDataSerializer();
+		InetSocketAddress peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), 5683);
+
+		request = Request.newGet();
+		request.setMID(0x1234);
+		request.setToken(new Token(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+		request.setDestinationContext(new AddressEndpointContext(peer));
+		request.getOptions().setUriPath("sensors/temperature/inside");
+		request.getOptions().setUriQuery("unit=celsius&precision=2");
+		request.getOptions().setAccept(MediaTypeRegistry.APPLICATION_CBOR);
+		request.getOptions().setObserve(0);
+		requestBytes = serializer.getByteArray(request);
+
+		response = new Response(ResponseCode.CONTENT);
+		response.setType(Type.NON);
+		response.setMID(0x4321);
+		response.setToken(request.getToken());
+		response.setDestinationContext(new AddressEndpointContext(peer));
+		response.getOptions().setContentFormat(MediaTypeRegistry.APPLICATION_CBOR);
+		response.getOptions().setObserve(4711);
+		response.getOptions().setMaxAge(30);
+		response.getOptions().addETag(new byte[] { 0x0a, 0x0b, 0x0c, 0x0d });
+		byte[] payload = new byte[payloadSize];
+		for (int index = 0; index < payload.length; ++index) {
+			payload[index] = (byte) index;
+		}
+		response.setPayload(payload);
+		responseBytes = serializer.getByteArray(response);
+	}
+
+	@Benchmark
+	public Message parseRequest() {
+		return parser.parseMessage(requestBytes);
+	}
+
+	@Benchmark
+	public Message parseResponse() {
+		return parser.parseMessage(responseBytes);
+	}
+
+	@Benchmark
+	public byte[] serializeRequest() {
+		return serializer.getByteArray(request);
+	}
+
+	@Benchmark
+	public byte[] serializeResponse() {
+		return serializer.getByteArray(response);
+	}
+}
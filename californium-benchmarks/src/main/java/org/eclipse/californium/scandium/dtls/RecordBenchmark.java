@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.dtls.cipher.RandomManager;
+import org.eclipse.californium.scandium.util.SecretIvParameterSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link Record#fromReader(DatagramReader, ConnectionIdGenerator, long)}
+ * and {@link Record#decodeFragment(DTLSConnectionState)} of application data
+ * records.
+ *
+ * Located in the package of the {@link DTLSContext} in order to create the
+ * context without handshake.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RecordBenchmark {
+
+	@Param({ "TLS_PSK_WITH_AES_128_CCM_8", "TLS_PSK_WITH_AES_128_GCM_SHA256", "TLS_PSK_WITH_AES_128_CBC_SHA256" })
+	public String cipherSuite;
+
+	@Param({ "64", "1024" })
+	public int payloadSize;
+
+	private DTLSConnectionState readState;
+	private byte[] datagram;
+
+	@Setup
+	public void setup() throws GeneralSecurityException {
+		CipherSuite suite = CipherSuite.valueOf(cipherSuite);
+		SecretKey macKey = null;
+		if (suite.getMacKeyLength() > 0) {
+			macKey = new SecretKeySpec(randomBytes(suite.getMacKeyLength()), "AES");
+		}
+		SecretKey encryptionKey = new SecretKeySpec(randomBytes(suite.getEncKeyLength()), "AES");
+		SecretIvParameterSpec iv = new SecretIvParameterSpec(randomBytes(suite.getFixedIvLength()));
+
+		DTLSSession session = new DTLSSession();
+		session.setSessionIdentifier(new SessionId());
+		session.setCipherSuite(suite);
+		session.setCompressionMethod(CompressionMethod.NULL);
+		DTLSContext context = new DTLSContext(session, 0);
+		context.createReadState(encryptionKey, iv, macKey);
+		context.createWriteState(encryptionKey, iv, macKey);
+		readState = context.getReadState();
+
+		ApplicationMessage message = new ApplicationMessage(randomBytes(payloadSize));
+		Record record = new Record(ContentType.APPLICATION_DATA, context.getWriteEpoch(), message, context, false, 0);
+		datagram = record.toByteArray();
+	}
+
+	@Benchmark
+	public List<Record> parse() {
+		return Record.fromReader(new DatagramReader(datagram), null, 0);
+	}
+
+	@Benchmark
+	public Record parseAndDecrypt() throws GeneralSecurityException, HandshakeException {
+		List<Record> records = Record.fromReader(new DatagramReader(datagram), null, 0);
+		Record record = records.get(0);
+		record.decodeFragment(readState);
+		return record;
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] data = new byte[length];
+		RandomManager.currentSecureRandom().nextBytes(data);
+		return data;
+	}
+}
@@ -29,10 +29,13 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - add iPATCH
  *                                                    cleanup source according 
  *                                                    coding guidelines
+ *    Bosch IO GmbH - add notification templates
+ *    Bosch IO GmbH - add notification dispatcher
  ******************************************************************************/
 package org.eclipse.californium.core;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -54,6 +57,10 @@ import org.eclipse.californium.core.coap.CoAP.Type;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.network.Endpoint;
 import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.observe.NotificationOrder;
+import org.eclipse.californium.core.observe.NotificationTemplate;
+import org.eclipse.californium.core.observe.ObserveNotificationDispatcher;
+import org.eclipse.californium.core.observe.ObserveNotificationDispatcher.RelationNotifier;
 import org.eclipse.californium.core.observe.ObserveNotificationOrderer;
 import org.eclipse.californium.core.observe.ObserveRelation;
 import org.eclipse.californium.core.observe.ObserveRelationContainer;
@@ -63,6 +70,7 @@ import org.eclipse.californium.core.server.resources.CoapExchange;
 import org.eclipse.californium.core.server.resources.Resource;
 import org.eclipse.californium.core.server.resources.ResourceAttributes;
 import org.eclipse.californium.core.server.resources.ResourceObserver;
+import org.eclipse.californium.elements.util.ClockUtil;
 
 /**
  * CoapResource is a basic implementation of a resource. Extend this class to
@@ -130,6 +138,16 @@ import org.eclipse.californium.core.server.resources.ResourceObserver;
  * done on the executor. A CoAP observe relation between this resource and a
  * CoAP client is represented by an instance of {@link ObserveRelation}.
  * <p>
+ * If all observers receive the same notification, a resource may override
+ * {@link #createNotification()}. Then changed() doesn't reprocess the
+ * requests, but sends a copy of that notification to all observers. The
+ * options and payload of such notifications are serialized only once.
+ * <p>
+ * For resources with many observers, the notifications may be distributed
+ * across several threads and paced by an
+ * {@link ObserveNotificationDispatcher}, see
+ * {@link #setNotificationDispatcher(ObserveNotificationDispatcher)}.
+ * <p>
  * In contrast the class {@link ResourceObserver} has nothing to do with CoAP's
  * observe mechanism but is an implementation of the general observe-pattern. A
  * ResourceObserver is invoked whenever the name or path of a resource changes,
@@ -180,6 +198,9 @@ public  class CoapResource implements Resource {
 	/* The notification orderer. */
 	private ObserveNotificationOrderer notificationOrderer;
 
+	/* The notification dispatcher. null, to notify on the calling thread. */
+	private volatile ObserveNotificationDispatcher notificationDispatcher;
+
 	/**
 	 * Constructs a new resource with the specified name.
 	 *
@@ -858,13 +879,143 @@ public  class CoapResource implements Resource {
 	 */
 	protected void notifyObserverRelations(final ObserveRelationFilter filter) {
 		notificationOrderer.getNextObserveNumber();
-		for (ObserveRelation relation : observeRelations) {
-			if (null == filter || filter.accept(relation)) {
-				relation.notifyObservers();
+		NotificationTemplate template = null;
+		Response notification = createNotification();
+		if (notification != null) {
+			notification.getOptions().setObserve(notificationOrderer.getCurrent());
+			template = new NotificationTemplate(notification);
+		}
+		ObserveNotificationDispatcher dispatcher = notificationDispatcher;
+		if (dispatcher == null) {
+			for (ObserveRelation relation : observeRelations) {
+				if (null == filter || filter.accept(relation)) {
+					notifyObserverRelation(relation, template);
+				}
 			}
+		} else {
+			List<ObserveRelation> relations = new ArrayList<ObserveRelation>(observeRelations.getSize());
+			for (ObserveRelation relation : observeRelations) {
+				if (null == filter || filter.accept(relation)) {
+					relations.add(relation);
+				}
+			}
+			final NotificationTemplate dispatchedTemplate = template;
+			dispatcher.dispatch(relations, new RelationNotifier() {
+
+				@Override
+				public void notifyRelation(ObserveRelation relation) {
+					notifyObserverRelation(relation, dispatchedTemplate);
+				}
+			});
 		}
 	}
 
+	/**
+	 * Notifies a single CoAP client.
+	 * 
+	 * The notification of a template keeps the observe number of its round.
+	 * Rounds may overlap, if notifications are dispatched. A notification is
+	 * therefore skipped, if the relation has already a newer notification.
+	 * 
+	 * @param relation observe relation of the client
+	 * @param template notification template. {@code null}, to reprocess the
+	 *            request of the relation.
+	 */
+	private void notifyObserverRelation(ObserveRelation relation, NotificationTemplate template) {
+		if (template == null) {
+			relation.notifyObservers();
+		} else {
+			Exchange exchange = relation.getExchange();
+			Response response = template.createNotification();
+			Integer observe = response.getOptions().getObserve();
+			if (observe != null && isOutdated(relation, observe)) {
+				LOGGER.debug("skip outdated notification {} for {}", observe, relation);
+				return;
+			}
+			checkObserveRelation(exchange, response);
+			if (observe != null && response.getOptions().hasObserve()) {
+				// keep the observe number of the template's content
+				response.getOptions().setObserve(observe);
+			}
+			exchange.sendResponse(response);
+		}
+	}
+
+	/**
+	 * Check, if the relation has already a newer notification.
+	 * 
+	 * @param relation observe relation of the client
+	 * @param observe observe number of the notification
+	 * @return {@code true}, if the current or next notification of the
+	 *         relation has a newer observe number, {@code false}, otherwise.
+	 */
+	private static boolean isOutdated(ObserveRelation relation, int observe) {
+		Response latest = relation.getNextControlNotification();
+		if (latest == null) {
+			latest = relation.getCurrentControlNotification();
+		}
+		if (latest != null) {
+			Integer latestObserve = latest.getOptions().getObserve();
+			if (latestObserve != null && latestObserve != observe) {
+				long now = ClockUtil.nanoRealtime();
+				return NotificationOrder.isNew(now, observe, now, latestObserve);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Create notification for all observers.
+	 * 
+	 * Intended to be overridden by resources, which send the same
+	 * notification to all observers. The returned response is used as
+	 * {@link NotificationTemplate} for the notifications of all observe
+	 * relations, without reprocessing their requests. Therefore all options
+	 * of the requests, e.g. the accept option, are ignored. The observe option
+	 * is set by this resource. The response must not contain block options,
+	 * larger payloads are transferred blockwise by the stack.
+	 * 
+	 * @return response used as notification template, or {@code null}, to
+	 *         reprocess the request of each observe relation.
+	 * @since 3.0
+	 */
+	protected Response createNotification() {
+		return null;
+	}
+
+	/**
+	 * Set dispatcher for notifications.
+	 * 
+	 * The dispatcher distributes the notifications of {@link #changed()}
+	 * across its threads and paces them. Relations are still selected by the
+	 * {@link ObserveRelationFilter} on the thread executing
+	 * {@link #notifyObserverRelations(ObserveRelationFilter)}. The dispatcher
+	 * may be shared by several resources, e.g. to limit the overall rate of
+	 * notifications.
+	 * 
+	 * Note: resources using a dispatcher without notification template, see
+	 * {@link #createNotification()}, must be able to process the requests of
+	 * several observe relations in parallel.
+	 * 
+	 * @param dispatcher notification dispatcher. {@code null}, to notify the
+	 *            relations sequentially on the executing thread.
+	 * @since 3.0
+	 */
+	public void setNotificationDispatcher(ObserveNotificationDispatcher dispatcher) {
+		this.notificationDispatcher = dispatcher;
+	}
+
+	/**
+	 * Get dispatcher for notifications.
+	 * 
+	 * @return notification dispatcher, or {@code null}, if the relations are
+	 *         notified sequentially on the executing thread.
+	 * @since 3.0
+	 */
+	public ObserveNotificationDispatcher getNotificationDispatcher() {
+		return notificationDispatcher;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.californium.core.server.resources.Resource#getChildren()
 	 */
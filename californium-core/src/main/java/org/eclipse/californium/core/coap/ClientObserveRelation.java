@@ -13,9 +13,11 @@
  * Contributors:
  *    Bosch IO.GmbH - initial implementation,
  *                    mainly copied from CoapObserveRelation
+ *    Bosch IO GmbH - support any scheduled executor service
  ******************************************************************************/
 package org.eclipse.californium.core.coap;
 
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -43,7 +45,7 @@ public class ClientObserveRelation {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ClientObserveRelation.class);
 
 	/** A executor service to schedule re-registrations */
-	private final ScheduledThreadPoolExecutor scheduler;
+	private final ScheduledExecutorService scheduler;
 
 	/** The endpoint. */
 	protected final Endpoint endpoint;
@@ -125,6 +127,19 @@ public class ClientObserveRelation {
 	 * @param executor the executor to schedule the reregistration.
 	 */
 	public ClientObserveRelation(Request request, Endpoint endpoint, ScheduledThreadPoolExecutor executor) {
+		this(request, endpoint, (ScheduledExecutorService) executor);
+	}
+
+	/**
+	 * Constructs a new ClientObserveRelation with the specified request.
+	 *
+	 * @param request the request
+	 * @param endpoint the endpoint
+	 * @param executor the executor to schedule the reregistration. e.g. a
+	 *            {@link org.eclipse.californium.elements.util.HashedWheelTimer}
+	 * @since 3.0
+	 */
+	public ClientObserveRelation(Request request, Endpoint endpoint, ScheduledExecutorService executor) {
 		this.request = request;
 		this.endpoint = endpoint;
 		this.orderer = new ObserveNotificationOrderer();
@@ -349,8 +364,8 @@ public class ClientObserveRelation {
 	private void setReregistrationHandle(ScheduledFuture<?> reregistrationHandle) {
 		ScheduledFuture<?> previousHandle = this.reregistrationHandle.getAndSet(reregistrationHandle);
 		if (previousHandle != null) {
-			if (previousHandle instanceof Runnable) {
-				scheduler.remove((Runnable) previousHandle);
+			if (previousHandle instanceof Runnable && scheduler instanceof ScheduledThreadPoolExecutor) {
+				((ScheduledThreadPoolExecutor) scheduler).remove((Runnable) previousHandle);
 			} else {
 				previousHandle.cancel(false);
 			}
@@ -21,15 +21,22 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - Include size1 and size2
  *                                                    in clone and clear
  *                                                    issue #815
+ *    Bosch IO GmbH - add serialize, writes options without sorted list.
+ *    Bosch IO GmbH - add getSerializedSize.
+ *    Bosch IO GmbH - add shareLists and equals.
  ******************************************************************************/
 package org.eclipse.californium.core.coap;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
+import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.elements.util.DatagramWriter;
+
 /**
  * {@code OptionSet} is a collection of all options of a request or a response.
  * {@code OptionSet} provides methods to add, remove and modify all options
@@ -92,6 +99,15 @@ public final class OptionSet {
 	 */
 	private boolean explicitUriOptions;
 
+	/**
+	 * {@code true}, if the option lists are shared with other option sets.
+	 * Shared lists are copied before they are modified or exposed.
+	 * 
+	 * @see #shareLists()
+	 * @since 3.0
+	 */
+	private boolean sharedLists;
+
 	/**
 	 * Creates an empty set of options.
 	 * <p>
@@ -132,18 +148,30 @@ public final class OptionSet {
 		if (origin == null) {
 			throw new NullPointerException("option set must not be null!");
 		}
-		if_match_list       = copyList(origin.if_match_list);
+		if (origin.sharedLists) {
+			if_match_list       = origin.if_match_list;
+			etag_list           = origin.etag_list;
+			location_path_list  = origin.location_path_list;
+			uri_path_list       = origin.uri_path_list;
+			uri_query_list      = origin.uri_query_list;
+			location_query_list = origin.location_query_list;
+			others              = origin.others;
+			sharedLists         = true;
+		} else {
+			if_match_list       = copyList(origin.if_match_list);
+			etag_list           = copyList(origin.etag_list);
+			location_path_list  = copyList(origin.location_path_list);
+			uri_path_list       = copyList(origin.uri_path_list);
+			uri_query_list      = copyList(origin.uri_query_list);
+			location_query_list = copyList(origin.location_query_list);
+			others              = copyList(origin.others);
+		}
 		uri_host            = origin.uri_host;
-		etag_list           = copyList(origin.etag_list);
 		if_none_match       = origin.if_none_match;
 		uri_port            = origin.uri_port;
-		location_path_list  = copyList(origin.location_path_list);
-		uri_path_list       = copyList(origin.uri_path_list);
 		content_format      = origin.content_format;
 		max_age             = origin.max_age;
-		uri_query_list      = copyList(origin.uri_query_list);
 		accept              = origin.accept;
-		location_query_list = copyList(origin.location_query_list);
 		proxy_uri           = origin.proxy_uri;
 		proxy_scheme        = origin.proxy_scheme;
 
@@ -158,13 +186,13 @@ public final class OptionSet {
 		if(origin.oscore != null) {
 			oscore          = origin.oscore.clone();
 		}
-		others              = copyList(origin.others);
 	}
 
 	/**
 	 * Clears all options.
 	 */
 	public void clear() {
+		copySharedLists();
 		if (if_match_list != null)
 			if_match_list.clear();
 		uri_host = null;
@@ -209,6 +237,47 @@ public final class OptionSet {
 			return new LinkedList<T>(list);
 	}
 
+	/**
+	 * Share the option lists with copies.
+	 * <p>
+	 * Copies created afterwards with {@link #OptionSet(OptionSet)} share the
+	 * option lists with this option set instead of copying them. The lists
+	 * are only copied, when either option set modifies or exposes them. Used
+	 * for options, which are copied frequently, but rarely modified, e.g. the
+	 * options of a notification template. Lists obtained before calling this
+	 * method must not be modified afterwards.
+	 * 
+	 * @return this OptionSet for a fluent API.
+	 * @since 3.0
+	 */
+	public OptionSet shareLists() {
+		synchronized (this) {
+			sharedLists = true;
+		}
+		return this;
+	}
+
+	/**
+	 * Copies the shared option lists before they are modified or exposed.
+	 * 
+	 * @see #shareLists()
+	 * @since 3.0
+	 */
+	private void copySharedLists() {
+		synchronized (this) {
+			if (sharedLists) {
+				sharedLists = false;
+				if_match_list = copyList(if_match_list);
+				etag_list = copyList(etag_list);
+				location_path_list = copyList(location_path_list);
+				uri_path_list = copyList(uri_path_list);
+				uri_query_list = copyList(uri_query_list);
+				location_query_list = copyList(location_query_list);
+				others = copyList(others);
+			}
+		}
+	}
+
 	/////////////////////// Getter and Setter ///////////////////////
 
 	/**
@@ -219,6 +288,7 @@ public final class OptionSet {
 	 * @return the list of If-Match ETags
 	 */
 	public List<byte[]> getIfMatch() {
+		copySharedLists();
 		synchronized (this) {
 			if (if_match_list == null)
 				if_match_list = new LinkedList<byte[]>();
@@ -354,6 +424,7 @@ public final class OptionSet {
 	 * @return the list of ETags
 	 */
 	public List<byte[]> getETags() {
+		copySharedLists();
 		synchronized (this) {
 			if (etag_list == null)
 				etag_list = new LinkedList<byte[]>();
@@ -495,6 +566,7 @@ public final class OptionSet {
 	 * @return the list of Location-Path segments
 	 */
 	public List<String> getLocationPath() {
+		copySharedLists();
 		synchronized (this) {
 			if (location_path_list == null)
 				location_path_list = new LinkedList<String>();
@@ -610,6 +682,7 @@ public final class OptionSet {
 	 * @return the list of Uri-Path segments
 	 */
 	public List<String> getUriPath() {
+		copySharedLists();
 		synchronized (this) {
 			if (uri_path_list == null)
 				uri_path_list = new LinkedList<String>();
@@ -803,6 +876,7 @@ public final class OptionSet {
 	 * @return the list of query arguments
 	 */
 	public List<String> getUriQuery() {
+		copySharedLists();
 		synchronized (this) {
 			if (uri_query_list == null)
 				uri_query_list = new LinkedList<String>();
@@ -952,6 +1026,7 @@ public final class OptionSet {
 	 * @return the list of query arguments
 	 */
 	public List<String> getLocationQuery() {
+		copySharedLists();
 		synchronized (this) {
 			if (location_query_list == null)
 				location_query_list = new LinkedList<String>();
@@ -1432,6 +1507,7 @@ public final class OptionSet {
 	}
 
 	private List<Option> getOthersInternal() {
+		copySharedLists();
 		synchronized (this) {
 			if (others == null)
 				others = new LinkedList<Option>();
@@ -1473,7 +1549,7 @@ public final class OptionSet {
 			for (byte[] value : etag_list)
 				options.add(new Option(OptionNumberRegistry.ETAG, value));
 		if (hasIfNoneMatch())
-			options.add(new Option(OptionNumberRegistry.IF_NONE_MATCH));
+			options.add(new Option(OptionNumberRegistry.IF_NONE_MATCH, Bytes.EMPTY));
 		if (hasUriPort())
 			options.add(new Option(OptionNumberRegistry.URI_PORT, getUriPort()));
 		if (location_path_list != null)
@@ -1520,6 +1596,104 @@ public final class OptionSet {
 		return options;
 	}
 
+	/**
+	 * Serializes the options in wire format.
+	 * 
+	 * Writes the options ordered by their number, as specified in
+	 * <a href="https://tools.ietf.org/html/rfc7252#section-3.1">RFC 7252, 3.1.
+	 * Option Format</a>. In difference to {@link #asSortedList()}, the options
+	 * are written directly from their values. Neither the list nor
+	 * {@link Option}s are created. Only if {@link #getOthers()} contains
+	 * options, these are copied and sorted.
+	 * 
+	 * @param writer writer to write the options to
+	 * @throws IllegalArgumentException if an option value has an invalid
+	 *             length
+	 * @since 3.0
+	 */
+	public void serialize(DatagramWriter writer) {
+		if (writer == null) {
+			throw new NullPointerException("writer must not be null!");
+		}
+		serialize(new OptionWriter(writer, others));
+	}
+
+	/**
+	 * Gets the size of the options in wire format.
+	 * 
+	 * Calculates the number of bytes {@link #serialize(DatagramWriter)} will
+	 * write without writing them. Enables to allocate the buffer for the
+	 * serialized message with the exact size.
+	 * 
+	 * @return size of the options in wire format in bytes
+	 * @throws IllegalArgumentException if an option value has an invalid
+	 *             length
+	 * @since 3.0
+	 */
+	public int getSerializedSize() {
+		OptionWriter options = new OptionWriter(null, others);
+		serialize(options);
+		return options.size;
+	}
+
+	/**
+	 * Serializes the options using the provided option writer.
+	 * 
+	 * @param options option writer
+	 * @throws IllegalArgumentException if an option value has an invalid
+	 *             length
+	 * @since 3.0
+	 */
+	private void serialize(OptionWriter options) {
+		if (if_match_list != null)
+			for (byte[] value : if_match_list)
+				options.write(OptionNumberRegistry.IF_MATCH, value);
+		if (uri_host != null)
+			options.write(OptionNumberRegistry.URI_HOST, uri_host);
+		if (etag_list != null)
+			for (byte[] value : etag_list)
+				options.write(OptionNumberRegistry.ETAG, value);
+		if (if_none_match)
+			options.write(OptionNumberRegistry.IF_NONE_MATCH, Bytes.EMPTY);
+		if (observe != null)
+			options.write(OptionNumberRegistry.OBSERVE, observe);
+		if (uri_port != null)
+			options.write(OptionNumberRegistry.URI_PORT, uri_port);
+		if (location_path_list != null)
+			for (String str : location_path_list)
+				options.write(OptionNumberRegistry.LOCATION_PATH, str);
+		if (oscore != null)
+			options.write(OptionNumberRegistry.OSCORE, oscore);
+		if (uri_path_list != null)
+			for (String str : uri_path_list)
+				options.write(OptionNumberRegistry.URI_PATH, str);
+		if (content_format != null)
+			options.write(OptionNumberRegistry.CONTENT_FORMAT, content_format);
+		if (max_age != null)
+			options.write(OptionNumberRegistry.MAX_AGE, max_age.longValue());
+		if (uri_query_list != null)
+			for (String str : uri_query_list)
+				options.write(OptionNumberRegistry.URI_QUERY, str);
+		if (accept != null)
+			options.write(OptionNumberRegistry.ACCEPT, accept);
+		if (location_query_list != null)
+			for (String str : location_query_list)
+				options.write(OptionNumberRegistry.LOCATION_QUERY, str);
+		if (block2 != null)
+			options.write(OptionNumberRegistry.BLOCK2, block2);
+		if (block1 != null)
+			options.write(OptionNumberRegistry.BLOCK1, block1);
+		if (size2 != null)
+			options.write(OptionNumberRegistry.SIZE2, size2);
+		if (proxy_uri != null)
+			options.write(OptionNumberRegistry.PROXY_URI, proxy_uri);
+		if (proxy_scheme != null)
+			options.write(OptionNumberRegistry.PROXY_SCHEME, proxy_scheme);
+		if (size1 != null)
+			options.write(OptionNumberRegistry.SIZE1, size1);
+		options.writeOthers(Integer.MAX_VALUE);
+	}
+
 	boolean hasExplicitUriOptions() {
 		return explicitUriOptions;
 	}
@@ -1622,6 +1796,119 @@ public final class OptionSet {
 		return this;
 	}
 
+	/**
+	 * Compares the options of this option set with the options of the other
+	 * one.
+	 * <p>
+	 * In difference to comparing the lists of {@link #asSortedList()}, the
+	 * options are compared directly by their values without creating a list
+	 * nor {@link Option}s. Empty and not touched lists are considered to be
+	 * equal. The other options are compared in the order they have been
+	 * added.
+	 * 
+	 * @param o other option set
+	 * @return {@code true}, if both option sets contains the same options,
+	 *         {@code false}, otherwise.
+	 * @since 3.0
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof OptionSet)) {
+			return false;
+		}
+		OptionSet other = (OptionSet) o;
+		return if_none_match == other.if_none_match && equals(uri_host, other.uri_host)
+				&& equals(uri_port, other.uri_port) && equals(content_format, other.content_format)
+				&& equals(max_age, other.max_age) && equals(accept, other.accept)
+				&& equals(proxy_uri, other.proxy_uri) && equals(proxy_scheme, other.proxy_scheme)
+				&& equals(block1, other.block1) && equals(block2, other.block2) && equals(size1, other.size1)
+				&& equals(size2, other.size2) && equals(observe, other.observe)
+				&& Arrays.equals(oscore, other.oscore) && equalsBytesList(if_match_list, other.if_match_list)
+				&& equalsBytesList(etag_list, other.etag_list)
+				&& equalsList(location_path_list, other.location_path_list)
+				&& equalsList(uri_path_list, other.uri_path_list)
+				&& equalsList(uri_query_list, other.uri_query_list)
+				&& equalsList(location_query_list, other.location_query_list)
+				&& equalsList(others, other.others);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = if_none_match ? 1 : 0;
+		hash = 31 * hash + hashCode(uri_host);
+		hash = 31 * hash + hashCode(uri_port);
+		hash = 31 * hash + hashCode(content_format);
+		hash = 31 * hash + hashCode(max_age);
+		hash = 31 * hash + hashCode(accept);
+		hash = 31 * hash + hashCode(proxy_uri);
+		hash = 31 * hash + hashCode(proxy_scheme);
+		hash = 31 * hash + hashCode(block1);
+		hash = 31 * hash + hashCode(block2);
+		hash = 31 * hash + hashCode(size1);
+		hash = 31 * hash + hashCode(size2);
+		hash = 31 * hash + hashCode(observe);
+		hash = 31 * hash + Arrays.hashCode(oscore);
+		hash = 31 * hash + hashCodeBytesList(if_match_list);
+		hash = 31 * hash + hashCodeBytesList(etag_list);
+		hash = 31 * hash + hashCodeList(location_path_list);
+		hash = 31 * hash + hashCodeList(uri_path_list);
+		hash = 31 * hash + hashCodeList(uri_query_list);
+		hash = 31 * hash + hashCodeList(location_query_list);
+		hash = 31 * hash + hashCodeList(others);
+		return hash;
+	}
+
+	private static boolean equals(Object value1, Object value2) {
+		return value1 == null ? value2 == null : value1.equals(value2);
+	}
+
+	private static int hashCode(Object value) {
+		return value == null ? 0 : value.hashCode();
+	}
+
+	private static boolean equalsList(List<?> list1, List<?> list2) {
+		if (list1 == null || list1.isEmpty()) {
+			return list2 == null || list2.isEmpty();
+		}
+		return list1.equals(list2);
+	}
+
+	private static int hashCodeList(List<?> list) {
+		return list == null || list.isEmpty() ? 0 : list.hashCode();
+	}
+
+	private static boolean equalsBytesList(List<byte[]> list1, List<byte[]> list2) {
+		if (list1 == list2) {
+			return true;
+		}
+		int size1 = list1 == null ? 0 : list1.size();
+		int size2 = list2 == null ? 0 : list2.size();
+		if (size1 != size2) {
+			return false;
+		} else if (size1 > 0) {
+			Iterator<byte[]> iterator = list2.iterator();
+			for (byte[] value : list1) {
+				if (!Arrays.equals(value, iterator.next())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static int hashCodeBytesList(List<byte[]> list) {
+		int hash = 0;
+		if (list != null) {
+			for (byte[] value : list) {
+				hash = 31 * hash + Arrays.hashCode(value);
+			}
+		}
+		return hash;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
@@ -1723,4 +2010,194 @@ public final class OptionSet {
 		}
 		OptionNumberRegistry.assertValueLength(optionNumber, value.length);
 	}
+
+	/**
+	 * Writer for options in wire format.
+	 * 
+	 * The options must be written in the order of their number. Other options
+	 * are merged into that order. Without {@link DatagramWriter}, the writer
+	 * only counts the bytes.
+	 * 
+	 * @since 3.0
+	 */
+	private static final class OptionWriter {
+
+		/**
+		 * Writer for options. {@code null}, to count the bytes only.
+		 */
+		private final DatagramWriter writer;
+		/**
+		 * Sorted other options. {@code null}, if not available.
+		 */
+		private final Option[] others;
+		/**
+		 * Index of next other option to write.
+		 */
+		private int otherIndex;
+		/**
+		 * Number of last written option.
+		 */
+		private int lastOptionNumber;
+		/**
+		 * Number of written bytes.
+		 */
+		private int size;
+
+		private OptionWriter(DatagramWriter writer, List<Option> others) {
+			this.writer = writer;
+			if (others == null || others.isEmpty()) {
+				this.others = null;
+			} else {
+				this.others = others.toArray(new Option[others.size()]);
+				// stable sort, keeps order of options with same number
+				Arrays.sort(this.others);
+			}
+		}
+
+		/**
+		 * Write other options with smaller number.
+		 * 
+		 * @param optionNumber option number limit (exclusive)
+		 */
+		private void writeOthers(int optionNumber) {
+			if (others != null) {
+				while (otherIndex < others.length && others[otherIndex].getNumber() < optionNumber) {
+					Option option = others[otherIndex++];
+					// other options may bypass the validation,
+					// see addOtherOption
+					byte[] value = option.getValue();
+					writeHeader(option.getNumber(), value.length);
+					writeBytes(value);
+				}
+			}
+		}
+
+		private void write(int optionNumber, byte[] value) {
+			startOption(optionNumber, value.length);
+			writeBytes(value);
+		}
+
+		private void write(int optionNumber, String value) {
+			int length = value.length();
+			for (int index = 0; index < length; ++index) {
+				if (value.charAt(index) >= 0x80) {
+					// not ascii, encode UTF-8
+					write(optionNumber, value.getBytes(CoAP.UTF8_CHARSET));
+					return;
+				}
+			}
+			startOption(optionNumber, length);
+			if (writer != null) {
+				for (int index = 0; index < length; ++index) {
+					writer.writeByte((byte) value.charAt(index));
+				}
+			}
+			size += length;
+		}
+
+		private void write(int optionNumber, int value) {
+			int length = (Integer.SIZE - Integer.numberOfLeadingZeros(value) + 7) / Byte.SIZE;
+			startOption(optionNumber, length);
+			if (writer != null) {
+				for (int index = length - 1; index >= 0; --index) {
+					writer.writeByte((byte) (value >> index * Byte.SIZE));
+				}
+			}
+			size += length;
+		}
+
+		private void write(int optionNumber, long value) {
+			int length = (Long.SIZE - Long.numberOfLeadingZeros(value) + 7) / Byte.SIZE;
+			startOption(optionNumber, length);
+			if (writer != null) {
+				for (int index = length - 1; index >= 0; --index) {
+					writer.writeByte((byte) (value >> index * Byte.SIZE));
+				}
+			}
+			size += length;
+		}
+
+		private void write(int optionNumber, BlockOption block) {
+			// encoding of BlockOption.getValue()
+			write(optionNumber, (block.getNum() << 4) | (block.isM() ? 1 << 3 : 0) | block.getSzx());
+		}
+
+		/**
+		 * Start option with validated length.
+		 * 
+		 * Writes other options with smaller number before.
+		 * 
+		 * @param optionNumber option number
+		 * @param optionLength option length
+		 * @throws IllegalArgumentException if the length is not valid for the
+		 *             option
+		 */
+		private void startOption(int optionNumber, int optionLength) {
+			writeOthers(optionNumber);
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			writeHeader(optionNumber, optionLength);
+		}
+
+		private void writeHeader(int optionNumber, int optionLength) {
+			int optionDelta = optionNumber - lastOptionNumber;
+			int optionDeltaNibble = getOptionNibble(optionDelta);
+			int optionLengthNibble = getOptionNibble(optionLength);
+			size += 1 + getExtendedSize(optionDeltaNibble) + getExtendedSize(optionLengthNibble);
+			lastOptionNumber = optionNumber;
+			if (writer == null) {
+				return;
+			}
+			writer.writeByte((byte) (optionDeltaNibble << CoAP.MessageFormat.OPTION_LENGTH_BITS | optionLengthNibble));
+
+			// write extended option delta field (0 - 2 bytes)
+			if (optionDeltaNibble == 13) {
+				writer.write(optionDelta - 13, Byte.SIZE);
+			} else if (optionDeltaNibble == 14) {
+				writer.write(optionDelta - 269, 2 * Byte.SIZE);
+			}
+
+			// write extended option length field (0 - 2 bytes)
+			if (optionLengthNibble == 13) {
+				writer.write(optionLength - 13, Byte.SIZE);
+			} else if (optionLengthNibble == 14) {
+				writer.write(optionLength - 269, 2 * Byte.SIZE);
+			}
+		}
+
+		private void writeBytes(byte[] value) {
+			if (writer != null) {
+				writer.writeBytes(value);
+			}
+			size += value.length;
+		}
+
+		/**
+		 * Returns the 4-bit option header value.
+		 *
+		 * @param optionValue the option value (delta or length) to be encoded.
+		 * @return the 4-bit option header value.
+		 * @throws IllegalArgumentException if the option value is &gt; 65535 + 269.
+		 */
+		private static int getOptionNibble(final int optionValue) {
+			if (optionValue <= 12) {
+				return optionValue;
+			} else if (optionValue <= 255 + 13) {
+				return 13;
+			} else if (optionValue <= 65535 + 269) {
+				return 14;
+			} else {
+				throw new IllegalArgumentException("Unsupported option delta " + optionValue);
+			}
+		}
+
+		/**
+		 * Returns the number of bytes of the extended field.
+		 * 
+		 * @param nibble the 4-bit option header value
+		 * @return number of bytes of the extended field (0 - 2 bytes)
+		 */
+		private static int getExtendedSize(final int nibble) {
+			return nibble < 13 ? 0 : nibble - 12;
+		}
+	}
 }
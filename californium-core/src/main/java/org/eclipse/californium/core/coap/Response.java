@@ -24,12 +24,14 @@
  *                                                    EndpointContext
  *    Achim Kraus (Bosch Software Innovations GmbH) - change type for rtt to Long
  *    Achim Kraus (Bosch Software Innovations GmbH) - remove "is last", not longer meaningful
+ *    Bosch IO GmbH - add notification template
  ******************************************************************************/
 package org.eclipse.californium.core.coap;
 
 import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.network.Matcher;
 import org.eclipse.californium.core.network.stack.ReliabilityLayer;
+import org.eclipse.californium.core.observe.NotificationTemplate;
 
 /**
  * Response represents a CoAP response to a CoAP request.
@@ -51,6 +53,14 @@ public class Response extends Message {
 	 */
 	private volatile Long rtt;
 
+	/**
+	 * Notification template this response is created from. {@code null}, if
+	 * not created from a template.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile NotificationTemplate notificationTemplate;
+
 	/**
 	 * Creates a response to the provided received request with the specified
 	 * response code. The destination endpoint context of the response will be
@@ -138,6 +148,28 @@ public class Response extends Message {
 		this.rtt = rtt;
 	}
 
+	/**
+	 * Get notification template.
+	 * 
+	 * @return notification template this response is created from, or
+	 *         {@code null}, if not created from a template.
+	 * @since 3.0
+	 */
+	public NotificationTemplate getNotificationTemplate() {
+		return notificationTemplate;
+	}
+
+	/**
+	 * Set notification template.
+	 * 
+	 * @param template notification template this response is created from.
+	 * @see NotificationTemplate#createNotification()
+	 * @since 3.0
+	 */
+	public void setNotificationTemplate(NotificationTemplate template) {
+		this.notificationTemplate = template;
+	}
+
 	/**
 	 * Ensure, that the response uses the provided token.
 	 * 
@@ -49,7 +49,9 @@ public class ResponseTimeout extends MessageObserverAdapter implements Runnable
 	 * 
 	 * @param request request to timeout
 	 * @param timeout timeout in milliseconds
-	 * @param executor service to schedule timeout
+	 * @param executor service to schedule timeout. For many timeouts, a
+	 *            {@link org.eclipse.californium.elements.util.HashedWheelTimer}
+	 *            is cheaper to schedule and cancel.
 	 */
 	public ResponseTimeout(Request request, long timeout, ScheduledExecutorService executor) {
 		this.request = request;
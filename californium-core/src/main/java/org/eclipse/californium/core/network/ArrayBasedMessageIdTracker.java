@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
+import org.eclipse.californium.elements.util.ClockUtil;
+
+/**
+ * A helper for keeping track of message IDs using a primitive array of lease
+ * times.
+ * <p>
+ * According to the
+ * <a href="https://tools.ietf.org/html/rfc7252#section-4.4">CoAP spec</a>
+ *
+ * <pre>
+ * The same Message ID MUST NOT be reused (in communicating with the
+   same endpoint) within the EXCHANGE_LIFETIME (Section 4.8.2).
+ * </pre>
+ *
+ * This implementation keeps the end of lease for each MID of the range in a
+ * ring of {@code long}s, indexed by the MID. In difference to the
+ * {@link MapBasedMessageIdTracker}, neither the MIDs nor the lease times are
+ * boxed, and the memory is fixed to 8 bytes per MID of the range. A MID is
+ * allocated by compare-and-set of its end of lease, therefore
+ * {@link #getNextMessageId()} doesn't block.
+ * <p>
+ * <b>Note:</b> the array is allocated for the whole range, regardless of the
+ * number of used MIDs. For the full 16 bit MID range a tracker requires about
+ * 512 KiB, and the {@link InMemoryMessageIdProvider} creates a tracker per
+ * peer. Therefore this tracker is only intended for a few peers with high
+ * message rates, e.g. proxies or gateways. The range, and with that the
+ * memory, is reduced by {@link Keys#MULTICAST_BASE_MID}.
+ *
+ * @since 3.0
+ */
+public class ArrayBasedMessageIdTracker implements MessageIdTracker {
+
+	/**
+	 * Minimal MID.
+	 */
+	private final int min;
+	/**
+	 * Range of MIDs.
+	 */
+	private final int range;
+	/**
+	 * Exchange lifetime. Value in nanoseconds.
+	 *
+	 * @see ClockUtil#nanoRealtime()
+	 */
+	private final long exchangeLifetimeNanos;
+	/**
+	 * Ring with end of lease for MIDs. MID minus {@link #min} is used as
+	 * index. Values in nanoseconds.
+	 *
+	 * @see ClockUtil#nanoRealtime()
+	 */
+	private final AtomicLongArray midLease;
+	/**
+	 * Index of next MID to check. Range {@code [0, range)}.
+	 */
+	private final AtomicInteger currentIndex;
+
+	/**
+	 * Creates a new array based tracker based on configuration values.
+	 *
+	 * The following configuration value is used:
+	 * <ul>
+	 * <li>{@link Keys#EXCHANGE_LIFETIME}
+	 * - each message ID returned by <em>getNextMessageId</em> is marked as
+	 * <em>in use</em> for this amount of time (ms).</li>
+	 * </ul>
+	 *
+	 * @param initialMid initial MID
+	 * @param minMid minimal MID (inclusive).
+	 * @param maxMid maximal MID (exclusive).
+	 * @param config configuration
+	 * @throws IllegalArgumentException if minMid is not smaller than maxMid or
+	 *             initialMid is not in the range of minMid and maxMid
+	 */
+	public ArrayBasedMessageIdTracker(int initialMid, int minMid, int maxMid, NetworkConfig config) {
+		if (minMid >= maxMid) {
+			throw new IllegalArgumentException("max. MID " + maxMid + " must be larger than min. MID " + minMid + "!");
+		}
+		if (initialMid < minMid || maxMid <= initialMid) {
+			throw new IllegalArgumentException(
+					"initial MID " + initialMid + " must be in range [" + minMid + "-" + maxMid + ")!");
+		}
+		exchangeLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong(Keys.EXCHANGE_LIFETIME));
+		min = minMid;
+		range = maxMid - minMid;
+		currentIndex = new AtomicInteger(initialMid - minMid);
+		long expired = ClockUtil.nanoRealtime() - 1000;
+		midLease = new AtomicLongArray(range);
+		for (int index = 0; index < range; ++index) {
+			midLease.lazySet(index, expired);
+		}
+	}
+
+	@Override
+	public int getNextMessageId() {
+		final long now = ClockUtil.nanoRealtime();
+		for (int counter = 0; counter < range; ++counter) {
+			int index = nextIndex();
+			long lease = midLease.get(index);
+			if ((lease - now) <= 0 && midLease.compareAndSet(index, lease, now + exchangeLifetimeNanos)) {
+				// message Id can be safely re-used
+				return index + min;
+			}
+		}
+		String time = TimeUnit.NANOSECONDS.toSeconds(exchangeLifetimeNanos) + "s";
+		throw new IllegalStateException(
+				"No MID available, all [" + min + "-" + (min + range) + ") MIDs in use! (MID lifetime " + time + "!)");
+	}
+
+	/**
+	 * Get index to check and advance the current index.
+	 *
+	 * @return index to check. Range {@code [0, range)}.
+	 */
+	private int nextIndex() {
+		while (true) {
+			int index = currentIndex.get();
+			int next = index + 1;
+			if (next == range) {
+				next = 0;
+			}
+			if (currentIndex.compareAndSet(index, next)) {
+				return index;
+			}
+		}
+	}
+}
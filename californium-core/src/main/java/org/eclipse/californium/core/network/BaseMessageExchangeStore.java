@@ -0,0 +1,475 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ *                    (extracted from InMemoryMessageExchangeStore)
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import java.net.InetSocketAddress;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.BlockOption;
+import org.eclipse.californium.core.coap.CoAP;
+import org.eclipse.californium.core.coap.Message;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.core.network.TokenGenerator.Scope;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.config.NetworkConfigDefaults;
+import org.eclipse.californium.elements.EndpointIdentityResolver;
+import org.eclipse.californium.elements.util.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class for {@code MessageExchangeStore}s, which manage the exchanges in
+ * local memory.
+ * <p>
+ * Implements the registration and removal of exchanges by MID and token, the
+ * assignment of MIDs, and the life-cycle of the store. The implementations
+ * provide the storage of the exchanges, the deduplication, and the health
+ * status.
+ *
+ * @since 3.0
+ */
+public abstract class BaseMessageExchangeStore implements MessageExchangeStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BaseMessageExchangeStore.class);
+
+	protected final NetworkConfig config;
+	protected final TokenGenerator tokenGenerator;
+	protected final EndpointIdentityResolver endpointIdentityResolver;
+	protected final String tag;
+	private volatile boolean enableStatus;
+	private volatile boolean running = false;
+	private volatile MessageIdProvider messageIdProvider;
+	private ScheduledExecutorService executor;
+	private ScheduledFuture<?> statusLogger;
+
+	/**
+	 * Creates a new store for configuration values.
+	 *
+	 * @param tag logging tag
+	 * @param config the configuration to use.
+	 * @param tokenProvider the TokenProvider which provides CoAP tokens.
+	 * @param endpointResolver the endpoint resolver which provides endpoint
+	 *            identity.
+	 * @throws NullPointerException if one or the parameter is {@code null}
+	 */
+	protected BaseMessageExchangeStore(String tag, NetworkConfig config, TokenGenerator tokenProvider,
+			EndpointIdentityResolver endpointResolver) {
+		if (config == null) {
+			throw new NullPointerException("Configuration must not be null");
+		}
+		if (tokenProvider == null) {
+			throw new NullPointerException("TokenProvider must not be null");
+		}
+		if (endpointResolver == null) {
+			throw new NullPointerException("EndpointContextResolver must not be null");
+		}
+		this.tokenGenerator = tokenProvider;
+		this.endpointIdentityResolver = endpointResolver;
+		this.config = config;
+		this.tag = StringUtil.normalizeLoggingTag(tag);
+		LOGGER.debug("{}using TokenProvider {}", tag, tokenProvider.getClass().getName());
+	}
+
+	private void startStatusLogging() {
+		final int healthStatusInterval = config.getInt(NetworkConfig.Keys.HEALTH_STATUS_INTERVAL,
+				NetworkConfigDefaults.DEFAULT_HEALTH_STATUS_INTERVAL); // seconds
+		// this is a useful health metric
+		// that could later be exported to some kind of monitoring interface
+		if (healthStatusInterval > 0 && isHealthStatusEnabled() && executor != null) {
+			statusLogger = executor.scheduleAtFixedRate(new Runnable() {
+
+				@Override
+				public void run() {
+					if (enableStatus) {
+						dump(5);
+					}
+				}
+			}, healthStatusInterval, healthStatusInterval, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Sets the provider to use for creating message IDs for outbound messages.
+	 *
+	 * @param provider the provider.
+	 * @throws NullPointerException if provider is {@code null}.
+	 * @throws IllegalStateException if this store is already running.
+	 */
+	public synchronized void setMessageIdProvider(final MessageIdProvider provider) {
+		if (running) {
+			throw new IllegalStateException("Cannot set messageIdProvider when store is already started");
+		} else if (provider == null) {
+			throw new NullPointerException("Message ID Provider must not be null");
+		} else {
+			this.messageIdProvider = provider;
+		}
+	}
+
+	@Override
+	public synchronized void setExecutor(ScheduledExecutorService executor) {
+		if (running) {
+			throw new IllegalStateException("Cannot set executor when store is already started");
+		} else {
+			this.executor = executor;
+		}
+	}
+
+	/**
+	 * Gets the executor of this store.
+	 *
+	 * @return executor, or {@code null}, if not available.
+	 */
+	protected synchronized ScheduledExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Checks, if this store is running.
+	 *
+	 * @return {@code true}, if running, {@code false}, otherwise.
+	 */
+	protected boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int assignMessageId(final Message message) {
+		int mid = message.getMID();
+		if (Message.NONE == mid) {
+			InetSocketAddress dest = message.getDestinationContext().getPeerAddress();
+			try {
+				mid = messageIdProvider.getNextMessageId(dest);
+				message.setMID(mid);
+			} catch (IllegalStateException ex) {
+				String code = CoAP.toCodeString(message.getRawCode());
+				LOGGER.warn("{}cannot send message {}-{} to {}, {}", tag, message.getType(), code,
+						StringUtil.toLog(dest), ex.getMessage());
+			}
+		}
+		return mid;
+	}
+
+	private KeyMID registerWithMessageId(final Exchange exchange, final Message message) {
+		enableStatus = true;
+		exchange.assertIncomplete(message);
+		Object peer = endpointIdentityResolver.getEndpointIdentity(message.getDestinationContext());
+		KeyMID key;
+		int mid = message.getMID();
+		if (Message.NONE == mid) {
+			mid = assignMessageId(message);
+			if (Message.NONE != mid) {
+				key = new KeyMID(mid, peer);
+				if (putIfAbsentByMid(key, exchange) != null) {
+					throw new IllegalArgumentException(String.format(
+							"generated mid [%d] already in use, cannot register %s", mid, exchange));
+				}
+				LOGGER.debug("{}{} added with generated mid {}, {}", tag, exchange, key, message);
+			} else {
+				key = null;
+			}
+		} else {
+			key = new KeyMID(mid, peer);
+			Exchange existingExchange = putIfAbsentByMid(key, exchange);
+			if (existingExchange != null) {
+				if (existingExchange != exchange) {
+					throw new IllegalArgumentException(
+							String.format("mid [%d] already in use, cannot register %s", mid, exchange));
+				} else if (exchange.getFailedTransmissionCount() == 0) {
+					throw new IllegalArgumentException(String.format(
+							"message with already registered mid [%d] is not a re-transmission, cannot register %s",
+							mid, exchange));
+				}
+			} else {
+				LOGGER.debug("{}{} added with {}, {}", tag, exchange, key, message);
+			}
+		}
+		if (key != null) {
+			exchange.setKeyMID(key);
+		}
+		return key;
+	}
+
+	private void registerWithToken(final Exchange exchange) {
+		enableStatus = true;
+		Request request = exchange.getCurrentRequest();
+		exchange.assertIncomplete(request);
+		Object peer = endpointIdentityResolver.getEndpointIdentity(request.getDestinationContext());
+		KeyToken key;
+		Token token = request.getToken();
+		if (token == null) {
+			Scope scope = request.isMulticast() ? Scope.SHORT_TERM : Scope.SHORT_TERM_CLIENT_LOCAL;
+			do {
+				token = tokenGenerator.createToken(scope);
+				request.setToken(token);
+				key = tokenGenerator.getKeyToken(token, peer);
+			} while (putIfAbsentByToken(key, exchange) != null);
+			LOGGER.debug("{}{} added with generated token {}, {}", tag, exchange, key, request);
+		} else {
+			// ongoing requests may reuse token
+			if (token.isEmpty() && request.getCode() == null) {
+				// ping, no exchange by token required!
+				return;
+			}
+			key = tokenGenerator.getKeyToken(token, peer);
+			Exchange previous = putByToken(key, exchange);
+			if (previous == null) {
+				BlockOption block2 = request.getOptions().getBlock2();
+				if (block2 != null) {
+					LOGGER.debug("{}block2 {} for block {} add with token {}", tag, exchange, block2.getNum(), key);
+				} else {
+					LOGGER.debug("{}{} added with token {}, {}", tag, exchange, key, request);
+				}
+			} else if (previous != exchange) {
+				if (exchange.getFailedTransmissionCount() == 0 && !request.getOptions().hasBlock1()
+						&& !request.getOptions().hasBlock2() && !request.getOptions().hasObserve()) {
+					LOGGER.warn("{}{} with manual token overrides existing {} with open request: {}", tag, exchange,
+							previous, key);
+				} else {
+					LOGGER.debug("{}{} replaced with token {}, {}", tag, exchange, key, request);
+				}
+			} else {
+				LOGGER.debug("{}{} keep for {}, {}", tag, exchange, key, request);
+			}
+		}
+		exchange.setKeyToken(key);
+	}
+
+	@Override
+	public boolean registerOutboundRequest(final Exchange exchange) {
+
+		if (exchange == null) {
+			throw new NullPointerException("exchange must not be null");
+		} else if (exchange.getCurrentRequest() == null) {
+			throw new IllegalArgumentException("exchange does not contain a request");
+		} else {
+			Request currentRequest = exchange.getCurrentRequest();
+			KeyMID key = registerWithMessageId(exchange, currentRequest);
+			if (key != null) {
+				registerWithToken(exchange);
+				if (exchange.getCurrentRequest() != currentRequest) {
+					throw new ConcurrentModificationException("Current request modified!");
+				}
+				return true;
+			} else {
+				return false;
+			}
+		}
+	}
+
+	@Override
+	public boolean registerOutboundRequestWithTokenOnly(final Exchange exchange) {
+		if (exchange == null) {
+			throw new NullPointerException("exchange must not be null");
+		} else if (exchange.getCurrentRequest() == null) {
+			throw new IllegalArgumentException("exchange does not contain a request");
+		} else {
+			Request currentRequest = exchange.getCurrentRequest();
+			registerWithToken(exchange);
+			if (exchange.getCurrentRequest() != currentRequest) {
+				throw new ConcurrentModificationException("Current request modified!");
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public boolean registerOutboundResponse(final Exchange exchange) {
+		if (exchange == null) {
+			throw new NullPointerException("exchange must not be null");
+		} else if (exchange.getCurrentResponse() == null) {
+			throw new IllegalArgumentException("exchange does not contain a response");
+		} else {
+			Response currentResponse = exchange.getCurrentResponse();
+			if (registerWithMessageId(exchange, currentResponse) != null) {
+				if (exchange.getCurrentResponse() != currentResponse) {
+					throw new ConcurrentModificationException("Current response modified!");
+				}
+				return true;
+			} else {
+				return false;
+			}
+		}
+	}
+
+	@Override
+	public void remove(final KeyToken token, final Exchange exchange) {
+		if (removeByToken(token, exchange)) {
+			LOGGER.debug("{}removing {} for token {}", tag, exchange, token);
+		}
+	}
+
+	@Override
+	public Exchange remove(final KeyMID messageId, final Exchange exchange) {
+		Exchange removedExchange = removeByMid(messageId, exchange);
+		if (null != removedExchange) {
+			LOGGER.debug("{}removing {} for MID {}", tag, removedExchange, messageId);
+		}
+		return removedExchange;
+	}
+
+	@Override
+	public Exchange get(final KeyToken keyToken) {
+		if (keyToken == null) {
+			return null;
+		} else {
+			return getByToken(keyToken);
+		}
+	}
+
+	@Override
+	public Exchange get(final KeyMID messageId) {
+		if (messageId == null) {
+			return null;
+		} else {
+			return getByMid(messageId);
+		}
+	}
+
+	@Override
+	public synchronized void start() {
+		if (!running) {
+			startStatusLogging();
+			doStart();
+			if (messageIdProvider == null) {
+				LOGGER.debug("{}no MessageIdProvider set, using default {}", tag,
+						InMemoryMessageIdProvider.class.getName());
+				messageIdProvider = new InMemoryMessageIdProvider(config);
+			}
+			running = true;
+		}
+	}
+
+	/**
+	 * Stops this store and purges all registered exchanges.
+	 *
+	 * The requests of the exchanges registered by MID are cancelled.
+	 */
+	@Override
+	public synchronized void stop() {
+		if (running) {
+			running = false;
+			if (statusLogger != null) {
+				statusLogger.cancel(false);
+				statusLogger = null;
+			}
+			for (Exchange exchange : doStop()) {
+				exchange.getRequest().setCanceled(true);
+			}
+		}
+	}
+
+	/**
+	 * Starts the deduplication of this store.
+	 *
+	 * Called by {@link #start()}.
+	 */
+	protected abstract void doStart();
+
+	/**
+	 * Stops the deduplication of this store and purges all exchanges.
+	 *
+	 * Called by {@link #stop()}.
+	 *
+	 * @return list of purged exchanges, which were registered by MID.
+	 */
+	protected abstract List<Exchange> doStop();
+
+	/**
+	 * Checks, if the health status is logged.
+	 *
+	 * @return {@code true}, if the health status is logged, {@code false},
+	 *         otherwise.
+	 */
+	protected abstract boolean isHealthStatusEnabled();
+
+	/**
+	 * Dump exchanges of stores.
+	 *
+	 * @param logMaxExchanges maximum number of exchanges to include in dump.
+	 */
+	public abstract void dump(int logMaxExchanges);
+
+	/**
+	 * Add exchange by MID, if no other exchange is registered for that MID.
+	 *
+	 * @param key MID key
+	 * @param exchange exchange to add
+	 * @return previous exchange, or {@code null}, if the exchange was added.
+	 */
+	protected abstract Exchange putIfAbsentByMid(KeyMID key, Exchange exchange);
+
+	/**
+	 * Add exchange by token, if no other exchange is registered for that
+	 * token.
+	 *
+	 * @param key token key
+	 * @param exchange exchange to add
+	 * @return previous exchange, or {@code null}, if the exchange was added.
+	 */
+	protected abstract Exchange putIfAbsentByToken(KeyToken key, Exchange exchange);
+
+	/**
+	 * Add exchange by token, replacing the exchange registered for that token.
+	 *
+	 * @param key token key
+	 * @param exchange exchange to add
+	 * @return previous exchange, or {@code null}, if none was registered.
+	 */
+	protected abstract Exchange putByToken(KeyToken key, Exchange exchange);
+
+	/**
+	 * Remove exchange by token.
+	 *
+	 * @param key token key
+	 * @param exchange exchange to remove
+	 * @return {@code true}, if the exchange was removed, {@code false}, if the
+	 *         exchange was not registered for that token.
+	 */
+	protected abstract boolean removeByToken(KeyToken key, Exchange exchange);
+
+	/**
+	 * Remove exchange by MID.
+	 *
+	 * @param key MID key
+	 * @param exchange exchange to remove. {@code null}, to remove any exchange
+	 *            registered for that MID.
+	 * @return removed exchange, or {@code null}, if not removed.
+	 */
+	protected abstract Exchange removeByMid(KeyMID key, Exchange exchange);
+
+	/**
+	 * Get exchange by token.
+	 *
+	 * @param key token key
+	 * @return exchange, or {@code null}, if not available.
+	 */
+	protected abstract Exchange getByToken(KeyToken key);
+
+	/**
+	 * Get exchange by MID.
+	 *
+	 * @param key MID key
+	 * @return exchange, or {@code null}, if not available.
+	 */
+	protected abstract Exchange getByMid(KeyMID key);
+}
@@ -70,6 +70,8 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - move response retransmission
  *                                                    setup to BaseCoapStack to include
  *                                                    it also in a try-catch
+ *    Bosch IO GmbH - add hashed wheel timer for the protocol stage
+ *    Bosch IO GmbH - add lazy message parsing for duplicates
  ******************************************************************************/
 package org.eclipse.californium.core.network;
 
@@ -86,6 +88,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.californium.core.coap.CoAP;
@@ -124,6 +127,7 @@ import org.eclipse.californium.elements.Connector;
 import org.eclipse.californium.elements.EndpointContext;
 import org.eclipse.californium.elements.EndpointContextMatcher;
 import org.eclipse.californium.elements.MessageCallback;
+import org.eclipse.californium.elements.NioUDPConnector;
 import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.RawDataChannel;
 import org.eclipse.californium.elements.UDPConnector;
@@ -131,6 +135,7 @@ import org.eclipse.californium.elements.UdpMulticastConnector;
 import org.eclipse.californium.elements.util.ClockUtil;
 import org.eclipse.californium.elements.util.DaemonThreadFactory;
 import org.eclipse.californium.elements.util.ExecutorsUtil;
+import org.eclipse.californium.elements.util.HashedWheelTimer;
 import org.eclipse.californium.elements.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -249,6 +254,22 @@ public class CoapEndpoint implements Endpoint {
 	/** Parser to convert datagrams to messages. */
 	private final DataParser parser;
 
+	/**
+	 * Endpoint context matcher.
+	 * 
+	 * @since 3.0
+	 */
+	private final EndpointContextMatcher endpointContextMatcher;
+
+	/**
+	 * Parse the message header first and skip parsing options and payload of
+	 * duplicated requests.
+	 * 
+	 * @see Keys#LAZY_MESSAGE_PARSING
+	 * @since 3.0
+	 */
+	private final boolean useLazyParsing;
+
 	/** A store containing data about message exchanges. */
 	private final MessageExchangeStore exchangeStore;
 
@@ -264,6 +285,15 @@ public class CoapEndpoint implements Endpoint {
 	/** Scheduled executor intended to be used for rare executing timers (e.g. cleanup tasks). */
 	private ScheduledExecutorService secondaryExecutor;
 
+	/**
+	 * Timer of the protocol stage. Executes expired tasks using the
+	 * {@link #executor}. {@code null}, if
+	 * {@link Keys#PROTOCOL_STAGE_TIMER_TICK} is {@code 0}.
+	 * 
+	 * @since 3.0
+	 */
+	private HashedWheelTimer timer;
+
 	/** Indicates if the endpoint has been started */
 	private volatile boolean started;
 
@@ -387,11 +417,20 @@ public class CoapEndpoint implements Endpoint {
 				udpConnector.setReceiverThreadCount(config.getInt(Keys.NETWORK_STAGE_RECEIVER_THREAD_COUNT));
 				udpConnector.setSenderThreadCount(config.getInt(Keys.NETWORK_STAGE_SENDER_THREAD_COUNT));
 
+				udpConnector.setReceiveBufferSize(config.getInt(Keys.UDP_CONNECTOR_RECEIVE_BUFFER));
+				udpConnector.setSendBufferSize(config.getInt(Keys.UDP_CONNECTOR_SEND_BUFFER));
+				udpConnector.setReceiverPacketSize(config.getInt(Keys.UDP_CONNECTOR_DATAGRAM_SIZE));
+				udpConnector.setReusePortSockets(config.getInt(Keys.UDP_CONNECTOR_REUSE_PORT_SOCKETS, 1));
+			} else if (connector instanceof NioUDPConnector) {
+				NioUDPConnector udpConnector = (NioUDPConnector) connector;
+				udpConnector.setReceiverThreadCount(config.getInt(Keys.NETWORK_STAGE_RECEIVER_THREAD_COUNT));
+				udpConnector.setSenderThreadCount(config.getInt(Keys.NETWORK_STAGE_SENDER_THREAD_COUNT));
+
 				udpConnector.setReceiveBufferSize(config.getInt(Keys.UDP_CONNECTOR_RECEIVE_BUFFER));
 				udpConnector.setSendBufferSize(config.getInt(Keys.UDP_CONNECTOR_SEND_BUFFER));
 				udpConnector.setReceiverPacketSize(config.getInt(Keys.UDP_CONNECTOR_DATAGRAM_SIZE));
 			} else {
-				throw new IllegalArgumentException("Connector must be a UDPConnector to use apply configuration!");
+				throw new IllegalArgumentException("Connector must be a UDPConnector or NioUDPConnector to use apply configuration!");
 			}
 		}
 
@@ -409,6 +448,7 @@ public class CoapEndpoint implements Endpoint {
 			}
 		};
 
+		this.endpointContextMatcher = endpointContextMatcher;
 		this.connector.setEndpointContextMatcher(endpointContextMatcher);
 		LOGGER.info("{}{} uses {}", tag, getClass().getSimpleName(), endpointContextMatcher.getName());
 
@@ -416,12 +456,14 @@ public class CoapEndpoint implements Endpoint {
 
 		if (CoAP.isTcpProtocol(connector.getProtocol())) {
 			this.useRequestOffloading = false; // no deduplication
+			this.useLazyParsing = false;
 			this.matcher = new TcpMatcher(config, new NotificationDispatcher(), tokenGenerator, observationStore,
 					this.exchangeStore, exchangeExecutionHandler, endpointContextMatcher);
 			this.serializer = serializer != null ? serializer : new TcpDataSerializer();
 			this.parser = parser != null ? parser : new TcpDataParser();
 		} else {
 			this.useRequestOffloading = config.getBoolean(Keys.USE_MESSAGE_OFFLOADING);
+			this.useLazyParsing = config.getBoolean(Keys.LAZY_MESSAGE_PARSING, false);
 			this.matcher = new UdpMatcher(config, new NotificationDispatcher(), tokenGenerator, observationStore,
 					this.exchangeStore, exchangeExecutionHandler, endpointContextMatcher);
 			this.serializer = serializer != null ? serializer : new UdpDataSerializer();
@@ -514,6 +556,9 @@ public class CoapEndpoint implements Endpoint {
 		}
 		connector.destroy();
 		coapstack.destroy();
+		if (timer != null) {
+			timer.shutdown();
+		}
 		for (EndpointObserver obs : observers) {
 			obs.destroyed(this);
 		}
@@ -542,7 +587,20 @@ public class CoapEndpoint implements Endpoint {
 		}
 		this.executor = mainExecutor;
 		this.secondaryExecutor = secondaryExecutor;
-		this.coapstack.setExecutors(mainExecutor, this.secondaryExecutor);
+		if (this.timer != null) {
+			this.timer.shutdown();
+			this.timer = null;
+		}
+		ScheduledExecutorService stackExecutor = mainExecutor;
+		int tick = config.getInt(Keys.PROTOCOL_STAGE_TIMER_TICK, 0);
+		if (tick > 0) {
+			// the stack schedules using the timer and executes using the
+			// main executor
+			this.timer = new HashedWheelTimer(new DaemonThreadFactory(":CoapEndpoint-Timer-" + connector + '#'), //$NON-NLS-1$
+					tick, TimeUnit.MILLISECONDS, mainExecutor);
+			stackExecutor = this.timer;
+		}
+		this.coapstack.setExecutors(stackExecutor, this.secondaryExecutor);
 		this.exchangeStore.setExecutor(this.secondaryExecutor);
 		this.observationStore.setExecutor(this.secondaryExecutor);
 	}
@@ -944,13 +1002,17 @@ public class CoapEndpoint implements Endpoint {
 			} else {
 
 				// Create a new task to process this message
-				runInProtocolStage(new Runnable() {
+				boolean scheduled = runInProtocolStage(new Runnable() {
 
 					@Override
 					public void run() {
 						receiveMessage(raw);
 					}
 				});
+				if (!scheduled) {
+					// return pooled buffer
+					raw.release();
+				}
 			}
 		}
 
@@ -961,10 +1023,26 @@ public class CoapEndpoint implements Endpoint {
 		 * e.g. because the message is malformed, an RST is sent back to the sender.
 		 */
 		private void receiveMessage(final RawData raw) {
-			EndpointContext context = raw.getEndpointContext();
+			try {
+				receiveMessage(raw, raw.getEndpointContext());
+			} finally {
+				raw.release();
+			}
+		}
+
+		private void receiveMessage(final RawData raw, final EndpointContext context) {
 			Message msg = null;
 			Exception ex = null;
 			try {
+				if (useLazyParsing && !raw.isMulticast()) {
+					msg = parser.parseMessageHeader(raw);
+					if (CoAP.isRequest(msg.getRawCode()) && isDuplicate(msg)) {
+						// skip parsing options and payload
+						msg.setDuplicate(true);
+						receiveRequest((Request) msg);
+						return;
+					}
+				}
 				msg = parser.parseMessage(raw);
 
 				if (CoAP.isRequest(msg.getRawCode())) {
@@ -1088,6 +1166,27 @@ public class CoapEndpoint implements Endpoint {
 			coapstack.sendEmptyMessage(null, rst);
 		}
 
+		/**
+		 * Check, if the message is a duplicate of a previous received
+		 * request.
+		 * 
+		 * @param message message with parsed header
+		 * @return {@code true}, if a previous exchange for the MID of the
+		 *         message exists, which was received from a matching endpoint
+		 *         context, {@code false}, otherwise.
+		 * @since 3.0
+		 */
+		private boolean isDuplicate(final Message message) {
+			EndpointContext sourceContext = message.getSourceContext();
+			KeyMID idByMID = new KeyMID(message.getMID(), endpointContextMatcher.getEndpointIdentity(sourceContext));
+			Exchange previous = exchangeStore.find(idByMID);
+			if (previous != null && previous.getOrigin() == Origin.REMOTE) {
+				Request previousRequest = previous.getCurrentRequest();
+				return endpointContextMatcher.isToBeSent(previousRequest.getSourceContext(), sourceContext);
+			}
+			return false;
+		}
+
 		private void receiveRequest(final Request request) {
 
 			// set request attributes from raw data
@@ -1252,8 +1351,10 @@ public class CoapEndpoint implements Endpoint {
 	 * Execute the specified task on the endpoint's executor (protocol stage).
 	 *
 	 * @param task the task
+	 * @return {@code true}, if the task is scheduled, {@code false}, if the
+	 *         execution was rejected.
 	 */
-	private void runInProtocolStage(final Runnable task) {
+	private boolean runInProtocolStage(final Runnable task) {
 		try {
 			executor.execute(new Runnable() {
 
@@ -1266,8 +1367,10 @@ public class CoapEndpoint implements Endpoint {
 					}
 				}
 			});
+			return true;
 		} catch (RejectedExecutionException e) {
 			LOGGER.debug("{} execute:", tag, e);
+			return false;
 		}
 	}
 
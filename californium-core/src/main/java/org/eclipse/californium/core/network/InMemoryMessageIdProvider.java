@@ -20,6 +20,8 @@
  *                                                    MessageIdTracker to
  *                                                    MapBasedMessageIdTracker.
  *    Achim Kraus (Bosch Software Innovations GmbH) - add multicast mid tracker.
+ *    Bosch IO GmbH - add array based mid tracker and replace the synchronized
+ *                    tracker lookup by striped locks for new trackers.
  ******************************************************************************/
 package org.eclipse.californium.core.network;
 
@@ -39,13 +41,34 @@ import org.slf4j.LoggerFactory;
  * <p>
  * This provider maintains an instance of {@link MessageIdTracker} for each
  * endpoint identified by IP address and port.
+ * <p>
+ * Trackers of known endpoints are looked up without locking. Only the creation
+ * of a new tracker is synchronized, using one of a set of locks selected by the
+ * endpoint's hash code. Therefore MIDs for different endpoints are provided
+ * concurrently.
  */
 public class InMemoryMessageIdProvider implements MessageIdProvider {
 
 	private static final Logger LOG = LoggerFactory.getLogger(InMemoryMessageIdProvider.class);
 
+	/**
+	 * Number of locks used to create new trackers. Power of 2.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int TRACKER_LOCK_STRIPES = 64;
+
 	public enum TrackerMode {
-		NULL, GROUPED, MAPBASED
+		NULL, GROUPED, MAPBASED,
+		/**
+		 * Use {@link ArrayBasedMessageIdTracker}.
+		 * 
+		 * Requires 8 bytes per MID of the range for each peer, about 512 KiB
+		 * for the full range. Not recommended for many peers.
+		 * 
+		 * @since 3.0
+		 */
+		ARRAYBASED
 	}
 
 	private final LeastRecentlyUsedCache<InetSocketAddress, MessageIdTracker> trackers;
@@ -54,6 +77,7 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 	private final Random random;
 	private final NetworkConfig config;
 	private final int multicastBaseMid;
+	private final Object[] trackerLocks;
 
 	/**
 	 * Creates an new provider for configuration values.
@@ -63,8 +87,11 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 	 * <li>{@link Keys#MID_TRACKER}
 	 * - determine the tracker mode. Supported values are "NULL" (for
 	 * {@link NullMessageIdTracker}), "GROUPED" (for
-	 * {@link GroupedMessageIdTracker}), and "MAPBASED" (for
-	 * {@link MapBasedMessageIdTracker}).</li>
+	 * {@link GroupedMessageIdTracker}), "MAPBASED" (for
+	 * {@link MapBasedMessageIdTracker}), and "ARRAYBASED" (for
+	 * {@link ArrayBasedMessageIdTracker}). The array based tracker requires
+	 * about 512 KiB per peer for the full MID range, therefore it's only used,
+	 * if configured explicitly.</li>
 	 * <li>{@link Keys#MID_TRACKER_GROUPS}
 	 * - determine the group size for the message IDs, if the grouped tracker is
 	 * used. Each group is marked as <em>in use</em>, if a MID within the group
@@ -108,23 +135,16 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 		trackers = new LeastRecentlyUsedCache<>(config.getInt(Keys.MAX_ACTIVE_PEERS, 150000),
 				config.getLong(Keys.MAX_PEER_INACTIVITY_PERIOD, 10 * 60));
 		trackers.setEvictingOnReadAccess(false);
+		trackerLocks = new Object[TRACKER_LOCK_STRIPES];
+		for (int index = 0; index < trackerLocks.length; ++index) {
+			trackerLocks[index] = new Object();
+		}
 		int multicastBaseMid = config.getInt(Keys.MULTICAST_BASE_MID);
 		if (0 < multicastBaseMid) {
 			this.multicastBaseMid = multicastBaseMid;
 			int max = MessageIdTracker.TOTAL_NO_OF_MIDS;
 			int mid = null == random ? multicastBaseMid : random.nextInt(max - multicastBaseMid) + multicastBaseMid;
-			switch (mode) {
-			case NULL:
-				multicastTracker = new NullMessageIdTracker(mid, multicastBaseMid, max);
-				break;
-			case MAPBASED:
-				multicastTracker = new MapBasedMessageIdTracker(mid, multicastBaseMid, max, config);
-				break;
-			case GROUPED:
-			default:
-				multicastTracker = new GroupedMessageIdTracker(mid, multicastBaseMid, max, config);
-				break;
-			}
+			multicastTracker = createTracker(mid, multicastBaseMid, max);
 		} else {
 			this.multicastBaseMid = MessageIdTracker.TOTAL_NO_OF_MIDS;
 			multicastTracker = null;
@@ -144,7 +164,7 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 		}
 	}
 
-	private synchronized MessageIdTracker getTracker(final InetSocketAddress destination) {
+	private MessageIdTracker getTracker(final InetSocketAddress destination) {
 		// destination mc
 		// => use special range 65001-65535
 		// destination sp
@@ -161,26 +181,40 @@ public class InMemoryMessageIdProvider implements MessageIdProvider {
 
 		MessageIdTracker tracker = trackers.get(destination);
 		if (tracker == null) {
-			// create new tracker for destination lazily
-			int mid = null == random ? 0 : random.nextInt(multicastBaseMid);
-			switch (mode) {
-			case NULL:
-				tracker = new NullMessageIdTracker(mid, 0, multicastBaseMid);
-				break;
-			case MAPBASED:
-				tracker = new MapBasedMessageIdTracker(mid, 0, multicastBaseMid, config);
-				break;
-			case GROUPED:
-			default:
-				tracker = new GroupedMessageIdTracker(mid, 0, multicastBaseMid, config);
-				break;
-			}
-			if (trackers.put(destination, tracker)) {
-				return tracker;
-			} else {
-				return null;
+			synchronized (trackerLocks[destination.hashCode() & (TRACKER_LOCK_STRIPES - 1)]) {
+				tracker = trackers.get(destination);
+				if (tracker == null) {
+					// create new tracker for destination lazily
+					int mid = null == random ? 0 : random.nextInt(multicastBaseMid);
+					tracker = createTracker(mid, 0, multicastBaseMid);
+					if (!trackers.put(destination, tracker)) {
+						return null;
+					}
+				}
 			}
 		}
 		return tracker;
 	}
+
+	/**
+	 * Create tracker according the {@link #mode}.
+	 * 
+	 * @param initialMid initial MID
+	 * @param minMid minimal MID (inclusive).
+	 * @param maxMid maximal MID (exclusive).
+	 * @return created tracker
+	 */
+	private MessageIdTracker createTracker(int initialMid, int minMid, int maxMid) {
+		switch (mode) {
+		case NULL:
+			return new NullMessageIdTracker(initialMid, minMid, maxMid);
+		case MAPBASED:
+			return new MapBasedMessageIdTracker(initialMid, minMid, maxMid, config);
+		case ARRAYBASED:
+			return new ArrayBasedMessageIdTracker(initialMid, minMid, maxMid, config);
+		case GROUPED:
+		default:
+			return new GroupedMessageIdTracker(initialMid, minMid, maxMid, config);
+		}
+	}
 }
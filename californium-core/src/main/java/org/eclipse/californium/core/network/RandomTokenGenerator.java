@@ -14,10 +14,13 @@
  *     Achim Kraus (Bosch Software Innovations GmbH) - initial API and implementation
  *                                                     derived from former 
  *                                                     InMemoryRandomTokenProvider
+ *     Bosch IO GmbH - add thread local random generators and counter prefix
  *******************************************************************************/
 package org.eclipse.californium.core.network;
 
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.californium.core.coap.Token;
 import org.eclipse.californium.core.network.TokenGenerator.Scope;
@@ -40,20 +43,65 @@ import org.slf4j.LoggerFactory;
  * tokens with different size will be treated as
  * {@link Scope#SHORT_TERM_CLIENT_LOCAL}.
  *
+ * If {@link Keys#TOKEN_GENERATOR_THREAD_LOCAL_RANDOM} is enabled, each thread
+ * uses its own random generator, seeded from the shared {@link SecureRandom}.
+ * That avoids the contention on the shared {@link SecureRandom}, when many
+ * threads create tokens.
+ *
+ * If {@link Keys#TOKEN_GENERATOR_COUNTER_PREFIX} is enabled, the first 4 bytes
+ * of the token contains a counter (little endian), shifted by 2 bits to keep
+ * the scope bits.
+ *
+ * <pre>
+ * 0bcccccc?? 0bcccccccc 0bcccccccc 0bcccccccc 0brrrrrrrr ...
+ * </pre>
+ *
+ * Such tokens are unique, until the counter wraps around after 2^30 tokens.
+ *
  * This implementation is thread-safe.
  */
 public class RandomTokenGenerator implements TokenGenerator {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(RandomTokenGenerator.class);
 	private static final int DEFAULT_TOKEN_LENGTH = 8; // bytes
+	/**
+	 * Size of counter prefix in bytes.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int COUNTER_PREFIX_LENGTH = 4; // bytes
+	/**
+	 * Size of the seed for thread local random generators.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int SEED_LENGTH = 32; // bytes
 
 	private final int tokenSize;
 	private final SecureRandom rng;
+	/**
+	 * Thread local random generators. {@code null}, if the shared
+	 * {@link #rng} is used.
+	 * 
+	 * @since 3.0
+	 */
+	private final ThreadLocal<SecureRandom> threadLocalRng;
+	/**
+	 * Counter for prefix. {@code null}, if no counter prefix is used.
+	 * 
+	 * @since 3.0
+	 */
+	private final AtomicInteger counter;
 
 	/**
 	 * Creates a new {@link RandomTokenGenerator}.
 	 * 
-	 * @param networkConfig used to obtain the configured token size
+	 * @param networkConfig used to obtain the configured token size, and
+	 *            the {@link Keys#TOKEN_GENERATOR_THREAD_LOCAL_RANDOM} and
+	 *            {@link Keys#TOKEN_GENERATOR_COUNTER_PREFIX} modes.
+	 * @throws NullPointerException if networkConfig is {@code null}
+	 * @throws IllegalArgumentException if the counter prefix is enabled and
+	 *             the token size is less than 8 bytes.
 	 */
 	public RandomTokenGenerator(final NetworkConfig networkConfig) {
 
@@ -64,13 +112,69 @@ public class RandomTokenGenerator implements TokenGenerator {
 		// trigger self-seeding of the PRNG, may "take a while"
 		this.rng.nextInt(10);
 		this.tokenSize = networkConfig.getInt(Keys.TOKEN_SIZE_LIMIT, DEFAULT_TOKEN_LENGTH);
-		LOGGER.info("using tokens of {} bytes in length", this.tokenSize);
+		if (networkConfig.getBoolean(Keys.TOKEN_GENERATOR_THREAD_LOCAL_RANDOM, false)) {
+			this.threadLocalRng = new ThreadLocal<SecureRandom>() {
+
+				@Override
+				protected SecureRandom initialValue() {
+					return createThreadLocalRandom();
+				}
+			};
+		} else {
+			this.threadLocalRng = null;
+		}
+		if (networkConfig.getBoolean(Keys.TOKEN_GENERATOR_COUNTER_PREFIX, false)) {
+			if (tokenSize < COUNTER_PREFIX_LENGTH * 2) {
+				throw new IllegalArgumentException(
+						"Token size " + tokenSize + " too small for counter prefix, min. " + (COUNTER_PREFIX_LENGTH * 2) + " bytes!");
+			}
+			this.counter = new AtomicInteger(rng.nextInt());
+		} else {
+			this.counter = null;
+		}
+		LOGGER.info("using tokens of {} bytes in length{}{}", this.tokenSize,
+				threadLocalRng == null ? "" : ", thread local random", counter == null ? "" : ", counter prefix");
+	}
+
+	/**
+	 * Create random generator for the current thread.
+	 * 
+	 * Uses a {@code SHA1PRNG}, seeded from the shared {@link #rng}. That
+	 * implementation doesn't share any state with other instances. If not
+	 * available, a default {@link SecureRandom} is used.
+	 * 
+	 * @return random generator for the current thread
+	 * @since 3.0
+	 */
+	private SecureRandom createThreadLocalRandom() {
+		byte[] seed = new byte[SEED_LENGTH];
+		rng.nextBytes(seed);
+		SecureRandom random;
+		try {
+			random = SecureRandom.getInstance("SHA1PRNG");
+		} catch (NoSuchAlgorithmException e) {
+			random = new SecureRandom();
+		}
+		// seed before first use, prevents self-seeding
+		random.setSeed(seed);
+		return random;
 	}
 
 	@Override
 	public Token createToken(Scope scope) {
 		byte[] token = new byte[tokenSize];
-		rng.nextBytes(token);
+		if (threadLocalRng == null) {
+			rng.nextBytes(token);
+		} else {
+			threadLocalRng.get().nextBytes(token);
+		}
+		if (counter != null) {
+			int prefix = counter.getAndIncrement() << 2;
+			for (int index = 0; index < COUNTER_PREFIX_LENGTH; ++index) {
+				token[index] = (byte) prefix;
+				prefix >>>= 8;
+			}
+		}
 		switch (scope) {
 		case LONG_TERM:
 			// set bit 0 to 1
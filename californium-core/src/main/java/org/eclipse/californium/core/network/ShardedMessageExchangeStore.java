@@ -0,0 +1,705 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.core.network.TokenGenerator.Scope;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.network.config.NetworkConfig.Keys;
+import org.eclipse.californium.core.network.config.NetworkConfigDefaults;
+import org.eclipse.californium.elements.EndpointIdentityResolver;
+import org.eclipse.californium.elements.UdpEndpointContextMatcher;
+import org.eclipse.californium.elements.util.ClockUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@code MessageExchangeStore} that manages all exchanges in local memory,
+ * sharded by peer.
+ * <p>
+ * In difference to the {@link InMemoryMessageExchangeStore}, the exchanges
+ * are not kept in global maps, but in {@link Keys#EXCHANGE_STORE_SHARDS}
+ * shards. The exchanges by MID are assigned to the shard by the peer's
+ * identity. Each shard keeps the MIDs of a peer in primitive int-keyed maps,
+ * one for the exchanges and one for the deduplication. The exchanges by token
+ * are assigned to the shard by the {@link KeyToken}.
+ * <p>
+ * The deduplication is implemented by this store, the
+ * {@link org.eclipse.californium.core.network.deduplication.DeduplicatorFactory}
+ * is not used. The entries for deduplication are kept for
+ * {@link Keys#EXCHANGE_LIFETIME} in a queue per shard, ordered by their
+ * arrival. The periodic sweep, using {@link Keys#MARK_AND_SWEEP_INTERVAL},
+ * processes one shard after the other and only the expired entries, and not
+ * all entries. If {@link Keys#DEDUPLICATOR} is set to
+ * {@link Keys#NO_DEDUPLICATOR}, the deduplication is disabled. The
+ * {@link Keys#DEDUPLICATOR_AUTO_REPLACE} is considered as well.
+ *
+ * @since 3.0
+ */
+public class ShardedMessageExchangeStore extends BaseMessageExchangeStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ShardedMessageExchangeStore.class);
+	private static final Logger HEALTH_LOGGER = LoggerFactory.getLogger(LOGGER.getName() + ".health");
+
+	private final Shard[] shards;
+	private final int shardMask;
+
+	/**
+	 * Enable deduplication.
+	 */
+	private final boolean deduplication;
+	/**
+	 * Replace deduplicated exchange, if the origin differs.
+	 *
+	 * @see Keys#DEDUPLICATOR_AUTO_REPLACE
+	 */
+	private final boolean replace;
+	/**
+	 * Lifetime of deduplication entries in nanoseconds.
+	 */
+	private final long exchangeLifetimeNanos;
+	/**
+	 * Interval of sweep in milliseconds.
+	 */
+	private final long sweepInterval;
+	private ScheduledFuture<?> sweepJob;
+
+	/**
+	 * Creates a new store for configuration values.
+	 *
+	 * @param config the configuration to use.
+	 *
+	 * @throws NullPointerException if config is {@code null}
+	 */
+	public ShardedMessageExchangeStore(NetworkConfig config) {
+		this(null, config, new RandomTokenGenerator(config), new UdpEndpointContextMatcher());
+	}
+
+	/**
+	 * Creates a new store for configuration values.
+	 *
+	 * @param config the configuration to use.
+	 * @param tokenProvider the TokenProvider which provides CoAP tokens.
+	 * @param endpointResolver the endpoint resolver which provides endpoint
+	 *            identity.
+	 * @throws NullPointerException if one or the parameter is {@code null}
+	 */
+	public ShardedMessageExchangeStore(NetworkConfig config, TokenGenerator tokenProvider,
+			EndpointIdentityResolver endpointResolver) {
+		this(null, config, tokenProvider, endpointResolver);
+	}
+
+	/**
+	 * Creates a new store for configuration values.
+	 *
+	 * @param tag logging tag
+	 * @param config the configuration to use.
+	 * @param tokenProvider the TokenProvider which provides CoAP tokens.
+	 * @param endpointResolver the endpoint resolver which provides endpoint
+	 *            identity.
+	 * @throws NullPointerException if one or the parameter is {@code null}
+	 */
+	public ShardedMessageExchangeStore(String tag, NetworkConfig config, TokenGenerator tokenProvider,
+			EndpointIdentityResolver endpointResolver) {
+		super(tag, config, tokenProvider, endpointResolver);
+		int shards = config.getInt(Keys.EXCHANGE_STORE_SHARDS, NetworkConfigDefaults.DEFAULT_EXCHANGE_STORE_SHARDS);
+		if (shards < 1) {
+			shards = 1;
+		}
+		// power of two
+		int size = Integer.highestOneBit(shards);
+		if (size < shards) {
+			size <<= 1;
+		}
+		this.shards = new Shard[size];
+		for (int index = 0; index < size; ++index) {
+			this.shards[index] = new Shard();
+		}
+		this.shardMask = size - 1;
+		String deduplicator = config.getString(Keys.DEDUPLICATOR, Keys.NO_DEDUPLICATOR);
+		this.deduplication = !Keys.NO_DEDUPLICATOR.equals(deduplicator);
+		this.replace = config.getBoolean(Keys.DEDUPLICATOR_AUTO_REPLACE);
+		this.exchangeLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong(Keys.EXCHANGE_LIFETIME));
+		this.sweepInterval = config.getLong(Keys.MARK_AND_SWEEP_INTERVAL);
+		LOGGER.debug("{}using {} shards", tag, size);
+	}
+
+	/**
+	 * Get shard for hash code.
+	 *
+	 * @param hash hash code of peer or token key
+	 * @return shard
+	 */
+	private Shard getShard(int hash) {
+		// spread higher bits
+		hash ^= (hash >>> 16);
+		return shards[hash & shardMask];
+	}
+
+	private String dumpCurrentLoadLevels() {
+		int exchangesByMid = 0;
+		int exchangesByToken = 0;
+		int deduplicated = 0;
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				exchangesByMid += shard.exchangesByMid;
+				exchangesByToken += shard.exchangesByToken.size();
+				deduplicated += shard.deduplicated;
+			}
+		}
+		StringBuilder b = new StringBuilder(tag);
+		b.append("MessageExchangeStore contents: ");
+		b.append(exchangesByMid).append(" exchanges by MID, ");
+		b.append(exchangesByToken).append(" exchanges by token, ");
+		b.append(deduplicated).append(" MIDs, ");
+		b.append(shards.length).append(" shards.");
+		return b.toString();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				if (!shard.peers.isEmpty() || !shard.exchangesByToken.isEmpty()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return dumpCurrentLoadLevels();
+	}
+
+	@Override
+	protected Exchange putIfAbsentByMid(KeyMID key, Exchange exchange) {
+		Shard shard = getShard(key.getPeer().hashCode());
+		synchronized (shard) {
+			PeerExchanges peer = shard.getOrCreate(key.getPeer());
+			Exchange previous = peer.exchanges.get(key.getMID());
+			if (previous == null) {
+				peer.exchanges.put(key.getMID(), exchange);
+				++shard.exchangesByMid;
+			}
+			return previous;
+		}
+	}
+
+	@Override
+	protected Exchange putIfAbsentByToken(KeyToken key, Exchange exchange) {
+		Shard shard = getShard(key.hashCode());
+		synchronized (shard) {
+			Exchange previous = shard.exchangesByToken.get(key);
+			if (previous == null) {
+				shard.exchangesByToken.put(key, exchange);
+			}
+			return previous;
+		}
+	}
+
+	@Override
+	protected Exchange putByToken(KeyToken key, Exchange exchange) {
+		Shard shard = getShard(key.hashCode());
+		synchronized (shard) {
+			return shard.exchangesByToken.put(key, exchange);
+		}
+	}
+
+	@Override
+	protected boolean removeByToken(KeyToken key, Exchange exchange) {
+		Shard shard = getShard(key.hashCode());
+		synchronized (shard) {
+			if (shard.exchangesByToken.get(key) == exchange) {
+				shard.exchangesByToken.remove(key);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	@Override
+	protected Exchange removeByMid(KeyMID key, Exchange exchange) {
+		Shard shard = getShard(key.getPeer().hashCode());
+		synchronized (shard) {
+			PeerExchanges peer = shard.peers.get(key.getPeer());
+			if (peer != null) {
+				Exchange current = peer.exchanges.get(key.getMID());
+				if (current != null && (exchange == null || current == exchange)) {
+					peer.exchanges.remove(key.getMID());
+					--shard.exchangesByMid;
+					shard.removeIfEmpty(peer);
+					return current;
+				}
+			}
+			return null;
+		}
+	}
+
+	@Override
+	protected Exchange getByToken(KeyToken key) {
+		Shard shard = getShard(key.hashCode());
+		synchronized (shard) {
+			return shard.exchangesByToken.get(key);
+		}
+	}
+
+	@Override
+	protected Exchange getByMid(KeyMID key) {
+		Shard shard = getShard(key.getPeer().hashCode());
+		synchronized (shard) {
+			PeerExchanges peer = shard.peers.get(key.getPeer());
+			return peer == null ? null : peer.exchanges.get(key.getMID());
+		}
+	}
+
+	@Override
+	public Exchange findPrevious(final KeyMID messageId, final Exchange exchange) {
+		if (!deduplication) {
+			return null;
+		}
+		Shard shard = getShard(messageId.getPeer().hashCode());
+		synchronized (shard) {
+			PeerExchanges peer = shard.getOrCreate(messageId.getPeer());
+			Deduplication previous = peer.deduplication.get(messageId.getMID());
+			if (previous != null) {
+				if (!replace || previous.exchange.getOrigin() == exchange.getOrigin()) {
+					LOGGER.debug("found exchange for {}", messageId);
+					return previous.exchange;
+				}
+				LOGGER.debug("replace exchange for {}", messageId);
+			} else {
+				LOGGER.debug("add exchange for {}", messageId);
+			}
+			shard.addDeduplication(peer, messageId.getMID(), exchange, previous == null);
+			return null;
+		}
+	}
+
+	@Override
+	public boolean replacePrevious(KeyMID key, Exchange previous, Exchange exchange) {
+		if (!deduplication) {
+			return true;
+		}
+		Shard shard = getShard(key.getPeer().hashCode());
+		synchronized (shard) {
+			PeerExchanges peer = shard.getOrCreate(key.getPeer());
+			Deduplication current = peer.deduplication.get(key.getMID());
+			if (current != null && !current.exchange.equals(previous)) {
+				return false;
+			}
+			shard.addDeduplication(peer, key.getMID(), exchange, current == null);
+			return true;
+		}
+	}
+
+	@Override
+	public Exchange find(final KeyMID messageId) {
+		if (!deduplication) {
+			return null;
+		}
+		Shard shard = getShard(messageId.getPeer().hashCode());
+		synchronized (shard) {
+			PeerExchanges peer = shard.peers.get(messageId.getPeer());
+			if (peer != null) {
+				Deduplication entry = peer.deduplication.get(messageId.getMID());
+				if (entry != null) {
+					return entry.exchange;
+				}
+			}
+			return null;
+		}
+	}
+
+	@Override
+	public List<Exchange> findByToken(Token token) {
+		List<Exchange> result = new ArrayList<>();
+		if (token != null) {
+			if (tokenGenerator.getScope(token) == Scope.SHORT_TERM_CLIENT_LOCAL) {
+				throw new IllegalArgumentException("token must not have client-local scope!");
+			}
+			for (Shard shard : shards) {
+				synchronized (shard) {
+					for (Exchange exchange : shard.exchangesByToken.values()) {
+						if (exchange.isOfLocalOrigin()) {
+							Request request = exchange.getRequest();
+							if (request != null && token.equals(request.getToken())) {
+								result.add(exchange);
+							}
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	protected void doStart() {
+		ScheduledExecutorService executor = getExecutor();
+		if (deduplication && executor != null) {
+			sweepJob = executor.scheduleAtFixedRate(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						sweep();
+					} catch (Throwable t) {
+						LOGGER.warn("Exception in sweep", t);
+					}
+				}
+			}, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	protected List<Exchange> doStop() {
+		if (sweepJob != null) {
+			sweepJob.cancel(false);
+			sweepJob = null;
+		}
+		List<Exchange> exchanges = new ArrayList<>();
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				for (PeerExchanges peer : shard.peers.values()) {
+					peer.exchanges.values(exchanges);
+				}
+				shard.clear();
+			}
+		}
+		return exchanges;
+	}
+
+	@Override
+	protected boolean isHealthStatusEnabled() {
+		return HEALTH_LOGGER.isDebugEnabled();
+	}
+
+	/**
+	 * Remove expired deduplication entries.
+	 *
+	 * Processes one shard after the other. Only the expired entries are
+	 * processed.
+	 *
+	 * @return number of removed entries
+	 */
+	public int sweep() {
+		final long start = ClockUtil.nanoRealtime();
+		final long oldestAllowed = start - exchangeLifetimeNanos;
+		int removed = 0;
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				removed += shard.sweep(oldestAllowed);
+			}
+		}
+		if (removed > 0) {
+			LOGGER.debug("{}sweep removed {} entries, took {}ms", tag, removed,
+					TimeUnit.NANOSECONDS.toMillis(ClockUtil.nanoRealtime() - start));
+		}
+		return removed;
+	}
+
+	/**
+	 * Dump exchanges of stores.
+	 *
+	 * @param logMaxExchanges maximum number of exchanges to include in dump.
+	 */
+	@Override
+	public void dump(int logMaxExchanges) {
+		if (HEALTH_LOGGER.isDebugEnabled()) {
+			HEALTH_LOGGER.debug(dumpCurrentLoadLevels());
+			if (0 < logMaxExchanges) {
+				List<Exchange> exchanges = new ArrayList<>();
+				for (Shard shard : shards) {
+					synchronized (shard) {
+						for (PeerExchanges peer : shard.peers.values()) {
+							peer.exchanges.values(exchanges);
+							if (exchanges.size() >= logMaxExchanges) {
+								break;
+							}
+						}
+					}
+					if (exchanges.size() >= logMaxExchanges) {
+						break;
+					}
+				}
+				for (int index = 0; index < exchanges.size() && index < logMaxExchanges; ++index) {
+					Exchange exchange = exchanges.get(index);
+					HEALTH_LOGGER.debug("  {}, retransmission {}, {}, {}", exchange,
+							exchange.getFailedTransmissionCount(), exchange.getCurrentRequest(),
+							exchange.getCurrentResponse());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Shard of the store.
+	 *
+	 * All access must be synchronized on the shard.
+	 */
+	private static final class Shard {
+
+		/**
+		 * Exchanges and deduplication entries by peer.
+		 */
+		private final Map<Object, PeerExchanges> peers = new HashMap<>();
+		/**
+		 * Exchanges by token.
+		 */
+		private final Map<KeyToken, Exchange> exchangesByToken = new HashMap<>();
+		/**
+		 * Deduplication entries ordered by their arrival.
+		 */
+		private final ArrayDeque<Deduplication> deduplicationQueue = new ArrayDeque<>();
+		/**
+		 * Number of exchanges by MID.
+		 */
+		private int exchangesByMid;
+		/**
+		 * Number of deduplication entries.
+		 */
+		private int deduplicated;
+
+		private PeerExchanges getOrCreate(Object peer) {
+			PeerExchanges exchanges = peers.get(peer);
+			if (exchanges == null) {
+				exchanges = new PeerExchanges(peer);
+				peers.put(peer, exchanges);
+			}
+			return exchanges;
+		}
+
+		private void removeIfEmpty(PeerExchanges peer) {
+			if (peer.exchanges.isEmpty() && peer.deduplication.isEmpty()) {
+				peers.remove(peer.peer);
+			}
+		}
+
+		private void addDeduplication(PeerExchanges peer, int mid, Exchange exchange, boolean added) {
+			Deduplication entry = new Deduplication(peer, mid, exchange);
+			peer.deduplication.put(mid, entry);
+			deduplicationQueue.add(entry);
+			if (added) {
+				++deduplicated;
+			}
+		}
+
+		private int sweep(long oldestAllowed) {
+			int removed = 0;
+			Deduplication entry;
+			while ((entry = deduplicationQueue.peek()) != null && (entry.nanoTimestamp - oldestAllowed) < 0) {
+				deduplicationQueue.poll();
+				PeerExchanges peer = entry.peer;
+				// replaced entries are still in the queue
+				if (peer.deduplication.get(entry.mid) == entry) {
+					peer.deduplication.remove(entry.mid);
+					--deduplicated;
+					++removed;
+					removeIfEmpty(peer);
+				}
+			}
+			return removed;
+		}
+
+		private void clear() {
+			peers.clear();
+			exchangesByToken.clear();
+			deduplicationQueue.clear();
+			exchangesByMid = 0;
+			deduplicated = 0;
+		}
+	}
+
+	/**
+	 * Exchanges and deduplication entries of a peer.
+	 */
+	private static final class PeerExchanges {
+
+		/**
+		 * Peer's identity.
+		 */
+		private final Object peer;
+		/**
+		 * Exchanges by MID.
+		 */
+		private final MidMap<Exchange> exchanges = new MidMap<>();
+		/**
+		 * Deduplication entries by MID.
+		 */
+		private final MidMap<Deduplication> deduplication = new MidMap<>();
+
+		private PeerExchanges(Object peer) {
+			this.peer = peer;
+		}
+	}
+
+	/**
+	 * Deduplication entry.
+	 */
+	private static final class Deduplication {
+
+		private final PeerExchanges peer;
+		private final int mid;
+		private final Exchange exchange;
+		/**
+		 * Arrival of the message in nanoseconds.
+		 *
+		 * @see ClockUtil#nanoRealtime()
+		 */
+		private final long nanoTimestamp;
+
+		private Deduplication(PeerExchanges peer, int mid, Exchange exchange) {
+			this.peer = peer;
+			this.mid = mid;
+			this.exchange = exchange;
+			this.nanoTimestamp = ClockUtil.nanoRealtime();
+		}
+	}
+
+	/**
+	 * Map with primitive MIDs as keys.
+	 *
+	 * Uses open addressing with linear probing. Not thread-safe.
+	 *
+	 * @param <V> type of values
+	 */
+	static final class MidMap<V> {
+
+		private static final int INITIAL_CAPACITY = 8;
+
+		private int[] mids = new int[INITIAL_CAPACITY];
+		private Object[] values = new Object[INITIAL_CAPACITY];
+		private int size;
+
+		int size() {
+			return size;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		@SuppressWarnings("unchecked")
+		V get(int mid) {
+			int mask = values.length - 1;
+			// MIDs are mostly sequential, so use the MID as hash
+			for (int index = mid & mask;; index = (index + 1) & mask) {
+				Object value = values[index];
+				if (value == null) {
+					return null;
+				} else if (mids[index] == mid) {
+					return (V) value;
+				}
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		V put(int mid, V value) {
+			if (value == null) {
+				throw new NullPointerException("value must not be null!");
+			}
+			int mask = values.length - 1;
+			int index = mid & mask;
+			for (;; index = (index + 1) & mask) {
+				Object current = values[index];
+				if (current == null) {
+					break;
+				} else if (mids[index] == mid) {
+					values[index] = value;
+					return (V) current;
+				}
+			}
+			mids[index] = mid;
+			values[index] = value;
+			if (++size * 4 > values.length * 3) {
+				resize(values.length * 2);
+			}
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		V remove(int mid) {
+			int mask = values.length - 1;
+			int index = mid & mask;
+			for (;; index = (index + 1) & mask) {
+				Object current = values[index];
+				if (current == null) {
+					return null;
+				} else if (mids[index] == mid) {
+					break;
+				}
+			}
+			V removed = (V) values[index];
+			values[index] = null;
+			--size;
+			// backward shift deletion
+			int free = index;
+			for (index = (index + 1) & mask; values[index] != null; index = (index + 1) & mask) {
+				int home = mids[index] & mask;
+				if (((index - home) & mask) >= ((index - free) & mask)) {
+					mids[free] = mids[index];
+					values[free] = values[index];
+					values[index] = null;
+					free = index;
+				}
+			}
+			if (size * 8 < values.length && values.length > INITIAL_CAPACITY) {
+				resize(values.length / 2);
+			}
+			return removed;
+		}
+
+		@SuppressWarnings("unchecked")
+		void values(List<? super V> list) {
+			for (Object value : values) {
+				if (value != null) {
+					list.add((V) value);
+				}
+			}
+		}
+
+		private void resize(int capacity) {
+			int[] oldMids = mids;
+			Object[] oldValues = values;
+			mids = new int[capacity];
+			values = new Object[capacity];
+			int mask = capacity - 1;
+			for (int old = 0; old < oldValues.length; ++old) {
+				Object value = oldValues[old];
+				if (value != null) {
+					int index = oldMids[old] & mask;
+					while (values[index] != null) {
+						index = (index + 1) & mask;
+					}
+					mids[index] = oldMids[old];
+					values[index] = value;
+				}
+			}
+		}
+	}
+}
@@ -207,7 +207,15 @@ public final class UdpMatcher extends BaseMatcher {
 		final KeyMID idByMID = new KeyMID(request.getMID(),
 				endpointContextMatcher.getEndpointIdentity(request.getSourceContext()));
 		final Exchange exchange = new Exchange(request, Origin.REMOTE, executor);
-		final Exchange previous = exchangeStore.findPrevious(idByMID, exchange);
+		final boolean lazy = request.isDuplicate();
+		final Exchange previous;
+		if (lazy) {
+			// lazy parsed duplicate without options and payload,
+			// must not be registered as new exchange
+			previous = exchangeStore.find(idByMID);
+		} else {
+			previous = exchangeStore.findPrevious(idByMID, exchange);
+		}
 		boolean duplicate = previous != null;
 
 		if (duplicate) {
@@ -224,7 +232,7 @@ public final class UdpMatcher extends BaseMatcher {
 			// the previous response would be send with its previous context
 			// using the current request context as connection context
 			duplicate = endpointContextMatcher.isToBeSent(previousSourceContext, sourceContext);
-			if (!duplicate) {
+			if (!duplicate && !lazy) {
 				// the new context doesn't match the previous.
 				if (exchangeStore.replacePrevious(idByMID, previous, exchange)) {
 					LOGGER.debug("replaced request {} by new request {}!", previousRequest, request);
@@ -260,6 +268,10 @@ public final class UdpMatcher extends BaseMatcher {
 					}
 				}
 			});
+		} else if (lazy) {
+			// previous exchange is gone, the header only request can't be
+			// processed. The next retransmission will be parsed completely.
+			LOGGER.debug("drop lazy parsed request {}, previous exchange is gone!", request);
 		} else {
 			exchange.setRemoveHandler(exchangeRemoveHandler);
 			exchange.execute(new Runnable() {
@@ -131,8 +131,30 @@ public final class NetworkConfig {
 		 * @since 2.2
 		 */
 		public static final String USE_MESSAGE_OFFLOADING = "USE_MESSAGE_OFFLOADING";
+		/**
+		 * Configure lazy message parsing.
+		 * 
+		 * If {@code true}, the UDP endpoint parses the header of received
+		 * messages first. Duplicated requests, which are answered from the
+		 * previous exchange, are then processed without parsing their
+		 * options and payload. Interceptors will see such duplicates
+		 * without options and payload.
+		 * 
+		 * @since 3.0
+		 */
+		public static final String LAZY_MESSAGE_PARSING = "LAZY_MESSAGE_PARSING";
 
 		public static final String USE_RANDOM_MID_START = "USE_RANDOM_MID_START";
+		/**
+		 * Tracker mode for MIDs.
+		 * 
+		 * Supported values are "NULL", "GROUPED", "MAPBASED", and
+		 * "ARRAYBASED". The memory of the "ARRAYBASED" tracker is fixed to 8
+		 * bytes per MID of the range for each peer, about 512 KiB for the full
+		 * range.
+		 * 
+		 * @see org.eclipse.californium.core.network.InMemoryMessageIdProvider.TrackerMode
+		 */
 		public static final String MID_TRACKER = "MID_TACKER";
 		public static final String MID_TRACKER_GROUPS = "MID_TRACKER_GROUPS";
 		/**
@@ -143,6 +165,29 @@ public final class NetworkConfig {
 		 */
 		public static final String MULTICAST_BASE_MID = "MULTICAST_BASE_MID";
 		public static final String TOKEN_SIZE_LIMIT = "TOKEN_SIZE_LIMIT";
+		/**
+		 * Use thread local random generators for tokens.
+		 * 
+		 * If {@code true}, each thread uses its own random generator, seeded
+		 * from a shared {@link java.security.SecureRandom}. If {@code false},
+		 * all threads share one {@link java.security.SecureRandom}.
+		 * 
+		 * @see org.eclipse.californium.core.network.RandomTokenGenerator
+		 * @since 3.0
+		 */
+		public static final String TOKEN_GENERATOR_THREAD_LOCAL_RANDOM = "TOKEN_GENERATOR_THREAD_LOCAL_RANDOM";
+		/**
+		 * Use a counter as prefix for tokens.
+		 * 
+		 * If {@code true}, the first 4 bytes of a token contains a counter
+		 * and the scope, the remaining bytes are random. Such tokens are
+		 * unique until the counter wraps around after 2^30 tokens. Requires a
+		 * {@link #TOKEN_SIZE_LIMIT} of at least 8 bytes.
+		 * 
+		 * @see org.eclipse.californium.core.network.RandomTokenGenerator
+		 * @since 3.0
+		 */
+		public static final String TOKEN_GENERATOR_COUNTER_PREFIX = "TOKEN_GENERATOR_COUNTER_PREFIX";
 
 		/**
 		 * The block size (number of bytes) to use when doing a blockwise
@@ -244,6 +289,15 @@ public final class NetworkConfig {
 		public static final String CONGESTION_CONTROL_ALGORITHM = "CONGESTION_CONTROL_ALGORITHM";
 
 		public static final String PROTOCOL_STAGE_THREAD_COUNT = "PROTOCOL_STAGE_THREAD_COUNT";
+		/**
+		 * Tick of the hashed wheel timer used by the protocol stage to
+		 * schedule retransmissions and timeouts (in MILLISECONDS).
+		 * {@code 0} to schedule them using the main executor instead.
+		 * 
+		 * @see org.eclipse.californium.elements.util.HashedWheelTimer
+		 * @since 3.0
+		 */
+		public static final String PROTOCOL_STAGE_TIMER_TICK = "PROTOCOL_STAGE_TIMER_TICK";
 		public static final String NETWORK_STAGE_RECEIVER_THREAD_COUNT = "NETWORK_STAGE_RECEIVER_THREAD_COUNT";
 		public static final String NETWORK_STAGE_SENDER_THREAD_COUNT = "NETWORK_STAGE_SENDER_THREAD_COUNT";
 
@@ -251,6 +305,16 @@ public final class NetworkConfig {
 		public static final String UDP_CONNECTOR_RECEIVE_BUFFER = "UDP_CONNECTOR_RECEIVE_BUFFER";
 		public static final String UDP_CONNECTOR_SEND_BUFFER = "UDP_CONNECTOR_SEND_BUFFER";
 		public static final String UDP_CONNECTOR_OUT_CAPACITY = "UDP_CONNECTOR_OUT_CAPACITY";
+		/**
+		 * Number of sockets bound with {@code SO_REUSEPORT} to the same
+		 * address. Each socket uses
+		 * {@link #NETWORK_STAGE_RECEIVER_THREAD_COUNT} receiver threads.
+		 * {@code 1} to use only one socket without {@code SO_REUSEPORT}.
+		 * 
+		 * @see org.eclipse.californium.elements.UDPConnector#setReusePortSockets(int)
+		 * @since 3.0
+		 */
+		public static final String UDP_CONNECTOR_REUSE_PORT_SOCKETS = "UDP_CONNECTOR_REUSE_PORT_SOCKETS";
 
 		public static final String DEDUPLICATOR = "DEDUPLICATOR";
 		public static final String DEDUPLICATOR_MARK_AND_SWEEP = "DEDUPLICATOR_MARK_AND_SWEEP";
@@ -280,6 +344,14 @@ public final class NetworkConfig {
 		public static final String CROP_ROTATION_PERIOD = "CROP_ROTATION_PERIOD";
 		public static final String NO_DEDUPLICATOR = "NO_DEDUPLICATOR";
 		public static final String DEDUPLICATOR_AUTO_REPLACE = "DEDUPLICATOR_AUTO_REPLACE";
+		/**
+		 * The number of shards of the
+		 * {@link org.eclipse.californium.core.network.ShardedMessageExchangeStore}.
+		 * Rounded up to a power of two.
+		 * 
+		 * @since 3.0
+		 */
+		public static final String EXCHANGE_STORE_SHARDS = "EXCHANGE_STORE_SHARDS";
 		public static final String RESPONSE_MATCHING = "RESPONSE_MATCHING";
 
 		public static final String HTTP_PORT = "HTTP_PORT";
@@ -96,7 +96,9 @@ public class NetworkConfigDefaults {
 	/**
 	 * The default MID tracker.
 	 * 
-	 * Supported values are {@code NULL}, {@code GROUPED}, or {@code MAPBASED}.
+	 * Supported values are {@code NULL}, {@code GROUPED}, {@code MAPBASED},
+	 * or {@code ARRAYBASED}. {@code ARRAYBASED} requires about 512 KiB per
+	 * peer for the full MID range and is therefore not the default.
 	 * <p>
 	 * The default value is {@code GROUPED}.
 	 */
@@ -130,6 +132,13 @@ public class NetworkConfigDefaults {
 
 	public static final boolean DEFAULT_DEDUPLICATOR_AUTO_REPLACE = true;
 
+	/**
+	 * The default number of shards of the sharded exchange store.
+	 * 
+	 * @since 3.0
+	 */
+	public static final int DEFAULT_EXCHANGE_STORE_SHARDS = 64;
+
 	/**
 	 * The default DTLS response matcher.
 	 * 
@@ -216,6 +225,7 @@ public class NetworkConfigDefaults {
 		config.setInt(Keys.LEISURE, 5000);
 		config.setFloat(Keys.PROBING_RATE, 1f);
 		config.setBoolean(Keys.USE_MESSAGE_OFFLOADING, false);
+		config.setBoolean(Keys.LAZY_MESSAGE_PARSING, false);
 
 		config.setInt(Keys.MAX_LATENCY, 100 * 1000); //ms
 		config.setInt(Keys.MAX_SERVER_RESPONSE_DELAY, 250 * 1000); //ms
@@ -224,6 +234,8 @@ public class NetworkConfigDefaults {
 		config.setString(Keys.MID_TRACKER, DEFAULT_MID_TRACKER);
 		config.setInt(Keys.MID_TRACKER_GROUPS, DEFAULT_MID_TRACKER_GROUPS);
 		config.setInt(Keys.TOKEN_SIZE_LIMIT, 8);
+		config.setBoolean(Keys.TOKEN_GENERATOR_THREAD_LOCAL_RANDOM, false);
+		config.setBoolean(Keys.TOKEN_GENERATOR_COUNTER_PREFIX, false);
 
 		config.setInt(Keys.PREFERRED_BLOCK_SIZE, DEFAULT_PREFERRED_BLOCK_SIZE);
 		config.setInt(Keys.MAX_MESSAGE_SIZE, DEFAULT_MAX_MESSAGE_SIZE);
@@ -242,6 +254,7 @@ public class NetworkConfigDefaults {
 		config.setString(Keys.CONGESTION_CONTROL_ALGORITHM, "Cocoa"); // see org.eclipse.californium.core.network.stack.congestioncontrol
 
 		config.setInt(Keys.PROTOCOL_STAGE_THREAD_COUNT, CORES);
+		config.setInt(Keys.PROTOCOL_STAGE_TIMER_TICK, 0); // [ms], 0 for disable
 		config.setInt(Keys.NETWORK_STAGE_RECEIVER_THREAD_COUNT, WINDOWS ? CORES : 1);
 		config.setInt(Keys.NETWORK_STAGE_SENDER_THREAD_COUNT, WINDOWS ? CORES : 1);
 
@@ -249,12 +262,14 @@ public class NetworkConfigDefaults {
 		config.setInt(Keys.UDP_CONNECTOR_RECEIVE_BUFFER, UDPConnector.UNDEFINED);
 		config.setInt(Keys.UDP_CONNECTOR_SEND_BUFFER, UDPConnector.UNDEFINED);
 		config.setInt(Keys.UDP_CONNECTOR_OUT_CAPACITY, Integer.MAX_VALUE); // unbounded
+		config.setInt(Keys.UDP_CONNECTOR_REUSE_PORT_SOCKETS, 1);
 
 		config.setString(Keys.DEDUPLICATOR, DEFAULT_DEDUPLICATOR);
 		config.setLong(Keys.MARK_AND_SWEEP_INTERVAL, DEFAULT_MARK_AND_SWEEP_INTERVAL);
 		config.setInt(Keys.PEERS_MARK_AND_SWEEP_MESSAGES, DEFAULT_PEERS_MARK_AND_SWEEP_MESSAGES);
 		config.setInt(Keys.CROP_ROTATION_PERIOD, DEFAULT_CROP_ROTATION_PERIOD);
 		config.setBoolean(Keys.DEDUPLICATOR_AUTO_REPLACE, DEFAULT_DEDUPLICATOR_AUTO_REPLACE);
+		config.setInt(Keys.EXCHANGE_STORE_SHARDS, DEFAULT_EXCHANGE_STORE_SHARDS);
 		config.setString(Keys.RESPONSE_MATCHING, DEFAULT_RESPONSE_MATCHING);
 
 		config.setInt(Keys.HTTP_PORT, 8080);
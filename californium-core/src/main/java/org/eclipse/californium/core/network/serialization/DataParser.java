@@ -23,6 +23,8 @@
  * Achim Kraus (Bosch Software Innovations GmbH) - add EndpointContext when parsing
  *                                                 RawData. 
  * Achim Kraus (Bosch Software Innovations GmbH) - expose parseOptionsAndPayload
+ * Bosch IO GmbH - parse options directly into the option set
+ * Bosch IO GmbH - add parseMessageHeader for lazy parsing
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -43,6 +45,14 @@ public abstract class DataParser {
 	/**
 	 * Parses a byte array into a CoAP Message.
 	 * 
+	 * Note: since 3.0, {@link RawData#isPooled()} raw data is parsed directly
+	 * from the pooled buffer. The bytes are not kept in the message, so
+	 * {@link Message#getBytes()} returns {@code null} for such messages. The
+	 * raw data is not released by the parser, that must be done by the caller
+	 * calling {@link RawData#release()}. The same applies to raw data, which
+	 * uses only the begin of {@link RawData#bytes}, e.g. the in place
+	 * decrypted data of DTLS records.
+	 * 
 	 * @param raw contains the byte array to parse.
 	 * @return the message.
 	 * @throws MessageFormatException if the raw-data byte array cannot be
@@ -56,7 +66,74 @@ public abstract class DataParser {
 		if (raw.getConnectorAddress() == null) {
 			throw new NullPointerException("raw-data connectos's address must not be null!");
 		}
-		Message message = parseMessage(raw.getBytes());
+		Message message;
+		if (raw.isPooled() || raw.getSize() < raw.bytes.length) {
+			// the pooled buffer is reused after release, don't keep it.
+			// partially used arrays are parsed without copy.
+			message = parseMessage(new DatagramReader(raw.bytes, 0, raw.getSize()));
+		} else {
+			message = parseMessage(raw.getBytes());
+		}
+		setRawDataAttributes(raw, message);
+		return message;
+	}
+
+	/**
+	 * Parses only the header and token of a byte array into a CoAP Message.
+	 * 
+	 * Neither the options nor the payload are parsed. The returned message is
+	 * therefore only intended to be used, where these are not relevant, e.g.
+	 * to process a duplicate, which is detected by its MID. Other messages
+	 * must be parsed by {@link #parseMessage(RawData)}.
+	 * 
+	 * @param raw contains the byte array to parse.
+	 * @return the message with header and token, but without options and
+	 *         payload.
+	 * @throws MessageFormatException if the raw-data byte array cannot be
+	 *             parsed into a message header.
+	 * @throws NullPointerException if the raw-data is {@code null}.
+	 * @since 3.0
+	 */
+	public final Message parseMessageHeader(final RawData raw) {
+		if (raw == null) {
+			throw new NullPointerException("raw-data must not be null!");
+		}
+		if (raw.getConnectorAddress() == null) {
+			throw new NullPointerException("raw-data connectos's address must not be null!");
+		}
+		String errorMsg = "illegal message code";
+		MessageHeader header = parseHeader(new DatagramReader(raw.bytes, 0, raw.getSize()));
+		Message message = null;
+		try {
+			if (CoAP.isRequest(header.getCode())) {
+				message = new Request(CoAP.Code.valueOf(header.getCode()));
+			} else if (CoAP.isResponse(header.getCode())) {
+				message = new Response(CoAP.ResponseCode.valueOf(header.getCode()));
+			} else if (CoAP.isEmptyMessage(header.getCode())) {
+				message = new EmptyMessage(header.getType());
+			}
+		} catch (MessageFormatException e) {
+			/** use message to add CoAP message specific information */
+			errorMsg = e.getMessage();
+		}
+		if (message == null) {
+			throw new CoAPMessageFormatException(errorMsg, header.getToken(), header.getMID(), header.getCode(),
+					CoAP.Type.CON == header.getType());
+		}
+		message.setMID(header.getMID());
+		message.setType(header.getType());
+		message.setToken(header.getToken());
+		setRawDataAttributes(raw, message);
+		return message;
+	}
+
+	/**
+	 * Set attributes of the raw data to the message.
+	 * 
+	 * @param raw received raw data
+	 * @param message parsed message
+	 */
+	private static void setRawDataAttributes(final RawData raw, final Message message) {
 		message.setSourceContext(raw.getEndpointContext());
 		if (message instanceof Request) {
 			((Request) message).setLocalAddress(raw.getConnectorAddress(), raw.isMulticast());
@@ -64,7 +141,6 @@ public abstract class DataParser {
 			message.setLocalAddress(raw.getConnectorAddress());
 		}
 		message.setNanoTimestamp(raw.getReceiveNanoTimestamp());
-		return message;
 	}
 
 	/**
@@ -75,9 +151,24 @@ public abstract class DataParser {
 	 * @throws MessageFormatException if the array cannot be parsed into a message.
 	 */
 	public final Message parseMessage(final byte[] msg) {
+		Message message = parseMessage(new DatagramReader(new ByteArrayInputStream(msg)));
+		// Set the message's bytes and return the message
+		message.setBytes(msg);
+		return message;
+	}
+
+	/**
+	 * Parses the bytes of a reader into a CoAP Message.
+	 * 
+	 * @param reader reader with the bytes to parse.
+	 * @return the message.
+	 * @throws MessageFormatException if the bytes cannot be parsed into a
+	 *             message.
+	 * @since 3.0
+	 */
+	private Message parseMessage(final DatagramReader reader) {
 
 		String errorMsg = "illegal message code";
-		DatagramReader reader = new DatagramReader(new ByteArrayInputStream(msg));
 		MessageHeader header = parseHeader(reader);
 		try {
 			Message message = null;
@@ -89,9 +180,7 @@ public abstract class DataParser {
 				message = parseMessage(reader, header, new EmptyMessage(header.getType()));
 			}
 
-			// Set the message's bytes and return the message
 			if (message != null) {
-				message.setBytes(msg);
 				return message;
 			}
 		} catch (CoAPMessageFormatException e) {
@@ -183,21 +272,7 @@ public abstract class DataParser {
 			// read option
 			if (reader.bytesAvailable(optionLength)) {
 				try {
-					Option option = new Option(currentOptionNumber);
-					option.setValue(reader.readBytes(optionLength));
-
-					if (currentOptionNumber == OptionNumberRegistry.CONTENT_FORMAT) {
-						// OptionSet.setContentFormat(int) API weird => cleanup on 3.0
-						int format = option.getIntegerValue();
-						message.getOptions().setContentFormat(format);
-						if (!message.getOptions().hasContentFormat()) {
-							throw new IllegalArgumentException(
-									"Content Format option must be between 0 and " + MediaTypeRegistry.MAX_TYPE + " (2 bytes) inclusive");
-						}
-					} else {
-						// add option to message
-						message.getOptions().addOption(option);
-					}
+					parseOption(reader, currentOptionNumber, optionLength, message.getOptions());
 				} catch (IllegalArgumentException ex) {
 					throw new CoAPMessageFormatException(ex.getMessage(), message.getToken(), message.getMID(), message.getRawCode(), message.isConfirmable());
 				}
@@ -233,6 +308,101 @@ public abstract class DataParser {
 		}
 	}
 
+	/**
+	 * Parse option value and add it to the option set.
+	 * 
+	 * Integer and string values of known options are passed directly to the
+	 * typed setters of the option set, without creating an {@link Option}.
+	 * 
+	 * @param reader reader that contains the option value
+	 * @param optionNumber option number
+	 * @param optionLength length of option value in bytes
+	 * @param options option set to add the option
+	 * @throws IllegalArgumentException if the option value is not valid
+	 */
+	private static void parseOption(DatagramReader reader, int optionNumber, int optionLength, OptionSet options) {
+		switch (optionNumber) {
+		case OptionNumberRegistry.CONTENT_FORMAT:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			// OptionSet.setContentFormat(int) API weird => cleanup on 3.0
+			options.setContentFormat(readInteger(reader, optionLength));
+			if (!options.hasContentFormat()) {
+				throw new IllegalArgumentException(
+						"Content Format option must be between 0 and " + MediaTypeRegistry.MAX_TYPE + " (2 bytes) inclusive");
+			}
+			break;
+		case OptionNumberRegistry.URI_PORT:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			options.setUriPort(readInteger(reader, optionLength));
+			break;
+		case OptionNumberRegistry.ACCEPT:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			options.setAccept(readInteger(reader, optionLength));
+			break;
+		case OptionNumberRegistry.OBSERVE:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			options.setObserve(readInteger(reader, optionLength));
+			break;
+		case OptionNumberRegistry.SIZE1:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			options.setSize1(readInteger(reader, optionLength));
+			break;
+		case OptionNumberRegistry.SIZE2:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			options.setSize2(readInteger(reader, optionLength));
+			break;
+		case OptionNumberRegistry.MAX_AGE:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			options.setMaxAge(optionLength == 0 ? 0 : reader.readLong(optionLength * Byte.SIZE));
+			break;
+		case OptionNumberRegistry.URI_PATH:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			options.addUriPath(readString(reader, optionLength));
+			break;
+		case OptionNumberRegistry.URI_QUERY:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			options.addUriQuery(readString(reader, optionLength));
+			break;
+		case OptionNumberRegistry.LOCATION_PATH:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			options.addLocationPath(readString(reader, optionLength));
+			break;
+		case OptionNumberRegistry.LOCATION_QUERY:
+			OptionNumberRegistry.assertValueLength(optionNumber, optionLength);
+			options.addLocationQuery(readString(reader, optionLength));
+			break;
+		default:
+			options.addOption(new Option(optionNumber, reader.readBytes(optionLength)));
+			break;
+		}
+	}
+
+	/**
+	 * Read unsigned integer option value.
+	 * 
+	 * @param reader reader that contains the option value
+	 * @param optionLength length of option value in bytes. Max. 4 bytes.
+	 * @return integer value. Same as {@link Option#getIntegerValue()}.
+	 */
+	private static int readInteger(DatagramReader reader, int optionLength) {
+		int value = 0;
+		for (int index = 0; index < optionLength; ++index) {
+			value = (value << Byte.SIZE) | (reader.readNextByte() & 0xff);
+		}
+		return value;
+	}
+
+	/**
+	 * Read UTF-8 string option value.
+	 * 
+	 * @param reader reader that contains the option value
+	 * @param optionLength length of option value in bytes.
+	 * @return string value. Same as {@link Option#getStringValue()}.
+	 */
+	private static String readString(DatagramReader reader, int optionLength) {
+		return new String(reader.readBytes(optionLength), CoAP.UTF8_CHARSET);
+	}
+
 	/**
 	 * Calculates the next option number based on the current option number and the option delta as specified in
 	 * RFC 7252, Section 3.1
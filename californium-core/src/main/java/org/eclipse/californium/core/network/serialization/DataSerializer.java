@@ -26,11 +26,15 @@
  *                                                 for RawData
  * Achim Kraus (Bosch Software Innovations GmbH) - expose serializeOptionsAndPayload
  *                                                 and adapt parameters
+ * Bosch IO GmbH - serialize options without sorted list
+ * Bosch IO GmbH - serialize into buffer with precomputed size
+ * Bosch IO GmbH - serialize notifications using their template
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
 import org.eclipse.californium.core.coap.*;
 import org.eclipse.californium.core.coap.CoAP.Type;
+import org.eclipse.californium.core.observe.NotificationTemplate;
 import org.eclipse.californium.elements.MessageCallback;
 import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.util.DatagramWriter;
@@ -76,12 +80,55 @@ public abstract class DataSerializer {
 			serializeEmpytMessage(messageWriter, message);
 			return messageWriter.toByteArray();
 		} else {
-			DatagramWriter messageWriter = new DatagramWriter();
+			if (message instanceof Response) {
+				NotificationTemplate template = ((Response) message).getNotificationTemplate();
+				if (template != null && template.matches((Response) message)) {
+					byte[] optionsAndPayload = template.getSerializedOptionsAndPayload();
+					DatagramWriter messageWriter = new DatagramWriter(
+							getHeaderSize(message.getToken(), optionsAndPayload.length) + optionsAndPayload.length);
+					serializeMessage(messageWriter, message, optionsAndPayload);
+					return messageWriter.toByteArray();
+				}
+			}
+			// exact size, toByteArray returns the buffer without copy
+			DatagramWriter messageWriter = new DatagramWriter(getMessageSize(message));
 			serializeMessage(messageWriter, message);
 			return messageWriter.toByteArray();
 		}
 	}
 
+	/**
+	 * Gets the size of a non empty message in wire format.
+	 * 
+	 * @param message the message
+	 * @return size of the message in wire format in bytes
+	 * @throws IllegalArgumentException if an option value has an invalid
+	 *             length
+	 * @see #getHeaderSize(Token, int)
+	 * @see #getOptionsAndPayloadSize(OptionSet, byte[])
+	 * @since 3.0
+	 */
+	protected int getMessageSize(Message message) {
+		int bodyLength = getOptionsAndPayloadSize(message.getOptions(), message.getPayload());
+		return getHeaderSize(message.getToken(), bodyLength) + bodyLength;
+	}
+
+	/**
+	 * Gets the size of the message header in wire format.
+	 * 
+	 * The default implementation returns the size of the UDP header according
+	 * <a href="https://tools.ietf.org/html/rfc7252#section-3">RFC 7252, 3.
+	 * Message Format</a>.
+	 * 
+	 * @param token token of the message
+	 * @param bodyLength length of the serialized options and payload
+	 * @return size of the header including the token in bytes
+	 * @since 3.0
+	 */
+	protected int getHeaderSize(Token token, int bodyLength) {
+		return 4 + token.length();
+	}
+
 	/**
 	 * Serializes a request and caches the result on the request object to skip future serializations.
 	 * <p>
@@ -213,8 +260,9 @@ public abstract class DataSerializer {
 	/**
 	 * Serialize message.
 	 * 
-	 * Used to serialize non empty messages. Serializes first the option and
-	 * payload in order to determine the serialized length for the header.
+	 * Used to serialize non empty messages. Calculates first the size of the
+	 * options and payload for the header, then serializes the header, options
+	 * and payload directly into the writer.
 	 * 
 	 * @param writer The writer to serialize the values to.
 	 * @param message the message to serialize.
@@ -224,16 +272,36 @@ public abstract class DataSerializer {
 	 * @since 2.6
 	 */
 	protected void serializeMessage(DatagramWriter writer, Message message) {
-		DatagramWriter optionsAndPayloadWriter = new DatagramWriter();
-		serializeOptionsAndPayload(optionsAndPayloadWriter, message.getOptions(), message.getPayload());
-		optionsAndPayloadWriter.writeCurrentByte();
+		int bodyLength = getOptionsAndPayloadSize(message.getOptions(), message.getPayload());
 
 		MessageHeader header = new MessageHeader(CoAP.VERSION, message.getType(), message.getToken(),
-				message.getRawCode(), message.getMID(), optionsAndPayloadWriter.size());
+				message.getRawCode(), message.getMID(), bodyLength);
 
 		serializeHeader(writer, header);
 		writer.writeCurrentByte();
-		writer.write(optionsAndPayloadWriter);
+		serializeOptionsAndPayload(writer, message.getOptions(), message.getPayload());
+	}
+
+	/**
+	 * Serialize message with already serialized options and payload.
+	 * 
+	 * Used to serialize notifications created from a
+	 * {@link NotificationTemplate}. Only the header is serialized, the options
+	 * and payload are copied.
+	 * 
+	 * @param writer The writer to serialize the values to.
+	 * @param message the message to serialize.
+	 * @param optionsAndPayload serialized options and payload of the message
+	 * @see NotificationTemplate#getSerializedOptionsAndPayload()
+	 * @since 3.0
+	 */
+	protected void serializeMessage(DatagramWriter writer, Message message, byte[] optionsAndPayload) {
+		MessageHeader header = new MessageHeader(CoAP.VERSION, message.getType(), message.getToken(),
+				message.getRawCode(), message.getMID(), optionsAndPayload.length);
+
+		serializeHeader(writer, header);
+		writer.writeCurrentByte();
+		writer.writeBytes(optionsAndPayload);
 	}
 
 	/**
@@ -256,6 +324,29 @@ public abstract class DataSerializer {
 	 */
 	protected abstract void serializeHeader(DatagramWriter writer, MessageHeader header);
 
+	/**
+	 * Gets the size of options and payload in wire format.
+	 * 
+	 * @param optionSet option set to be serialized
+	 * @param payload payload to be serialized. Maybe {@code null} for no
+	 *            payload.
+	 * @return size of options, payload marker and payload in bytes
+	 * @throws NullPointerException if options is {@code null}
+	 * @throws IllegalArgumentException if an option value has an invalid
+	 *             length
+	 * @since 3.0
+	 */
+	public static int getOptionsAndPayloadSize(final OptionSet optionSet, final byte[] payload) {
+		if (optionSet == null) {
+			throw new NullPointerException("option-set must not be null!");
+		}
+		int size = optionSet.getSerializedSize();
+		if (payload != null && payload.length > 0) {
+			size += 1 + payload.length;
+		}
+		return size;
+	}
+
 	/**
 	 * Serialize options and payload. Append the serialized options and payload
 	 * to the writer.
@@ -275,41 +366,7 @@ public abstract class DataSerializer {
 			throw new NullPointerException("option-set must not be null!");
 		}
 
-		int lastOptionNumber = 0;
-		for (Option option : optionSet.asSortedList()) {
-			byte[] value = option.getValue();
-
-			// write 4-bit option delta
-			int optionNumber = option.getNumber();
-			int optionDelta = optionNumber - lastOptionNumber;
-			int optionDeltaNibble = getOptionNibble(optionDelta);
-			writer.write(optionDeltaNibble, OPTION_DELTA_BITS);
-
-			// write 4-bit option length
-			int optionLength = value.length;
-			int optionLengthNibble = getOptionNibble(optionLength);
-			writer.write(optionLengthNibble, OPTION_LENGTH_BITS);
-
-			// write extended option delta field (0 - 2 bytes)
-			if (optionDeltaNibble == 13) {
-				writer.write(optionDelta - 13, Byte.SIZE);
-			} else if (optionDeltaNibble == 14) {
-				writer.write(optionDelta - 269, 2 * Byte.SIZE);
-			}
-
-			// write extended option length field (0 - 2 bytes)
-			if (optionLengthNibble == 13) {
-				writer.write(optionLength - 13, Byte.SIZE);
-			} else if (optionLengthNibble == 14) {
-				writer.write(optionLength - 269, 2 * Byte.SIZE);
-			}
-
-			// write option value
-			writer.writeBytes(value);
-
-			// update last option number
-			lastOptionNumber = optionNumber;
-		}
+		optionSet.serialize(writer);
 
 		if (payload != null && payload.length > 0) {
 			// if payload is present and of non-zero length, it is prefixed by
@@ -319,23 +376,4 @@ public abstract class DataSerializer {
 			writer.writeBytes(payload);
 		}
 	}
-
-	/**
-	 * Returns the 4-bit option header value.
-	 *
-	 * @param optionValue the option value (delta or length) to be encoded.
-	 * @return the 4-bit option header value.
-	 * @throws IllegalArgumentException if the option value is &gt; 65535 + 269.
-	 */
-	private static int getOptionNibble(final int optionValue) {
-		if (optionValue <= 12) {
-			return optionValue;
-		} else if (optionValue <= 255 + 13) {
-			return 13;
-		} else if (optionValue <= 65535 + 269) {
-			return 14;
-		} else {
-			throw new IllegalArgumentException("Unsupported option delta " + optionValue);
-		}
-	}
 }
@@ -19,11 +19,13 @@
  * Bosch Software Innovations GmbH - turn into utility class with static methods only
  * Joe Magerramov (Amazon Web Services) - CoAP over TCP support.
  * Achim Kraus (Bosch Software Innovations GmbH) - replace byte array token by Token
+ * Bosch IO GmbH - add getHeaderSize
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
 import static org.eclipse.californium.core.coap.CoAP.MessageFormat.*;
 
+import org.eclipse.californium.core.coap.Token;
 import org.eclipse.californium.elements.util.DatagramWriter;
 
 /**
@@ -32,6 +34,20 @@ import org.eclipse.californium.elements.util.DatagramWriter;
  */
 public final class TcpDataSerializer extends DataSerializer {
 
+	@Override
+	protected int getHeaderSize(final Token token, final int bodyLength) {
+		int size = 2 + token.length();
+		if (bodyLength < 13) {
+			return size;
+		} else if (bodyLength < (1 << 8) + 13) {
+			return size + 1;
+		} else if (bodyLength < (1 << 16) + 269) {
+			return size + 2;
+		} else {
+			return size + 4;
+		}
+	}
+
 	@Override protected void serializeHeader(final DatagramWriter writer, final MessageHeader header) {
 		// Variable length encoding per: https://tools.ietf.org/html/draft-ietf-core-coap-tcp-tls-02
 		if (header.getBodyLength() < 13) {
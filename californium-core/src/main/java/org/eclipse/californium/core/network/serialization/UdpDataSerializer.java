@@ -19,6 +19,7 @@
  * Bosch Software Innovations GmbH - turn into utility class with static methods only
  * Joe Magerramov (Amazon Web Services) - CoAP over TCP support.
  * Achim Kraus (Bosch Software Innovations GmbH) - replace byte array token by Token
+ * Bosch IO GmbH - serialize notifications using their template
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -48,17 +49,43 @@ public final class UdpDataSerializer extends DataSerializer {
 	 */
 	@Override
 	protected void serializeMessage(DatagramWriter writer, Message message) {
+		MessageHeader header = new MessageHeader(CoAP.VERSION, message.getType(), message.getToken(),
+				message.getRawCode(), getMid(message), -1);
+		serializeHeader(writer, header);
+		writer.writeCurrentByte();
+		serializeOptionsAndPayload(writer, message.getOptions(), message.getPayload());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @since 3.0
+	 */
+	@Override
+	protected void serializeMessage(DatagramWriter writer, Message message, byte[] optionsAndPayload) {
+		MessageHeader header = new MessageHeader(CoAP.VERSION, message.getType(), message.getToken(),
+				message.getRawCode(), getMid(message), -1);
+		serializeHeader(writer, header);
+		writer.writeCurrentByte();
+		writer.writeBytes(optionsAndPayload);
+	}
+
+	/**
+	 * Get MID of message.
+	 * 
+	 * @param message message
+	 * @return MID of message
+	 * @throws IllegalArgumentException if the message has no MID
+	 * @since 3.0
+	 */
+	private static int getMid(Message message) {
 		int mid = message.getMID();
 		if (mid == Message.NONE) {
 			IllegalArgumentException ex = new IllegalArgumentException("MID required for UDP serialization!");
 			LOGGER.warn("UDP, {}:", message, ex);
 			throw ex;
 		}
-		MessageHeader header = new MessageHeader(CoAP.VERSION, message.getType(), message.getToken(),
-				message.getRawCode(), mid, -1);
-		serializeHeader(writer, header);
-		writer.writeCurrentByte();
-		serializeOptionsAndPayload(writer, message.getOptions(), message.getPayload());
+		return mid;
 	}
 
 	@Override 
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.core.observe;
+
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.CoAP.Type;
+import org.eclipse.californium.core.coap.OptionSet;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.network.serialization.DataSerializer;
+import org.eclipse.californium.elements.util.DatagramWriter;
+
+/**
+ * Template for notifications sent to all observers of a resource.
+ *
+ * Contains the response code, options and payload, which are identical for
+ * all observe relations. The options and payload are serialized only once
+ * and are shared by all notifications created from this template. The
+ * serializer only writes the header and token of each notification, and
+ * appends the shared serialized options and payload.
+ *
+ * The notifications share the option lists of the template, these are only
+ * copied, if the options of a notification are changed. If the options or
+ * payload of a created notification are changed by the stack, e.g. for a
+ * blockwise transfer, the notification is serialized completely.
+ *
+ * @see #createNotification()
+ * @see org.eclipse.californium.core.CoapResource#createNotification()
+ * @since 3.0
+ */
+public final class NotificationTemplate {
+
+	/**
+	 * Response code of the notifications.
+	 */
+	private final ResponseCode code;
+	/**
+	 * Type of the notifications. {@code null}, if not provided by the
+	 * resource.
+	 */
+	private final Type type;
+	/**
+	 * Options of the notifications. The lists are shared with the options of
+	 * the created notifications.
+	 * 
+	 * @see OptionSet#shareLists()
+	 */
+	private final OptionSet options;
+	/**
+	 * Payload of the notifications. Shared by all notifications.
+	 */
+	private final byte[] payload;
+	/**
+	 * Serialized options and payload. Serialized on first use.
+	 */
+	private volatile byte[] optionsAndPayload;
+
+	/**
+	 * Create notification template.
+	 *
+	 * The options are copied, the payload is shared and must therefore not be
+	 * changed afterwards.
+	 *
+	 * @param response response with code, options and payload for all
+	 *            notifications.
+	 * @throws NullPointerException if response is {@code null}
+	 * @throws IllegalArgumentException if the response contains a block
+	 *             option
+	 */
+	public NotificationTemplate(Response response) {
+		if (response == null) {
+			throw new NullPointerException("response must not be null!");
+		}
+		if (response.getOptions().hasBlock1() || response.getOptions().hasBlock2()) {
+			throw new IllegalArgumentException("notification template must not contain block options!");
+		}
+		this.code = response.getCode();
+		this.type = response.getType();
+		this.options = new OptionSet(response.getOptions()).shareLists();
+		this.payload = response.getPayload();
+	}
+
+	/**
+	 * Create notification from this template.
+	 *
+	 * The options of the notification share their lists with this template
+	 * until they are modified.
+	 *
+	 * @return notification with the code, type, options and payload of this
+	 *         template.
+	 */
+	public Response createNotification() {
+		Response notification = new Response(code);
+		if (type != null) {
+			notification.setType(type);
+		}
+		notification.setOptions(options);
+		notification.setPayload(payload);
+		notification.setNotificationTemplate(this);
+		return notification;
+	}
+
+	/**
+	 * Check, if the notification still matches this template.
+	 *
+	 * The stack may change the options and the payload of a notification,
+	 * e.g. for blockwise transfers. The resource may also change options of
+	 * the created notification, e.g. the observe number, ETag or Max-Age.
+	 * Therefore all options are compared with the options of this template.
+	 *
+	 * @param notification notification created from this template
+	 * @return {@code true}, if the serialized options and payload of this
+	 *         template could be used for the notification, {@code false},
+	 *         otherwise.
+	 */
+	public boolean matches(Response notification) {
+		if (notification.getPayload() != payload || notification.getCode() != code) {
+			return false;
+		}
+		OptionSet notificationOptions = notification.getOptions();
+		if (notificationOptions.hasBlock1() || notificationOptions.hasBlock2()) {
+			return false;
+		}
+		return options.equals(notificationOptions);
+	}
+
+	/**
+	 * Get serialized options and payload.
+	 *
+	 * @return serialized options and payload
+	 * @see DataSerializer#serializeOptionsAndPayload(DatagramWriter, OptionSet,
+	 *      byte[])
+	 */
+	public byte[] getSerializedOptionsAndPayload() {
+		byte[] serialized = optionsAndPayload;
+		if (serialized == null) {
+			// benign race, the result is always the same
+			DatagramWriter writer = new DatagramWriter(DataSerializer.getOptionsAndPayloadSize(options, payload));
+			DataSerializer.serializeOptionsAndPayload(writer, options, payload);
+			serialized = writer.toByteArray();
+			optionsAndPayload = serialized;
+		}
+		return serialized;
+	}
+}
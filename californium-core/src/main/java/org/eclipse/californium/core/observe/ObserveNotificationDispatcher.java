@@ -0,0 +1,400 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.core.observe;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.SimpleCounterStatistic;
+import org.eclipse.californium.elements.util.TimeStatistic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatcher for observe notifications.
+ *
+ * Partitions the observe relations to notify across several tasks executed
+ * by the provided executor, and paces the notifications using a token
+ * bucket. If a task must wait for the next token, it's scheduled again
+ * instead of blocking a thread of the executor. The notifications itself are
+ * sent as without dispatcher, so the
+ * {@link org.eclipse.californium.core.network.stack.ObserveLayer} still
+ * applies its CON/NON rules.
+ *
+ * The time from the start of the first to the end of the last notification
+ * of one dispatch is recorded as fan-out latency.
+ *
+ * @see org.eclipse.californium.core.CoapResource#setNotificationDispatcher(ObserveNotificationDispatcher)
+ * @since 3.0
+ */
+public class ObserveNotificationDispatcher {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ObserveNotificationDispatcher.class);
+
+	/**
+	 * Callback to notify a single observe relation.
+	 */
+	public interface RelationNotifier {
+
+		/**
+		 * Notify observe relation.
+		 *
+		 * @param relation observe relation to notify.
+		 */
+		void notifyRelation(ObserveRelation relation);
+	}
+
+	/**
+	 * Executor for the notification tasks.
+	 */
+	private final ScheduledExecutorService executor;
+	/**
+	 * Maximum number of parallel notification tasks per dispatch.
+	 */
+	private final int parallelism;
+	/**
+	 * Interval between two notifications in nanoseconds. {@code 0}, if the
+	 * notifications are not paced.
+	 */
+	private final long intervalNanos;
+	/**
+	 * Maximum burst of the token bucket in nanoseconds.
+	 */
+	private final long burstNanos;
+	/**
+	 * Time of the next free token in nanoseconds.
+	 *
+	 * @see ClockUtil#nanoRealtime()
+	 */
+	private final AtomicLong nextTokenNanos = new AtomicLong(ClockUtil.nanoRealtime());
+	/**
+	 * Fan-out latency, from the start of the first to the end of the last
+	 * notification of a dispatch.
+	 */
+	private final TimeStatistic fanOutLatency = new TimeStatistic(60000, 10, TimeUnit.MILLISECONDS);
+	/**
+	 * Number of dispatches.
+	 */
+	private final SimpleCounterStatistic dispatches = new SimpleCounterStatistic("dispatches");
+	/**
+	 * Number of notifications.
+	 */
+	private final SimpleCounterStatistic notifications = new SimpleCounterStatistic("notifications");
+	/**
+	 * Number of failed notifications.
+	 */
+	private final SimpleCounterStatistic failures = new SimpleCounterStatistic("failures");
+
+	/**
+	 * Create notification dispatcher without pacing.
+	 *
+	 * @param executor executor for notification tasks. Paced tasks are
+	 *            scheduled, if the next token is not yet available.
+	 * @param parallelism maximum number of parallel notification tasks per
+	 *            dispatch
+	 * @throws NullPointerException if executor is {@code null}
+	 * @throws IllegalArgumentException if parallelism is less than {@code 1}
+	 */
+	public ObserveNotificationDispatcher(ScheduledExecutorService executor, int parallelism) {
+		this(executor, parallelism, 0, 0);
+	}
+
+	/**
+	 * Create notification dispatcher.
+	 *
+	 * @param executor executor for notification tasks. Paced tasks are
+	 *            scheduled, if the next token is not yet available.
+	 * @param parallelism maximum number of parallel notification tasks per
+	 *            dispatch
+	 * @param notificationsPerSecond rate of notifications. {@code 0}, to send
+	 *            notifications without pacing.
+	 * @param burst number of notifications, which may be sent without pacing,
+	 *            if the dispatcher was idle before.
+	 * @throws NullPointerException if executor is {@code null}
+	 * @throws IllegalArgumentException if parallelism is less than {@code 1},
+	 *             or rate or burst is negative
+	 */
+	public ObserveNotificationDispatcher(ScheduledExecutorService executor, int parallelism,
+			int notificationsPerSecond, int burst) {
+		if (executor == null) {
+			throw new NullPointerException("executor must not be null!");
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism " + parallelism + " must be at least 1!");
+		}
+		if (notificationsPerSecond < 0) {
+			throw new IllegalArgumentException("rate " + notificationsPerSecond + " must not be negative!");
+		}
+		if (burst < 0) {
+			throw new IllegalArgumentException("burst " + burst + " must not be negative!");
+		}
+		this.executor = executor;
+		this.parallelism = parallelism;
+		if (notificationsPerSecond > 0) {
+			this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / notificationsPerSecond;
+			this.burstNanos = intervalNanos * burst;
+		} else {
+			this.intervalNanos = 0;
+			this.burstNanos = 0;
+		}
+	}
+
+	/**
+	 * Dispatch notifications for observe relations.
+	 *
+	 * The relations are partitioned into up to {@link #parallelism} tasks,
+	 * which are executed by the executor. Returns without waiting for the
+	 * notifications.
+	 *
+	 * @param relations list of relations to notify. Must not be changed
+	 *            afterwards.
+	 * @param notifier callback to notify a single relation
+	 */
+	public void dispatch(final List<ObserveRelation> relations, final RelationNotifier notifier) {
+		int size = relations.size();
+		if (size == 0) {
+			return;
+		}
+		dispatches.increment();
+		int partitions = Math.min(parallelism, size);
+		Round round = new Round(size);
+		for (int partition = 0; partition < partitions; ++partition) {
+			try {
+				executor.execute(new Partition(relations, partition, partitions, round, notifier));
+			} catch (RejectedExecutionException ex) {
+				LOGGER.debug("notifications rejected!", ex);
+				// skip the relations of this and the remaining partitions
+				int skipped = 0;
+				for (; partition < partitions; ++partition) {
+					skipped += count(size, partition, partitions);
+				}
+				round.skip(skipped);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Notify a single relation.
+	 *
+	 * @param round round of dispatched notifications
+	 * @param relation relation to notify
+	 * @param notifier callback to notify relation
+	 */
+	private void notifyRelation(Round round, ObserveRelation relation, RelationNotifier notifier) {
+		try {
+			round.start();
+			if (!relation.isCanceled()) {
+				notifier.notifyRelation(relation);
+				notifications.increment();
+			}
+		} catch (RuntimeException ex) {
+			failures.increment();
+			LOGGER.warn("notification failed!", ex);
+		} finally {
+			round.done();
+		}
+	}
+
+	/**
+	 * Count relations of a partition.
+	 *
+	 * @param size number of all relations
+	 * @param first index of the first relation of the partition
+	 * @param partitions number of partitions
+	 * @return number of relations with the index
+	 *         {@code first + n * partitions}, which are less than size.
+	 */
+	private static int count(int size, int first, int partitions) {
+		return first < size ? (size - first + partitions - 1) / partitions : 0;
+	}
+
+	/**
+	 * Acquire token from token bucket.
+	 *
+	 * The token is reserved, even if it's not available yet.
+	 *
+	 * @return nanoseconds to wait until the reserved token is available.
+	 *         {@code 0}, if the token is available now.
+	 */
+	private long acquireToken() {
+		if (intervalNanos == 0) {
+			return 0;
+		}
+		long now = ClockUtil.nanoRealtime();
+		long earliest = now - burstNanos;
+		long token;
+		while (true) {
+			long next = nextTokenNanos.get();
+			token = next - earliest < 0 ? earliest : next;
+			if (nextTokenNanos.compareAndSet(next, token + intervalNanos)) {
+				break;
+			}
+		}
+		long wait = token - now;
+		return wait > 0 ? wait : 0;
+	}
+
+	/**
+	 * Get statistic of the fan-out latency.
+	 *
+	 * @return time statistic of the fan-out latency
+	 */
+	public TimeStatistic getFanOutLatency() {
+		return fanOutLatency;
+	}
+
+	/**
+	 * Get number of dispatches.
+	 *
+	 * @return number of dispatches
+	 */
+	public long getDispatches() {
+		return dispatches.getCounter();
+	}
+
+	/**
+	 * Get number of sent notifications.
+	 *
+	 * @return number of sent notifications
+	 */
+	public long getNotifications() {
+		return notifications.getCounter();
+	}
+
+	/**
+	 * Get number of failed notifications.
+	 *
+	 * @return number of failed notifications
+	 */
+	public long getFailures() {
+		return failures.getCounter();
+	}
+
+	@Override
+	public String toString() {
+		return "observe-notifications: " + dispatches + ", " + notifications + ", " + failures + ", fan-out "
+				+ fanOutLatency.getSummaryAsText();
+	}
+
+	/**
+	 * Round of dispatched notifications.
+	 *
+	 * Records the fan-out latency, when all notifications are done.
+	 */
+	private class Round {
+
+		/**
+		 * Number of pending notifications.
+		 */
+		private final AtomicInteger pending;
+		/**
+		 * Start of the first notification. {@code 0}, if not started.
+		 *
+		 * @see ClockUtil#nanoRealtime()
+		 */
+		private final AtomicLong firstNanos = new AtomicLong();
+
+		private Round(int size) {
+			pending = new AtomicInteger(size);
+		}
+
+		private void start() {
+			if (firstNanos.get() == 0) {
+				firstNanos.compareAndSet(0, ClockUtil.nanoRealtime());
+			}
+		}
+
+		private void done() {
+			skip(1);
+		}
+
+		/**
+		 * Count down notifications, which are done or skipped.
+		 *
+		 * @param count number of notifications
+		 */
+		private void skip(int count) {
+			if (pending.addAndGet(-count) == 0) {
+				long first = firstNanos.get();
+				if (first != 0) {
+					fanOutLatency.add(ClockUtil.nanoRealtime() - first, TimeUnit.NANOSECONDS);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Task notifying a partition of the relations of a round.
+	 *
+	 * Notifies the relations with the index {@code first + n * partitions}.
+	 * If the next token of the token bucket is not available, the task is
+	 * scheduled again for the time the reserved token gets available.
+	 */
+	private class Partition implements Runnable {
+
+		private final List<ObserveRelation> relations;
+		private final int partitions;
+		private final Round round;
+		private final RelationNotifier notifier;
+		/**
+		 * Index of the next relation to notify.
+		 */
+		private int index;
+		/**
+		 * Indicates, that a token is already reserved for the next relation.
+		 */
+		private boolean reserved;
+
+		private Partition(List<ObserveRelation> relations, int first, int partitions, Round round,
+				RelationNotifier notifier) {
+			this.relations = relations;
+			this.index = first;
+			this.partitions = partitions;
+			this.round = round;
+			this.notifier = notifier;
+		}
+
+		@Override
+		public void run() {
+			int size = relations.size();
+			while (index < size) {
+				if (!reserved) {
+					long wait = acquireToken();
+					if (wait > 0) {
+						reserved = true;
+						try {
+							executor.schedule(this, wait, TimeUnit.NANOSECONDS);
+						} catch (RejectedExecutionException ex) {
+							LOGGER.debug("notifications rejected!", ex);
+							// skip the remaining relations of this partition
+							round.skip(count(size, index, partitions));
+						}
+						return;
+					}
+				}
+				reserved = false;
+				notifyRelation(round, relations.get(index), notifier);
+				index += partitions;
+			}
+		}
+	}
+}
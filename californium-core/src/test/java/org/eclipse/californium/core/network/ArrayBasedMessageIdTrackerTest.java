@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ *                    (derived from MapBasedMessageIdTrackerTest)
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import static org.eclipse.californium.core.network.MessageIdTracker.TOTAL_NO_OF_MIDS;
+import static org.eclipse.californium.elements.util.TestConditionTools.inRange;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.californium.TestTools;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.elements.util.ExpectedExceptionWrapper;
+import org.eclipse.californium.rule.CoapNetworkRule;
+import org.eclipse.californium.rule.CoapThreadsRule;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Verifies that ArrayBasedMessageIdTracker correctly marks MIDs as <em>in
+ * use</em>, also when used concurrently.
+ */
+@Category(Small.class)
+public class ArrayBasedMessageIdTrackerTest {
+	@ClassRule
+	public static CoapNetworkRule network = new CoapNetworkRule(CoapNetworkRule.Mode.DIRECT, CoapNetworkRule.Mode.NATIVE);
+
+	@Rule
+	public CoapThreadsRule cleanup = new CoapThreadsRule();
+
+	@Rule
+	public ExpectedException exception = ExpectedExceptionWrapper.none();
+
+	private static final int INITIAL_MID = 0;
+
+	@Test
+	public void testGetNextMessageIdFailsIfAllMidsAreInUse() throws Exception {
+		// GIVEN a tracker whose MIDs are all in use
+		NetworkConfig config = network.createStandardTestConfig();
+		ArrayBasedMessageIdTracker tracker = new ArrayBasedMessageIdTracker(INITIAL_MID, 0, TOTAL_NO_OF_MIDS, config);
+		for (int i = 0; i < TOTAL_NO_OF_MIDS; i++) {
+			tracker.getNextMessageId();
+		}
+
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage(containsString("No MID available, all"));
+
+		// WHEN retrieving the next message IDs from the tracker
+		tracker.getNextMessageId();
+	}
+
+	@Test
+	public void testGetNextMessageIdFailsIfAllMidsInRangeAreInUse() throws Exception {
+		// GIVEN a tracker whose MIDs are half in use
+		NetworkConfig config = network.createStandardTestConfig();
+		final int minMid = 1024;
+		final int maxMid = 2048;
+		final int rangeMid = maxMid - minMid;
+		ArrayBasedMessageIdTracker tracker = new ArrayBasedMessageIdTracker(INITIAL_MID + minMid, minMid, maxMid, config);
+		for (int i = 0; i < rangeMid; i++) {
+			int mid = tracker.getNextMessageId();
+			assertThat(mid, is(inRange(minMid, maxMid)));
+		}
+
+		exception.expect(IllegalStateException.class);
+		exception.expectMessage(containsString("No MID available, all"));
+
+		// WHEN retrieving the next message IDs from the tracker
+		tracker.getNextMessageId();
+	}
+
+	@Test
+	public void testGetNextMessageIdReusesIdAfterExchangeLifetime() throws Exception {
+		// GIVEN a tracker with an EXCHANGE_LIFETIME of 100ms
+		int exchangeLifetime = 100; // ms
+		NetworkConfig config = network.createStandardTestConfig();
+		config.setInt(NetworkConfig.Keys.EXCHANGE_LIFETIME, exchangeLifetime);
+		final ArrayBasedMessageIdTracker tracker = new ArrayBasedMessageIdTracker(INITIAL_MID, 0, TOTAL_NO_OF_MIDS, config);
+
+		// WHEN retrieving all message IDs from the tracker
+		int firstMid = tracker.getNextMessageId();
+		for (int i = 1; i < TOTAL_NO_OF_MIDS; i++) {
+			tracker.getNextMessageId();
+		}
+
+		// THEN the first message ID is re-used after 
+		// EXCHANGE_LIFETIME has expired
+		exchangeLifetime += (exchangeLifetime >> 1); // a little longer
+
+		int mid = TestTools.waitForNextMID(tracker, inRange(0, TOTAL_NO_OF_MIDS), exchangeLifetime, 10, TimeUnit.MILLISECONDS);
+		assertThat(mid, is(firstMid));
+	}
+
+	@Test
+	public void testConcurrentGetNextMessageIdReturnsUniqueMids() throws Exception {
+		// GIVEN a tracker used by several threads
+		NetworkConfig config = network.createStandardTestConfig();
+		final ArrayBasedMessageIdTracker tracker = new ArrayBasedMessageIdTracker(INITIAL_MID, 0, TOTAL_NO_OF_MIDS, config);
+		final int threads = 4;
+		final int midsPerThread = TOTAL_NO_OF_MIDS / threads;
+		final int[][] mids = new int[threads][midsPerThread];
+		final CountDownLatch ready = new CountDownLatch(threads);
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		Thread[] workers = new Thread[threads];
+		for (int thread = 0; thread < threads; ++thread) {
+			final int[] result = mids[thread];
+			workers[thread] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					ready.countDown();
+					try {
+						ready.await();
+						for (int index = 0; index < result.length; ++index) {
+							result[index] = tracker.getNextMessageId();
+						}
+					} catch (Throwable t) {
+						error.set(t);
+					}
+				}
+			});
+			workers[thread].start();
+		}
+		for (Thread worker : workers) {
+			worker.join(10000);
+		}
+		assertThat(error.get() == null, is(true));
+
+		// THEN all MIDs are used exactly once
+		BitSet used = new BitSet(TOTAL_NO_OF_MIDS);
+		for (int[] result : mids) {
+			for (int mid : result) {
+				assertThat("MID " + mid + " used twice", used.get(mid), is(false));
+				used.set(mid);
+			}
+		}
+		assertThat(used.cardinality(), is(TOTAL_NO_OF_MIDS));
+	}
+
+	@Test
+	public void testGetNextMessageIdRangeRollover() throws Exception {
+		assertMessageIdRangeRollover(0, 65000);
+		assertMessageIdRangeRollover(1000, 4000);
+		assertMessageIdRangeRollover(65000, TOTAL_NO_OF_MIDS);
+	}
+
+	@Test
+	public void testGetNextMessageIdAlignedRangeRollover() throws Exception {
+		assertMessageIdRangeRollover(0, 8192);
+		assertMessageIdRangeRollover(2048, 2048 * 3);
+		assertMessageIdRangeRollover(TOTAL_NO_OF_MIDS / 2, TOTAL_NO_OF_MIDS);
+	}
+
+	public void assertMessageIdRangeRollover(int min, int max) throws Exception {
+		// GIVEN a tracker with an EXCHANGE_LIFETIME of -1 (MID always expired)
+		NetworkConfig config = network.createStandardTestConfig();
+		config.setInt(NetworkConfig.Keys.EXCHANGE_LIFETIME, -1);
+		final int range = max - min;
+		final ArrayBasedMessageIdTracker tracker = new ArrayBasedMessageIdTracker(INITIAL_MID + min, min, max, config);
+		final String msg = "not next mid in range[" + min + "..." + max + ") for ";
+
+		// WHEN retrieving all message IDs from the tracker
+		int lastMid = -1;
+		int minMid = TOTAL_NO_OF_MIDS;
+		int maxMid = -1;
+		for (int i = 0; i < TOTAL_NO_OF_MIDS * 4; i++) {
+			int nextMid = tracker.getNextMessageId();
+			assertThat(nextMid, is(inRange(min, max)));
+			if (-1 < lastMid) {
+				int mid = ((lastMid - min + 1) % range) + min;
+				assertThat(msg + lastMid, nextMid, is(mid));
+			}
+			if (minMid > nextMid) {
+				minMid = nextMid;
+			}
+			if (maxMid < nextMid) {
+				maxMid = nextMid;
+			}
+			lastMid = nextMid;
+		}
+		assertThat("minimun not reached", minMid, is(min));
+		assertThat("maximun not reached", maxMid, is(max - 1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMidRange() throws Exception {
+		NetworkConfig config = network.createStandardTestConfig();
+		new ArrayBasedMessageIdTracker(10, 10, 10, config);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMidRange2() throws Exception {
+		NetworkConfig config = network.createStandardTestConfig();
+		new ArrayBasedMessageIdTracker(10, 10, 9, config);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidinitialMid() throws Exception {
+		NetworkConfig config = network.createStandardTestConfig();
+		new ArrayBasedMessageIdTracker(10, 15, 20, config);
+	}
+}
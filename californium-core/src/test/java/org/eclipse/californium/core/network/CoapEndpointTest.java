@@ -23,6 +23,7 @@
 package org.eclipse.californium.core.network;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -36,6 +37,7 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.californium.TestTools;
@@ -53,8 +55,12 @@ import org.eclipse.californium.elements.EndpointContextMatcher;
 import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.RawDataChannel;
 import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.elements.util.BufferPool;
 import org.eclipse.californium.elements.util.Bytes;
 import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.ExecutorsUtil;
+import org.eclipse.californium.elements.util.PooledBuffer;
+import org.eclipse.californium.elements.util.TestThreadFactory;
 import org.eclipse.californium.rule.CoapThreadsRule;
 import org.junit.After;
 import org.junit.Before;
@@ -138,6 +144,63 @@ public class CoapEndpointTest {
 		assertTrue(observer.waitForSentCalls(1, 1, TimeUnit.SECONDS));
 	}
 
+	@Test
+	public void testRejectedInboundDataReleasesPooledBuffer() throws Exception {
+		ScheduledExecutorService executor = ExecutorsUtil.newSingleThreadScheduledExecutor(
+				new TestThreadFactory("rejecting-"));
+		SimpleConnector connector = new SimpleConnector();
+		CoapEndpoint.Builder builder = new CoapEndpoint.Builder();
+		builder.setConnector(connector);
+		builder.setNetworkConfig(CONFIG);
+		Endpoint endpoint = builder.build();
+		endpoint.setExecutors(executor, executor);
+		endpoint.start();
+		cleanup.add(endpoint);
+		executor.shutdownNow();
+
+		// GIVEN a pooled inbound message
+		BufferPool pool = new BufferPool();
+		PooledBuffer buffer = pool.acquire(16);
+		buffer.setLength(4);
+		RawData data = RawData.inbound(buffer, new AddressEndpointContext(SOURCE_ADDRESS), false,
+				ClockUtil.nanoRealtime(), CONNECTOR_ADDRESS);
+
+		// WHEN the protocol stage rejects the execution
+		connector.receiveMessage(data);
+
+		// THEN the pooled buffer is returned
+		assertThat(buffer.isReleased(), is(true));
+	}
+
+	@Test
+	public void testRequestRetransmissionWithHashedWheelTimer() throws Exception {
+		NetworkConfig config = NetworkConfig.createStandardWithoutFile()
+				.setInt(NetworkConfig.Keys.PROTOCOL_STAGE_TIMER_TICK, 10)
+				.setInt(NetworkConfig.Keys.ACK_TIMEOUT, 100)
+				.setFloat(NetworkConfig.Keys.ACK_RANDOM_FACTOR, 1.0F)
+				.setInt(NetworkConfig.Keys.MAX_RETRANSMIT, 2);
+		CoapEndpoint.Builder builder = new CoapEndpoint.Builder();
+		builder.setConnector(new SimpleConnector());
+		builder.setNetworkConfig(config);
+		Endpoint endpoint = builder.build();
+		endpoint.start();
+		cleanup.add(endpoint);
+
+		// GIVEN an outbound request
+		Request request = Request.newGet();
+		request.setDestinationContext(new AddressEndpointContext(InetAddress.getLoopbackAddress(), CoAP.DEFAULT_COAP_PORT));
+		CountingMessageObserver observer = new CountingMessageObserver();
+		request.addMessageObserver(observer);
+
+		// WHEN sending the request to the peer, which doesn't respond
+		endpoint.sendRequest(request);
+
+		// THEN assert that the request is retransmitted and times out
+		assertTrue(observer.waitForSentCalls(3, 2, TimeUnit.SECONDS));
+		assertThat(request.waitForResponse(2000), is(nullValue()));
+		assertThat(request.isTimedOut(), is(true));
+	}
+
 	@Test
 	public void testSenderIdentityIsAddedToIncomingRequest() throws Exception {
 		Principal clientId = new Principal() {
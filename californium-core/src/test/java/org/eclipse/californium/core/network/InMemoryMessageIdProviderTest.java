@@ -14,6 +14,7 @@
  *    Bosch Software Innovations - initial creation
  *    Achim Kraus (Bosch Software Innovations GmbH) - add tests for different
  *                                                    MessageIdTracker modes
+ *    Bosch IO GmbH - add test for array based MessageIdTracker
  ******************************************************************************/
 package org.eclipse.californium.core.network;
 
@@ -86,6 +87,13 @@ public class InMemoryMessageIdProviderTest {
 		testLimitedTrackerGetNextMessageIdReturnsMid(provider);
 	}
 
+	@Test
+	public void testArrayBasedTrackerGetNextMessageIdReturnsMid() {
+		config.set(NetworkConfig.Keys.MID_TRACKER, "ARRAYBASED");
+		InMemoryMessageIdProvider provider = new InMemoryMessageIdProvider(config);
+		testLimitedTrackerGetNextMessageIdReturnsMid(provider);
+	}
+
 	@Test
 	public void testGroupedTrackerGetNextMessageIdReturnsMid() {
 		config.set(NetworkConfig.Keys.MID_TRACKER, "GROUPED");
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.core.network.TokenGenerator.Scope;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.rule.CoapNetworkRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link RandomTokenGenerator}.
+ */
+@Category(Small.class)
+public class RandomTokenGeneratorTest {
+
+	@ClassRule
+	public static CoapNetworkRule network = new CoapNetworkRule(CoapNetworkRule.Mode.DIRECT, CoapNetworkRule.Mode.NATIVE);
+
+	private NetworkConfig config = network.createStandardTestConfig();
+
+	@Test
+	public void testScope() {
+		assertScope(new RandomTokenGenerator(config));
+	}
+
+	@Test
+	public void testScopeWithThreadLocalRandom() {
+		config.setBoolean(NetworkConfig.Keys.TOKEN_GENERATOR_THREAD_LOCAL_RANDOM, true);
+		assertScope(new RandomTokenGenerator(config));
+	}
+
+	@Test
+	public void testScopeWithCounterPrefix() {
+		config.setBoolean(NetworkConfig.Keys.TOKEN_GENERATOR_COUNTER_PREFIX, true);
+		assertScope(new RandomTokenGenerator(config));
+	}
+
+	@Test
+	public void testCounterPrefixIsUnique() {
+		config.setBoolean(NetworkConfig.Keys.TOKEN_GENERATOR_THREAD_LOCAL_RANDOM, true);
+		config.setBoolean(NetworkConfig.Keys.TOKEN_GENERATOR_COUNTER_PREFIX, true);
+		RandomTokenGenerator generator = new RandomTokenGenerator(config);
+		Set<Integer> prefixes = new HashSet<>();
+		for (int index = 0; index < 10000; ++index) {
+			Token token = generator.createToken(Scope.SHORT_TERM_CLIENT_LOCAL);
+			byte[] bytes = token.getBytes();
+			int prefix = (bytes[0] & 0xff) | (bytes[1] & 0xff) << 8 | (bytes[2] & 0xff) << 16 | (bytes[3] & 0xff) << 24;
+			assertThat(prefixes.add(prefix), is(true));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCounterPrefixRequiresTokenSize() {
+		config.setInt(NetworkConfig.Keys.TOKEN_SIZE_LIMIT, 4);
+		config.setBoolean(NetworkConfig.Keys.TOKEN_GENERATOR_COUNTER_PREFIX, true);
+		new RandomTokenGenerator(config);
+	}
+
+	private static void assertScope(TokenGenerator generator) {
+		for (Scope scope : Scope.values()) {
+			Token token1 = generator.createToken(scope);
+			Token token2 = generator.createToken(scope);
+			assertThat(token1.length(), is(8));
+			assertThat(token1, is(not(token2)));
+			assertThat(generator.getScope(token1), is(scope));
+			assertThat(generator.getScope(token2), is(scope));
+		}
+	}
+}
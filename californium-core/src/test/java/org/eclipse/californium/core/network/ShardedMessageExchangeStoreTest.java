@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.core.network;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.TestTools;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.Exchange.Origin;
+import org.eclipse.californium.core.network.ShardedMessageExchangeStore.MidMap;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.elements.rule.TestTimeRule;
+import org.eclipse.californium.elements.util.ExecutorsUtil;
+import org.eclipse.californium.elements.util.TestThreadFactory;
+import org.eclipse.californium.rule.CoapThreadsRule;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of the {@link ShardedMessageExchangeStore} class.
+ */
+@Category(Small.class)
+public class ShardedMessageExchangeStoreTest {
+
+	private static final int PEER_PORT = 12000;
+
+	@Rule
+	public CoapThreadsRule cleanup = new CoapThreadsRule();
+
+	@Rule
+	public TestTimeRule time = new TestTimeRule();
+
+	ShardedMessageExchangeStore store;
+	NetworkConfig config;
+
+	@Before
+	public void createConfig() {
+		ScheduledExecutorService executor = ExecutorsUtil
+				.newSingleThreadScheduledExecutor(new TestThreadFactory("ExchangeStore-"));
+		cleanup.add(executor);
+		config = NetworkConfig.createStandardWithoutFile();
+		config.setLong(NetworkConfig.Keys.EXCHANGE_LIFETIME, 200); // ms
+		config.setInt(NetworkConfig.Keys.EXCHANGE_STORE_SHARDS, 4);
+		store = new ShardedMessageExchangeStore(config);
+		store.setExecutor(executor);
+		store.start();
+	}
+
+	@After
+	public void stop() {
+		store.stop();
+	}
+
+	@Test
+	public void testRegisterOutboundRequestAssignsMidAndToken() {
+		Exchange exchange = newOutboundRequest(PEER_PORT);
+
+		store.registerOutboundRequest(exchange);
+
+		KeyMID key = new KeyMID(exchange.getCurrentRequest().getMID(),
+				exchange.getCurrentRequest().getDestinationContext().getPeerAddress());
+		assertThat(store.get(key), is(exchange));
+		assertThat(store.get(exchange.getKeyToken()), is(exchange));
+		assertThat(store.isEmpty(), is(false));
+
+		assertThat(store.remove(key, exchange), is(exchange));
+		store.remove(exchange.getKeyToken(), exchange);
+		assertThat(store.get(key), is(nullValue()));
+		assertThat(store.get(exchange.getKeyToken()), is(nullValue()));
+		assertThat(store.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testRegisterOutboundRequestRejectsOtherRequestWithAlreadyUsedMid() {
+		Exchange exchange = newOutboundRequest(PEER_PORT);
+		store.registerOutboundRequest(exchange);
+
+		Exchange newExchange = newOutboundRequest(PEER_PORT);
+		newExchange.getCurrentRequest().setMID(exchange.getCurrentRequest().getMID());
+		try {
+			store.registerOutboundRequest(newExchange);
+			fail("should have thrown IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			KeyMID key = new KeyMID(exchange.getCurrentRequest().getMID(),
+					exchange.getCurrentRequest().getDestinationContext().getPeerAddress());
+			Exchange exchangeFromStore = store.get(key);
+			assertThat(exchangeFromStore, is(exchange));
+			assertThat(exchangeFromStore, is(not(newExchange)));
+		}
+	}
+
+	@Test
+	public void testSameMidOfDifferentPeers() {
+		Exchange exchange1 = newOutboundRequest(PEER_PORT);
+		Exchange exchange2 = newOutboundRequest(PEER_PORT + 1);
+		exchange1.getCurrentRequest().setMID(100);
+		exchange2.getCurrentRequest().setMID(100);
+		store.registerOutboundRequest(exchange1);
+		store.registerOutboundRequest(exchange2);
+
+		assertThat(store.get(exchange1.getKeyMID()), is(exchange1));
+		assertThat(store.get(exchange2.getKeyMID()), is(exchange2));
+	}
+
+	@Test
+	public void testDeduplicationIsSwept() {
+		InetSocketAddress peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), PEER_PORT);
+		KeyMID key = new KeyMID(1, peer);
+		Exchange exchange = newInboundRequest();
+		Exchange duplicate = newInboundRequest();
+
+		assertThat(store.findPrevious(key, exchange), is(nullValue()));
+		assertThat(store.findPrevious(key, duplicate), is(exchange));
+		assertThat(store.find(key), is(exchange));
+		assertThat(store.sweep(), is(0));
+
+		time.addTestTimeShift(300, TimeUnit.MILLISECONDS);
+
+		assertThat(store.sweep(), is(1));
+		assertThat(store.find(key), is(nullValue()));
+		assertThat(store.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testReplacedDeduplicationIsNotSweptEarly() {
+		InetSocketAddress peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), PEER_PORT);
+		KeyMID key = new KeyMID(1, peer);
+		Exchange exchange = newInboundRequest();
+		Exchange next = newInboundRequest();
+
+		assertThat(store.findPrevious(key, exchange), is(nullValue()));
+		time.addTestTimeShift(150, TimeUnit.MILLISECONDS);
+		assertThat(store.replacePrevious(key, exchange, next), is(true));
+		time.addTestTimeShift(100, TimeUnit.MILLISECONDS);
+
+		// the first entry is expired, but replaced
+		assertThat(store.sweep(), is(0));
+		assertThat(store.find(key), is(next));
+	}
+
+	@Test
+	public void testNoDeduplicator() {
+		config.setString(NetworkConfig.Keys.DEDUPLICATOR, NetworkConfig.Keys.NO_DEDUPLICATOR);
+		ShardedMessageExchangeStore store = new ShardedMessageExchangeStore(config);
+		InetSocketAddress peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), PEER_PORT);
+		KeyMID key = new KeyMID(1, peer);
+
+		assertThat(store.findPrevious(key, newInboundRequest()), is(nullValue()));
+		assertThat(store.findPrevious(key, newInboundRequest()), is(nullValue()));
+		assertThat(store.isEmpty(), is(true));
+	}
+
+	@Test
+	public void testMidMap() {
+		Random random = new Random(1234);
+		MidMap<Integer> map = new MidMap<>();
+		Map<Integer, Integer> reference = new HashMap<>();
+		for (int loop = 0; loop < 100000; ++loop) {
+			int mid = random.nextInt(2048);
+			if (random.nextBoolean()) {
+				assertThat(map.put(mid, loop), is(reference.put(mid, loop)));
+			} else {
+				assertThat(map.remove(mid), is(reference.remove(mid)));
+			}
+			assertThat(map.size(), is(reference.size()));
+		}
+		for (int mid = 0; mid < 2048; ++mid) {
+			assertThat(map.get(mid), is(reference.get(mid)));
+		}
+	}
+
+	private Exchange newOutboundRequest(int port) {
+		Request request = Request.newGet();
+		String uri = TestTools.getUri(InetAddress.getLoopbackAddress(), port, "test");
+		request.setURI(uri);
+		return new Exchange(request, Origin.LOCAL, MatcherTestUtils.TEST_EXCHANGE_EXECUTOR);
+	}
+
+	private Exchange newInboundRequest() {
+		Request request = Request.newGet();
+		return new Exchange(request, Origin.REMOTE, MatcherTestUtils.TEST_EXCHANGE_EXECUTOR);
+	}
+}
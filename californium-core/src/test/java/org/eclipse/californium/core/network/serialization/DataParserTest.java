@@ -20,6 +20,8 @@
  * Achim Kraus (Bosch Software Innovations GmbH) - add test for CoAP specific 
  *                                                 exception information
  * Achim Kraus (Bosch Software Innovations GmbH) - parse byte[] instead of RawData
+ * Bosch IO GmbH - add test for all options
+ * Bosch IO GmbH - add test for parsing the message header
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -31,6 +33,7 @@ import static org.junit.Assert.fail;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.californium.core.coap.CoAP.Code;
@@ -105,6 +108,58 @@ public class DataParserTest {
 		assertEquals(request.getOptions().asSortedList(), result.getOptions().asSortedList());
 	}
 
+	@Test public void testRequestParsingFromPartialArray() {
+		Request request = new Request(Code.POST);
+		request.setDestinationContext(ENDPOINT_CONTEXT);
+		request.setType(Type.NON);
+		request.setMID(expectedMid);
+		request.setToken(new byte[] { 11, 82, -91, 77, 3 });
+		request.setPayload("payload");
+
+		RawData rawData = serializer.serializeRequest(request);
+		byte[] bytes = Arrays.copyOf(rawData.getBytes(), rawData.getSize() + 16);
+		rawData = RawData.inbound(bytes, rawData.getSize(), rawData.getEndpointContext(), false, 0, CONNECTOR);
+
+		Request result = (Request) parser.parseMessage(rawData);
+		assertEquals(request.getMID(), result.getMID());
+		assertEquals(request.getToken(), result.getToken());
+		assertEquals(request.getPayloadString(), result.getPayloadString());
+	}
+
+	@Test public void testMessageHeaderParsing() {
+		Request request = new Request(Code.POST);
+		request.setDestinationContext(ENDPOINT_CONTEXT);
+		request.setType(Type.CON);
+		request.setMID(expectedMid);
+		request.setToken(new byte[] { 11, 82, -91, 77, 3 });
+		request.getOptions().setContentFormat(40).setUriPath("test");
+		request.setPayload("payload");
+
+		RawData rawData = serializer.serializeRequest(request);
+		rawData = receive(rawData, CONNECTOR);
+
+		Message result = parser.parseMessageHeader(rawData);
+		assertTrue(result instanceof Request);
+		assertEquals(Code.POST, ((Request) result).getCode());
+		assertEquals(request.getMID(), result.getMID());
+		assertEquals(request.getToken(), result.getToken());
+		assertEquals(ENDPOINT_CONTEXT, result.getSourceContext());
+		assertEquals(CONNECTOR, result.getLocalAddress());
+		assertTrue(result.getOptions().asSortedList().isEmpty());
+		assertEquals(0, result.getPayloadSize());
+	}
+
+	@Test(expected = CoAPMessageFormatException.class)
+	public void testParseMessageHeaderDetectsIllegalCode() {
+		byte[] malformedRequest = new byte[] { 
+				0b01000000, // ver 1, CON, token length: 0
+				0b00001000, // 0.08 is currently unassigned
+				0x00, 0x10 // message ID
+		};
+		RawData rawData = RawData.inbound(malformedRequest, ENDPOINT_CONTEXT, false, 0, CONNECTOR);
+		parser.parseMessageHeader(rawData);
+	}
+
 	@Test public void testParseMessageDetectsIllegalCodeClass() {
 		// GIVEN a message with a class code of 1, i.e. not a request
 		byte[] malformedRequest = new byte[] { 
@@ -230,6 +285,29 @@ public class DataParserTest {
 		assertEquals(response.getOptions().asSortedList(), result.getOptions().asSortedList());
 	}
 
+	@Test public void testAllOptionsParsing() {
+		Request request = new Request(Code.GET);
+		request.setDestinationContext(ENDPOINT_CONTEXT);
+		request.setType(Type.CON);
+		request.setMID(expectedMid);
+		request.setToken(new byte[] { 1, 2, 3, 4 });
+		request.getOptions().addOption(new Option(65000, "last")).addOption(new Option(2, new byte[] { 2 }))
+				.addIfMatch(new byte[] { 1 }).setUriHost("host").addETag(new byte[] { 4 }).setIfNoneMatch(true)
+				.setObserve(0x10203).setUriPort(5683).addUriPath("path").addUriPath("pfad\u00e4").setOscore(new byte[] { 9 })
+				.setContentFormat(60).setMaxAge(0xffffffffL).addUriQuery("a=1").setAccept(0).setBlock2(2, false, 300)
+				.setBlock1(6, true, 0).setSize2(0x10000).setProxyScheme("coap").setSize1(1).addOption(new Option(258, 2))
+				.addOption(new Option(2, new byte[] { 22 }));
+
+		RawData rawData = serializer.serializeRequest(request);
+		rawData = receive(rawData, CONNECTOR);
+
+		Request result = (Request) parser.parseMessage(rawData);
+		assertEquals(request.getOptions().asSortedList(), result.getOptions().asSortedList());
+		assertEquals(request.getOptions().getUriPathString(), result.getOptions().getUriPathString());
+		assertEquals(0xffffffffL, result.getOptions().getMaxAge().longValue());
+		assertTrue(result.getOptions().hasIfNoneMatch());
+	}
+
 	@Test public void testUTF8Encoding() {
 		Response response = new Response(ResponseCode.CONTENT);
 		response.setDestinationContext(ENDPOINT_CONTEXT);
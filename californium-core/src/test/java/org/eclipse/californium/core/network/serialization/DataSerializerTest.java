@@ -17,6 +17,8 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - add null callback
  *                                                    for response and empty message
  *                                                    issue #305
+ *    Bosch IO GmbH - add test for precomputed message size
+ *    Bosch IO GmbH - add test for notification template
  ******************************************************************************/
 package org.eclipse.californium.core.network.serialization;
 
@@ -29,14 +31,18 @@ import static org.junit.Assert.assertNull;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
 
 import org.eclipse.californium.core.coap.CoAP;
 import org.eclipse.californium.core.coap.CoAP.ResponseCode;
 import org.eclipse.californium.core.coap.CoAP.Type;
 import org.eclipse.californium.core.coap.EmptyMessage;
+import org.eclipse.californium.core.coap.Option;
 import org.eclipse.californium.core.coap.Request;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.core.coap.BlockOption;
+import org.eclipse.californium.core.observe.NotificationTemplate;
 import org.eclipse.californium.elements.AddressEndpointContext;
 import org.eclipse.californium.elements.DtlsEndpointContext;
 import org.eclipse.californium.elements.EndpointContext;
@@ -99,6 +105,109 @@ public class DataSerializerTest {
 		assertNull(req.getBytes());
 	}
 
+	/**
+	 * Verifies that the precomputed size matches the size of the serialized
+	 * message.
+	 */
+	@Test
+	public void testGetMessageSizeMatchesSerializedSize() {
+		char[] path = new char[200];
+		Arrays.fill(path, 'p');
+		char[] uri = new char[300];
+		Arrays.fill(uri, 'u');
+		for (int payloadSize : new int[] { 0, 1, 12, 13, 300, 70000 }) {
+			Request req = Request.newPost();
+			req.setToken(new byte[] { 0x01, 0x02, 0x03 });
+			req.setMID(1);
+			req.getOptions().setUriHost("localhost").setUriPath("test/\u00fcber/" + new String(path))
+					.setUriQuery("a=1&b=2").setContentFormat(0).setAccept(50).setObserve(0x12345)
+					.setSize1(payloadSize).setIfNoneMatch(true).setProxyUri("coap://" + new String(uri));
+			req.getOptions().addOption(new Option(0xfff1, new byte[20]));
+			byte[] payload = new byte[payloadSize];
+			Arrays.fill(payload, (byte) 'x');
+			req.setPayload(payload);
+
+			byte[] bytes = serializer.getByteArray(req);
+			assertThat(serializer.getMessageSize(req), is(bytes.length));
+		}
+	}
+
+	/**
+	 * Verifies that notifications created from a template are serialized as
+	 * the template.
+	 */
+	@Test
+	public void testSerializeNotificationFromTemplate() {
+		Response response = new Response(ResponseCode.CONTENT);
+		response.getOptions().setContentFormat(0).setMaxAge(30).setObserve(17);
+		response.setPayload("notification");
+		NotificationTemplate template = new NotificationTemplate(response);
+
+		Response notification1 = template.createNotification();
+		notification1.setType(Type.NON);
+		notification1.setToken(new byte[] { 0x01, 0x02 });
+		notification1.setMID(100);
+		Response notification2 = template.createNotification();
+		notification2.setType(Type.CON);
+		notification2.setToken(new byte[] { 0x03, 0x04, 0x05, 0x06 });
+		notification2.setMID(101);
+		assertThat(template.matches(notification1), is(true));
+		assertThat(template.matches(notification2), is(true));
+
+		byte[] bytes1 = serializer.getByteArray(notification1);
+		byte[] bytes2 = serializer.getByteArray(notification2);
+		notification1.setNotificationTemplate(null);
+		notification2.setNotificationTemplate(null);
+		assertThat(bytes1, is(serializer.getByteArray(notification1)));
+		assertThat(bytes2, is(serializer.getByteArray(notification2)));
+
+		// changed options are not longer matching the template
+		notification1.getOptions().setObserve(18);
+		notification2.getOptions().setBlock2(new BlockOption(BlockOption.size2Szx(16), true, 0));
+		assertThat(template.matches(notification1), is(false));
+		assertThat(template.matches(notification2), is(false));
+	}
+
+	/**
+	 * Verifies that notifications with changed options are not longer
+	 * serialized with the template.
+	 */
+	@Test
+	public void testNotificationWithChangedOptionsDoesNotMatchTemplate() {
+		Response response = new Response(ResponseCode.CONTENT);
+		response.getOptions().setContentFormat(0).setMaxAge(30).setObserve(17).addETag(new byte[] { 1, 2 });
+		response.setPayload("notification");
+		NotificationTemplate template = new NotificationTemplate(response);
+
+		Response notification = template.createNotification();
+		notification.getOptions().clearETags().addETag(new byte[] { 3, 4 });
+		assertThat(template.matches(notification), is(false));
+		// the shared options of the template are not changed
+		assertThat(template.matches(template.createNotification()), is(true));
+
+		notification = template.createNotification();
+		notification.getOptions().setMaxAge(60);
+		assertThat(template.matches(notification), is(false));
+
+		notification = template.createNotification();
+		notification.getOptions().setContentFormat(50);
+		assertThat(template.matches(notification), is(false));
+
+		notification = template.createNotification();
+		notification.getOptions().addLocationPath("moved");
+		assertThat(template.matches(notification), is(false));
+
+		notification = template.createNotification();
+		notification.setType(Type.NON);
+		notification.setToken(new byte[] { 0x01 });
+		notification.setMID(102);
+		assertThat(template.matches(notification), is(true));
+		notification.getOptions().addLocationPath("moved");
+		byte[] bytes = serializer.getByteArray(notification);
+		notification.setNotificationTemplate(null);
+		assertThat(bytes, is(serializer.getByteArray(notification)));
+	}
+
 	/**
 	 * Verifies that the serializeRequest() method sets the Message's <em>bytes</em> property.
 	 */
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.core.observe;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.coap.CoAP.Code;
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.network.CoapEndpoint;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.network.Exchange.Origin;
+import org.eclipse.californium.core.observe.ObserveNotificationDispatcher.RelationNotifier;
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.elements.util.TestThreadFactory;
+import org.eclipse.californium.rule.CoapThreadsRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link ObserveNotificationDispatcher}.
+ */
+@Category(Small.class)
+public class ObserveNotificationDispatcherTest {
+
+	@Rule
+	public CoapThreadsRule cleanup = new CoapThreadsRule();
+
+	private TestExecutor executor;
+	private CoapEndpoint endpoint;
+	private CoapResource resource;
+
+	@Before
+	public void setUp() {
+		executor = new TestExecutor();
+		cleanup.add(executor);
+		endpoint = new CoapEndpoint.Builder().build();
+		cleanup.add(endpoint);
+		resource = new CoapResource("test");
+	}
+
+	@Test
+	public void testPacedNotificationsDontBlockExecutor() throws Exception {
+		// 20 notifications/s => the paced notifications take about 450ms
+		ObserveNotificationDispatcher dispatcher = new ObserveNotificationDispatcher(executor, 1, 20, 1);
+		CountingNotifier notifier = new CountingNotifier(10);
+		dispatcher.dispatch(newRelations(10), notifier);
+
+		// the single thread of the executor is still available
+		final CountDownLatch other = new CountDownLatch(1);
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				other.countDown();
+			}
+		});
+		assertThat(other.await(200, TimeUnit.MILLISECONDS), is(true));
+		assertThat(notifier.await(2000), is(true));
+		// wait for the dispatcher to complete its statistic
+		executor.shutdown();
+		assertThat(executor.awaitTermination(1000, TimeUnit.MILLISECONDS), is(true));
+		assertThat(dispatcher.getNotifications(), is(10L));
+		assertThat(dispatcher.getFanOutLatency().getSummary().getCount(), is(1));
+	}
+
+	@Test
+	public void testRejectedPartitionsCompleteRound() throws Exception {
+		ObserveNotificationDispatcher dispatcher = new ObserveNotificationDispatcher(executor, 3, 0, 0);
+		// accept only the first partition
+		executor.accept.set(1);
+		CountingNotifier notifier = new CountingNotifier(3);
+		dispatcher.dispatch(newRelations(7), notifier);
+
+		assertThat(notifier.await(1000), is(true));
+		executor.shutdown();
+		assertThat(executor.awaitTermination(1000, TimeUnit.MILLISECONDS), is(true));
+		assertThat(notifier.counter.get(), is(3));
+		// the skipped relations of the rejected partitions complete the round
+		assertThat(dispatcher.getFanOutLatency().getSummary().getCount(), is(1));
+	}
+
+	@Test
+	public void testRejectedPacedPartitionCompletesRound() throws Exception {
+		ObserveNotificationDispatcher dispatcher = new ObserveNotificationDispatcher(executor, 1, 10, 1);
+		// accept only the first execution, reject the scheduled one
+		executor.accept.set(1);
+		CountingNotifier notifier = new CountingNotifier(1);
+		dispatcher.dispatch(newRelations(5), notifier);
+
+		assertThat(notifier.await(1000), is(true));
+		executor.shutdown();
+		assertThat(executor.awaitTermination(1000, TimeUnit.MILLISECONDS), is(true));
+		assertThat(notifier.counter.get(), is(1));
+		assertThat(dispatcher.getFanOutLatency().getSummary().getCount(), is(1));
+	}
+
+	private List<ObserveRelation> newRelations(int count) throws Exception {
+		List<ObserveRelation> relations = new ArrayList<>(count);
+		for (int index = 0; index < count; ++index) {
+			InetSocketAddress peer = new InetSocketAddress(InetAddress.getLoopbackAddress(), 10000 + index);
+			Request request = new Request(Code.GET);
+			request.setToken(new byte[] { (byte) index });
+			Exchange exchange = new Exchange(request, Origin.REMOTE, executor);
+			exchange.setEndpoint(endpoint);
+			relations.add(new ObserveRelation(new ObservingEndpoint(peer), resource, exchange));
+		}
+		return relations;
+	}
+
+	private static class CountingNotifier implements RelationNotifier {
+
+		private final AtomicInteger counter = new AtomicInteger();
+		private final CountDownLatch latch;
+
+		private CountingNotifier(int expected) {
+			latch = new CountDownLatch(expected);
+		}
+
+		@Override
+		public void notifyRelation(ObserveRelation relation) {
+			counter.incrementAndGet();
+			latch.countDown();
+		}
+
+		private boolean await(long timeoutMillis) throws InterruptedException {
+			return latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Single threaded executor, which rejects tasks, if {@link #accept} is
+	 * exhausted. A negative value accepts all tasks.
+	 */
+	private static class TestExecutor extends ScheduledThreadPoolExecutor {
+
+		private final AtomicInteger accept = new AtomicInteger(-1);
+
+		private TestExecutor() {
+			super(1, new TestThreadFactory("Dispatcher-"));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * 
+		 * Also used by {@link #execute(Runnable)}.
+		 */
+		@Override
+		public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+			if (accept.get() >= 0 && accept.getAndDecrement() <= 0) {
+				throw new RejectedExecutionException("test rejects task!");
+			}
+			return super.schedule(command, delay, unit);
+		}
+	}
+}
@@ -25,6 +25,8 @@
  *                                                    use expected= annotation for
  *                                                    expected exceptions
  *    Achim Kraus (Bosch Software Innovations GmbH) - use MessageInterceptorAdapter
+ *    Bosch IO GmbH - add test for notification template
+ *    Bosch IO GmbH - add test for notification dispatcher
  ******************************************************************************/
 package org.eclipse.californium.core.test;
 
@@ -64,12 +66,15 @@ import org.eclipse.californium.core.observe.Observation;
 import org.eclipse.californium.core.observe.ObservationStore;
 import org.eclipse.californium.core.observe.ObservationStoreException;
 import org.eclipse.californium.core.observe.ObservationUtil;
+import org.eclipse.californium.core.observe.ObserveNotificationDispatcher;
 import org.eclipse.californium.core.server.resources.CoapExchange;
 import org.eclipse.californium.elements.EndpointContext;
 import org.eclipse.californium.elements.category.Medium;
 import org.eclipse.californium.elements.rule.TestNameLoggerRule;
 import org.eclipse.californium.elements.util.ExecutorsUtil;
 import org.eclipse.californium.elements.util.NamedThreadFactory;
+import org.eclipse.californium.elements.util.TestCondition;
+import org.eclipse.californium.elements.util.TestConditionTools;
 import org.eclipse.californium.rule.CoapNetworkRule;
 import org.eclipse.californium.rule.CoapThreadsRule;
 import org.junit.After;
@@ -256,6 +261,125 @@ public class ObserveTest {
 		client.shutdown();
 	}
 
+	@Test
+	public void testObserveNotificationTemplate() throws Exception {
+		resourceX.useNotificationTemplate();
+
+		CoapClient client1 = new CoapClient(uriX);
+		CoapClient client2 = new CoapClient(uriX);
+		CountingCoapHandler handler1 = new CountingCoapHandler();
+		CountingCoapHandler handler2 = new CountingCoapHandler();
+		CoapObserveRelation rel1 = client1.observeAndWait(handler1);
+		CoapObserveRelation rel2 = client2.observeAndWait(handler2);
+		assertTrue(handler1.waitOnLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handler2.waitOnLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertEquals(2, resourceX.getObserverCount());
+
+		resourceX.changed("template");
+
+		assertTrue(handler1.waitOnLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handler2.waitOnLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+		String expected = "\"resX says template for the 2 time\"";
+		assertEquals(expected, rel1.getCurrent().getResponseText());
+		assertEquals(expected, rel2.getCurrent().getResponseText());
+		assertEquals(rel1.getCurrent().advanced().getOptions().getObserve(),
+				rel2.getCurrent().advanced().getOptions().getObserve());
+		rel1.proactiveCancel();
+		rel2.proactiveCancel();
+		client1.shutdown();
+		client2.shutdown();
+	}
+
+	@Test
+	public void testObserveNotificationDispatcher() throws Exception {
+		ScheduledExecutorService executor = ExecutorsUtil.newScheduledThreadPool(2,
+				new NamedThreadFactory("Dispatcher#"));
+		cleanup.add(executor);
+		ObserveNotificationDispatcher dispatcher = new ObserveNotificationDispatcher(executor, 2, 100, 1);
+		resourceX.setNotificationDispatcher(dispatcher);
+
+		CoapClient client1 = new CoapClient(uriX);
+		CoapClient client2 = new CoapClient(uriX);
+		CoapClient client3 = new CoapClient(uriX);
+		CountingCoapHandler handler1 = new CountingCoapHandler();
+		CountingCoapHandler handler2 = new CountingCoapHandler();
+		CountingCoapHandler handler3 = new CountingCoapHandler();
+		CoapObserveRelation rel1 = client1.observeAndWait(handler1);
+		CoapObserveRelation rel2 = client2.observeAndWait(handler2);
+		CoapObserveRelation rel3 = client3.observeAndWait(handler3);
+		assertTrue(handler1.waitOnLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handler2.waitOnLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handler3.waitOnLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertEquals(3, resourceX.getObserverCount());
+
+		resourceX.changed("dispatcher");
+
+		assertTrue(handler1.waitOnLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handler2.waitOnLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handler3.waitOnLoadCalls(2, 1000, TimeUnit.MILLISECONDS));
+		String expected = "\"resX says dispatcher for the 2 time\"";
+		assertEquals(expected, rel1.getCurrent().getResponseText());
+		assertEquals(expected, rel2.getCurrent().getResponseText());
+		assertEquals(expected, rel3.getCurrent().getResponseText());
+		// wait for the dispatcher to complete its statistic
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1000, TimeUnit.MILLISECONDS));
+		assertEquals(1, dispatcher.getDispatches());
+		assertEquals(3, dispatcher.getNotifications());
+		assertEquals(1, dispatcher.getFanOutLatency().getSummary().getCount());
+
+		rel1.proactiveCancel();
+		rel2.proactiveCancel();
+		rel3.proactiveCancel();
+		client1.shutdown();
+		client2.shutdown();
+		client3.shutdown();
+	}
+
+	@Test
+	public void testObserveNotificationTemplateWithOverlappingDispatches() throws Exception {
+		ScheduledExecutorService executor = ExecutorsUtil.newScheduledThreadPool(2,
+				new NamedThreadFactory("Dispatcher#"));
+		cleanup.add(executor);
+		// paced, the second round starts before the first is done
+		ObserveNotificationDispatcher dispatcher = new ObserveNotificationDispatcher(executor, 2, 20, 1);
+		resourceX.setNotificationDispatcher(dispatcher);
+		resourceX.useNotificationTemplate();
+
+		CoapClient client1 = new CoapClient(uriX);
+		CoapClient client2 = new CoapClient(uriX);
+		CountingCoapHandler handler1 = new CountingCoapHandler();
+		CountingCoapHandler handler2 = new CountingCoapHandler();
+		final CoapObserveRelation rel1 = client1.observeAndWait(handler1);
+		final CoapObserveRelation rel2 = client2.observeAndWait(handler2);
+		assertTrue(handler1.waitOnLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+		assertTrue(handler2.waitOnLoadCalls(1, 1000, TimeUnit.MILLISECONDS));
+
+		resourceX.changed("first");
+		resourceX.changed("second");
+
+		final String expected = "\"resX says second for the 3 time\"";
+		TestConditionTools.waitForCondition(2000, 50, TimeUnit.MILLISECONDS, new TestCondition() {
+
+			@Override
+			public boolean isFulFilled() throws IllegalStateException {
+				return expected.equals(rel1.getCurrent().getResponseText())
+						&& expected.equals(rel2.getCurrent().getResponseText());
+			}
+		});
+		// the latest content is not dropped as duplicate of an outdated
+		// notification with the same observe number
+		assertEquals(expected, rel1.getCurrent().getResponseText());
+		assertEquals(expected, rel2.getCurrent().getResponseText());
+		assertEquals(rel1.getCurrent().advanced().getOptions().getObserve(),
+				rel2.getCurrent().advanced().getOptions().getObserve());
+
+		rel1.proactiveCancel();
+		rel2.proactiveCancel();
+		client1.shutdown();
+		client2.shutdown();
+	}
+
 	@Test
 	public void testObserveClientReregister() throws Exception {
 		resourceX.setObserveType(Type.NON);
@@ -548,6 +672,7 @@ public class ObserveTest {
 		private AtomicBoolean reject = new AtomicBoolean();
 		private AtomicInteger counter = new AtomicInteger();
 		private AtomicInteger delay = new AtomicInteger();
+		private volatile boolean template;
 
 		public MyResource(String name) {
 			super(name);
@@ -587,6 +712,21 @@ public class ObserveTest {
 			changed();
 		}
 
+		@Override
+		protected Response createNotification() {
+			if (template) {
+				Response response = new Response(ResponseCode.CONTENT);
+				response.setPayload(currentResponse);
+				response.setType(type);
+				return response;
+			}
+			return null;
+		}
+
+		public void useNotificationTemplate() {
+			template = true;
+		}
+
 		public void rejectNextGet() {
 			reject.set(true);
 		}
@@ -435,4 +435,56 @@ public class OptionTest {
 				"{\"ETag\":[0x010203,0xBEEF], \"Location-Path\":\"abc\", \"Uri-Path\":[\"this\",\"is\",\"a\",\"test\"], \"Max-Age\":77}",
 				options.toString());
 	}
+
+	@Test
+	public void testEquals() {
+		OptionSet options = new OptionSet();
+		options.addETag(new byte[] { 1, 2, 3 });
+		options.addLocationPath("abc");
+		options.setMaxAge(77);
+		options.addOption(new Option(0xff1c, "other"));
+
+		OptionSet copy = new OptionSet(options);
+		Assert.assertEquals(options, copy);
+		Assert.assertEquals(options.hashCode(), copy.hashCode());
+		Assert.assertEquals(options.asSortedList(), copy.asSortedList());
+
+		copy.clearETags().addETag(new byte[] { 1, 2, 3 });
+		Assert.assertEquals(options, copy);
+
+		copy.clearETags().addETag(new byte[] { 1, 2, 4 });
+		Assert.assertFalse(options.equals(copy));
+
+		// touched, but empty lists are equal to not touched ones
+		copy = new OptionSet(options);
+		copy.getUriQuery();
+		Assert.assertEquals(options, copy);
+		Assert.assertEquals(options.hashCode(), copy.hashCode());
+
+		copy.setMaxAge(78);
+		Assert.assertFalse(options.equals(copy));
+	}
+
+	@Test
+	public void testSharedListsAreCopiedOnModification() {
+		OptionSet options = new OptionSet();
+		options.addETag(new byte[] { 1, 2, 3 });
+		options.addLocationPath("abc");
+		options.shareLists();
+
+		OptionSet copy1 = new OptionSet(options);
+		OptionSet copy2 = new OptionSet(options);
+		copy1.addETag(new byte[] { 4, 5 });
+		copy1.addLocationPath("def");
+		Assert.assertEquals(1, options.getETagCount());
+		Assert.assertEquals(1, copy2.getETagCount());
+		Assert.assertEquals(2, copy1.getETagCount());
+		Assert.assertEquals("abc", copy2.getLocationPathString());
+		Assert.assertEquals("abc/def", copy1.getLocationPathString());
+
+		options.clear();
+		Assert.assertEquals(1, copy2.getETagCount());
+		Assert.assertEquals("abc", copy2.getLocationPathString());
+		Assert.assertFalse(options.equals(copy2));
+	}
 }
@@ -18,6 +18,7 @@
  *    Kai Hudalla - logging
  *    Achim Kraus (Bosch Software Innovations GmbH) - use CoapNetworkRule for
  *                                                    setup of test-network
+ *    Bosch IO GmbH - add test for lazy message parsing
  ******************************************************************************/
 package org.eclipse.californium.core.test.lockstep;
 
@@ -79,6 +80,7 @@ public class ServerDeduplicationTest {
 	private static AtomicInteger handleCounter;
 	private static ServerBlockwiseInterceptor serverInterceptor = new ServerBlockwiseInterceptor();
 	private static InetSocketAddress serverAddress;
+	private static InetSocketAddress lazyServerAddress;
 
 	private LockstepEndpoint client;
 
@@ -97,10 +99,19 @@ public class ServerDeduplicationTest {
 		Endpoint ep = builder.build();
 		ep.addInterceptor(new MessageTracer());
 		ep.addInterceptor(serverInterceptor);
+		NetworkConfig lazyConfig = new NetworkConfig(config);
+		lazyConfig.setBoolean(Keys.LAZY_MESSAGE_PARSING, true);
+		builder = new CoapEndpoint.Builder();
+		builder.setInetSocketAddress(TestTools.LOCALHOST_EPHEMERAL);
+		builder.setNetworkConfig(lazyConfig);
+		Endpoint lazyEp = builder.build();
+		lazyEp.addInterceptor(new MessageTracer());
+		lazyEp.addInterceptor(serverInterceptor);
 		handleCounter = new AtomicInteger();
 		CoapServer server = new CoapServer(config);
 		cleanup.add(server);
 		server.addEndpoint(ep);
+		server.addEndpoint(lazyEp);
 		server.add(new CoapResource(resourceName) {
 
 			@Override
@@ -136,6 +147,7 @@ public class ServerDeduplicationTest {
 		});
 		server.start();
 		serverAddress = ep.getAddress();
+		lazyServerAddress = lazyEp.getAddress();
 	}
 
 	@Before
@@ -184,6 +196,35 @@ public class ServerDeduplicationTest {
 		assertThat(client.receiveNextMessage(500, TimeUnit.MILLISECONDS), is(nullValue()));
 	}
 
+	/**
+	 * Verifies that the server with lazy message parsing recognizes a duplicate
+	 * request (same MID) and sends back the same "piggybacked" ACK response.
+	 * 
+	 * @throws Exception if the test fails.
+	 */
+	@Test
+	public void testServerLazyParsingRespondsToDuplicateRequest() throws Exception {
+		client.destroy();
+		client = createLockstepEndpoint(lazyServerAddress);
+
+		Token token = Token.fromProvider(new byte[] { 0x00, 0x02 });
+		int mid = 3456;
+
+		client.sendRequest(CON, GET, token, mid).path(resourceName).go();
+		client.expectResponse(ACK, CONTENT, token, mid).payload(payload + "1").go();
+
+		// duplicate is processed without parsing the options
+		client.sendRequest(CON, GET, token, mid).path(resourceName).go();
+		client.expectResponse(ACK, CONTENT, token, mid).payload(payload + "1").go();
+
+		// new client request is parsed completely
+		client.sendRequest(CON, GET, token, ++mid).path(resourceName).go();
+		client.expectResponse(ACK, CONTENT, token, mid).payload(payload + "2").go();
+
+		// no more messages
+		assertThat(client.receiveNextMessage(500, TimeUnit.MILLISECONDS), is(nullValue()));
+	}
+
 	/**
 	 * Verifies that the server recognizes a duplicate request (same MID) and
 	 * sends back the same separate CON response.
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.util.virtualthreads;
+
+import java.util.concurrent.ExecutorService;
+
+import org.eclipse.californium.core.CoapServer;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.server.MessageDeliverer;
+
+/**
+ * Server, which processes the resource handlers on virtual threads.
+ *
+ * The protocol stages are processed on platform threads, see
+ * {@link CoapServer#start()}. The message deliverer is wrapped into a
+ * {@link VirtualThreadMessageDeliverer} on {@link #start()} or when it's set.
+ * The virtual threads executor is shutdown on {@link #destroy()}.
+ *
+ * @see VirtualThreadExecutors
+ * @since 3.0
+ */
+public class VirtualThreadCoapServer extends CoapServer {
+
+	/**
+	 * Executor for resource handlers.
+	 */
+	private final ExecutorService handlerExecutor;
+
+	/**
+	 * Constructs a server with the specified configuration that listens to
+	 * the specified ports after method {@link #start()} is called.
+	 *
+	 * @param config the configuration, if {@code null} the configuration
+	 *            returned by {@link NetworkConfig#getStandard()} is used.
+	 * @param ports the ports to bind to.
+	 * @see CoapServer#CoapServer(NetworkConfig, int...)
+	 */
+	public VirtualThreadCoapServer(NetworkConfig config, int... ports) {
+		super(config, ports);
+		handlerExecutor = VirtualThreadExecutors.newHandlerExecutor("CoapServer(handler)#");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Wraps the current deliverer into a
+	 * {@link VirtualThreadMessageDeliverer}, if not already done.
+	 */
+	@Override
+	public synchronized void start() {
+		setMessageDeliverer(getMessageDeliverer());
+		super.start();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Wraps the deliverer into a {@link VirtualThreadMessageDeliverer}.
+	 */
+	@Override
+	public void setMessageDeliverer(MessageDeliverer deliverer) {
+		if (!(deliverer instanceof VirtualThreadMessageDeliverer)) {
+			deliverer = new VirtualThreadMessageDeliverer(deliverer, handlerExecutor);
+		}
+		super.setMessageDeliverer(deliverer);
+	}
+
+	@Override
+	public synchronized void destroy() {
+		try {
+			super.destroy();
+		} finally {
+			handlerExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Get executor for resource handlers.
+	 *
+	 * @return executor using virtual threads
+	 */
+	public ExecutorService getHandlerExecutor() {
+		return handlerExecutor;
+	}
+}
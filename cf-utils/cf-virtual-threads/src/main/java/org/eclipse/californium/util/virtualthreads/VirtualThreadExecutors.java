@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.util.virtualthreads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.eclipse.californium.core.CoapServer;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.elements.util.ExecutorsUtil;
+import org.eclipse.californium.elements.util.NamedThreadFactory;
+
+/**
+ * Executors for processing resource handlers on virtual threads.
+ *
+ * The protocol stages are executed on a pool of platform threads, passed to
+ * {@link CoapServer#setExecutors(ScheduledExecutorService, ScheduledExecutorService, boolean)}
+ * or
+ * {@link org.eclipse.californium.core.network.CoapEndpoint#setExecutors(ScheduledExecutorService, ScheduledExecutorService)}.
+ * That requires a {@link ScheduledExecutorService} for the timers of the
+ * stack. The resource handlers are executed on virtual threads by a
+ * {@link VirtualThreadMessageDeliverer}. Blocking handlers, e.g. with
+ * database calls, therefore don't require a large thread pool.
+ *
+ * <pre>
+ * CoapServer server = new CoapServer(config, port);
+ * ExecutorService handlerExecutor = VirtualThreadExecutors.newHandlerExecutor("CoapServer(handler)#");
+ * VirtualThreadExecutors.setup(server, handlerExecutor);
+ * server.start();
+ * ...
+ * server.destroy();
+ * handlerExecutor.shutdown();
+ * </pre>
+ *
+ * @see VirtualThreadCoapServer
+ * @since 3.0
+ */
+public final class VirtualThreadExecutors {
+
+	private VirtualThreadExecutors() {
+		// utility class
+	}
+
+	/**
+	 * Create executor for resource handlers.
+	 *
+	 * Starts a new virtual thread for each task.
+	 *
+	 * @param name name prefix of the virtual threads
+	 * @return executor using a virtual thread per task
+	 */
+	public static ExecutorService newHandlerExecutor(String name) {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name, 0).factory());
+	}
+
+	/**
+	 * Create executor for the protocol stages.
+	 *
+	 * Uses {@link NetworkConfig.Keys#PROTOCOL_STAGE_THREAD_COUNT} platform
+	 * threads.
+	 *
+	 * @param config network configuration
+	 * @param name name prefix of the platform threads
+	 * @return scheduled executor using platform threads
+	 */
+	public static ScheduledExecutorService newProtocolStageExecutor(NetworkConfig config, String name) {
+		return ExecutorsUtil.newScheduledThreadPool(config.getInt(NetworkConfig.Keys.PROTOCOL_STAGE_THREAD_COUNT),
+				new NamedThreadFactory(name));
+	}
+
+	/**
+	 * Setup server to process resource handlers on the handler executor.
+	 *
+	 * Wraps the current message deliverer of the server into a
+	 * {@link VirtualThreadMessageDeliverer}. Must be called after a custom
+	 * message deliverer is set. The protocol stages are kept on the executors
+	 * of the server, which are platform threads, if not set otherwise.
+	 *
+	 * @param server server to setup
+	 * @param handlerExecutor executor for resource handlers. Not shutdown by
+	 *            the server.
+	 * @see #newHandlerExecutor(String)
+	 */
+	public static void setup(CoapServer server, ExecutorService handlerExecutor) {
+		server.setMessageDeliverer(new VirtualThreadMessageDeliverer(server.getMessageDeliverer(), handlerExecutor));
+	}
+}
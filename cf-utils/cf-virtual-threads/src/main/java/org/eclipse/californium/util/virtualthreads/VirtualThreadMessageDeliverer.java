@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.util.virtualthreads;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.coap.Response;
+import org.eclipse.californium.core.network.Exchange;
+import org.eclipse.californium.core.server.MessageDeliverer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Message deliverer, which delivers requests using a handler executor.
+ *
+ * Intended to be used with an executor of virtual threads, see
+ * {@link VirtualThreadExecutors#newHandlerExecutor(String)}. The wrapped
+ * deliverer, e.g. the
+ * {@link org.eclipse.californium.core.server.ServerMessageDeliverer}, then
+ * processes the requests on that executor and the resource handlers may block
+ * without stalling the protocol stage threads. Resources, which define their
+ * own executor, are still processed on that executor.
+ *
+ * Responses are delivered on the calling protocol stage thread in order to
+ * keep their order.
+ *
+ * @since 3.0
+ */
+public class VirtualThreadMessageDeliverer implements MessageDeliverer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadMessageDeliverer.class);
+
+	/**
+	 * Wrapped message deliverer.
+	 */
+	private final MessageDeliverer deliverer;
+	/**
+	 * Executor for requests.
+	 */
+	private final Executor handlerExecutor;
+
+	/**
+	 * Create message deliverer.
+	 *
+	 * @param deliverer wrapped message deliverer
+	 * @param handlerExecutor executor to deliver requests
+	 * @throws NullPointerException if any parameter is {@code null}
+	 */
+	public VirtualThreadMessageDeliverer(MessageDeliverer deliverer, Executor handlerExecutor) {
+		if (deliverer == null) {
+			throw new NullPointerException("deliverer must not be null!");
+		}
+		if (handlerExecutor == null) {
+			throw new NullPointerException("handler executor must not be null!");
+		}
+		this.deliverer = deliverer;
+		this.handlerExecutor = handlerExecutor;
+	}
+
+	/**
+	 * Get wrapped message deliverer.
+	 *
+	 * @return wrapped message deliverer
+	 */
+	public MessageDeliverer getDeliverer() {
+		return deliverer;
+	}
+
+	@Override
+	public void deliverRequest(final Exchange exchange) {
+		try {
+			handlerExecutor.execute(() -> deliverer.deliverRequest(exchange));
+		} catch (RejectedExecutionException ex) {
+			LOGGER.debug("request rejected, handler executor is shutdown!");
+			exchange.sendResponse(new Response(ResponseCode.SERVICE_UNAVAILABLE));
+		}
+	}
+
+	@Override
+	public void deliverResponse(Exchange exchange, Response response) {
+		deliverer.deliverResponse(exchange, response);
+	}
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.util.virtualthreads;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.californium.TestTools;
+import org.eclipse.californium.core.CoapClient;
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.CoapResponse;
+import org.eclipse.californium.core.coap.CoAP.ResponseCode;
+import org.eclipse.californium.core.network.CoapEndpoint;
+import org.eclipse.californium.core.network.config.NetworkConfig;
+import org.eclipse.californium.core.server.resources.CoapExchange;
+import org.eclipse.californium.elements.category.Medium;
+import org.eclipse.californium.rule.CoapNetworkRule;
+import org.eclipse.californium.rule.CoapThreadsRule;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link VirtualThreadCoapServer}.
+ */
+@Category(Medium.class)
+public class VirtualThreadCoapServerTest {
+
+	@ClassRule
+	public static CoapNetworkRule network = new CoapNetworkRule(CoapNetworkRule.Mode.DIRECT,
+			CoapNetworkRule.Mode.NATIVE);
+
+	@Rule
+	public CoapThreadsRule cleanup = new CoapThreadsRule();
+
+	@Test
+	public void testRequestIsHandledOnVirtualThread() throws Exception {
+		final AtomicReference<Thread> handlerThread = new AtomicReference<>();
+		NetworkConfig config = network.getStandardTestConfig();
+		CoapEndpoint endpoint = new CoapEndpoint.Builder().setInetSocketAddress(TestTools.LOCALHOST_EPHEMERAL)
+				.setNetworkConfig(config).build();
+		VirtualThreadCoapServer server = new VirtualThreadCoapServer(config);
+		cleanup.add(server);
+		server.add(new CoapResource("test") {
+
+			@Override
+			public void handleGET(CoapExchange exchange) {
+				handlerThread.set(Thread.currentThread());
+				exchange.respond("virtual");
+			}
+		});
+		server.addEndpoint(endpoint);
+		server.start();
+		assertThat(server.getMessageDeliverer(), is(instanceOf(VirtualThreadMessageDeliverer.class)));
+
+		CoapClient client = new CoapClient(TestTools.getUri(endpoint, "test"));
+		cleanup.add(client);
+		CoapResponse response = client.get();
+
+		assertThat(response, is(notNullValue()));
+		assertThat(response.getCode(), is(ResponseCode.CONTENT));
+		assertThat(response.getResponseText(), is("virtual"));
+		assertThat(handlerThread.get(), is(notNullValue()));
+		assertThat(handlerThread.get().isVirtual(), is(true));
+	}
+}
@@ -0,0 +1,716 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.elements;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.eclipse.californium.elements.exception.EndpointMismatchException;
+import org.eclipse.californium.elements.util.BufferPool;
+import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.NotForAndroid;
+import org.eclipse.californium.elements.util.PooledBuffer;
+import org.eclipse.californium.elements.util.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Connector} employing UDP as the transport protocol based on a
+ * non-blocking {@link DatagramChannel}.
+ *
+ * Alternative to the {@link UDPConnector}, intended for nodes with a high
+ * message throughput. Each receiver thread uses its own {@link Selector} and
+ * drains up to {@link #getBatchSize()} datagrams per wakeup into a direct
+ * {@link ByteBuffer}. Each sender thread takes up to
+ * {@link #getBatchSize()} pending messages from the outbound queue at once and
+ * writes them from a direct {@link ByteBuffer}, avoiding the per-datagram queue
+ * handoff and the internal heap-to-direct buffer copy of the JRE.
+ *
+ * Note: multicast receivers are not supported by this connector. Use the
+ * {@link UDPConnector} for that.
+ *
+ * The number of threads can be set through {@link #setReceiverThreadCount(int)}
+ * and {@link #setSenderThreadCount(int)} before the connector is started.
+ *
+ * Note: requires the {@link DatagramChannel} socket options API of Java 7,
+ * which is only available on Android API level 24 and newer. Use the
+ * {@link UDPConnector} for older Android versions.
+ *
+ * @since 3.0
+ */
+@NotForAndroid
+public class NioUDPConnector implements Connector {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(NioUDPConnector.class);
+
+	/**
+	 * Default number of datagrams processed per wakeup.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 32;
+
+	/**
+	 * Timeout in milliseconds to wait for a full send buffer to become
+	 * writable again.
+	 */
+	private static final long SEND_TIMEOUT_MILLIS = 1000;
+
+	/**
+	 * Provided local address.
+	 */
+	protected final InetSocketAddress localAddr;
+	/**
+	 * List of receiver threads.
+	 */
+	private final List<Thread> receiverThreads = new LinkedList<Thread>();
+	/**
+	 * List of sender threads.
+	 */
+	private final List<Thread> senderThreads = new LinkedList<Thread>();
+
+	/** The outbound message queue. */
+	private final BlockingQueue<RawData> outgoing;
+
+	protected volatile boolean running;
+
+	private volatile DatagramChannel channel;
+
+	protected volatile InetSocketAddress effectiveAddr;
+
+	/**
+	 * Endpoint context matcher for outgoing messages.
+	 *
+	 * @see #setEndpointContextMatcher(EndpointContextMatcher)
+	 */
+	private volatile EndpointContextMatcher endpointContextMatcher;
+
+	/** The receiver of incoming messages. */
+	private volatile RawDataChannel receiver;
+
+	private int receiveBufferSize = UDPConnector.UNDEFINED;
+	private int sendBufferSize = UDPConnector.UNDEFINED;
+
+	private int senderCount = 1;
+	private int receiverCount = 1;
+
+	private int receiverPacketSize = 2048;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Buffer pool for received datagrams. {@code null}, if not used.
+	 */
+	private volatile BufferPool bufferPool;
+
+	/**
+	 * {@code true}, if socket is reused, {@code false}, otherwise.
+	 */
+	private boolean reuseAddress;
+
+	/**
+	 * Creates a connector on the wildcard address listening on an ephemeral
+	 * port, i.e. a port chosen by the system.
+	 *
+	 * The effect of this constructor is the same as invoking
+	 * <code>NioUDPConnector(null)</code>.
+	 */
+	public NioUDPConnector() {
+		this(null);
+	}
+
+	/**
+	 * Creates a connector bound to a given IP address and port.
+	 *
+	 * @param address the IP address and port, if <code>null</code> the
+	 *            connector is bound to an ephemeral port on the wildcard
+	 *            address
+	 */
+	public NioUDPConnector(InetSocketAddress address) {
+		if (address == null) {
+			this.localAddr = new InetSocketAddress(0);
+		} else {
+			this.localAddr = address;
+		}
+		this.running = false;
+		this.effectiveAddr = localAddr;
+		this.outgoing = new LinkedBlockingQueue<RawData>();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public synchronized void start() throws IOException {
+
+		if (running) {
+			return;
+		}
+
+		DatagramChannel channel = DatagramChannel.open();
+		try {
+			channel.setOption(StandardSocketOptions.SO_REUSEADDR, reuseAddress);
+			if (receiveBufferSize != UDPConnector.UNDEFINED) {
+				channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+			}
+			if (sendBufferSize != UDPConnector.UNDEFINED) {
+				channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+			}
+			channel.bind(localAddr);
+			channel.configureBlocking(false);
+		} catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+		init(channel);
+	}
+
+	/**
+	 * Initialize connector using the provided channel.
+	 *
+	 * @param channel bound, non-blocking datagram channel for communication
+	 * @throws IOException if there is an error in the datagram channel calls.
+	 */
+	protected void init(DatagramChannel channel) throws IOException {
+		this.channel = channel;
+		effectiveAddr = (InetSocketAddress) channel.getLocalAddress();
+		receiveBufferSize = channel.getOption(StandardSocketOptions.SO_RCVBUF);
+		sendBufferSize = channel.getOption(StandardSocketOptions.SO_SNDBUF);
+
+		// running only, if the channel could be opened
+		running = true;
+
+		LOGGER.info("NioUDPConnector starts up {} sender threads and {} receiver threads", senderCount,
+				receiverCount);
+
+		try {
+			for (int i = 0; i < receiverCount; i++) {
+				receiverThreads.add(new Receiver("UDP-NIO-Receiver-" + localAddr + "[" + i + "]", channel));
+			}
+			for (int i = 0; i < senderCount; i++) {
+				senderThreads.add(new Sender("UDP-NIO-Sender-" + localAddr + "[" + i + "]", channel));
+			}
+		} catch (IOException ex) {
+			stop();
+			throw ex;
+		}
+
+		for (Thread t : receiverThreads) {
+			t.start();
+		}
+		for (Thread t : senderThreads) {
+			t.start();
+		}
+
+		LOGGER.info("NioUDPConnector listening on {}, recv buf = {}, send buf = {}, recv packet size = {}, batch = {}",
+				effectiveAddr, receiveBufferSize, sendBufferSize, receiverPacketSize, batchSize);
+	}
+
+	@Override
+	public void stop() {
+		// move onError callback out of synchronized block
+		List<RawData> pending = new ArrayList<>(outgoing.size());
+		synchronized (this) {
+			if (!running) {
+				return;
+			}
+			running = false;
+			LOGGER.debug("NioUDPConnector on [{}] stopping ...", effectiveAddr);
+			// stop all threads, interrupting a select() wakes up the selector
+			for (Thread t : senderThreads) {
+				t.interrupt();
+			}
+			for (Thread t : receiverThreads) {
+				t.interrupt();
+			}
+			outgoing.drainTo(pending);
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					LOGGER.debug("NioUDPConnector on [{}] failed to close channel!", effectiveAddr, e);
+				}
+				channel = null;
+			}
+			for (Thread t : senderThreads) {
+				try {
+					t.join(1000);
+				} catch (InterruptedException e) {
+				}
+			}
+			senderThreads.clear();
+			for (Thread t : receiverThreads) {
+				try {
+					t.join(1000);
+				} catch (InterruptedException e) {
+				}
+			}
+			receiverThreads.clear();
+			LOGGER.debug("NioUDPConnector on [{}] has stopped.", effectiveAddr);
+		}
+		for (RawData data : pending) {
+			notifyMsgAsInterrupted(data);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		stop();
+		receiver = null;
+	}
+
+	@Override
+	public void send(RawData msg) {
+		if (msg == null) {
+			throw new NullPointerException("Message must not be null");
+		}
+		// move onError callback out of synchronized block
+		boolean running;
+		synchronized (this) {
+			running = this.running;
+			if (running) {
+				outgoing.add(msg);
+			}
+		}
+		if (!running) {
+			notifyMsgAsInterrupted(msg);
+		}
+	}
+
+	@Override
+	public void setRawDataReceiver(RawDataChannel receiver) {
+		this.receiver = receiver;
+	}
+
+	@Override
+	public void setEndpointContextMatcher(EndpointContextMatcher matcher) {
+		this.endpointContextMatcher = matcher;
+	}
+
+	@Override
+	public InetSocketAddress getAddress() {
+		return effectiveAddr;
+	}
+
+	private void notifyMsgAsInterrupted(RawData msg) {
+		msg.onError(new InterruptedIOException("Connector is not running."));
+	}
+
+	private abstract class NetworkStageThread extends Thread {
+
+		/**
+		 * Selector of this thread.
+		 */
+		protected final Selector selector;
+
+		/**
+		 * Instantiates a new worker.
+		 *
+		 * @param name the name
+		 * @throws IOException if the selector could not be opened
+		 */
+		protected NetworkStageThread(String name) throws IOException {
+			super(UDPConnector.ELEMENTS_THREAD_GROUP, name);
+			setDaemon(true);
+			this.selector = Selector.open();
+		}
+
+		public void run() {
+			LOGGER.debug("Starting network stage thread [{}]", getName());
+			try {
+				while (running) {
+					try {
+						work();
+						if (!running) {
+							LOGGER.debug("Network stage thread [{}] was stopped successfully", getName());
+							break;
+						}
+					} catch (ClosedChannelException t) {
+						LOGGER.trace("Network stage thread [{}] was stopped successfully at:", getName(), t);
+					} catch (InterruptedIOException t) {
+						LOGGER.trace("Network stage thread [{}] was stopped successfully at:", getName(), t);
+					} catch (InterruptedException t) {
+						LOGGER.trace("Network stage thread [{}] was stopped successfully at:", getName(), t);
+					} catch (IOException t) {
+						if (running) {
+							LOGGER.error("Exception in network stage thread [{}]:", getName(), t);
+						} else {
+							LOGGER.trace("Network stage thread [{}] was stopped successfully at:", getName(), t);
+						}
+					} catch (Throwable t) {
+						LOGGER.error("Exception in network stage thread [{}]:", getName(), t);
+					}
+				}
+			} finally {
+				try {
+					selector.close();
+				} catch (IOException e) {
+					LOGGER.trace("Network stage thread [{}] failed to close selector!", getName(), e);
+				}
+			}
+		}
+
+		/**
+		 * @throws Exception the exception to be properly logged
+		 */
+		protected abstract void work() throws Exception;
+	}
+
+	private class Receiver extends NetworkStageThread {
+
+		private final DatagramChannel channel;
+		private final ByteBuffer buffer;
+
+		private Receiver(String name, DatagramChannel channel) throws IOException {
+			super(name);
+			this.channel = channel;
+			// we add one byte to be able to detect potential truncation.
+			this.buffer = ByteBuffer.allocateDirect(receiverPacketSize + 1);
+			channel.register(selector, SelectionKey.OP_READ);
+		}
+
+		protected void work() throws IOException {
+			selector.select();
+			selector.selectedKeys().clear();
+			// drain the socket, but give other receivers a chance
+			for (int count = 0; count < batchSize && running; ++count) {
+				buffer.clear();
+				InetSocketAddress source = (InetSocketAddress) channel.receive(buffer);
+				if (source == null) {
+					break;
+				}
+				buffer.flip();
+				processDatagram(buffer, source);
+			}
+		}
+	}
+
+	private class Sender extends NetworkStageThread {
+
+		private final DatagramChannel channel;
+		private final SelectionKey key;
+		private final List<RawData> batch;
+		private ByteBuffer buffer;
+
+		private Sender(String name, DatagramChannel channel) throws IOException {
+			super(name);
+			this.channel = channel;
+			this.batch = new ArrayList<RawData>(batchSize);
+			this.buffer = ByteBuffer.allocateDirect(receiverPacketSize);
+			this.key = channel.register(selector, 0);
+		}
+
+		protected void work() throws InterruptedException {
+			batch.add(outgoing.take()); // Blocking
+			outgoing.drainTo(batch, batchSize - 1);
+			try {
+				for (RawData raw : batch) {
+					if (running) {
+						send(raw);
+					} else {
+						notifyMsgAsInterrupted(raw);
+					}
+				}
+			} finally {
+				batch.clear();
+			}
+		}
+
+		private void send(RawData raw) {
+			/*
+			 * check, if message should be sent with the "none endpoint context"
+			 * of UDP connector
+			 */
+			EndpointContext destination = raw.getEndpointContext();
+			InetSocketAddress destinationAddress = destination.getPeerAddress();
+			EndpointContext connectionContext = new UdpEndpointContext(destinationAddress);
+			EndpointContextMatcher endpointMatcher = NioUDPConnector.this.endpointContextMatcher;
+			if (endpointMatcher != null && !endpointMatcher.isToBeSent(destination, connectionContext)) {
+				LOGGER.warn("NioUDPConnector ({}) drops {} bytes to {}", effectiveAddr, raw.getSize(),
+						StringUtil.toLog(destinationAddress));
+				raw.onError(new EndpointMismatchException("UDP sending"));
+				return;
+			}
+			if (buffer.capacity() < raw.getSize()) {
+				buffer = ByteBuffer.allocateDirect(raw.getSize());
+			}
+			buffer.clear();
+			buffer.put(raw.getBytes());
+			buffer.flip();
+			try {
+				raw.onContextEstablished(connectionContext);
+				while (channel.send(buffer, destinationAddress) == 0) {
+					if (!awaitWritable()) {
+						throw new IOException("send buffer overflow!");
+					}
+				}
+				raw.onSent();
+				LOGGER.debug("NioUDPConnector ({}) sent {} bytes to {}", effectiveAddr, raw.getSize(),
+						StringUtil.toLog(destinationAddress));
+			} catch (IOException ex) {
+				raw.onError(ex);
+			}
+		}
+
+		/**
+		 * Wait for the channel to become writable again.
+		 *
+		 * @return {@code true}, if the channel is writable, {@code false}, if
+		 *         the timeout expired or the connector is stopped.
+		 * @throws IOException if an i/o error occurred
+		 */
+		private boolean awaitWritable() throws IOException {
+			key.interestOps(SelectionKey.OP_WRITE);
+			try {
+				int ready = selector.select(SEND_TIMEOUT_MILLIS);
+				selector.selectedKeys().clear();
+				return ready > 0 && running;
+			} finally {
+				if (key.isValid()) {
+					key.interestOps(0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Process received datagram.
+	 *
+	 * Convert {@link DatagramPacket} into {@link RawData} and pass it to the
+	 * {@link RawDataChannel}.
+	 *
+	 * @param datagram received datagram.
+	 */
+	@Override
+	public void processDatagram(DatagramPacket datagram) {
+		InetSocketAddress source = new InetSocketAddress(datagram.getAddress(), datagram.getPort());
+		if (datagram.getLength() > receiverPacketSize) {
+			LOGGER.debug(
+					"NioUDPConnector ({}) received truncated UDP datagram from {}. Maximum size allowed {}. Discarding ...",
+					effectiveAddr, StringUtil.toLog(source), receiverPacketSize);
+		} else {
+			byte[] bytes = Arrays.copyOfRange(datagram.getData(), datagram.getOffset(),
+					datagram.getOffset() + datagram.getLength());
+			processDatagram(bytes, source);
+		}
+	}
+
+	/**
+	 * Process received datagram.
+	 *
+	 * @param buffer buffer with received datagram. Position and limit mark the
+	 *            datagram.
+	 * @param source source address of the datagram
+	 */
+	private void processDatagram(ByteBuffer buffer, InetSocketAddress source) {
+		int length = buffer.remaining();
+		if (length > receiverPacketSize) {
+			// too large datagram for our buffer! data could have been
+			// truncated, so we discard it.
+			LOGGER.debug(
+					"NioUDPConnector ({}) received truncated UDP datagram from {}. Maximum size allowed {}. Discarding ...",
+					effectiveAddr, StringUtil.toLog(source), receiverPacketSize);
+		} else if (receiver == null) {
+			LOGGER.debug("NioUDPConnector ({}) received UDP datagram from {} without receiver. Discarding ...",
+					effectiveAddr, StringUtil.toLog(source));
+		} else {
+			BufferPool pool = bufferPool;
+			if (pool != null) {
+				PooledBuffer pooled = pool.acquire(length);
+				buffer.get(pooled.getArray(), 0, length);
+				processDatagram(pooled, source);
+			} else {
+				byte[] bytes = new byte[length];
+				buffer.get(bytes);
+				processDatagram(bytes, source);
+			}
+		}
+	}
+
+	/**
+	 * Pass received data to the {@link RawDataChannel}.
+	 *
+	 * @param bytes received data
+	 * @param source source address of the data
+	 */
+	private void processDatagram(byte[] bytes, InetSocketAddress source) {
+		RawDataChannel dataReceiver = receiver;
+		if (dataReceiver == null) {
+			LOGGER.debug("NioUDPConnector ({}) received UDP datagram from {} without receiver. Discarding ...",
+					effectiveAddr, StringUtil.toLog(source));
+		} else {
+			long timestamp = ClockUtil.nanoRealtime();
+			LOGGER.debug("NioUDPConnector ({}) received {} bytes from {}", effectiveAddr, bytes.length,
+					StringUtil.toLog(source));
+			dataReceiver.receiveData(
+					RawData.inbound(bytes, new UdpEndpointContext(source), false, timestamp, effectiveAddr));
+		}
+	}
+
+	/**
+	 * Pass received data in pooled buffer to the {@link RawDataChannel}.
+	 *
+	 * @param buffer pooled buffer with received data
+	 * @param source source address of the data
+	 */
+	private void processDatagram(PooledBuffer buffer, InetSocketAddress source) {
+		RawDataChannel dataReceiver = receiver;
+		if (dataReceiver == null) {
+			LOGGER.debug("NioUDPConnector ({}) received UDP datagram from {} without receiver. Discarding ...",
+					effectiveAddr, StringUtil.toLog(source));
+			buffer.release();
+		} else {
+			long timestamp = ClockUtil.nanoRealtime();
+			LOGGER.debug("NioUDPConnector ({}) received {} bytes from {}", effectiveAddr, buffer.getLength(),
+					StringUtil.toLog(source));
+			dataReceiver.receiveData(
+					RawData.inbound(buffer, new UdpEndpointContext(source), false, timestamp, effectiveAddr));
+		}
+	}
+
+	/**
+	 * Get reuse address.
+	 *
+	 * @return {@code true}, if connector may reuse address, {@code false}
+	 *         otherwise.
+	 *
+	 * @see StandardSocketOptions#SO_REUSEADDR
+	 */
+	public boolean getReuseAddress() {
+		return reuseAddress;
+	}
+
+	/**
+	 * Set reuse address.
+	 *
+	 * @param enable {@code true}, if connector may reuse address, {@code false}
+	 *            otherwise.
+	 * @see StandardSocketOptions#SO_REUSEADDR
+	 */
+	public void setReuseAddress(boolean enable) {
+		this.reuseAddress = enable;
+	}
+
+	/**
+	 * Get number of datagrams processed per receiver wakeup or sender batch.
+	 *
+	 * @return batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Set number of datagrams processed per receiver wakeup or sender batch.
+	 *
+	 * @param size batch size. Must be at least 1.
+	 * @throws IllegalArgumentException if size is less than 1
+	 */
+	public void setBatchSize(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Batch size " + size + " must be at least 1!");
+		}
+		this.batchSize = size;
+	}
+
+	public void setReceiveBufferSize(int size) {
+		this.receiveBufferSize = size;
+	}
+
+	public int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	public void setSendBufferSize(int size) {
+		this.sendBufferSize = size;
+	}
+
+	public int getSendBufferSize() {
+		return sendBufferSize;
+	}
+
+	public void setReceiverThreadCount(int count) {
+		this.receiverCount = count;
+	}
+
+	public int getReceiverThreadCount() {
+		return receiverCount;
+	}
+
+	public void setSenderThreadCount(int count) {
+		this.senderCount = count;
+	}
+
+	public int getSenderThreadCount() {
+		return senderCount;
+	}
+
+	public void setReceiverPacketSize(int size) {
+		this.receiverPacketSize = size;
+	}
+
+	public int getReceiverPacketSize() {
+		return receiverPacketSize;
+	}
+
+	/**
+	 * Set buffer pool for received datagrams.
+	 * 
+	 * If a buffer pool is set, the received datagrams are passed as pooled
+	 * {@link RawData} to the {@link RawDataChannel}, which must
+	 * {@link RawData#release()} them, when processed.
+	 * 
+	 * @param pool buffer pool. {@code null}, to pass received datagrams in
+	 *            newly allocated arrays.
+	 * @see RawData#isPooled()
+	 */
+	public void setBufferPool(BufferPool pool) {
+		this.bufferPool = pool;
+	}
+
+	/**
+	 * Get buffer pool for received datagrams.
+	 * 
+	 * @return buffer pool, or {@code null}, if not used.
+	 */
+	public BufferPool getBufferPool() {
+		return bufferPool;
+	}
+
+	@Override
+	public String getProtocol() {
+		return "UDP";
+	}
+
+	@Override
+	public String toString() {
+		return getProtocol() + "-" + StringUtil.toString(getAddress());
+	}
+}
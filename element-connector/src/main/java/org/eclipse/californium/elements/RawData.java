@@ -35,8 +35,10 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.security.Principal;
+import java.util.Arrays;
 
 import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.PooledBuffer;
 
 /**
  * A container object for the data received or sent via a {@link Connector}.
@@ -52,12 +54,38 @@ import org.eclipse.californium.elements.util.ClockUtil;
  * A message received from a client via the network may also optionally contain
  * the authenticated sender's identity as a {@link java.security.Principal}
  * object.
+ * 
+ * Since 3.0 inbound raw data may also use a {@link PooledBuffer}, see
+ * {@link #inbound(PooledBuffer, EndpointContext, boolean, long, InetSocketAddress)}.
+ * Such raw data must be released using {@link #release()}, when the data is
+ * not longer required.
  */
 public final class RawData {
 
-	/** The raw message. */
+	/**
+	 * The raw message.
+	 * 
+	 * Note: for {@link #isPooled()} raw data this is the backing array of the
+	 * pooled buffer, which may be larger than {@link #getSize()}. Since 3.0
+	 * also for raw data created with
+	 * {@link #inbound(byte[], int, EndpointContext, boolean, long, InetSocketAddress)}.
+	 */
 	public final byte[] bytes;
 
+	/**
+	 * Size of the raw message.
+	 * 
+	 * @since 3.0
+	 */
+	private final int size;
+
+	/**
+	 * Pooled buffer. {@code null}, if not pooled.
+	 * 
+	 * @since 3.0
+	 */
+	private final PooledBuffer buffer;
+
 	/**
 	 * Nano timestamp of receive time.
 	 */
@@ -102,12 +130,35 @@ public final class RawData {
 	 */
 	private RawData(byte[] data, EndpointContext peerEndpointContext, MessageCallback callback, boolean multicast,
 			long nanoTimestamp, InetSocketAddress connector) {
+		this(data, data == null ? 0 : data.length, null, peerEndpointContext, callback, multicast, nanoTimestamp,
+				connector);
+	}
+
+	/**
+	 * Instantiates a new raw data.
+	 * 
+	 * @param data the data that is to be sent or has been received
+	 * @param size size of data
+	 * @param buffer pooled buffer of data. {@code null}, if not pooled.
+	 * @param endpointContext remote peers endpoint context.
+	 * @param multicast indicates whether the data represents a multicast
+	 *            message
+	 * @param nanoTimestamp nano-timestamp for received messages. {@code 0} for
+	 *            outgoing messages.
+	 * @param connector connector's address. {@code null} for outgoing data.
+	 * @throws NullPointerException if data or endpoint context is {@code null}
+	 * @since 3.0
+	 */
+	private RawData(byte[] data, int size, PooledBuffer buffer, EndpointContext peerEndpointContext,
+			MessageCallback callback, boolean multicast, long nanoTimestamp, InetSocketAddress connector) {
 		if (data == null) {
 			throw new NullPointerException("Data must not be null");
 		} else if (peerEndpointContext == null) {
 			throw new NullPointerException("Peer's EndpointContext must not be null");
 		} else {
 			this.bytes = data;
+			this.size = size;
+			this.buffer = buffer;
 			this.peerEndpointContext = peerEndpointContext;
 			this.callback = callback;
 			this.multicast = multicast;
@@ -144,6 +195,75 @@ public final class RawData {
 		return new RawData(data, peerEndpointContext, null, isMulticast, nanoTimestamp, connector);
 	}
 
+	/**
+	 * Instantiates a new raw data for a message received from a peer using the
+	 * begin of a byte array.
+	 * 
+	 * Enables to pass in place decrypted data without copying it.
+	 *
+	 * @param data byte array with the received data starting at index
+	 *            {@code 0}.
+	 * @param size size of the received data.
+	 * @param peerEndpointContext information regarding the context the message
+	 *            has been received in.
+	 * @param isMulticast indicates whether the data has been received as a
+	 *            multicast message.
+	 * @param nanoTimestamp nano-timestamp for received messages.
+	 * @param connector connector's address
+	 * @return the raw data object containing the inbound message.
+	 * @throws NullPointerException if data, endpoint context, or connector is
+	 *             {@code null}.
+	 * @throws IllegalArgumentException if size is negative or exceeds the
+	 *             byte array.
+	 * @see ClockUtil#nanoRealtime()
+	 * @since 3.0
+	 */
+	public static RawData inbound(byte[] data, int size, EndpointContext peerEndpointContext, boolean isMulticast,
+			long nanoTimestamp, InetSocketAddress connector) {
+		if (data == null) {
+			throw new NullPointerException("Data must not be null");
+		}
+		if (connector == null) {
+			throw new NullPointerException("Connectors's address must not be null");
+		}
+		if (size < 0 || size > data.length) {
+			throw new IllegalArgumentException("size " + size + " out of range [0..." + data.length + "]!");
+		}
+		return new RawData(data, size, null, peerEndpointContext, null, isMulticast, nanoTimestamp, connector);
+	}
+
+	/**
+	 * Instantiates a new raw data for a message received from a peer using a
+	 * pooled buffer.
+	 * 
+	 * The raw data must be released calling {@link #release()}, when the data
+	 * is not longer required. Usually that is done, after the data is parsed.
+	 *
+	 * @param buffer pooled buffer with the received data.
+	 * @param peerEndpointContext information regarding the context the message
+	 *            has been received in.
+	 * @param isMulticast indicates whether the data has been received as a
+	 *            multicast message.
+	 * @param nanoTimestamp nano-timestamp for received messages.
+	 * @param connector connector's address
+	 * @return the raw data object containing the inbound message.
+	 * @throws NullPointerException if buffer, endpoint context, or connector
+	 *             is {@code null}.
+	 * @see ClockUtil#nanoRealtime()
+	 * @since 3.0
+	 */
+	public static RawData inbound(PooledBuffer buffer, EndpointContext peerEndpointContext, boolean isMulticast,
+			long nanoTimestamp, InetSocketAddress connector) {
+		if (buffer == null) {
+			throw new NullPointerException("Buffer must not be null");
+		}
+		if (connector == null) {
+			throw new NullPointerException("Connectors's address must not be null");
+		}
+		return new RawData(buffer.getArray(), buffer.getLength(), buffer, peerEndpointContext, null, isMulticast,
+				nanoTimestamp, connector);
+	}
+
 	/**
 	 * Instantiates a new raw data for a message to be sent to a peer.
 	 * <p>
@@ -178,10 +298,22 @@ public final class RawData {
 
 	/**
 	 * Gets the raw message.
+	 * 
+	 * Note: for {@link #isPooled()} raw data, or raw data, which uses only a
+	 * part of the {@link #bytes}, this returns a copy of the data.
 	 *
 	 * @return raw message bytes
+	 * @throws IllegalStateException if pooled raw data is already released
 	 */
 	public byte[] getBytes() {
+		if (buffer != null) {
+			if (buffer.isReleased()) {
+				throw new IllegalStateException("raw data already released!");
+			}
+			return Arrays.copyOf(bytes, size);
+		} else if (size < bytes.length) {
+			return Arrays.copyOf(bytes, size);
+		}
 		return bytes;
 	}
 
@@ -191,7 +323,34 @@ public final class RawData {
 	 * @return the size
 	 */
 	public int getSize() {
-		return bytes.length;
+		return size;
+	}
+
+	/**
+	 * Checks, if the raw data uses a pooled buffer.
+	 * 
+	 * @return {@code true}, if the data is backed by a {@link PooledBuffer},
+	 *         {@code false}, otherwise.
+	 * @see #release()
+	 * @since 3.0
+	 */
+	public boolean isPooled() {
+		return buffer != null;
+	}
+
+	/**
+	 * Release pooled buffer.
+	 * 
+	 * The data must not be accessed after this call. Releasing not pooled
+	 * data or releasing the data more than once has no effect.
+	 * 
+	 * @see #isPooled()
+	 * @since 3.0
+	 */
+	public void release() {
+		if (buffer != null) {
+			buffer.release();
+		}
 	}
 
 	/**
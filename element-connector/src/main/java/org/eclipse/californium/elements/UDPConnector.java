@@ -51,8 +51,11 @@ import java.util.concurrent.LinkedBlockingQueue;
 
 import org.eclipse.californium.elements.UdpMulticastConnector.Builder;
 import org.eclipse.californium.elements.exception.EndpointMismatchException;
+import org.eclipse.californium.elements.util.BufferPool;
 import org.eclipse.californium.elements.util.Bytes;
 import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.DatagramSocketUtil;
+import org.eclipse.californium.elements.util.PooledBuffer;
 import org.eclipse.californium.elements.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,6 +83,9 @@ import org.slf4j.LoggerFactory;
  * 
  * The number of threads can be set through {@link #setReceiverThreadCount(int)}
  * and {@link #setSenderThreadCount(int)} before the connector is started.
+ * 
+ * Since 3.0 the receiving may be sharded using multiple sockets bound to the
+ * same port with {@code SO_REUSEPORT}, see {@link #setReusePortSockets(int)}.
  */
 public class UDPConnector implements Connector {
 
@@ -120,6 +126,13 @@ public class UDPConnector implements Connector {
 
 	private volatile DatagramSocket socket;
 
+	/**
+	 * Additional sockets bound with {@code SO_REUSEPORT} to the same address.
+	 * 
+	 * @since 3.0
+	 */
+	private final List<DatagramSocket> shardSockets = new ArrayList<>();
+
 	protected volatile InetSocketAddress effectiveAddr;
 
 	/**
@@ -140,6 +153,20 @@ public class UDPConnector implements Connector {
 
 	private int receiverPacketSize = 2048;
 
+	/**
+	 * Number of sockets bound with {@code SO_REUSEPORT} to the same address.
+	 * 
+	 * @since 3.0
+	 */
+	private int reusePortSockets = 1;
+
+	/**
+	 * Buffer pool for received datagrams. {@code null}, if not used.
+	 * 
+	 * @since 3.0
+	 */
+	private volatile BufferPool bufferPool;
+
 	/**
 	 * {@code true}, if socket is reused, {@code false}, otherwise.
 	 * 
@@ -217,10 +244,57 @@ public class UDPConnector implements Connector {
 
 		DatagramSocket socket = new DatagramSocket(null);
 		socket.setReuseAddress(reuseAddress);
+		boolean shards = reusePortSockets > 1 && enableReusePort(socket);
+		if (reusePortSockets > 1 && !shards) {
+			LOGGER.warn("UDPConnector SO_REUSEPORT not supported, using only one socket!");
+		}
 		socket.bind(localAddr);
+		if (shards) {
+			try {
+				for (int i = 1; i < reusePortSockets; i++) {
+					DatagramSocket shard = new DatagramSocket(null);
+					shardSockets.add(shard);
+					shard.setReuseAddress(reuseAddress);
+					enableReusePort(shard);
+					shard.bind(socket.getLocalSocketAddress());
+				}
+			} catch (IOException ex) {
+				socket.close();
+				closeShards();
+				throw ex;
+			}
+		}
 		init(socket);
 	}
 
+	/**
+	 * Enable {@code SO_REUSEPORT} for the provided socket.
+	 * 
+	 * Intended to be overridden by tests to simulate platforms without
+	 * support for {@code SO_REUSEPORT}.
+	 * 
+	 * @param socket socket to enable {@code SO_REUSEPORT}
+	 * @return {@code true}, if {@code SO_REUSEPORT} is enabled, {@code false},
+	 *         if not available or not supported.
+	 * @see DatagramSocketUtil#enableReusePort(DatagramSocket)
+	 * @since 3.0
+	 */
+	protected boolean enableReusePort(DatagramSocket socket) {
+		return DatagramSocketUtil.enableReusePort(socket);
+	}
+
+	/**
+	 * Close the additional sockets bound with {@code SO_REUSEPORT}.
+	 * 
+	 * @since 3.0
+	 */
+	private void closeShards() {
+		for (DatagramSocket shard : shardSockets) {
+			shard.close();
+		}
+		shardSockets.clear();
+	}
+
 	/**
 	 * Initialize connector using the provided socket.
 	 * 
@@ -233,6 +307,9 @@ public class UDPConnector implements Connector {
 
 		if (receiveBufferSize != UNDEFINED) {
 			socket.setReceiveBufferSize(receiveBufferSize);
+			for (DatagramSocket shard : shardSockets) {
+				shard.setReceiveBufferSize(receiveBufferSize);
+			}
 		}
 		receiveBufferSize = socket.getReceiveBufferSize();
 
@@ -248,7 +325,16 @@ public class UDPConnector implements Connector {
 		LOGGER.info("UDPConnector starts up {} sender threads and {} receiver threads", senderCount, receiverCount);
 
 		for (int i = 0; i < receiverCount; i++) {
-			receiverThreads.add(new Receiver("UDP-Receiver-" + localAddr + "[" + i + "]"));
+			receiverThreads.add(new Receiver("UDP-Receiver-" + localAddr + "[" + i + "]", socket));
+		}
+		int shard = 1;
+		for (DatagramSocket shardSocket : shardSockets) {
+			LOGGER.info("UDPConnector starts up {} receiver threads for shard {}", receiverCount, shard);
+			for (int i = 0; i < receiverCount; i++) {
+				receiverThreads.add(new Receiver("UDP-Receiver-" + localAddr + "[" + shard + "-" + i + "]",
+						shardSocket));
+			}
+			++shard;
 		}
 
 		if (!multicast) {
@@ -301,6 +387,7 @@ public class UDPConnector implements Connector {
 				socket.close();
 				socket = null;
 			}
+			closeShards();
 			// stop all threads
 			for (Thread t : senderThreads) {
 				t.interrupt();
@@ -464,20 +551,21 @@ public class UDPConnector implements Connector {
 	private class Receiver extends NetworkStageThread {
 
 		private final DatagramPacket datagram;
+		private final DatagramSocket receiveSocket;
 		private final int size;
 
-		private Receiver(String name) {
+		private Receiver(String name, DatagramSocket receiveSocket) {
 			super(name);
 			// we add one byte to be able to detect potential truncation.
 			this.size = receiverPacketSize + 1;
 			this.datagram = new DatagramPacket(new byte[size], size);
+			this.receiveSocket = receiveSocket;
 		}
 
 		protected void work() throws IOException {
 			datagram.setLength(size);
-			DatagramSocket currentSocket = socket;
-			if (currentSocket != null) {
-				currentSocket.receive(datagram);
+			if (socket != null) {
+				receiveSocket.receive(datagram);
 				processDatagram(datagram);
 			}
 		}
@@ -558,10 +646,19 @@ public class UDPConnector implements Connector {
 			}
 			LOGGER.debug("UDPConnector ({}) received {} bytes from {}", local, datagram.getLength(),
 					StringUtil.toLog(datagram.getSocketAddress()));
-			byte[] bytes = Arrays.copyOfRange(datagram.getData(), datagram.getOffset(), datagram.getLength());
-			RawData msg = RawData.inbound(bytes,
-					new UdpEndpointContext(new InetSocketAddress(datagram.getAddress(), datagram.getPort())), multicast,
-					timestamp, connector);
+			EndpointContext context = new UdpEndpointContext(
+					new InetSocketAddress(datagram.getAddress(), datagram.getPort()));
+			BufferPool pool = bufferPool;
+			RawData msg;
+			if (pool != null) {
+				PooledBuffer buffer = pool.acquire(datagram.getLength());
+				System.arraycopy(datagram.getData(), datagram.getOffset(), buffer.getArray(), 0,
+						datagram.getLength());
+				msg = RawData.inbound(buffer, context, multicast, timestamp, connector);
+			} else {
+				byte[] bytes = Arrays.copyOfRange(datagram.getData(), datagram.getOffset(), datagram.getLength());
+				msg = RawData.inbound(bytes, context, multicast, timestamp, connector);
+			}
 			dataReceiver.receiveData(msg);
 		}
 	}
@@ -637,6 +734,67 @@ public class UDPConnector implements Connector {
 		return receiverPacketSize;
 	}
 
+	/**
+	 * Set number of sockets bound with {@code SO_REUSEPORT} to the same
+	 * address.
+	 * 
+	 * Each socket uses its own receiver threads, the number of receiver
+	 * threads is applied per socket. The kernel distributes the datagrams on
+	 * the sockets using a hash of the 4-tuple, therefore the datagrams of a
+	 * peer are always received by the same receiver threads. If
+	 * {@code SO_REUSEPORT} is not supported by the java version or the
+	 * platform, only one socket is used.
+	 * 
+	 * @param count number of sockets. {@code 1}, to use only one socket
+	 *            without {@code SO_REUSEPORT}.
+	 * @throws IllegalArgumentException if count is less than 1
+	 * @see DatagramSocketUtil#enableReusePort(DatagramSocket)
+	 * @since 3.0
+	 */
+	public void setReusePortSockets(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("number of sockets " + count + " must be at least 1!");
+		}
+		this.reusePortSockets = count;
+	}
+
+	/**
+	 * Get number of sockets bound with {@code SO_REUSEPORT} to the same
+	 * address.
+	 * 
+	 * @return number of sockets
+	 * @since 3.0
+	 */
+	public int getReusePortSockets() {
+		return reusePortSockets;
+	}
+
+	/**
+	 * Set buffer pool for received datagrams.
+	 * 
+	 * If a buffer pool is set, the received datagrams are passed as pooled
+	 * {@link RawData} to the {@link RawDataChannel}, which must
+	 * {@link RawData#release()} them, when processed.
+	 * 
+	 * @param pool buffer pool. {@code null}, to pass received datagrams in
+	 *            newly allocated arrays.
+	 * @see RawData#isPooled()
+	 * @since 3.0
+	 */
+	public void setBufferPool(BufferPool pool) {
+		this.bufferPool = pool;
+	}
+
+	/**
+	 * Get buffer pool for received datagrams.
+	 * 
+	 * @return buffer pool, or {@code null}, if not used.
+	 * @since 3.0
+	 */
+	public BufferPool getBufferPool() {
+		return bufferPool;
+	}
+
 	@Override
 	public String getProtocol() {
 		return "UDP";
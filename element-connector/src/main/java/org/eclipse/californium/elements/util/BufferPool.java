@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of reusable byte arrays.
+ *
+ * The arrays are organized in size-classes, each class with the double
+ * capacity of the previous one, starting with {@link #MIN_BUFFER_SIZE}. Each
+ * thread keeps a small cache of released arrays per size-class, the
+ * overflow of that cache is passed to a bounded shared queue for that class.
+ * Arrays requested with a size larger than the largest class are not pooled.
+ *
+ * If leak detection is enabled, the stack trace of every
+ * {@link #acquire(int)} is kept and reported, if the {@link PooledBuffer} is
+ * garbage collected without being released. That is intended for debugging
+ * only, therefore leak detection is enabled by default, if the debug level is
+ * enabled for the logger of this class.
+ *
+ * @since 3.0
+ */
+public final class BufferPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BufferPool.class);
+
+	/**
+	 * Capacity of the smallest size-class.
+	 */
+	public static final int MIN_BUFFER_SIZE = 64;
+	/**
+	 * Default capacity of the largest size-class.
+	 */
+	public static final int DEFAULT_MAX_BUFFER_SIZE = 64 * 1024;
+	/**
+	 * Default number of arrays cached per thread and size-class.
+	 */
+	public static final int DEFAULT_THREAD_CACHE_SIZE = 16;
+	/**
+	 * Default number of arrays kept in the shared queue per size-class.
+	 */
+	public static final int DEFAULT_SHARED_CAPACITY = 1024;
+
+	/**
+	 * Capacities of the size-classes.
+	 */
+	private final int[] classSizes;
+	/**
+	 * Shared queues per size-class.
+	 */
+	private final Queue<byte[]>[] shared;
+	/**
+	 * Number of arrays in the shared queues per size-class.
+	 */
+	private final AtomicInteger[] sharedSizes;
+	/**
+	 * Maximum number of arrays in the shared queue per size-class.
+	 */
+	private final int sharedCapacity;
+	/**
+	 * Maximum number of arrays in the thread cache per size-class.
+	 */
+	private final int threadCacheSize;
+	/**
+	 * Thread local caches.
+	 */
+	private final ThreadLocal<ArrayDeque<byte[]>[]> threadCaches = new ThreadLocal<ArrayDeque<byte[]>[]>() {
+
+		@Override
+		protected ArrayDeque<byte[]>[] initialValue() {
+			@SuppressWarnings("unchecked")
+			ArrayDeque<byte[]>[] caches = new ArrayDeque[classSizes.length];
+			for (int index = 0; index < caches.length; ++index) {
+				caches[index] = new ArrayDeque<byte[]>(threadCacheSize);
+			}
+			return caches;
+		}
+	};
+	/**
+	 * Reference queue for leak detection. {@code null}, if leak detection is
+	 * disabled.
+	 */
+	private final ReferenceQueue<PooledBuffer> leakQueue;
+	/**
+	 * Pending leak references. Keeps the references reachable until the
+	 * buffer is released or reported as leak.
+	 */
+	private final Set<LeakReference> leakReferences;
+	/**
+	 * Number of acquired buffers.
+	 */
+	private final AtomicLong acquired = new AtomicLong();
+	/**
+	 * Number of buffers acquired with a newly allocated array.
+	 */
+	private final AtomicLong allocated = new AtomicLong();
+	/**
+	 * Number of detected leaks.
+	 */
+	private final AtomicLong leaks = new AtomicLong();
+
+	/**
+	 * Create buffer pool with default parameters.
+	 *
+	 * Leak detection is enabled, if the debug level is enabled for the logger
+	 * of this class.
+	 */
+	public BufferPool() {
+		this(DEFAULT_MAX_BUFFER_SIZE, DEFAULT_THREAD_CACHE_SIZE, DEFAULT_SHARED_CAPACITY, LOGGER.isDebugEnabled());
+	}
+
+	/**
+	 * Create buffer pool.
+	 *
+	 * @param maxBufferSize capacity of the largest size-class. Rounded up to
+	 *            the next power of two.
+	 * @param threadCacheSize number of arrays cached per thread and
+	 *            size-class.
+	 * @param sharedCapacity number of arrays kept in the shared queue per
+	 *            size-class.
+	 * @param leakDetection {@code true}, to report buffers, which are not
+	 *            released, {@code false}, otherwise.
+	 * @throws IllegalArgumentException if a parameter is out of range
+	 */
+	@SuppressWarnings("unchecked")
+	public BufferPool(int maxBufferSize, int threadCacheSize, int sharedCapacity, boolean leakDetection) {
+		if (maxBufferSize < MIN_BUFFER_SIZE) {
+			throw new IllegalArgumentException("max. buffer size " + maxBufferSize + " must be at least "
+					+ MIN_BUFFER_SIZE + "!");
+		}
+		if (threadCacheSize < 0) {
+			throw new IllegalArgumentException("thread cache size " + threadCacheSize + " must not be negative!");
+		}
+		if (sharedCapacity < 0) {
+			throw new IllegalArgumentException("shared capacity " + sharedCapacity + " must not be negative!");
+		}
+		int classes = 1;
+		int size = MIN_BUFFER_SIZE;
+		while (size < maxBufferSize) {
+			size <<= 1;
+			++classes;
+		}
+		this.classSizes = new int[classes];
+		this.shared = new Queue[classes];
+		this.sharedSizes = new AtomicInteger[classes];
+		size = MIN_BUFFER_SIZE;
+		for (int index = 0; index < classes; ++index) {
+			this.classSizes[index] = size;
+			this.shared[index] = new ConcurrentLinkedQueue<byte[]>();
+			this.sharedSizes[index] = new AtomicInteger();
+			size <<= 1;
+		}
+		this.threadCacheSize = threadCacheSize;
+		this.sharedCapacity = sharedCapacity;
+		if (leakDetection) {
+			this.leakQueue = new ReferenceQueue<PooledBuffer>();
+			this.leakReferences = Collections.newSetFromMap(new ConcurrentHashMap<LeakReference, Boolean>());
+		} else {
+			this.leakQueue = null;
+			this.leakReferences = null;
+		}
+	}
+
+	/**
+	 * Acquire buffer.
+	 *
+	 * @param size required size of the buffer. The length of the returned
+	 *            buffer is set to that size, the capacity of the backing array
+	 *            may be larger.
+	 * @return pooled buffer. Must be released calling
+	 *         {@link PooledBuffer#release()}, when not longer used.
+	 * @throws IllegalArgumentException if size is negative
+	 */
+	public PooledBuffer acquire(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("size " + size + " must not be negative!");
+		}
+		acquired.incrementAndGet();
+		int sizeClass = getSizeClass(size);
+		byte[] array = null;
+		if (sizeClass < 0) {
+			array = new byte[size];
+			allocated.incrementAndGet();
+		} else {
+			if (threadCacheSize > 0) {
+				array = threadCaches.get()[sizeClass].pollLast();
+			}
+			if (array == null) {
+				array = shared[sizeClass].poll();
+				if (array != null) {
+					sharedSizes[sizeClass].decrementAndGet();
+				}
+			}
+			if (array == null) {
+				array = new byte[classSizes[sizeClass]];
+				allocated.incrementAndGet();
+			}
+		}
+		PooledBuffer buffer = new PooledBuffer(this, array, size);
+		if (leakQueue != null) {
+			reportLeaks();
+			LeakReference leak = new LeakReference(buffer, leakQueue);
+			buffer.setLeakReference(leak);
+			leakReferences.add(leak);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Return array of released buffer to pool.
+	 *
+	 * @param array backing array of released buffer
+	 * @param leak leak reference of released buffer. {@code null}, if leak
+	 *            detection is disabled.
+	 */
+	void release(byte[] array, LeakReference leak) {
+		if (leak != null) {
+			leakReferences.remove(leak);
+			leak.clear();
+		}
+		int sizeClass = getSizeClass(array.length);
+		if (sizeClass < 0 || classSizes[sizeClass] != array.length) {
+			// not pooled
+			return;
+		}
+		if (threadCacheSize > 0) {
+			ArrayDeque<byte[]> cache = threadCaches.get()[sizeClass];
+			if (cache.size() < threadCacheSize) {
+				cache.addLast(array);
+				return;
+			}
+		}
+		if (sharedSizes[sizeClass].incrementAndGet() <= sharedCapacity) {
+			shared[sizeClass].offer(array);
+		} else {
+			sharedSizes[sizeClass].decrementAndGet();
+		}
+	}
+
+	/**
+	 * Get size-class.
+	 *
+	 * @param size required size
+	 * @return index of the size-class, or {@code -1}, if the size is larger
+	 *         than the largest size-class.
+	 */
+	private int getSizeClass(int size) {
+		for (int index = 0; index < classSizes.length; ++index) {
+			if (size <= classSizes[index]) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Report buffers, which are garbage collected without being released.
+	 */
+	private void reportLeaks() {
+		Reference<? extends PooledBuffer> reference;
+		while ((reference = leakQueue.poll()) != null) {
+			LeakReference leak = (LeakReference) reference;
+			if (leakReferences.remove(leak)) {
+				leaks.incrementAndGet();
+				LOGGER.warn("buffer with {} bytes not released!", leak.capacity, leak.trace);
+			}
+		}
+	}
+
+	/**
+	 * Check, if leak detection is enabled.
+	 *
+	 * @return {@code true}, if leak detection is enabled, {@code false},
+	 *         otherwise.
+	 */
+	public boolean isLeakDetectionEnabled() {
+		return leakQueue != null;
+	}
+
+	/**
+	 * Get number of detected leaks.
+	 *
+	 * @return number of detected leaks. Always {@code 0}, if leak detection is
+	 *         disabled.
+	 */
+	public long getLeaks() {
+		if (leakQueue != null) {
+			reportLeaks();
+		}
+		return leaks.get();
+	}
+
+	/**
+	 * Get number of acquired buffers.
+	 *
+	 * @return number of acquired buffers.
+	 */
+	public long getAcquired() {
+		return acquired.get();
+	}
+
+	/**
+	 * Get number of acquired buffers, which required a new array.
+	 *
+	 * @return number of newly allocated arrays.
+	 */
+	public long getAllocated() {
+		return allocated.get();
+	}
+
+	@Override
+	public String toString() {
+		return "BufferPool " + classSizes[0] + "-" + classSizes[classSizes.length - 1] + " bytes, acquired "
+				+ acquired.get() + ", allocated " + allocated.get();
+	}
+
+	/**
+	 * Weak reference to a pooled buffer for leak detection.
+	 */
+	static final class LeakReference extends WeakReference<PooledBuffer> {
+
+		/**
+		 * Stack trace of acquiring the buffer.
+		 */
+		private final Throwable trace;
+		/**
+		 * Capacity of the buffer.
+		 */
+		private final int capacity;
+
+		private LeakReference(PooledBuffer buffer, ReferenceQueue<PooledBuffer> queue) {
+			super(buffer, queue);
+			this.trace = new Throwable("acquired");
+			this.capacity = buffer.getCapacity();
+		}
+	}
+}
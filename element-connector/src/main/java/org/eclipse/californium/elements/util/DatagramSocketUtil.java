@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.DatagramSocket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utility for datagram socket options, which are not available with all java
+ * versions.
+ *
+ * {@code SO_REUSEPORT} is available for {@link DatagramSocket} since java 9
+ * and only on platforms, which supports it (e.g. Linux). It allows to bind
+ * multiple sockets to the same address and port. The kernel then distributes
+ * the received datagrams on the sockets using a hash of the 4-tuple, so the
+ * datagrams of one peer are always received by the same socket.
+ *
+ * @since 3.0
+ */
+public class DatagramSocketUtil {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DatagramSocketUtil.class);
+
+	/**
+	 * {@code SO_REUSEPORT} option. {@code null}, if not available.
+	 */
+	private static final SocketOption<?> SO_REUSEPORT;
+	/**
+	 * {@code DatagramSocket.setOption(SocketOption, Object)}. {@code null}, if
+	 * not available.
+	 */
+	private static final Method SET_OPTION;
+
+	static {
+		SocketOption<?> option = null;
+		Method setOption = null;
+		try {
+			Field field = StandardSocketOptions.class.getField("SO_REUSEPORT");
+			option = (SocketOption<?>) field.get(null);
+			setOption = DatagramSocket.class.getMethod("setOption", SocketOption.class, Object.class);
+		} catch (NoSuchFieldException e) {
+			LOGGER.debug("SO_REUSEPORT not available!");
+		} catch (NoSuchMethodException e) {
+			LOGGER.debug("DatagramSocket.setOption not available!");
+		} catch (IllegalAccessException e) {
+			LOGGER.debug("SO_REUSEPORT not accessible!");
+		}
+		if (option != null && setOption != null) {
+			SO_REUSEPORT = option;
+			SET_OPTION = setOption;
+		} else {
+			SO_REUSEPORT = null;
+			SET_OPTION = null;
+		}
+	}
+
+	/**
+	 * Check, if {@code SO_REUSEPORT} is available for this java version.
+	 *
+	 * Note: even if available, the platform may not support it.
+	 *
+	 * @return {@code true}, if available, {@code false}, otherwise.
+	 */
+	public static boolean isReusePortAvailable() {
+		return SO_REUSEPORT != null;
+	}
+
+	/**
+	 * Enable {@code SO_REUSEPORT} for the provided socket.
+	 *
+	 * Must be called before the socket is bound.
+	 *
+	 * @param socket socket to enable {@code SO_REUSEPORT}
+	 * @return {@code true}, if {@code SO_REUSEPORT} is enabled, {@code false},
+	 *         if not available or not supported.
+	 * @throws NullPointerException if socket is {@code null}
+	 * @throws IllegalStateException if socket is already bound
+	 */
+	public static boolean enableReusePort(DatagramSocket socket) {
+		if (socket == null) {
+			throw new NullPointerException("socket must not be null!");
+		}
+		if (socket.isBound()) {
+			throw new IllegalStateException("socket already bound!");
+		}
+		if (SO_REUSEPORT == null) {
+			return false;
+		}
+		try {
+			SET_OPTION.invoke(socket, SO_REUSEPORT, Boolean.TRUE);
+			return true;
+		} catch (InvocationTargetException e) {
+			LOGGER.warn("SO_REUSEPORT not supported: {}", e.getCause().getMessage());
+		} catch (IllegalAccessException e) {
+			LOGGER.warn("SO_REUSEPORT not accessible: {}", e.getMessage());
+		}
+		return false;
+	}
+}
@@ -0,0 +1,588 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed wheel timer.
+ * <p>
+ * Intended for a large number of timeouts, which are mostly cancelled before
+ * they expire, e.g. retransmissions and response timeouts. The
+ * {@link ScheduledThreadPoolExecutor} keeps the scheduled tasks in a heap with
+ * {@code O(log n)} costs for scheduling and cancelling. This timer keeps them
+ * in the buckets of a wheel, with {@code O(1)} costs for scheduling and
+ * cancelling. The price is a coarse precision. A single thread advances the
+ * wheel in ticks and expires all timeouts of a tick together. A task is
+ * therefore never executed before its delay, but up to one tick after that.
+ * <p>
+ * See "Hashed and Hierarchical Timing Wheels: Data Structures for the
+ * Efficient Implementation of a Timer Facility", George Varghese and Tony
+ * Lauck.
+ * <p>
+ * The expired tasks are executed by the provided executor. Without executor,
+ * they are executed by the thread of the timer and must therefore be short.
+ * {@link #execute(Runnable)} passes the task directly to the provided
+ * executor. That makes the timer usable in place of a
+ * {@link ScheduledExecutorService} for both, executing and scheduling tasks.
+ * <p>
+ * The thread of the timer is started with the first scheduled task.
+ * {@link #shutdown()} stops the timer and discards the scheduled tasks, but
+ * doesn't shutdown the provided executor.
+ *
+ * @since 3.0
+ */
+public class HashedWheelTimer extends AbstractExecutorService implements ScheduledExecutorService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+	/**
+	 * Default number of buckets of the wheel.
+	 */
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+
+	private static final int STATE_INIT = 0;
+	private static final int STATE_STARTED = 1;
+	private static final int STATE_SHUTDOWN = 2;
+
+	/**
+	 * Executor for expired tasks. {@code null}, to execute them by the thread
+	 * of the timer.
+	 */
+	private final Executor executor;
+	/**
+	 * Thread of the timer.
+	 */
+	private final Thread worker;
+	/**
+	 * Duration of a tick in nanoseconds.
+	 */
+	private final long tickNanos;
+	/**
+	 * Buckets of the wheel. Only accessed by the thread of the timer.
+	 */
+	private final Bucket[] wheel;
+	/**
+	 * Mask for the index of the buckets.
+	 */
+	private final int mask;
+	/**
+	 * Scheduled timeouts, not yet added to a bucket.
+	 */
+	private final ConcurrentLinkedQueue<Timeout<?>> pendingTimeouts = new ConcurrentLinkedQueue<>();
+	/**
+	 * Cancelled timeouts, not yet removed from their bucket.
+	 */
+	private final ConcurrentLinkedQueue<Timeout<?>> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+	/**
+	 * Not executed timeouts, collected by the thread of the timer on
+	 * shutdown.
+	 */
+	private final List<Runnable> unprocessed = new ArrayList<>();
+	private final AtomicInteger state = new AtomicInteger(STATE_INIT);
+	private final CountDownLatch terminated = new CountDownLatch(1);
+
+	/**
+	 * Create hashed wheel timer with {@link #DEFAULT_WHEEL_SIZE}.
+	 *
+	 * @param threadFactory thread factory for the thread of the timer
+	 * @param tick duration of a tick
+	 * @param unit time unit of the tick
+	 * @param executor executor for the expired tasks. {@code null}, to
+	 *            execute them by the thread of the timer.
+	 * @throws NullPointerException if thread factory or unit is {@code null}
+	 * @throws IllegalArgumentException if tick is less than 1 millisecond
+	 */
+	public HashedWheelTimer(ThreadFactory threadFactory, long tick, TimeUnit unit, Executor executor) {
+		this(threadFactory, tick, unit, DEFAULT_WHEEL_SIZE, executor);
+	}
+
+	/**
+	 * Create hashed wheel timer.
+	 *
+	 * @param threadFactory thread factory for the thread of the timer
+	 * @param tick duration of a tick
+	 * @param unit time unit of the tick
+	 * @param wheelSize number of buckets of the wheel. Rounded up to the next
+	 *            power of two.
+	 * @param executor executor for the expired tasks. {@code null}, to
+	 *            execute them by the thread of the timer.
+	 * @throws NullPointerException if thread factory or unit is {@code null}
+	 * @throws IllegalArgumentException if tick is less than 1 millisecond, or
+	 *             the wheel size is not in range [1...2^30]
+	 */
+	public HashedWheelTimer(ThreadFactory threadFactory, long tick, TimeUnit unit, int wheelSize,
+			Executor executor) {
+		if (threadFactory == null) {
+			throw new NullPointerException("Thread factory must not be null!");
+		}
+		if (unit == null) {
+			throw new NullPointerException("Unit must not be null!");
+		}
+		if (unit.toMillis(tick) < 1) {
+			throw new IllegalArgumentException("Tick " + tick + " " + unit + " is less than 1ms!");
+		}
+		if (wheelSize < 1 || wheelSize > (1 << 30)) {
+			throw new IllegalArgumentException("Wheel size " + wheelSize + " is not in range [1...2^30]!");
+		}
+		int size = Integer.highestOneBit(wheelSize);
+		if (size < wheelSize) {
+			size <<= 1;
+		}
+		this.wheel = new Bucket[size];
+		for (int index = 0; index < size; ++index) {
+			this.wheel[index] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.tickNanos = unit.toNanos(tick);
+		this.executor = executor;
+		this.worker = threadFactory.newThread(new Worker());
+	}
+
+	/**
+	 * Start the thread of the timer, if not already started.
+	 *
+	 * @throws RejectedExecutionException if timer is already shutdown
+	 */
+	private void start() {
+		int current = state.get();
+		if (current == STATE_INIT) {
+			if (state.compareAndSet(STATE_INIT, STATE_STARTED)) {
+				worker.start();
+			}
+		} else if (current == STATE_SHUTDOWN) {
+			throw new RejectedExecutionException("Timer already shutdown!");
+		}
+	}
+
+	/**
+	 * Add timeout to be processed by the thread of the timer.
+	 *
+	 * @param timeout timeout to add
+	 * @throws RejectedExecutionException if timer is already shutdown
+	 */
+	private void add(Timeout<?> timeout) {
+		start();
+		if (!enqueue(timeout)) {
+			throw new RejectedExecutionException("Timer already shutdown!");
+		}
+	}
+
+	/**
+	 * Enqueue timeout to the pending timeouts.
+	 *
+	 * The state is checked again after enqueueing. If the timer was shutdown
+	 * concurrently, the thread of the timer may have already collected the
+	 * pending timeouts. If the timeout is still pending, it's removed and
+	 * cancelled, otherwise it's processed or collected by the thread of the
+	 * timer.
+	 *
+	 * @param timeout timeout to enqueue
+	 * @return {@code true}, if the timeout is enqueued, {@code false}, if it's
+	 *         cancelled because the timer was shutdown.
+	 */
+	private boolean enqueue(Timeout<?> timeout) {
+		pendingTimeouts.add(timeout);
+		if (state.get() == STATE_SHUTDOWN && pendingTimeouts.remove(timeout)) {
+			timeout.cancel(false);
+			return false;
+		}
+		return true;
+	}
+
+	private static long deadline(long delay, TimeUnit unit) {
+		return System.nanoTime() + unit.toNanos(Math.max(0, delay));
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		if (command == null) {
+			throw new NullPointerException("Command must not be null!");
+		}
+		if (executor != null) {
+			if (state.get() == STATE_SHUTDOWN) {
+				throw new RejectedExecutionException("Timer already shutdown!");
+			}
+			executor.execute(command);
+		} else {
+			schedule(command, 0, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		if (command == null || unit == null) {
+			throw new NullPointerException();
+		}
+		Timeout<Void> timeout = new Timeout<Void>(Executors.<Void> callable(command, null), deadline(delay, unit), 0);
+		add(timeout);
+		return timeout;
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		if (callable == null || unit == null) {
+			throw new NullPointerException();
+		}
+		Timeout<V> timeout = new Timeout<V>(callable, deadline(delay, unit), 0);
+		add(timeout);
+		return timeout;
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		if (command == null || unit == null) {
+			throw new NullPointerException();
+		}
+		if (period <= 0) {
+			throw new IllegalArgumentException("Period must be larger than 0!");
+		}
+		Timeout<Void> timeout = new Timeout<Void>(Executors.<Void> callable(command, null),
+				deadline(initialDelay, unit), unit.toNanos(period));
+		add(timeout);
+		return timeout;
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+			TimeUnit unit) {
+		if (command == null || unit == null) {
+			throw new NullPointerException();
+		}
+		if (delay <= 0) {
+			throw new IllegalArgumentException("Delay must be larger than 0!");
+		}
+		Timeout<Void> timeout = new Timeout<Void>(Executors.<Void> callable(command, null),
+				deadline(initialDelay, unit), -unit.toNanos(delay));
+		add(timeout);
+		return timeout;
+	}
+
+	@Override
+	public void shutdown() {
+		int previous = state.getAndSet(STATE_SHUTDOWN);
+		if (previous == STATE_STARTED) {
+			worker.interrupt();
+		} else if (previous == STATE_INIT) {
+			terminated.countDown();
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		shutdown();
+		if (Thread.currentThread() != worker) {
+			try {
+				terminated.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (unprocessed) {
+			List<Runnable> result = new ArrayList<>(unprocessed);
+			unprocessed.clear();
+			return result;
+		}
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return state.get() == STATE_SHUTDOWN;
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return terminated.getCount() == 0;
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return terminated.await(timeout, unit);
+	}
+
+	/**
+	 * Thread of the timer.
+	 *
+	 * Advances the wheel every tick and expires the timeouts of the current
+	 * bucket.
+	 */
+	private class Worker implements Runnable {
+
+		private long startNanos;
+		private long tick;
+
+		@Override
+		public void run() {
+			startNanos = System.nanoTime();
+			try {
+				while (state.get() == STATE_STARTED) {
+					if (waitForNextTick()) {
+						removeCancelledTimeouts();
+						transferPendingTimeouts();
+						expireTimeouts(wheel[(int) (tick & mask)]);
+						++tick;
+					}
+				}
+			} catch (Throwable t) {
+				LOGGER.error("unexpected error occurred:", t);
+			} finally {
+				collectUnprocessedTimeouts();
+				terminated.countDown();
+			}
+		}
+
+		/**
+		 * Wait for the end of the current tick.
+		 *
+		 * @return {@code true}, if the current tick is reached, {@code false},
+		 *         if the wait was interrupted.
+		 */
+		private boolean waitForNextTick() {
+			long deadline = startNanos + (tick + 1) * tickNanos;
+			long sleepNanos = deadline - System.nanoTime();
+			while (sleepNanos > 0) {
+				try {
+					long millis = TimeUnit.NANOSECONDS.toMillis(sleepNanos + 999999);
+					Thread.sleep(millis);
+				} catch (InterruptedException e) {
+					return false;
+				}
+				sleepNanos = deadline - System.nanoTime();
+			}
+			return true;
+		}
+
+		private void removeCancelledTimeouts() {
+			Timeout<?> timeout;
+			while ((timeout = cancelledTimeouts.poll()) != null) {
+				if (timeout.bucket != null) {
+					timeout.bucket.remove(timeout);
+				}
+			}
+		}
+
+		private void transferPendingTimeouts() {
+			Timeout<?> timeout;
+			while ((timeout = pendingTimeouts.poll()) != null) {
+				if (timeout.isCancelled()) {
+					continue;
+				}
+				// the timeouts of a tick are expired at the end of that
+				// tick, therefore use the tick before the deadline
+				long ticks = (timeout.deadline - startNanos + tickNanos - 1) / tickNanos - 1;
+				if (ticks < tick) {
+					ticks = tick;
+				}
+				timeout.remainingRounds = (ticks - tick) / wheel.length;
+				wheel[(int) (ticks & mask)].add(timeout);
+			}
+		}
+
+		private void expireTimeouts(Bucket bucket) {
+			Timeout<?> timeout = bucket.head;
+			while (timeout != null) {
+				Timeout<?> next = timeout.next;
+				if (timeout.isCancelled()) {
+					bucket.remove(timeout);
+				} else if (timeout.remainingRounds <= 0) {
+					bucket.remove(timeout);
+					expire(timeout);
+				} else {
+					--timeout.remainingRounds;
+				}
+				timeout = next;
+			}
+		}
+
+		private void expire(Timeout<?> timeout) {
+			if (executor != null) {
+				try {
+					executor.execute(timeout);
+				} catch (RejectedExecutionException ex) {
+					LOGGER.debug("expired task rejected!", ex);
+					timeout.cancel(false);
+				}
+			} else {
+				timeout.run();
+			}
+		}
+
+		private void collectUnprocessedTimeouts() {
+			synchronized (unprocessed) {
+				for (Bucket bucket : wheel) {
+					Timeout<?> timeout = bucket.head;
+					while (timeout != null) {
+						Timeout<?> next = timeout.next;
+						bucket.remove(timeout);
+						if (!timeout.isCancelled()) {
+							unprocessed.add(timeout);
+						}
+						timeout = next;
+					}
+				}
+				Timeout<?> timeout;
+				while ((timeout = pendingTimeouts.poll()) != null) {
+					if (!timeout.isCancelled()) {
+						unprocessed.add(timeout);
+					}
+				}
+				cancelledTimeouts.clear();
+			}
+		}
+	}
+
+	/**
+	 * Bucket of the wheel.
+	 *
+	 * Double linked list of timeouts. Only accessed by the thread of the
+	 * timer.
+	 */
+	private static final class Bucket {
+
+		private Timeout<?> head;
+		private Timeout<?> tail;
+
+		private void add(Timeout<?> timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		private void remove(Timeout<?> timeout) {
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			} else {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+
+	/**
+	 * Scheduled task.
+	 *
+	 * @param <V> type of result
+	 */
+	private final class Timeout<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+		/**
+		 * Period in nanoseconds. {@code 0} for none-periodic tasks, positive
+		 * for fixed rate, and negative for fixed delay.
+		 */
+		private final long period;
+		/**
+		 * Deadline in system nanoseconds.
+		 */
+		private volatile long deadline;
+		/**
+		 * Remaining rounds of the wheel. Only accessed by the thread of the
+		 * timer.
+		 */
+		private long remainingRounds;
+		/**
+		 * Bucket, which contains this timeout. Only accessed by the thread of
+		 * the timer.
+		 */
+		private Bucket bucket;
+		private Timeout<?> prev;
+		private Timeout<?> next;
+
+		private Timeout(Callable<V> callable, long deadline, long period) {
+			super(callable);
+			this.deadline = deadline;
+			this.period = period;
+		}
+
+		@Override
+		public boolean isPeriodic() {
+			return period != 0;
+		}
+
+		@Override
+		public void run() {
+			if (period == 0) {
+				super.run();
+			} else if (runAndReset() && state.get() == STATE_STARTED) {
+				if (period > 0) {
+					deadline += period;
+				} else {
+					deadline = System.nanoTime() - period;
+				}
+				enqueue(this);
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled && state.get() == STATE_STARTED) {
+				cancelledTimeouts.add(this);
+			}
+			return cancelled;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other == this) {
+				return 0;
+			}
+			long diff;
+			if (other instanceof Timeout) {
+				diff = deadline - ((Timeout<?>) other).deadline;
+			} else {
+				diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+			}
+			return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+		}
+	}
+}
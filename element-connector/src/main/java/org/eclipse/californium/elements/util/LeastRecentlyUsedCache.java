@@ -28,18 +28,26 @@
  *                                                    to prevent ConcurrentModificationException.
  *                                                    use nanoseconds for expirationThreshold
  *                                                    mainly to speedup tests.
+ *    Bosch IO GmbH - support concurrent access using a lock for
+ *                    modifications and striped buffers to record
+ *                    read access.
  ******************************************************************************/
 package org.eclipse.californium.elements.util;
 
 import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * An in-memory cache with a maximum capacity and support for evicting stale
@@ -66,17 +74,25 @@ import java.util.concurrent.TimeUnit;
  * by {@link #updateOnReadAccess}.
  * </p>
  * <p>
- * This implementation uses a {@link java.util.HashMap} as its backing store. In
- * addition to that the cache keeps a doubly-linked list of the entries in
+ * This implementation uses a {@link ConcurrentHashMap} as its backing store.
+ * In addition to that the cache keeps a doubly-linked list of the entries in
  * access-time order.
  * </p>
  * <p>
  * Access to the cache's entries (e.g. <em>put</em>, <em>get</em>,
- * <em>remove</em>, <em>find</em>) is <em>not</em> thread safe. Clients should
- * explicitly serialize access to the cache from multiple threads.
+ * <em>remove</em>, <em>find</em>) is thread safe. Modifications of the
+ * doubly-linked list are guarded by a lock. A read access only updates the
+ * last-access time of the entry and records the access in a striped buffer,
+ * without taking that lock. The recorded read accesses are applied to the
+ * doubly-linked list in batches, either when a buffer gets filled or before
+ * the next modification. If a buffer is full because of high contention, the
+ * access is not recorded. Such entries are moved to the end of the
+ * doubly-linked list, when they are considered for eviction.
  * </p>
  * <p>
- * Insertion, lookup and removal of entries is done in <em>O(log n)</em>.
+ * Insertion, lookup and removal of entries is done in <em>O(1)</em> on
+ * average, the backing {@link ConcurrentHashMap} may degrade that for
+ * colliding hash codes.
  * </p>
  * 
  * Note: if the <em>expiration threshold</em> is {@code 0}, "stale" is not
@@ -101,11 +117,58 @@ public class LeastRecentlyUsedCache<K, V> {
 	 * The cache's default maximum capacity.
 	 */
 	public static final int DEFAULT_CAPACITY = 150000;
+	/**
+	 * Size of a read buffer. Must be a power of two.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int READ_BUFFER_SIZE = 16;
+	/**
+	 * Mask for the index of a read buffer.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+	/**
+	 * Number of pending read accesses, which triggers to apply the recorded
+	 * read accesses.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+	/**
+	 * Number of read buffers. Power of two, twice the number of processors,
+	 * but at most 64.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int READ_BUFFERS;
+
+	static {
+		int processors = Runtime.getRuntime().availableProcessors();
+		int buffers = 1;
+		while (buffers < processors * 2 && buffers < 64) {
+			buffers <<= 1;
+		}
+		READ_BUFFERS = buffers;
+	}
 
 	private Collection<V> values;
-	private final Map<K, CacheEntry<K, V>> cache;
+	private final ConcurrentMap<K, CacheEntry<K, V>> cache;
 	private volatile int capacity;
-	private CacheEntry<K, V> header;
+	private final CacheEntry<K, V> header;
+	/**
+	 * Lock for modifications of the doubly-linked list.
+	 * 
+	 * @since 3.0
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	/**
+	 * Striped buffers to record read access.
+	 * 
+	 * @since 3.0
+	 */
+	private final ReadBuffer<K, V>[] readBuffers;
 	/**
 	 * Threshold for expiration in nanoseconds.
 	 */
@@ -121,7 +184,7 @@ public class LeastRecentlyUsedCache<K, V> {
 	 */
 	private volatile boolean updateOnReadAccess = true;
 
-	private final List<EvictionListener<V>> evictionListeners = new LinkedList<>();
+	private final List<EvictionListener<V>> evictionListeners = new CopyOnWriteArrayList<>();
 
 	/**
 	 * Creates a cache with an initial capacity of
@@ -178,6 +241,7 @@ public class LeastRecentlyUsedCache<K, V> {
 	 * @param unit TimeUnit for threshold
 	 * @since 3.0
 	 */
+	@SuppressWarnings("unchecked")
 	public LeastRecentlyUsedCache(int initialCapacity, int maxCapacity, long threshold, TimeUnit unit) {
 
 		if (initialCapacity > maxCapacity) {
@@ -185,13 +249,17 @@ public class LeastRecentlyUsedCache<K, V> {
 		} else {
 			this.capacity = maxCapacity;
 			this.cache = new ConcurrentHashMap<>(initialCapacity);
+			this.readBuffers = new ReadBuffer[READ_BUFFERS];
+			for (int index = 0; index < READ_BUFFERS; ++index) {
+				this.readBuffers[index] = new ReadBuffer<>();
+			}
 			setExpirationThreshold(threshold, unit);
+			header = new CacheEntry<>();
 			initLinkedList();
 		}
 	}
 
 	private void initLinkedList() {
-		header = new CacheEntry<>();
 		header.after = header.before = header;
 	}
 
@@ -362,8 +430,20 @@ public class LeastRecentlyUsedCache<K, V> {
 	 * Removes all entries from the cache.
 	 */
 	public final void clear() {
-		cache.clear();
-		initLinkedList();
+		lock.lock();
+		try {
+			CacheEntry<K, V> entry = header.after;
+			while (entry != header) {
+				CacheEntry<K, V> next = entry.after;
+				entry.after = entry.before = null;
+				entry = next;
+			}
+			cache.clear();
+			initLinkedList();
+			drainReadBuffers();
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -391,54 +471,12 @@ public class LeastRecentlyUsedCache<K, V> {
 	 * @see #addEvictionListener(EvictionListener)
 	 */
 	public final boolean put(K key, V value) {
-
 		if (value != null) {
-			CacheEntry<K, V> existingEntry = cache.get(key);
-			if (existingEntry != null) {
-				existingEntry.remove();
-				add(key, value);
-				return true;
-			} else if (cache.size() < capacity) {
-				add(key, value);
-				return true;
-			} else {
-				CacheEntry<K, V> eldest = header.after;
-				if (eldest.isStale(expirationThresholdNanos)) {
-					eldest.remove();
-					cache.remove(eldest.getKey());
-					add(key, value);
-					notifyEvictionListeners(eldest.getValue());
-					return true;
-				}
-			}
+			return put(new CacheEntry<>(key, value), false);
 		}
 		return false;
 	}
 
-	private void notifyEvictionListeners(V session) {
-		for (EvictionListener<V> listener : evictionListeners) {
-			listener.onEviction(session);
-		}
-	}
-
-	/**
-	 * Gets the <em>eldest</em> value in the store.
-	 * 
-	 * The eldest value is the one that has been used least recently.
-	 * 
-	 * @return the value
-	 */
-	final V getEldest() {
-		CacheEntry<K, V> eldest = header.after;
-		return eldest.getValue();
-	}
-
-	private void add(K key, V value) {
-		CacheEntry<K, V> entry = new CacheEntry<>(key, value);
-		cache.put(key, entry);
-		entry.addBefore(header);
-	}
-
 	/**
 	 * Puts an entry with timestamp to the cache.
 	 * 
@@ -466,36 +504,201 @@ public class LeastRecentlyUsedCache<K, V> {
 	 */
 	public final boolean put(K key, Timestamped<V> value) {
 		if (value != null) {
-			if (header.before == header || (value.lastUpdate - header.before.lastUpdate >= 0)) {
-				CacheEntry<K, V> existingEntry = cache.get(key);
-				if (existingEntry != null) {
-					existingEntry.remove();
-					add(key, value);
-					return true;
-				} else if (cache.size() < capacity) {
-					add(key, value);
-					return true;
-				} else {
-					CacheEntry<K, V> eldest = header.after;
-					if (eldest.isStale(expirationThresholdNanos)) {
-						eldest.remove();
-						cache.remove(eldest.getKey());
-						add(key, value);
-						notifyEvictionListeners(eldest.getValue());
-						return true;
-					}
+			return put(new CacheEntry<>(key, value), true);
+		}
+		return false;
+	}
+
+	/**
+	 * Puts an entry to the cache.
+	 * 
+	 * @param entry entry to put
+	 * @param timestamped {@code true}, if the entry is timestamped and must
+	 *            not be older than the newest entry of the cache,
+	 *            {@code false}, otherwise.
+	 * @return {@code true}, if the entry could be added to the cache,
+	 *         {@code false}, otherwise.
+	 * @since 3.0
+	 */
+	private boolean put(CacheEntry<K, V> entry, boolean timestamped) {
+		CacheEntry<K, V> evicted = null;
+		lock.lock();
+		try {
+			drainReadBuffers();
+			if (timestamped && header.before != header && (entry.lastUpdate - header.before.linkedUpdate < 0)) {
+				return false;
+			}
+			CacheEntry<K, V> existingEntry = cache.get(entry.key);
+			if (existingEntry != null) {
+				existingEntry.remove();
+			} else if (cache.size() >= capacity) {
+				evicted = getEldestStaleEntry();
+				if (evicted == null) {
+					return false;
 				}
+				evicted.remove();
+				cache.remove(evicted.key);
 			}
+			cache.put(entry.key, entry);
+			addLast(entry);
+		} finally {
+			lock.unlock();
+		}
+		if (evicted != null) {
+			notifyEvictionListeners(evicted.value);
+		}
+		return true;
+	}
+
+	private void notifyEvictionListeners(V session) {
+		for (EvictionListener<V> listener : evictionListeners) {
+			listener.onEviction(session);
 		}
-		return false;
 	}
 
-	private void add(K key, Timestamped<V> value) {
-		CacheEntry<K, V> entry = new CacheEntry<>(key, value);
-		cache.put(key, entry);
+	/**
+	 * Gets the <em>eldest</em> value in the store.
+	 * 
+	 * The eldest value is the one that has been used least recently.
+	 * 
+	 * @return the value
+	 */
+	final V getEldest() {
+		lock.lock();
+		try {
+			drainReadBuffers();
+			return header.after.value;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the eldest entry, if stale.
+	 * 
+	 * Entries with a not recorded read access are moved to the end of the
+	 * doubly-linked list.
+	 * 
+	 * Note: the lock must be held by the caller.
+	 * 
+	 * @return eldest entry, if stale, or {@code null}, if the eldest entry is
+	 *         not stale or the cache is empty.
+	 * @since 3.0
+	 */
+	private CacheEntry<K, V> getEldestStaleEntry() {
+		for (int count = cache.size(); count > 0; --count) {
+			CacheEntry<K, V> eldest = header.after;
+			if (eldest == header) {
+				break;
+			}
+			if (eldest.lastUpdate - eldest.linkedUpdate > 0) {
+				eldest.remove();
+				addLast(eldest);
+			} else if (eldest.isStale(expirationThresholdNanos)) {
+				return eldest;
+			} else {
+				break;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds entry to the end of the doubly-linked list.
+	 * 
+	 * Ensures, that the linked-update times of the doubly-linked list are in
+	 * order. The last-access time is not changed, it may be updated
+	 * concurrently by {@link #recordAccess(CacheEntry)}.
+	 * 
+	 * Note: the lock must be held by the caller.
+	 * 
+	 * @param entry entry to add.
+	 * @since 3.0
+	 */
+	private void addLast(CacheEntry<K, V> entry) {
+		long time = entry.lastUpdate;
+		CacheEntry<K, V> last = header.before;
+		if (last != header && (time - last.linkedUpdate < 0)) {
+			time = last.linkedUpdate;
+		}
+		entry.linkedUpdate = time;
 		entry.addBefore(header);
 	}
 
+	/**
+	 * Applies the recorded read accesses to the doubly-linked list.
+	 * 
+	 * Note: the lock must be held by the caller.
+	 * 
+	 * @since 3.0
+	 */
+	private void drainReadBuffers() {
+		for (ReadBuffer<K, V> buffer : readBuffers) {
+			CacheEntry<K, V> entry;
+			while ((entry = buffer.poll()) != null) {
+				if (entry.isLinked()) {
+					entry.remove();
+					addLast(entry);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the recorded read accesses to the doubly-linked list, if the
+	 * lock is available.
+	 * 
+	 * @since 3.0
+	 */
+	private void tryDrainReadBuffers() {
+		if (lock.tryLock()) {
+			try {
+				drainReadBuffers();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Updates the last-access time of the entry and records the read access.
+	 * 
+	 * @param entry accessed entry
+	 * @since 3.0
+	 */
+	private void recordAccess(CacheEntry<K, V> entry) {
+		entry.touch(ClockUtil.nanoRealtime());
+		ReadBuffer<K, V> buffer = readBuffers[(int) Thread.currentThread().getId() & (READ_BUFFERS - 1)];
+		int pending = buffer.offer(entry);
+		if (pending < 0) {
+			tryDrainReadBuffers();
+			buffer.offer(entry);
+		} else if (pending >= READ_BUFFER_DRAIN_THRESHOLD) {
+			tryDrainReadBuffers();
+		}
+	}
+
+	/**
+	 * Removes entry from the cache, if the key is still mapped to that entry.
+	 * 
+	 * @param entry entry to remove
+	 * @return {@code true}, if removed, {@code false}, if the key is not
+	 *         mapped to that entry.
+	 * @since 3.0
+	 */
+	private boolean removeEntry(CacheEntry<K, V> entry) {
+		lock.lock();
+		try {
+			if (cache.remove(entry.key, entry)) {
+				entry.remove();
+				return true;
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	/**
 	 * Gets a value from the cache.
 	 * 
@@ -511,26 +714,20 @@ public class LeastRecentlyUsedCache<K, V> {
 		if (entry == null) {
 			return null;
 		}
-		return access(entry, null);
+		return access(entry);
 	}
 
-	private final V access(CacheEntry<K, V> entry, Iterator<CacheEntry<K, V>> iterator) {
+	private final V access(CacheEntry<K, V> entry) {
 		if (evictOnReadAccess && expirationThresholdNanos > 0 && entry.isStale(expirationThresholdNanos)) {
-			if (iterator != null) {
-				// remove via iterator to prevent
-				// ConcurrentModificationException
-				iterator.remove();
-			} else {
-				cache.remove(entry.getKey());
+			if (removeEntry(entry)) {
+				notifyEvictionListeners(entry.value);
 			}
-			entry.remove();
-			notifyEvictionListeners(entry.getValue());
 			return null;
 		} else {
 			if (updateOnReadAccess) {
-				entry.recordAccess(header);
+				recordAccess(entry);
 			}
-			return entry.getValue();
+			return entry.value;
 		}
 	}
 
@@ -551,7 +748,7 @@ public class LeastRecentlyUsedCache<K, V> {
 		if (entry == null) {
 			return false;
 		}
-		entry.recordAccess(header);
+		recordAccess(entry);
 		return true;
 	}
 
@@ -568,12 +765,17 @@ public class LeastRecentlyUsedCache<K, V> {
 		if (key == null) {
 			return null;
 		}
-		CacheEntry<K, V> entry = cache.remove(key);
-		if (entry != null) {
-			entry.remove();
-			return entry.getValue();
-		} else {
-			return null;
+		lock.lock();
+		try {
+			CacheEntry<K, V> entry = cache.remove(key);
+			if (entry != null) {
+				entry.remove();
+				return entry.value;
+			} else {
+				return null;
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -592,10 +794,8 @@ public class LeastRecentlyUsedCache<K, V> {
 			return null;
 		}
 		CacheEntry<K, V> entry = cache.get(key);
-		if (entry != null) {
-			if (entry.getValue() == value) {
-				cache.remove(key);
-				entry.remove();
+		if (entry != null && entry.value == value) {
+			if (removeEntry(entry)) {
 				return value;
 			}
 		}
@@ -610,22 +810,70 @@ public class LeastRecentlyUsedCache<K, V> {
 	 * @since 3.0
 	 */
 	public final int removeExpiredEntries(int maxEntries) {
-		int counter = 0;
-		while (maxEntries == 0 || counter < maxEntries) {
-			CacheEntry<K, V> eldest = header.after;
-			if (header == eldest) {
-				break;
-			}
-			if (eldest.isStale(expirationThresholdNanos)) {
+		List<V> evicted = new ArrayList<>();
+		lock.lock();
+		try {
+			drainReadBuffers();
+			while (maxEntries == 0 || evicted.size() < maxEntries) {
+				CacheEntry<K, V> eldest = getEldestStaleEntry();
+				if (eldest == null) {
+					break;
+				}
 				eldest.remove();
-				cache.remove(eldest.getKey());
-				notifyEvictionListeners(eldest.getValue());
-				++counter;
-			} else {
-				break;
+				cache.remove(eldest.key);
+				evicted.add(eldest.value);
+			}
+		} finally {
+			lock.unlock();
+		}
+		for (V value : evicted) {
+			notifyEvictionListeners(value);
+		}
+		return evicted.size();
+	}
+
+	/**
+	 * Evicts the least recently used entry, which value matches the predicate,
+	 * even if that entry is not stale.
+	 * 
+	 * If an entry is evicted this method notifies all registered
+	 * {@code EvictionListeners}.
+	 * 
+	 * Note: the predicate is applied while holding the lock of this cache.
+	 * 
+	 * @param predicate predicate to select the values, which may be evicted
+	 * @return the evicted value, or {@code null}, if no value matches
+	 * @since 3.0
+	 */
+	public final V evictEldest(Predicate<V> predicate) {
+		CacheEntry<K, V> evicted = null;
+		lock.lock();
+		try {
+			drainReadBuffers();
+			CacheEntry<K, V> entry = header.after;
+			for (int count = cache.size(); count > 0 && entry != header; --count) {
+				CacheEntry<K, V> next = entry.after;
+				if (entry.lastUpdate - entry.linkedUpdate > 0) {
+					entry.remove();
+					addLast(entry);
+				} else if (predicate.accept(entry.value)) {
+					evicted = entry;
+					break;
+				}
+				entry = next;
+			}
+			if (evicted != null) {
+				evicted.remove();
+				cache.remove(evicted.key);
 			}
+		} finally {
+			lock.unlock();
 		}
-		return counter;
+		if (evicted != null) {
+			notifyEvictionListeners(evicted.value);
+			return evicted.value;
+		}
+		return null;
 	}
 
 	/**
@@ -666,8 +914,8 @@ public class LeastRecentlyUsedCache<K, V> {
 			final Iterator<CacheEntry<K, V>> iterator = cache.values().iterator();
 			while (iterator.hasNext()) {
 				CacheEntry<K, V> entry = iterator.next();
-				if (predicate.accept(entry.getValue())) {
-					V value = access(entry, iterator);
+				if (predicate.accept(entry.value)) {
+					V value = access(entry);
 					if (unique || value != null) {
 						return value;
 					}
@@ -771,11 +1019,9 @@ public class LeastRecentlyUsedCache<K, V> {
 					while (iterator.hasNext()) {
 						CacheEntry<K, V> entry = iterator.next();
 						if (readAccess) {
-							synchronized (LeastRecentlyUsedCache.this) {
-								if (access(entry, iterator) != null) {
-									nextEntry = entry;
-									break;
-								}
+							if (access(entry) != null) {
+								nextEntry = entry;
+								break;
 							}
 						} else {
 							nextEntry = entry;
@@ -811,9 +1057,8 @@ public class LeastRecentlyUsedCache<K, V> {
 	 * the modifying methods will throw a {@link UnsupportedOperationException}.
 	 * 
 	 * Note: the {@link #evictOnReadAccess} feature may alter the underlying map
-	 * even for read access. Therefore the clients should explicitly serialize
-	 * access to the returned collection from multiple threads. The returned
-	 * size doesn't reflect potential eviction on read-access.
+	 * even for read access. The returned size doesn't reflect potential
+	 * eviction on read-access.
 	 * 
 	 * @return an collection of all connections backed by the underlying map.
 	 */
@@ -866,8 +1111,9 @@ public class LeastRecentlyUsedCache<K, V> {
 	/**
 	 * Gets iterator over all values with timestamp contained in this cache.
 	 * <p>
-	 * The iterator returned is backed by this cache's underlying doubly-linked
-	 * list. It's not supported to modify the cache when using the iterator.
+	 * The iterator returned is backed by a snapshot of this cache's underlying
+	 * doubly-linked list. Modifications of the cache after creating the
+	 * iterator are not reflected.
 	 * </p>
 	 * <p>
 	 * Removal of values from the iterator is unsupported.
@@ -877,24 +1123,30 @@ public class LeastRecentlyUsedCache<K, V> {
 	 * @since 3.0
 	 */
 	public final Iterator<Timestamped<V>> timestampedIterator() {
+		final List<Timestamped<V>> snapshot = new ArrayList<>(cache.size());
+		lock.lock();
+		try {
+			drainReadBuffers();
+			CacheEntry<K, V> current = header.after;
+			while (current != header) {
+				snapshot.add(current.getEntry());
+				current = current.after;
+			}
+		} finally {
+			lock.unlock();
+		}
 		return new Iterator<Timestamped<V>>() {
-			final int max = cache.size();
-			int counter;
-			CacheEntry<K, V> current = header;
+
+			final Iterator<Timestamped<V>> iterator = snapshot.iterator();
 
 			@Override
 			public boolean hasNext() {
-				return current.after != header && counter < max;
+				return iterator.hasNext();
 			}
 
 			@Override
 			public Timestamped<V> next() {
-				if (!hasNext()) {
-					throw new NoSuchElementException();
-				}
-				++counter;
-				current = current.after;
-				return current.getEntry();
+				return iterator.next();
 			}
 
 			@Override
@@ -908,7 +1160,21 @@ public class LeastRecentlyUsedCache<K, V> {
 
 		private final K key;
 		private final V value;
-		private long lastUpdate;
+		@SuppressWarnings("rawtypes")
+		private static final AtomicLongFieldUpdater<CacheEntry> LAST_UPDATE = AtomicLongFieldUpdater
+				.newUpdater(CacheEntry.class, "lastUpdate");
+
+		/**
+		 * Last-access time. Updated on read access without holding the lock,
+		 * only advanced by {@link #touch(long)}.
+		 */
+		private volatile long lastUpdate;
+		/**
+		 * Time used to order the entry in the doubly-linked list. Not before
+		 * the last-access time, when the entry was added to the end of the
+		 * doubly-linked list. Guarded by the lock.
+		 */
+		private long linkedUpdate;
 		private CacheEntry<K, V> after;
 		private CacheEntry<K, V> before;
 
@@ -916,6 +1182,7 @@ public class LeastRecentlyUsedCache<K, V> {
 			this.key = null;
 			this.value = null;
 			this.lastUpdate = -1;
+			this.linkedUpdate = -1;
 		}
 
 		private CacheEntry(K key, V value) {
@@ -930,26 +1197,34 @@ public class LeastRecentlyUsedCache<K, V> {
 			this.lastUpdate = entry.getLastUpdate();
 		}
 
-		private Timestamped<V> getEntry() {
-			return new Timestamped<V>(value, lastUpdate);
-		}
-
-		private K getKey() {
-			return key;
+		/**
+		 * Advance the last-access time.
+		 * 
+		 * Concurrent read accesses may call this with times out of order, the
+		 * last-access time is therefore never moved backwards.
+		 * 
+		 * @param time last-access time in nanoseconds
+		 */
+		private void touch(long time) {
+			long current;
+			do {
+				current = lastUpdate;
+				if (time - current <= 0) {
+					return;
+				}
+			} while (!LAST_UPDATE.compareAndSet(this, current, time));
 		}
 
-		private V getValue() {
-			return value;
+		private Timestamped<V> getEntry() {
+			return new Timestamped<V>(value, linkedUpdate);
 		}
 
 		private boolean isStale(long thresholdNanos) {
 			return (ClockUtil.nanoRealtime() - lastUpdate) >= thresholdNanos;
 		}
 
-		private void recordAccess(CacheEntry<K, V> header) {
-			remove();
-			lastUpdate = ClockUtil.nanoRealtime();
-			addBefore(header);
+		private boolean isLinked() {
+			return before != null;
 		}
 
 		private void addBefore(CacheEntry<K, V> existingEntry) {
@@ -962,6 +1237,7 @@ public class LeastRecentlyUsedCache<K, V> {
 		private void remove() {
 			before.after = after;
 			after.before = before;
+			after = before = null;
 		}
 
 		@Override
@@ -971,6 +1247,64 @@ public class LeastRecentlyUsedCache<K, V> {
 		}
 	}
 
+	/**
+	 * Striped buffer to record read access.
+	 * 
+	 * Records are dropped, if the buffer is full or on contention of
+	 * concurrent recording.
+	 * 
+	 * @since 3.0
+	 */
+	private static final class ReadBuffer<K, V> {
+
+		private final AtomicReferenceArray<CacheEntry<K, V>> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+		private final AtomicLong writes = new AtomicLong();
+		private volatile long reads;
+
+		/**
+		 * Record read access.
+		 * 
+		 * @param entry accessed entry
+		 * @return number of pending records, or {@code -1}, if the buffer is
+		 *         full and the record is dropped.
+		 */
+		private int offer(CacheEntry<K, V> entry) {
+			long write = writes.get();
+			int pending = (int) (write - reads);
+			if (pending >= READ_BUFFER_SIZE) {
+				return -1;
+			}
+			if (writes.compareAndSet(write, write + 1)) {
+				slots.lazySet((int) write & READ_BUFFER_MASK, entry);
+				return pending + 1;
+			}
+			// dropped on contention
+			return 0;
+		}
+
+		/**
+		 * Poll next recorded read access.
+		 * 
+		 * Note: the lock of the cache must be held by the caller.
+		 * 
+		 * @return the accessed entry, or {@code null}, if no (complete) record
+		 *         is available.
+		 */
+		private CacheEntry<K, V> poll() {
+			long read = reads;
+			if (read == writes.get()) {
+				return null;
+			}
+			int index = (int) read & READ_BUFFER_MASK;
+			CacheEntry<K, V> entry = slots.get(index);
+			if (entry != null) {
+				slots.lazySet(index, null);
+				reads = read + 1;
+			}
+			return entry;
+		}
+	}
+
 	public static final class Timestamped<V> {
 		private final V value;
 		private final long lastUpdate;
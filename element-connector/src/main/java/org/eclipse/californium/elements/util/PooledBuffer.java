@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.californium.elements.util.BufferPool.LeakReference;
+
+/**
+ * Buffer acquired from a {@link BufferPool}.
+ *
+ * The data starts at index {@code 0} of the {@link #getArray()} and has
+ * {@link #getLength()} bytes. The backing array may be larger. After
+ * {@link #release()} the backing array is reused and must not be accessed
+ * anymore.
+ *
+ * @since 3.0
+ */
+public final class PooledBuffer {
+
+	/**
+	 * Pool to return the array on release.
+	 */
+	private final BufferPool pool;
+	/**
+	 * Backing array.
+	 */
+	private final byte[] array;
+	/**
+	 * Indicates, that the buffer is released.
+	 */
+	private final AtomicBoolean released = new AtomicBoolean();
+	/**
+	 * Length of data.
+	 */
+	private int length;
+	/**
+	 * Leak reference. {@code null}, if leak detection is disabled.
+	 */
+	private LeakReference leak;
+
+	/**
+	 * Create pooled buffer.
+	 *
+	 * @param pool pool to return the array on release
+	 * @param array backing array
+	 * @param length length of data
+	 */
+	PooledBuffer(BufferPool pool, byte[] array, int length) {
+		this.pool = pool;
+		this.array = array;
+		this.length = length;
+	}
+
+	/**
+	 * Get backing array.
+	 *
+	 * @return backing array.
+	 * @throws IllegalStateException if buffer is already released
+	 */
+	public byte[] getArray() {
+		if (released.get()) {
+			throw new IllegalStateException("buffer already released!");
+		}
+		return array;
+	}
+
+	/**
+	 * Get length of data.
+	 *
+	 * @return length of data
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Set length of data.
+	 *
+	 * @param length length of data
+	 * @throws IllegalArgumentException if length is negative or exceeds the
+	 *             capacity
+	 */
+	public void setLength(int length) {
+		if (length < 0 || length > array.length) {
+			throw new IllegalArgumentException("length " + length + " out of range [0..." + array.length + "]!");
+		}
+		this.length = length;
+	}
+
+	/**
+	 * Get capacity of backing array.
+	 *
+	 * @return capacity of backing array
+	 */
+	public int getCapacity() {
+		return array.length;
+	}
+
+	/**
+	 * Check, if buffer is released.
+	 *
+	 * @return {@code true}, if released, {@code false}, otherwise.
+	 */
+	public boolean isReleased() {
+		return released.get();
+	}
+
+	/**
+	 * Release buffer and return the backing array to the pool.
+	 *
+	 * Releasing a buffer more than once has no effect.
+	 */
+	public void release() {
+		if (released.compareAndSet(false, true)) {
+			pool.release(array, leak);
+		}
+	}
+
+	/**
+	 * Set leak reference.
+	 *
+	 * @param leak leak reference
+	 */
+	void setLeakReference(LeakReference leak) {
+		this.leak = leak;
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.elements;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.category.NativeDatagramSocketImplRequired;
+import org.eclipse.californium.elements.rule.NetworkRule;
+import org.eclipse.californium.elements.rule.ThreadsRule;
+import org.eclipse.californium.elements.util.SimpleMessageCallback;
+import org.eclipse.californium.elements.util.SimpleRawDataChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * The {@link NioUDPConnector} uses a {@link java.nio.channels.DatagramChannel},
+ * which is not covered by the DIRECT datagram socket implementation.
+ */
+@Category(NativeDatagramSocketImplRequired.class)
+public class NioUDPConnectorTest {
+
+	@ClassRule
+	public static NetworkRule network = new NetworkRule(NetworkRule.Mode.NATIVE);
+
+	@Rule
+	public ThreadsRule cleanup = new ThreadsRule();
+
+	NioUDPConnector connector;
+	NioUDPConnector destination;
+	SimpleRawDataChannel channel;
+
+	@Before
+	public void setup() throws IOException {
+		connector = new NioUDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		connector.start();
+		channel = new SimpleRawDataChannel(1);
+		destination = new NioUDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		destination.setRawDataReceiver(channel);
+		destination.start();
+	}
+
+	@After
+	public void stop() {
+		connector.destroy();
+		destination.destroy();
+	}
+
+	@Test
+	public void testMessageCallbackOnSent() throws InterruptedException {
+		byte[] data = { 0, 1, 2 };
+		EndpointContext context = new UdpEndpointContext(destination.getAddress());
+
+		SimpleMessageCallback callback = new SimpleMessageCallback(1, false);
+		RawData message = RawData.outbound(data, context, callback, false);
+		connector.send(message);
+
+		callback.await(100);
+		assertThat(callback.toString(), callback.isSent(), is(true));
+		assertThat(callback.toString(), callback.getEndpointContext(), is(notNullValue()));
+
+		RawData receivedData = channel.poll(100, TimeUnit.MILLISECONDS);
+		assertThat("received data:", receivedData, is(notNullValue()));
+		assertThat("bytes received:", receivedData.bytes, is(equalTo(data)));
+		assertThat(receivedData.getInetSocketAddress(), is(connector.getAddress()));
+	}
+
+	@Test
+	public void testTooLargeDatagramIsDropped() throws InterruptedException {
+		byte[] data = new byte[destination.getReceiverPacketSize() + 1];
+		Arrays.fill(data, (byte) 1);
+		EndpointContext context = new UdpEndpointContext(destination.getAddress());
+
+		RawData message = RawData.outbound(data, context, null, false);
+		connector.send(message);
+
+		RawData receivedData = channel.poll(100, TimeUnit.MILLISECONDS);
+		assertThat("first received data:", receivedData, is(nullValue()));
+
+		data = new byte[destination.getReceiverPacketSize()];
+		Arrays.fill(data, (byte) 2);
+		message = RawData.outbound(data, context, null, false);
+		connector.send(message);
+
+		receivedData = channel.poll(100, TimeUnit.SECONDS);
+		assertThat("second received data:", receivedData, is(notNullValue()));
+		assertThat("bytes received:", receivedData.bytes, is(equalTo(data)));
+	}
+
+	@Test
+	public void testBatchIsReceived() throws InterruptedException {
+		int messages = connector.getBatchSize() * 2;
+		channel = new SimpleRawDataChannel(messages);
+		destination.setRawDataReceiver(channel);
+		EndpointContext context = new UdpEndpointContext(destination.getAddress());
+
+		SimpleMessageCallback callback = new SimpleMessageCallback(messages, false);
+		for (int index = 0; index < messages; ++index) {
+			byte[] data = { (byte) index };
+			connector.send(RawData.outbound(data, context, callback, false));
+		}
+		assertThat(callback.toString(), callback.await(1000), is(true));
+		assertThat("all received", channel.await(1000), is(true));
+	}
+
+	@Test
+	public void testStopCallsMessageCallbackOnError() throws InterruptedException, IOException {
+		byte[] data = { 0, 1, 2 };
+		EndpointContext context = new UdpEndpointContext(destination.getAddress());
+
+		connector.stop();
+		SimpleMessageCallback callback = new SimpleMessageCallback(1, false);
+		connector.send(RawData.outbound(data, context, callback, false));
+
+		assertThat(callback.toString(), callback.await(100), is(true));
+		assertThat(callback.toString(), callback.getError(), is(notNullValue()));
+		connector.start();
+	}
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.elements;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.californium.elements.category.NativeDatagramSocketImplRequired;
+import org.eclipse.californium.elements.rule.NetworkRule;
+import org.eclipse.californium.elements.rule.ThreadsRule;
+import org.eclipse.californium.elements.util.DatagramSocketUtil;
+import org.eclipse.californium.elements.util.SimpleRawDataChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies the {@code SO_REUSEPORT} sharded bind of the {@link UDPConnector}.
+ * 
+ * {@code SO_REUSEPORT} is not covered by the DIRECT datagram socket
+ * implementation.
+ */
+@Category(NativeDatagramSocketImplRequired.class)
+public class UDPConnectorReusePortTest {
+
+	private static final int SOCKETS = 4;
+	private static final int CLIENTS = 8;
+
+	@ClassRule
+	public static NetworkRule network = new NetworkRule(NetworkRule.Mode.NATIVE);
+
+	@Rule
+	public ThreadsRule cleanup = new ThreadsRule();
+
+	private final List<UDPConnector> clients = new ArrayList<>();
+	private TestUDPConnector server;
+	private SimpleRawDataChannel channel;
+
+	@Before
+	public void setup() {
+		channel = new SimpleRawDataChannel(CLIENTS);
+	}
+
+	@After
+	public void stop() {
+		for (UDPConnector client : clients) {
+			client.destroy();
+		}
+		if (server != null) {
+			server.destroy();
+		}
+	}
+
+	@Test
+	public void testShardedSocketsReceiveMessages() throws Exception {
+		assumeTrue("SO_REUSEPORT not supported", isReusePortSupported());
+		server = new TestUDPConnector(true);
+		server.setReusePortSockets(SOCKETS);
+		server.setRawDataReceiver(channel);
+		server.start();
+
+		assertThat(server.enabled.get(), is(SOCKETS));
+		assertThatAllClientsAreReceived();
+	}
+
+	@Test
+	public void testFallbackToSingleSocket() throws Exception {
+		server = new TestUDPConnector(false);
+		server.setReusePortSockets(SOCKETS);
+		server.setRawDataReceiver(channel);
+		server.start();
+
+		// only the main socket tries to enable SO_REUSEPORT
+		assertThat(server.calls.get(), is(1));
+		assertThat(server.enabled.get(), is(0));
+		assertThatAllClientsAreReceived();
+	}
+
+	@Test
+	public void testSingleSocketDoesNotEnableReusePort() throws Exception {
+		server = new TestUDPConnector(true);
+		server.setRawDataReceiver(channel);
+		server.start();
+
+		assertThat(server.calls.get(), is(0));
+		assertThatAllClientsAreReceived();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroReusePortSocketsFails() {
+		new UDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)).setReusePortSockets(0);
+	}
+
+	private void assertThatAllClientsAreReceived() throws IOException, InterruptedException {
+		InetSocketAddress destination = server.getAddress();
+		for (int index = 0; index < CLIENTS; ++index) {
+			UDPConnector client = new UDPConnector(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			clients.add(client);
+			client.start();
+			byte[] data = { (byte) index };
+			client.send(RawData.outbound(data, new UdpEndpointContext(destination), null, false));
+		}
+		boolean[] received = new boolean[CLIENTS];
+		for (int index = 0; index < CLIENTS; ++index) {
+			RawData message = channel.poll(1000, TimeUnit.MILLISECONDS);
+			assertThat("missing message " + index, message, is(notNullValue()));
+			received[message.getBytes()[0]] = true;
+		}
+		for (int index = 0; index < CLIENTS; ++index) {
+			assertThat("message of client " + index, received[index], is(true));
+		}
+	}
+
+	private static boolean isReusePortSupported() throws IOException {
+		DatagramSocket socket = new DatagramSocket(null);
+		try {
+			return DatagramSocketUtil.enableReusePort(socket);
+		} finally {
+			socket.close();
+		}
+	}
+
+	private static class TestUDPConnector extends UDPConnector {
+
+		private final AtomicInteger calls = new AtomicInteger();
+		private final AtomicInteger enabled = new AtomicInteger();
+		private final boolean supported;
+
+		private TestUDPConnector(boolean supported) {
+			super(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+			this.supported = supported;
+		}
+
+		@Override
+		protected boolean enableReusePort(DatagramSocket socket) {
+			calls.incrementAndGet();
+			if (supported && super.enableReusePort(socket)) {
+				enabled.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+}
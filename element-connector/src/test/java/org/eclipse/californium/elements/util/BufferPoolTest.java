@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Test;
+
+/**
+ * Verifies behavior of {@link BufferPool}.
+ */
+public class BufferPoolTest {
+
+	@Test
+	public void testAcquireUsesSizeClass() {
+		BufferPool pool = new BufferPool(2048, 4, 4, false);
+		PooledBuffer buffer = pool.acquire(100);
+		assertThat(buffer.getLength(), is(100));
+		assertThat(buffer.getCapacity(), is(128));
+		buffer.release();
+		assertThat(buffer.isReleased(), is(true));
+	}
+
+	@Test
+	public void testReleasedArrayIsReused() {
+		BufferPool pool = new BufferPool(2048, 4, 4, false);
+		PooledBuffer buffer = pool.acquire(1000);
+		byte[] array = buffer.getArray();
+		buffer.release();
+		// release twice has no effect
+		buffer.release();
+
+		PooledBuffer buffer1 = pool.acquire(600);
+		PooledBuffer buffer2 = pool.acquire(600);
+		assertThat(buffer1.getArray(), is(sameInstance(array)));
+		assertThat(buffer2.getArray(), is(not(sameInstance(array))));
+		assertThat(pool.getAcquired(), is(3L));
+		assertThat(pool.getAllocated(), is(2L));
+	}
+
+	@Test
+	public void testReleasedArrayIsSharedWithOtherThreads() throws InterruptedException {
+		final BufferPool pool = new BufferPool(2048, 0, 4, false);
+		final PooledBuffer buffer = pool.acquire(64);
+		byte[] array = buffer.getArray();
+		Thread thread = new Thread() {
+
+			@Override
+			public void run() {
+				buffer.release();
+			}
+		};
+		thread.start();
+		thread.join(1000);
+		assertThat(pool.acquire(10).getArray(), is(sameInstance(array)));
+	}
+
+	@Test
+	public void testLargeArrayIsNotPooled() {
+		BufferPool pool = new BufferPool(2048, 4, 4, false);
+		PooledBuffer buffer = pool.acquire(4096);
+		byte[] array = buffer.getArray();
+		assertThat(buffer.getCapacity(), is(4096));
+		buffer.release();
+		assertThat(pool.acquire(4096).getArray(), is(not(sameInstance(array))));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testReleasedBufferIsNotAccessible() {
+		BufferPool pool = new BufferPool(2048, 4, 4, false);
+		PooledBuffer buffer = pool.acquire(100);
+		buffer.release();
+		buffer.getArray();
+	}
+
+	@Test
+	public void testLeakDetection() throws InterruptedException {
+		BufferPool pool = new BufferPool(2048, 4, 4, true);
+		assertThat(pool.isLeakDetectionEnabled(), is(true));
+		pool.acquire(100);
+		for (int loop = 0; loop < 50 && pool.getLeaks() == 0; ++loop) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		assertThat(pool.getLeaks(), is(1L));
+		pool.acquire(100).release();
+		System.gc();
+		Thread.sleep(20);
+		assertThat(pool.getLeaks(), is(1L));
+	}
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.eclipse.californium.elements.category.NativeDatagramSocketImplRequired;
+import org.eclipse.californium.elements.rule.NetworkRule;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link DatagramSocketUtil}.
+ */
+@Category(NativeDatagramSocketImplRequired.class)
+public class DatagramSocketUtilTest {
+
+	@ClassRule
+	public static NetworkRule network = new NetworkRule(NetworkRule.Mode.NATIVE);
+
+	@Test(expected = NullPointerException.class)
+	public void testEnableReusePortWithoutSocketFails() {
+		DatagramSocketUtil.enableReusePort(null);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testEnableReusePortOnBoundSocketFails() throws IOException {
+		DatagramSocket socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		try {
+			DatagramSocketUtil.enableReusePort(socket);
+		} finally {
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testEnableReusePortAllowsSharedBind() throws IOException {
+		DatagramSocket socket = new DatagramSocket(null);
+		DatagramSocket shard = new DatagramSocket(null);
+		try {
+			boolean enabled = DatagramSocketUtil.enableReusePort(socket);
+			if (!DatagramSocketUtil.isReusePortAvailable()) {
+				assertThat(enabled, is(false));
+			}
+			if (enabled) {
+				assertThat(DatagramSocketUtil.enableReusePort(shard), is(true));
+				socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+				// binding the same port succeeds with SO_REUSEPORT
+				shard.bind(socket.getLocalSocketAddress());
+				assertThat(shard.getLocalPort(), is(socket.getLocalPort()));
+			}
+		} finally {
+			shard.close();
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.elements.util;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies behavior of {@link HashedWheelTimer}.
+ */
+public class HashedWheelTimerTest {
+
+	private ExecutorService executor;
+	private HashedWheelTimer timer;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newSingleThreadExecutor(new TestThreadFactory("Executor-"));
+		// small wheel to test multiple rounds
+		timer = new HashedWheelTimer(new TestThreadFactory("Timer-"), 10, TimeUnit.MILLISECONDS, 8, executor);
+	}
+
+	@After
+	public void tearDown() {
+		timer.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testScheduledTaskIsNotExecutedBeforeDelay() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(3);
+		final long[] executed = new long[3];
+		long start = System.nanoTime();
+		for (int index = 0; index < 3; ++index) {
+			final int delay = (index + 1) * 50;
+			final int task = index;
+			timer.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					executed[task] = System.nanoTime();
+					latch.countDown();
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+		assertThat(latch.await(2000, TimeUnit.MILLISECONDS), is(true));
+		for (int index = 0; index < 3; ++index) {
+			long delay = TimeUnit.NANOSECONDS.toMillis(executed[index] - start);
+			assertThat(delay, is(greaterThanOrEqualTo((index + 1) * 50L)));
+		}
+	}
+
+	@Test
+	public void testCancelledTaskIsNotExecuted() throws Exception {
+		final AtomicInteger counter = new AtomicInteger();
+		final CountDownLatch latch = new CountDownLatch(1);
+		Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+				counter.incrementAndGet();
+			}
+		};
+		ScheduledFuture<?> future = timer.schedule(task, 50, TimeUnit.MILLISECONDS);
+		timer.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		}, 100, TimeUnit.MILLISECONDS);
+		assertThat(future.cancel(false), is(true));
+		assertThat(latch.await(2000, TimeUnit.MILLISECONDS), is(true));
+		assertThat(counter.get(), is(0));
+		assertThat(future.isCancelled(), is(true));
+	}
+
+	@Test
+	public void testFixedRateTaskIsRepeated() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(3);
+		ScheduledFuture<?> future = timer.scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		}, 10, 20, TimeUnit.MILLISECONDS);
+		assertThat(latch.await(2000, TimeUnit.MILLISECONDS), is(true));
+		assertThat(future.isDone(), is(false));
+		future.cancel(false);
+		assertThat(future.isDone(), is(true));
+	}
+
+	@Test
+	public void testExecuteUsesExecutor() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final String[] name = new String[1];
+		timer.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				name[0] = Thread.currentThread().getName();
+				latch.countDown();
+			}
+		});
+		assertThat(latch.await(2000, TimeUnit.MILLISECONDS), is(true));
+		assertThat(name[0].startsWith("Executor-"), is(true));
+	}
+
+	@Test
+	public void testShutdownNowReturnsScheduledTasks() throws Exception {
+		Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		};
+		timer.schedule(task, 1000, TimeUnit.MILLISECONDS);
+		ScheduledFuture<?> cancelled = timer.schedule(task, 1000, TimeUnit.MILLISECONDS);
+		cancelled.cancel(false);
+		List<Runnable> pending = timer.shutdownNow();
+		assertThat(pending.size(), is(1));
+		assertThat(timer.isTerminated(), is(true));
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void testScheduleAfterShutdownIsRejected() {
+		timer.shutdown();
+		timer.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		}, 10, TimeUnit.MILLISECONDS);
+	}
+
+	@Test
+	public void testScheduleConcurrentToShutdownIsRejectedOrReturned() throws Exception {
+		final Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		};
+		final List<ScheduledFuture<?>> scheduled = new CopyOnWriteArrayList<>();
+		final AtomicInteger rejected = new AtomicInteger();
+		final CountDownLatch ready = new CountDownLatch(1);
+		Thread scheduler = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						scheduled.add(timer.schedule(task, 1000, TimeUnit.MILLISECONDS));
+						ready.countDown();
+					}
+				} catch (RejectedExecutionException ex) {
+					rejected.incrementAndGet();
+				}
+			}
+		});
+		scheduler.start();
+		ready.await();
+		List<Runnable> pending = timer.shutdownNow();
+		scheduler.join(1000);
+		assertThat(scheduler.isAlive(), is(false));
+		assertThat(rejected.get(), is(1));
+		// all accepted tasks are returned, none is lost in the pending queue
+		for (ScheduledFuture<?> future : scheduled) {
+			assertThat(pending.contains(future), is(true));
+		}
+		assertThat(pending.size(), is(scheduled.size()));
+	}
+}
@@ -18,6 +18,7 @@
  *                                                    and update last-access time
  *    Achim Kraus (Bosch Software Innovations GmbH) - use TimeAssume to relax failures
  *                                                    caused by delayed execution
+ *    Bosch IO GmbH - add tests for concurrent access
  ******************************************************************************/
 package org.eclipse.californium.elements.util;
 
@@ -29,9 +30,14 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.californium.elements.assume.TimeAssume;
 import org.eclipse.californium.elements.rule.TestTimeRule;
@@ -338,6 +344,27 @@ public class LeastRecentlyUsedCacheTest {
 		assertThat(counter.count, is(1));
 	}
 
+	@Test
+	public void testEvictEldestEvictsMatchingEntryBeforeExpiration() {
+		int capacity = 5;
+
+		givenACacheWithEntries(capacity, THRESHOLD_MILLIS, capacity);
+		EvictionCounter counter = new EvictionCounter();
+		cache.addEvictionListener(counter);
+		assertThat(cache.put(capacity, "new"), is(false));
+
+		// skip the two eldest entries
+		assertThat(cache.evictEldest(new SkipFirsts(2)), is("2"));
+		assertThat(counter.count, is(1));
+		assertThat(cache.get(2), is(nullValue()));
+		assertThat(cache.get(0), is("0"));
+		assertThat(cache.put(capacity, "new"), is(true));
+
+		assertThat(cache.evictEldest(new SkipFirsts(capacity)), is(nullValue()));
+		assertThat(counter.count, is(1));
+		assertThat(cache.size(), is(capacity));
+	}
+
 	@Test
 	public void testStoreAddsNewValueIfCapacityNotReached() {
 		int capacity = 10;
@@ -407,6 +434,134 @@ public class LeastRecentlyUsedCacheTest {
 		assertThat(cache.remainingCapacity(), is(0));
 	}
 
+	@Test
+	public void testConcurrentGetPutAndEviction() throws Exception {
+		final int capacity = 50;
+		final int keys = 4 * capacity;
+		final int loops = 5000;
+
+		givenACacheWithEntries(capacity, 0L, 0);
+		final AtomicInteger evicted = new AtomicInteger(0);
+		cache.addEvictionListener(new EvictionListener<String>() {
+
+			@Override
+			public void onEviction(String evictedSession) {
+				evicted.incrementAndGet();
+			}
+		});
+
+		runConcurrently(new Runnable() {
+
+			@Override
+			public void run() {
+				Random random = new Random();
+				for (int i = 0; i < loops; i++) {
+					Integer key = random.nextInt(keys);
+					switch (random.nextInt(4)) {
+					case 0:
+						assertTrue(cache.put(key, String.valueOf(key)));
+						break;
+					case 1:
+						cache.remove(key);
+						break;
+					default:
+						String value = cache.get(key);
+						if (value != null) {
+							assertThat(value, is(String.valueOf(key)));
+						}
+						break;
+					}
+				}
+			}
+		});
+
+		assertThat(evicted.get(), is(greaterThan(0)));
+		assertThatCacheIsConsistent(capacity);
+	}
+
+	@Test
+	public void testConcurrentReadAccessPreventsEviction() throws Exception {
+		final int capacity = 20;
+		final int hot = capacity / 2;
+
+		givenACacheWithEntries(capacity, THRESHOLD_MILLIS, capacity);
+		cache.setEvictingOnReadAccess(false);
+		EvictionCounter evicted = new EvictionCounter();
+		cache.addEvictionListener(evicted);
+		time.setTestTimeShift(THRESHOLD_MILLIS + 100, TimeUnit.MILLISECONDS);
+
+		// concurrent read access to the hot entries, more than the read buffers
+		// are able to record
+		runConcurrently(new Runnable() {
+
+			@Override
+			public void run() {
+				for (int i = 0; i < 1000; i++) {
+					assertThat(cache.get(i % hot), is(notNullValue()));
+				}
+			}
+		});
+
+		for (int i = capacity; i < capacity + hot; i++) {
+			assertTrue(cache.put(i, Integer.toString(i)));
+		}
+		assertThat(evicted.count, is(hot));
+		for (int i = 0; i < hot; i++) {
+			assertThat("hot entry " + i + " evicted", cache.get(i), is(notNullValue()));
+		}
+		assertThatCacheIsConsistent(capacity);
+	}
+
+	private void assertThatCacheIsConsistent(int capacity) {
+		assertThat(cache.size(), is(lessThanOrEqualTo(capacity)));
+		assertThat(cache.remainingCapacity(), is(capacity - cache.size()));
+		int count = 0;
+		long lastUpdate = Long.MIN_VALUE;
+		Iterator<LeastRecentlyUsedCache.Timestamped<String>> iterator = cache.timestampedIterator();
+		while (iterator.hasNext()) {
+			LeastRecentlyUsedCache.Timestamped<String> entry = iterator.next();
+			if (count > 0) {
+				assertThat("linked list out of order", entry.getLastUpdate() - lastUpdate,
+						is(greaterThanOrEqualTo(0L)));
+			}
+			lastUpdate = entry.getLastUpdate();
+			++count;
+		}
+		assertThat(count, is(cache.size()));
+	}
+
+	private static void runConcurrently(Runnable job) throws Exception {
+		int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> workers = new ArrayList<>(threads);
+		for (int i = 0; i < threads; i++) {
+			final Runnable worker = job;
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						worker.run();
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+			}, "LRU-" + i);
+			workers.add(thread);
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : workers) {
+			thread.join(TimeUnit.SECONDS.toMillis(10));
+			assertFalse(thread.getName() + " still running", thread.isAlive());
+		}
+		if (failure.get() != null) {
+			throw new AssertionError("concurrent access failed", failure.get());
+		}
+	}
+
 	/**
 	 * 
 	 * @param capacity
@@ -116,6 +116,12 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - move serial executor into connection
  *                                                    process new CLIENT_HELLOs without
  *                                                    serial executor.
+ *    Bosch IO GmbH - send queued application data in
+ *                    datagrams with multiple records.
+ *    Bosch IO GmbH - add hashed wheel timer
+ *    Bosch IO GmbH - add handshake admission control
+ *    Bosch IO GmbH - resume sessions from session tickets
+ *    Bosch IO GmbH - add crypto executor for handshakes
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
@@ -172,8 +178,11 @@ import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.RawDataChannel;
 import org.eclipse.californium.elements.util.ClockUtil;
 import org.eclipse.californium.elements.util.DaemonThreadFactory;
+import org.eclipse.californium.elements.util.DatagramSocketUtil;
 import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
 import org.eclipse.californium.elements.util.ExecutorsUtil;
+import org.eclipse.californium.elements.util.HashedWheelTimer;
 import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
 import org.eclipse.californium.elements.util.NamedThreadFactory;
 import org.eclipse.californium.elements.util.NetworkInterfacesUtil;
@@ -220,6 +229,9 @@ import org.eclipse.californium.scandium.dtls.SessionAdapter;
 import org.eclipse.californium.scandium.dtls.SessionCache;
 import org.eclipse.californium.scandium.dtls.SessionId;
 import org.eclipse.californium.scandium.dtls.SessionListener;
+import org.eclipse.californium.scandium.dtls.SessionTicket;
+import org.eclipse.californium.scandium.dtls.SessionTicketExtension;
+import org.eclipse.californium.scandium.dtls.SessionTicketKeys;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.pskstore.AdvancedPskStore;
 import org.eclipse.californium.scandium.dtls.x509.NewAdvancedCertificateVerifier;
@@ -265,11 +277,28 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 
 	private static final long CLIENT_HELLO_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
 
+	/**
+	 * Number of locks to create new connections. Must be a power of two.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int CONNECTION_LOCKS = 256;
+
 	/** all the configuration options for the DTLS connector */ 
 	protected final DtlsConnectorConfig config;
 
 	private final ResumptionSupportingConnectionStore connectionStore;
 
+	/**
+	 * Striped locks to create new connections. Replaces the former lock on the
+	 * connection store, so only connections for peer addresses of the same
+	 * stripe are created sequentially.
+	 * 
+	 * @see #getConnectionLock(InetSocketAddress)
+	 * @since 3.0
+	 */
+	private final Object[] connectionLocks = new Object[CONNECTION_LOCKS];
+
 	/**
 	 * Queue with recent successful handshakes.
 	 * 
@@ -285,7 +314,57 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 
 	private final int thresholdHandshakesWithoutVerifiedPeer;
 	private final AtomicInteger pendingHandshakesWithoutVerifiedPeer = new AtomicInteger();
+	/**
+	 * Maximum number of concurrent handshakes. {@code 0}, if not limited.
+	 * 
+	 * @see DtlsConnectorConfig#getMaxConcurrentHandshakes()
+	 * @since 3.0
+	 */
+	private final int maxConcurrentHandshakes;
+	/**
+	 * Number of ongoing handshakes, which are not established. Only counted,
+	 * if {@link #maxConcurrentHandshakes} is larger than {@code 0}.
+	 * 
+	 * @since 3.0
+	 */
+	private final AtomicInteger pendingHandshakes = new AtomicInteger();
+	/**
+	 * Number of received new CLIENT_HELLOs waiting for processing.
+	 * 
+	 * @since 3.0
+	 */
+	private final AtomicInteger pendingClientHellos = new AtomicInteger();
+	/**
+	 * Keys to accept session tickets. {@code null}, if session tickets are not
+	 * used.
+	 * 
+	 * @see DtlsConnectorConfig#getSessionTicketKeys()
+	 * @since 3.0
+	 */
+	private final SessionTicketKeys sessionTicketKeys;
+	/**
+	 * Handler for asynchronous handshake results.
+	 * 
+	 * @since 3.0
+	 */
+	private final HandshakeResultHandler handshakeResultHandler;
+	/**
+	 * Executor for the crypto functions of handshakes. {@code null}, if the
+	 * crypto functions are executed by the connection's executor.
+	 * 
+	 * @see DtlsConnectorConfig#getCryptoThreadCount()
+	 * @since 3.0
+	 */
+	private volatile ExecutorService cryptoExecutor;
 	protected final DtlsHealth health;
+	/**
+	 * Health handler for the handshake admission control. {@code null}, if
+	 * the {@link #health} handler doesn't implement
+	 * {@link DtlsAdmissionHealth}.
+	 * 
+	 * @since 3.0
+	 */
+	private final DtlsAdmissionHealth admissionHealth;
 
 	private final boolean serverOnly;
 	private final String defaultHandshakeMode;
@@ -301,6 +380,13 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 	 * Apply address update only for newer records based on epoch/sequence_number.
 	 */
 	private final boolean useCidUpdateAddressOnNewerRecordFilter;
+	/**
+	 * Send queued application data of the same peer in datagrams with
+	 * multiple records.
+	 * 
+	 * @since 3.0
+	 */
+	private final boolean useMultiRecordApplicationData;
 
 	/**
 	 * (Down-)counter for pending outbound messages. Initialized with
@@ -349,6 +435,14 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 
 	private volatile DatagramSocket socket;
 
+	/**
+	 * Additional sockets bound with {@code SO_REUSEPORT} to the same address.
+	 * 
+	 * @see DtlsConnectorConfig#getReusePortSockets()
+	 * @since 3.0
+	 */
+	private final List<DatagramSocket> shardSockets = new ArrayList<>();
+
 	/** The timer daemon to schedule retransmissions. */
 	protected ScheduledExecutorService timer;
 
@@ -369,7 +463,7 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 	private AlertHandler alertHandler;
 	private SessionListener sessionListener;
 	private ConnectionListener connectionListener;
-	private ExecutorService executorService;
+	private volatile ExecutorService executorService;
 	private boolean hasInternalExecutor;
 
 	/**
@@ -457,11 +551,17 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 			this.useExtendedWindowFilter = config.useExtendedWindowFilter();
 			this.useFilter = config.useAntiReplayFilter() || useExtendedWindowFilter != 0;
 			this.useCidUpdateAddressOnNewerRecordFilter = config.useCidUpdateAddressOnNewerRecordFilter();
+			this.useMultiRecordApplicationData = config.useMultiRecordApplicationData();
+			this.maxConcurrentHandshakes = config.getMaxConcurrentHandshakes();
+			this.sessionTicketKeys = config.getSessionTicketKeys();
 			this.connectionStore = connectionStore;
+			for (int index = 0; index < CONNECTION_LOCKS; ++index) {
+				this.connectionLocks[index] = new Object();
+			}
 			this.connectionStore.attach(connectionIdGenerator);
 			this.connectionStore.setConnectionListener(config.getConnectionListener());
 			this.connectionListener = config.getConnectionListener();
-			HandshakeResultHandler handler = new HandshakeResultHandler() {
+			this.handshakeResultHandler = new HandshakeResultHandler() {
 
 				@Override
 				public void apply(HandshakeResult connectionResult) {
@@ -470,11 +570,11 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 			};
 			AdvancedPskStore advancedPskStore = config.getAdvancedPskStore();
 			if (advancedPskStore != null) {
-				advancedPskStore.setResultHandler(handler);
+				advancedPskStore.setResultHandler(handshakeResultHandler);
 			}
 			NewAdvancedCertificateVerifier certificateVerifier = config.getAdvancedCertificateVerifier();
 			if (certificateVerifier != null) {
-				certificateVerifier.setResultHandler(handler);
+				certificateVerifier.setResultHandler(handshakeResultHandler);
 			}
 			DtlsHealth healthHandler = config.getHealthHandler();
 			Integer healthStatusInterval = config.getHealthStatusInterval();
@@ -487,6 +587,9 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 				}
 			}
 			this.health = healthHandler;
+			this.admissionHealth = (healthHandler instanceof DtlsAdmissionHealth)
+					? (DtlsAdmissionHealth) healthHandler
+					: null;
 			this.sessionListener = new SessionAdapter() {
 
 				@Override
@@ -588,6 +691,32 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 				health.startHandshake();
 			}
 		}
+		if (maxConcurrentHandshakes > 0) {
+			// pending until the crypto operations are done
+			pendingHandshakes.incrementAndGet();
+			handshaker.addSessionListener(new SessionAdapter() {
+
+				private final AtomicBoolean pending = new AtomicBoolean(true);
+
+				@Override
+				public void contextEstablished(Handshaker handshaker, DTLSContext establishedContext)
+						throws HandshakeException {
+					release();
+				}
+
+				@Override
+				public void handshakeFailed(Handshaker handshaker, Throwable error) {
+					release();
+				}
+
+				private void release() {
+					if (pending.compareAndSet(true, false)) {
+						pendingHandshakes.decrementAndGet();
+					}
+				}
+			});
+		}
+		handshaker.setCryptoExecutor(cryptoExecutor, handshakeResultHandler);
 		onInitializeHandshaker(handshaker);
 	}
 
@@ -777,10 +906,23 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		}
 	}
 
-	private synchronized ExecutorService getExecutorService() {
+	private ExecutorService getExecutorService() {
 		return executorService;
 	}
 
+	/**
+	 * Gets lock to create a new connection for the provided peer address.
+	 * 
+	 * @param peerAddress peer address
+	 * @return lock for the peer address
+	 * @since 3.0
+	 */
+	private Object getConnectionLock(InetSocketAddress peerAddress) {
+		int hash = peerAddress.hashCode();
+		hash ^= (hash >>> 16);
+		return connectionLocks[hash & (CONNECTION_LOCKS - 1)];
+	}
+
 	/**
 	 * Start connector.
 	 * 
@@ -834,10 +976,21 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		int recvBuffer = socket.getReceiveBufferSize();
 		int sendBuffer = socket.getSendBufferSize();
 
+		boolean shards = false;
 		if (!socket.isBound()) {
+			int sockets = config.getReusePortSockets();
+			if (sockets > 1) {
+				shards = enableReusePort(socket);
+				if (!shards) {
+					LOGGER.warn("SO_REUSEPORT not supported, using only one socket!");
+				}
+			}
 			socket.bind(bindAddress);
 		}
 		InetSocketAddress actualBindAddress = new InetSocketAddress(socket.getLocalAddress(), socket.getLocalPort());
+		if (shards) {
+			bindShards(actualBindAddress, config.getReusePortSockets() - 1);
+		}
 		if (lastBindAddress != null && !actualBindAddress.equals(lastBindAddress)) {
 			connectionStore.markAllAsResumptionRequired();
 		}
@@ -903,7 +1056,14 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 
 		lastBindAddress = actualBindAddress;
 
-		if (executorService instanceof ScheduledExecutorService) {
+		int timerTick = config.getHashedWheelTimerTick();
+		if (timerTick > 0) {
+			// without executor, the expired tasks are executed by the
+			// thread of the timer, as for the single threaded timer
+			timer = new HashedWheelTimer(new DaemonThreadFactory(
+					"DTLS-Timer-" + lastBindAddress + "#", NamedThreadFactory.SCANDIUM_THREAD_GROUP), //$NON-NLS-1$
+					timerTick, TimeUnit.MILLISECONDS, executorService);
+		} else if (executorService instanceof ScheduledExecutorService) {
 			timer = (ScheduledExecutorService) executorService;
 		} else {
 			timer = ExecutorsUtil.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
@@ -912,6 +1072,10 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 
 		if (executorService == null) {
 			int threadCount = config.getConnectionThreadCount();
+			if (timerTick > 0 && threadCount < 2) {
+				// the hashed wheel timer doesn't execute tasks without delay
+				threadCount = 2;
+			}
 			if (threadCount > 1) {
 				executorService = ExecutorsUtil.newFixedThreadPool(threadCount - 1, new DaemonThreadFactory(
 						"DTLS-Worker-" + lastBindAddress + "#", NamedThreadFactory.SCANDIUM_THREAD_GROUP)); //$NON-NLS-1$
@@ -920,6 +1084,11 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 			}
 			this.hasInternalExecutor = true;
 		}
+		int cryptoThreadCount = config.getCryptoThreadCount();
+		if (cryptoThreadCount > 0) {
+			cryptoExecutor = ExecutorsUtil.newFixedThreadPool(cryptoThreadCount, new DaemonThreadFactory(
+					"DTLS-Crypto-" + lastBindAddress + "#", NamedThreadFactory.SCANDIUM_THREAD_GROUP)); //$NON-NLS-1$
+		}
 		// prepare restored connections.
 		long expires = calculateRecentHandshakeExpires();
 		int recentCounter = 0;
@@ -974,21 +1143,14 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 
 		int receiverThreadCount = config.getReceiverThreadCount();
 		for (int i = 0; i < receiverThreadCount; i++) {
-			Worker receiver = new Worker("DTLS-Receiver-" + i + "-" + lastBindAddress) {
-
-				private final byte[] receiverBuffer = new byte[inboundDatagramBufferSize];
-				private final DatagramPacket packet = new DatagramPacket(receiverBuffer, inboundDatagramBufferSize);
-
-				@Override
-				public void doWork() throws Exception {
-					MDC.clear();
-					packet.setData(receiverBuffer);
-					receiveNextDatagramFromNetwork(packet);
-				}
-			};
-			receiver.setDaemon(true);
-			receiver.start();
-			receiverThreads.add(receiver);
+			startReceiver("DTLS-Receiver-" + i + "-" + lastBindAddress, null);
+		}
+		int shard = 1;
+		for (DatagramSocket shardSocket : shardSockets) {
+			for (int i = 0; i < receiverThreadCount; i++) {
+				startReceiver("DTLS-Receiver-" + shard + "-" + i + "-" + lastBindAddress, shardSocket);
+			}
+			++shard;
 		}
 
 		String mtuDescription = maximumTransmissionUnit != null ? maximumTransmissionUnit.toString() : "IPv4 " + ipv4Mtu + " / IPv6 " + ipv6Mtu;
@@ -1025,6 +1187,92 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		}, 5000, 5000, TimeUnit.MILLISECONDS);
 	}
 
+	/**
+	 * Bind additional sockets with {@code SO_REUSEPORT} to the same address.
+	 * 
+	 * @param bindAddress address to bind the sockets
+	 * @param count number of additional sockets
+	 * @throws IOException I/O error
+	 * @since 3.0
+	 */
+	private void bindShards(InetSocketAddress bindAddress, int count) throws IOException {
+		Integer receiveBufferSize = config.getSocketReceiveBufferSize();
+		try {
+			for (int i = 0; i < count; i++) {
+				DatagramSocket shard = new DatagramSocket(null);
+				shardSockets.add(shard);
+				shard.setReuseAddress(config.isAddressReuseEnabled());
+				enableReusePort(shard);
+				if (receiveBufferSize != null && receiveBufferSize != 0) {
+					shard.setReceiveBufferSize(receiveBufferSize);
+				}
+				shard.bind(bindAddress);
+			}
+		} catch (IOException ex) {
+			closeShards();
+			throw ex;
+		}
+		LOGGER.info("DTLSConnector uses {} sockets with SO_REUSEPORT on {}", count + 1, bindAddress);
+	}
+
+	/**
+	 * Enable {@code SO_REUSEPORT} for the bind socket and the shards.
+	 * 
+	 * Default delegates to {@link DatagramSocketUtil}. Tests override it to
+	 * fake a JVM or OS without {@code SO_REUSEPORT}.
+	 * 
+	 * @param socket socket to enable {@code SO_REUSEPORT}
+	 * @return {@code true}, if {@code SO_REUSEPORT} is enabled, {@code false},
+	 *         if not available or not supported.
+	 * @see DatagramSocketUtil#enableReusePort(DatagramSocket)
+	 * @since 3.0
+	 */
+	protected boolean enableReusePort(DatagramSocket socket) {
+		return DatagramSocketUtil.enableReusePort(socket);
+	}
+
+	/**
+	 * Close additional sockets bound with {@code SO_REUSEPORT}.
+	 * 
+	 * @since 3.0
+	 */
+	private void closeShards() {
+		for (DatagramSocket shard : shardSockets) {
+			shard.close();
+		}
+		shardSockets.clear();
+	}
+
+	/**
+	 * Start receiver thread.
+	 * 
+	 * @param name name of thread
+	 * @param receiveSocket socket to receive datagrams. {@code null} to use
+	 *            the connector's socket.
+	 * @since 3.0
+	 */
+	private void startReceiver(String name, final DatagramSocket receiveSocket) {
+		Worker receiver = new Worker(name) {
+
+			private final byte[] receiverBuffer = new byte[inboundDatagramBufferSize];
+			private final DatagramPacket packet = new DatagramPacket(receiverBuffer, inboundDatagramBufferSize);
+
+			@Override
+			public void doWork() throws Exception {
+				MDC.clear();
+				packet.setData(receiverBuffer);
+				if (receiveSocket == null) {
+					receiveNextDatagramFromNetwork(packet);
+				} else {
+					receiveNextDatagramFromNetwork(receiveSocket, packet);
+				}
+			}
+		};
+		receiver.setDaemon(true);
+		receiver.start();
+		receiverThreads.add(receiver);
+	}
+
 	/**
 	 * Force connector to an abbreviated handshake. See <a href="https://tools.ietf.org/html/rfc5246#section-7.3">RFC 5246</a>.
 	 * 
@@ -1088,6 +1336,7 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 					socket.close();
 					socket = null;
 				}
+				closeShards();
 				maximumTransmissionUnit = null;
 				ipv4Mtu = DEFAULT_IPV4_MTU;
 				ipv6Mtu = DEFAULT_IPV6_MTU;
@@ -1097,6 +1346,11 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 					shutdownTimer = timer;
 					timer = null;
 				}
+				if (cryptoExecutor != null) {
+					// pending crypto functions are obsolete
+					cryptoExecutor.shutdownNow();
+					cryptoExecutor = null;
+				}
 				if (hasInternalExecutor) {
 					pending.addAll(executorService.shutdownNow());
 					shutdown = executorService;
@@ -1341,35 +1595,42 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 	 */
 	private final Connection getConnection(InetSocketAddress peerAddress, ConnectionId cid, boolean create) {
 		ExecutorService executor = getExecutorService();
-		synchronized (connectionStore) {
-			Connection connection;
-			if (cid != null) {
-				connection = connectionStore.get(cid);
-			} else {
-				connection = connectionStore.get(peerAddress);
-				if (connection == null && create) {
-					LOGGER.trace("create new connection for {}", peerAddress);
-					Connection newConnection = new Connection(peerAddress, new SerialExecutor(executor));
-					newConnection.setExecutionListener(connectionListener);
-					if (running.get()) {
-						// only add, if connector is running!
-						if (!connectionStore.put(newConnection)) {
-							return null;
+		Connection connection;
+		if (cid != null) {
+			connection = connectionStore.get(cid);
+		} else {
+			connection = connectionStore.get(peerAddress);
+			if (connection == null && create) {
+				synchronized (getConnectionLock(peerAddress)) {
+					connection = connectionStore.get(peerAddress);
+					if (connection == null) {
+						LOGGER.trace("create new connection for {}", peerAddress);
+						Connection newConnection = new Connection(peerAddress, new SerialExecutor(executor));
+						newConnection.setExecutionListener(connectionListener);
+						if (running.get()) {
+							// only add, if connector is running!
+							if (!connectionStore.put(newConnection)) {
+								return null;
+							}
 						}
+						return newConnection;
 					}
-					return newConnection;
 				}
 			}
-			if (connection == null) {
-				LOGGER.trace("no connection available for {},{}", peerAddress, cid);
-			} else if (!connection.isExecuting() && running.get()) {
-				LOGGER.trace("revive connection for {},{}", peerAddress, cid);
-				connection.setExecutor(new SerialExecutor(executor));
-			} else {
-				LOGGER.trace("connection available for {},{}", peerAddress, cid);
+		}
+		if (connection == null) {
+			LOGGER.trace("no connection available for {},{}", peerAddress, cid);
+		} else if (!connection.isExecuting() && running.get()) {
+			synchronized (connection) {
+				if (!connection.isExecuting()) {
+					LOGGER.trace("revive connection for {},{}", peerAddress, cid);
+					connection.setExecutor(new SerialExecutor(executor));
+				}
 			}
-			return connection;
+		} else {
+			LOGGER.trace("connection available for {},{}", peerAddress, cid);
 		}
+		return connection;
 	}
 
 	/**
@@ -1388,6 +1649,23 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 			// very unlikely race condition.
 			return;
 		}
+		receiveNextDatagramFromNetwork(currentSocket, packet);
+	}
+
+	/**
+	 * Receive the next datagram from the provided socket.
+	 * 
+	 * Used for the connector's socket and the additional sockets bound with
+	 * {@code SO_REUSEPORT}.
+	 * 
+	 * @param currentSocket socket to receive the datagram
+	 * @param packet datagram the be read from network
+	 * @throws IOException if an io- error occurred
+	 * @see #processDatagram(DatagramPacket, InetSocketAddress)
+	 * @since 3.0
+	 */
+	private void receiveNextDatagramFromNetwork(DatagramSocket currentSocket, DatagramPacket packet)
+			throws IOException {
 
 		currentSocket.receive(packet);
 
@@ -1449,16 +1727,38 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		final Record firstRecord = records.get(0);
 
 		if (records.size() == 1 && firstRecord.isNewClientHello()) {
+			if (maxConcurrentHandshakes > 0 && pendingClientHellos.get() >= maxConcurrentHandshakes) {
+				// keep the executor free for established connections
+				DROP_LOGGER.trace("Discarding new CLIENT_HELLO from [{}], too many pending!",
+						StringUtil.toLog(peerAddress));
+				if (health != null) {
+					health.receivingRecord(true);
+				}
+				if (admissionHealth != null) {
+					admissionHealth.shedClientHello();
+				}
+				return;
+			}
 			firstRecord.setAddress(peerAddress, router);
-			executorService.execute(new Runnable() {
+			pendingClientHellos.incrementAndGet();
+			try {
+				executorService.execute(new Runnable() {
 
-				@Override
-				public void run() {
-					MDC.put("PEER", StringUtil.toString(firstRecord.getPeerAddress()));
-					processNewClientHello(firstRecord);
-					MDC.clear();
-				}
-			});
+					@Override
+					public void run() {
+						try {
+							MDC.put("PEER", StringUtil.toString(firstRecord.getPeerAddress()));
+							processNewClientHello(firstRecord);
+							MDC.clear();
+						} finally {
+							pendingClientHellos.decrementAndGet();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				pendingClientHellos.decrementAndGet();
+				throw e;
+			}
 			return;
 		}
 
@@ -1703,9 +2003,9 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 				// context
 				DtlsEndpointContext endpointContext = connection.getReadContext(record.getPeerAddress());
 				LOGGER.trace("Received APPLICATION_DATA for {}", endpointContext);
-				// create application message.
-				RawData receivedApplicationMessage = RawData.inbound(message.getData(), endpointContext, false,
-						record.getReceiveNanos(), lastBindAddress);
+				// create application message, the decrypted data is passed without copy.
+				RawData receivedApplicationMessage = RawData.inbound(message.getBackingArray(), message.size(),
+						endpointContext, false, record.getReceiveNanos(), lastBindAddress);
 				channel.receiveData(receivedApplicationMessage);
 			}
 		} else if (ongoingHandshake != null) {
@@ -1903,9 +2203,21 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 			// the IP address indicated in the client hello message
 			final AvailableConnections connections = new AvailableConnections();
 			if (isClientInControlOfSourceIpAddress(clientHello, record, connections)) {
+				if (isHandshakeBudgetExhausted()) {
+					// the client retransmits the CLIENT_HELLO after its backoff
+					DROP_LOGGER.debug("Discarding verified CLIENT_HELLO from [{}], {} handshakes pending!",
+							StringUtil.toLog(peerAddress), pendingHandshakes.get());
+					if (health != null) {
+						health.receivingRecord(true);
+					}
+					if (admissionHealth != null) {
+						admissionHealth.rejectHandshake();
+					}
+					return;
+				}
 				boolean verify = false;
 				Connection connection;
-				synchronized (connectionStore) {
+				synchronized (getConnectionLock(peerAddress)) {
 					connection = connectionStore.get(peerAddress);
 					if (connection != null && !connection.isStartedByClientHello(clientHello)) {
 						Connection sessionConnection = connections.getConnectionBySessionId();
@@ -2088,14 +2400,22 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 					LOGGER.trace("pending fast resumptions [{}], threshold [{}]", pending,
 							thresholdHandshakesWithoutVerifiedPeer);
 					if (pending < thresholdHandshakesWithoutVerifiedPeer) {
-						// use short resumption (without verify request)
-						// only, if the number of the pending short
-						// resumption handshakes is below the threshold
-						Connection sessionConnection = connectionStore.find(clientHello.getSessionId());
-						connections.setConnectionBySessionId(sessionConnection);
-						if (sessionConnection != null) {
-							// found provided session.
-							return true;
+						if (isHandshakeBudgetExhausted()) {
+							// backpressure, use verify request also for
+							// short resumption
+							if (admissionHealth != null) {
+								admissionHealth.enforceHelloVerifyRequest();
+							}
+						} else {
+							// use short resumption (without verify request)
+							// only, if the number of the pending short
+							// resumption handshakes is below the threshold
+							Connection sessionConnection = connectionStore.find(clientHello.getSessionId());
+							connections.setConnectionBySessionId(sessionConnection);
+							if (sessionConnection != null) {
+								// found provided session.
+								return true;
+							}
 						}
 					}
 				}
@@ -2109,6 +2429,18 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		}
 	}
 
+	/**
+	 * Check, if the maximum number of concurrent handshakes is reached.
+	 * 
+	 * @return {@code true}, if the maximum number is reached, {@code false},
+	 *         if not or not limited.
+	 * @see DtlsConnectorConfig#getMaxConcurrentHandshakes()
+	 * @since 3.0
+	 */
+	private boolean isHandshakeBudgetExhausted() {
+		return maxConcurrentHandshakes > 0 && pendingHandshakes.get() >= maxConcurrentHandshakes;
+	}
+
 	/**
 	 * Start a new handshake.
 	 * 
@@ -2166,40 +2498,22 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 				session = previousConnection.getResumeSession();
 				destroy = true;
 			}
-			boolean ok = session != null;
-			if (ok && config.isSniEnabled()) {
-				ServerNames serverNames1 = session.getServerNames();
-				ServerNames serverNames2 = null;
-				ServerNameExtension extension = clientHello.getServerNameExtension();
-				if (extension != null) {
-					serverNames2 = extension.getServerNames();
-				}
-				if (serverNames1 != null) {
-					ok = serverNames1.equals(serverNames2);
-				} else if (serverNames2 != null) {
-					// invalidate ticket, server names mismatch
-					ok = false;
-				}
-			}
-			if (ok && config.getExtendedMasterSecretMode() != ExtendedMasterSecretMode.NONE) {
-				// https://tools.ietf.org/html/rfc7627#section-5.3
-				if (!session.useExtendedMasterSecret() && clientHello.hasExtendedMasterSecret()) {
-					// If the original session did not use the
-					// "extended_master_secret" extension but the new
-					// ClientHello contains the extension, then the
-					// server MUST NOT perform the abbreviated handshake.
-					// Instead, it SHOULD continue with a full handshake (as
-					// described in Section 5.2) to negotiate a new session.
-					ok = false;
-				}
-				// aborting handshakes is done in ResumingServerHandshaker
-			}
-			if (ok) {
+			if (session != null && isResumable(session, clientHello)) {
 				newSession = new DTLSSession(session);
 			}
 			if (destroy) {
 				SecretUtil.destroy(session);
 			}
+		} else if (sessionTicketKeys != null) {
+			// stateless resumption, the session is provided by the client
+			DTLSSession session = getSessionFromTicket(clientHello, peerAddress);
+			if (session != null) {
+				if (isResumable(session, clientHello)) {
+					newSession = session;
+				} else {
+					SecretUtil.destroy(session);
+				}
+			}
 		}
 		if (newSession != null) {
 			// session has been found in cache, resume it
@@ -2207,7 +2521,7 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 					this, timer, connection, config);
 			initializeHandshaker(handshaker);
 
-			if (previousConnection.hasEstablishedDtlsContext()) {
+			if (previousConnection != null && previousConnection.hasEstablishedDtlsContext()) {
 				// client wants to resume a session that has been negotiated by this node
 				// make sure that the same client only has a single active connection to this server
 				if (connections.isRemoveConnectionBySessionId()) {
@@ -2243,6 +2557,72 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		}
 	}
 
+	/**
+	 * Check, if the session is resumable with the provided CLIENT_HELLO.
+	 * 
+	 * @param session session to resume
+	 * @param clientHello CLIENT_HELLO message
+	 * @return {@code true}, if the server names and the extended master secret
+	 *         matches, {@code false}, if a full handshake is required.
+	 * @since 3.0
+	 */
+	private boolean isResumable(DTLSSession session, ClientHello clientHello) {
+		boolean ok = true;
+		if (config.isSniEnabled()) {
+			ServerNames serverNames1 = session.getServerNames();
+			ServerNames serverNames2 = null;
+			ServerNameExtension extension = clientHello.getServerNameExtension();
+			if (extension != null) {
+				serverNames2 = extension.getServerNames();
+			}
+			if (serverNames1 != null) {
+				ok = serverNames1.equals(serverNames2);
+			} else if (serverNames2 != null) {
+				// invalidate ticket, server names mismatch
+				ok = false;
+			}
+		}
+		if (ok && config.getExtendedMasterSecretMode() != ExtendedMasterSecretMode.NONE) {
+			// https://tools.ietf.org/html/rfc7627#section-5.3
+			if (!session.useExtendedMasterSecret() && clientHello.hasExtendedMasterSecret()) {
+				// If the original session did not use the
+				// "extended_master_secret" extension but the new
+				// ClientHello contains the extension, then the
+				// server MUST NOT perform the abbreviated handshake.
+				// Instead, it SHOULD continue with a full handshake (as
+				// described in Section 5.2) to negotiate a new session.
+				ok = false;
+			}
+			// aborting handshakes is done in ResumingServerHandshaker
+		}
+		return ok;
+	}
+
+	/**
+	 * Get session from the session ticket provided by the client.
+	 * 
+	 * @param clientHello CLIENT_HELLO message
+	 * @param peerAddress peer address of the CLIENT_HELLO message
+	 * @return session, or {@code null}, if no valid session ticket is
+	 *         provided.
+	 * @see DtlsConnectorConfig#getSessionTicketKeys()
+	 * @since 3.0
+	 */
+	private DTLSSession getSessionFromTicket(ClientHello clientHello, InetSocketAddress peerAddress) {
+		SessionTicketExtension extension = clientHello.getSessionTicketExtension();
+		if (extension == null || extension.isEmpty()) {
+			return null;
+		}
+		SessionTicket ticket = sessionTicketKeys.unseal(extension.getTicket());
+		if (ticket == null) {
+			LOGGER.debug("Client [{}] provided invalid session ticket!", StringUtil.toLog(peerAddress));
+			return null;
+		}
+		DTLSSession session = new DTLSSession(clientHello.getSessionId(), ticket);
+		SecretUtil.destroy(ticket);
+		return session;
+	}
+
 	private void sendHelloVerify(ClientHello clientHello, Record record, byte[] expectedCookie) throws GeneralSecurityException {
 		// send CLIENT_HELLO_VERIFY with cookie in order to prevent
 		// DOS attack as described in DTLS 1.2 spec
@@ -2741,6 +3121,25 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 	}
 
 	private void sendMessage(final RawData message, final Connection connection) {
+		if (useMultiRecordApplicationData && connection.getRouter() == null) {
+			if (connection.addPendingOutgoingApplicationData(message)) {
+				// all application data queued until now on the serial
+				// executor are collected before the pending are sent
+				Runnable task = new Runnable() {
+
+					@Override
+					public void run() {
+						sendPendingApplicationData(connection);
+					}
+				};
+				try {
+					connection.getExecutor().execute(task);
+				} catch (RejectedExecutionException e) {
+					task.run();
+				}
+			}
+			return;
+		}
 		try {
 			DTLSContext dltsContext = connection.getEstablishedDtlsContext();
 			LOGGER.trace("send {}-{} using {}", connection.getConnectionId(),
@@ -2770,6 +3169,99 @@ public class DTLSConnector implements Connector, PersistentConnector, RecordLaye
 		}
 	}
 
+	/**
+	 * Send pending outgoing application data of a connection.
+	 * 
+	 * Encrypts the application data into separate records, but sends these
+	 * records in as few datagrams as the maximum datagram size allows.
+	 * 
+	 * @param connection connection with pending outgoing application data
+	 * @see Connection#takePendingOutgoingApplicationData()
+	 * @since 3.0
+	 */
+	private void sendPendingApplicationData(final Connection connection) {
+		List<RawData> messages = connection.takePendingOutgoingApplicationData();
+		if (messages == null) {
+			return;
+		}
+		InetSocketAddress peerAddress = connection.getPeerAddress();
+		DTLSContext dtlsContext = connection.getEstablishedDtlsContext();
+		if (peerAddress == null || dtlsContext == null) {
+			for (RawData message : messages) {
+				DROP_LOGGER.debug("DTLSConnector drops {} outgoing bytes to {}, connection not longer established!",
+						message.getSize(), StringUtil.toLog(message.getInetSocketAddress()));
+				message.onError(new EndpointUnconnectedException("connection not longer established!"));
+				if (health != null) {
+					health.sendingRecord(true);
+				}
+			}
+			return;
+		}
+		LOGGER.trace("send {} messages {}-{} using {}", messages.size(), connection.getConnectionId(),
+				StringUtil.toLog(peerAddress), dtlsContext.getSession().getSessionIdentifier());
+		final DtlsEndpointContext context = connection.getWriteContext();
+		int maxDatagramSize = getMaxDatagramSize(peerAddress.getAddress() instanceof Inet6Address);
+		DatagramWriter writer = new DatagramWriter(maxDatagramSize);
+		List<RawData> datagramMessages = new ArrayList<>(messages.size());
+		for (RawData message : messages) {
+			if (!checkOutboundEndpointContext(message, context)) {
+				continue;
+			}
+			message.onContextEstablished(context);
+			byte[] recordBytes;
+			try {
+				Record record = new Record(ContentType.APPLICATION_DATA, dtlsContext.getWriteEpoch(),
+						new ApplicationMessage(message.getBytes()), dtlsContext, true, TLS12_CID_PADDING);
+				recordBytes = record.toByteArray();
+			} catch (GeneralSecurityException e) {
+				DROP_LOGGER.warn("Cannot send APPLICATION record to peer [{}]",
+						StringUtil.toLog(message.getInetSocketAddress()), e);
+				message.onError(e);
+				continue;
+			}
+			if (writer.size() > 0 && writer.size() + recordBytes.length > maxDatagramSize) {
+				// current record does not fit into datagram anymore
+				sendApplicationDataDatagram(writer, peerAddress, datagramMessages);
+			}
+			writer.writeBytes(recordBytes);
+			datagramMessages.add(message);
+		}
+		if (writer.size() > 0) {
+			sendApplicationDataDatagram(writer, peerAddress, datagramMessages);
+			connectionStore.update(connection, null);
+		}
+	}
+
+	/**
+	 * Send datagram with application data records.
+	 * 
+	 * Reports the result to the application data contained in that datagram
+	 * and clears the list of that application data afterwards.
+	 * 
+	 * @param writer writer with records. Reset after sending.
+	 * @param peerAddress destination address
+	 * @param messages application data contained in the datagram
+	 * @since 3.0
+	 */
+	private void sendApplicationDataDatagram(DatagramWriter writer, InetSocketAddress peerAddress,
+			List<RawData> messages) {
+		byte[] payload = writer.toByteArray();
+		DatagramPacket datagram = new DatagramPacket(payload, payload.length, peerAddress);
+		LOGGER.trace("Sending datagram of {} bytes with {} records to peer [{}]", payload.length, messages.size(),
+				StringUtil.toLog(peerAddress));
+		try {
+			sendNextDatagramOverNetwork(datagram);
+			for (RawData message : messages) {
+				message.onSent();
+			}
+		} catch (IOException e) {
+			for (RawData message : messages) {
+				message.onError(e);
+			}
+		}
+		messages.clear();
+	}
+
 	/**
 	 * Check, if the endpoint context match for outgoing messages using
 	 * {@link #endpointContextMatcher}.
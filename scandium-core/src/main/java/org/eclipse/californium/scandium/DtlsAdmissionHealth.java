@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ * 
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ * 
+ * Contributors:
+ *    Bosch IO GmbH - initial creation
+ ******************************************************************************/
+package org.eclipse.californium.scandium;
+
+import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
+
+/**
+ * Health interface for the handshake admission control of
+ * {@link DTLSConnector}.
+ * 
+ * Only reported, if the health handler implements this interface.
+ * 
+ * @see DtlsConnectorConfig#getMaxConcurrentHandshakes()
+ * @since 3.0
+ */
+public interface DtlsAdmissionHealth extends DtlsHealth {
+
+	/**
+	 * Report HELLO_VERIFY_REQUEST, which is only used, because the maximum
+	 * number of concurrent handshakes is reached.
+	 */
+	void enforceHelloVerifyRequest();
+
+	/**
+	 * Report verified CLIENT_HELLO, which is dropped, because the maximum
+	 * number of concurrent handshakes is reached.
+	 */
+	void rejectHandshake();
+
+	/**
+	 * Report new CLIENT_HELLO, which is dropped before processing, because too
+	 * many CLIENT_HELLOs are already waiting for processing.
+	 */
+	void shedClientHello();
+}
@@ -12,6 +12,7 @@
  * 
  * Contributors:
  *    Bosch Software Innovations GmbH - initial creation
+ *    Bosch IO GmbH - add handshake admission control
  ******************************************************************************/
 package org.eclipse.californium.scandium;
 
@@ -29,7 +30,7 @@ import org.slf4j.LoggerFactory;
  * Health implementation using counter and logging for results.
  */
 @NoPublicAPI
-public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHealth {
+public class DtlsHealthLogger extends CounterStatisticManager implements DtlsAdmissionHealth {
 
 	/** the logger. */
 	private static final Logger LOGGER = LoggerFactory.getLogger(DTLSConnector.class.getCanonicalName() + ".health");
@@ -46,6 +47,11 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 	private final SimpleCounterStatistic sentRecords = new SimpleCounterStatistic("sending records", align);
 	private final SimpleCounterStatistic droppedSentRecords = new SimpleCounterStatistic("dropped sending records",
 			align);
+	private final SimpleCounterStatistic enforcedVerifyRequests = new SimpleCounterStatistic(
+			"enforced verify requests", align);
+	private final SimpleCounterStatistic rejectedHandshakes = new SimpleCounterStatistic("handshakes rejected",
+			align);
+	private final SimpleCounterStatistic shedClientHellos = new SimpleCounterStatistic("shed client hellos", align);
 
 	/**
 	 * Create passive dtls health logger.
@@ -85,6 +91,9 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 		add(droppedReceivedRecords);
 		add(sentRecords);
 		add(droppedSentRecords);
+		add(enforcedVerifyRequests);
+		add(rejectedHandshakes);
+		add(shedClientHellos);
 	}
 
 	@Override
@@ -97,6 +106,9 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 				log.append(tag).append("statistic:").append(eol);
 				log.append(head).append(succeededHandshakes).append(eol);
 				log.append(head).append(failedHandshakes).append(eol);
+				log.append(head).append(enforcedVerifyRequests).append(eol);
+				log.append(head).append(rejectedHandshakes).append(eol);
+				log.append(head).append(shedClientHellos).append(eol);
 				log.append(head).append(sentRecords).append(eol);
 				log.append(head).append(droppedSentRecords).append(eol);
 				log.append(head).append(receivedRecords).append(eol);
@@ -129,6 +141,9 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 				log.append(" (").append(pendingWithoutVerify).append(" without verify).").append(eol);
 				log.append(head).append(succeededHandshakes).append(eol);
 				log.append(head).append(failedHandshakes).append(eol);
+				log.append(head).append(enforcedVerifyRequests).append(eol);
+				log.append(head).append(rejectedHandshakes).append(eol);
+				log.append(head).append(shedClientHellos).append(eol);
 				log.append(head).append(sentRecords).append(eol);
 				log.append(head).append(droppedSentRecords).append(eol);
 				log.append(head).append(receivedRecords).append(eol);
@@ -202,4 +217,19 @@ public class DtlsHealthLogger extends CounterStatisticManager implements DtlsHea
 			sentRecords.increment();
 		}
 	}
+
+	@Override
+	public void enforceHelloVerifyRequest() {
+		enforcedVerifyRequests.increment();
+	}
+
+	@Override
+	public void rejectHandshake() {
+		rejectedHandshakes.increment();
+	}
+
+	@Override
+	public void shedClientHello() {
+		shedClientHellos.increment();
+	}
 }
@@ -31,6 +31,13 @@
  *                                                    move default thread numbers to this configuration.
  *    Achim Kraus (Bosch Software Innovations GmbH) - add deferred processed messages
  *    Achim Kraus (Bosch Software Innovations GmbH) - add server only.
+ *    Bosch IO GmbH - add multi record application data
+ *    Bosch IO GmbH - add hashed wheel timer tick
+ *    Bosch IO GmbH - add pool of precomputed ECDHE key pairs
+ *    Bosch IO GmbH - add handshake admission control
+ *    Bosch IO GmbH - add session tickets
+ *    Bosch IO GmbH - renew session tickets on resumption
+ *    Bosch IO GmbH - add crypto executor for handshakes
  *******************************************************************************/
 
 package org.eclipse.californium.scandium.config;
@@ -63,12 +70,14 @@ import org.eclipse.californium.scandium.dtls.HelloVerifyRequest;
 import org.eclipse.californium.scandium.dtls.ProtocolVersion;
 import org.eclipse.californium.scandium.dtls.RecordLayer;
 import org.eclipse.californium.scandium.dtls.SessionCache;
+import org.eclipse.californium.scandium.dtls.SessionTicketKeys;
 import org.eclipse.californium.scandium.dtls.SignatureAndHashAlgorithm;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite.KeyExchangeAlgorithm;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuiteSelector;
 import org.eclipse.californium.scandium.dtls.cipher.DefaultCipherSuiteSelector;
 import org.eclipse.californium.scandium.dtls.cipher.XECDHECryptography.SupportedGroup;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHEKeyPairPool;
 import org.eclipse.californium.scandium.dtls.pskstore.AdvancedPskStore;
 import org.eclipse.californium.scandium.dtls.x509.NewAdvancedCertificateVerifier;
 import org.eclipse.californium.scandium.util.ListUtils;
@@ -196,6 +205,13 @@ public final class DtlsConnectorConfig {
 	 * @since 2.4
 	 */
 	private Boolean enableMultiHandshakeMessageRecords;
+	/**
+	 * Enable to send outgoing application data, which is queued for the same
+	 * peer, in UDP messages with multiple dtls records.
+	 * 
+	 * @since 3.0
+	 */
+	private Boolean enableMultiRecordApplicationData;
 	/**
 	 * Protocol version to use for sending a hello verify request. Default
 	 * {@code null} to reply the clients version.
@@ -335,8 +351,31 @@ public final class DtlsConnectorConfig {
 
 	private Integer connectionThreadCount;
 
+	/**
+	 * Tick of the hashed wheel timer in milliseconds. {@code 0} to use a
+	 * scheduled executor service as timer.
+	 * 
+	 * @since 3.0
+	 */
+	private Integer hashedWheelTimerTick;
+
+	/**
+	 * Number of threads to execute the crypto functions of handshakes.
+	 * {@code 0} to execute them with the connection's executor.
+	 * 
+	 * @since 3.0
+	 */
+	private Integer cryptoThreadCount;
+
 	private Integer receiverThreadCount;
 
+	/**
+	 * Number of sockets bound with {@code SO_REUSEPORT} to the same address.
+	 * 
+	 * @since 3.0
+	 */
+	private Integer reusePortSockets;
+
 	private Integer socketReceiveBufferSize;
 
 	private Integer socketSendBufferSize;
@@ -387,6 +426,14 @@ public final class DtlsConnectorConfig {
 	 */
 	private Integer verifyPeersOnResumptionThreshold;
 
+	/**
+	 * Maximum number of concurrent handshakes. {@code 0}, if not limited.
+	 * 
+	 * @see #getMaxConcurrentHandshakes()
+	 * @since 3.0
+	 */
+	private Integer maxConcurrentHandshakes;
+
 	/**
 	 * Indicates, that no session id is used by this server. The sessions are not
 	 * cached by this server and can not be resumed.
@@ -438,6 +485,29 @@ public final class DtlsConnectorConfig {
 
 	private ApplicationLevelInfoSupplier applicationLevelInfoSupplier;
 
+	/**
+	 * Pool of precomputed ECDHE key pairs. {@code null}, if the key pairs are
+	 * generated on demand.
+	 * 
+	 * @since 3.0
+	 */
+	private XECDHEKeyPairPool ecdheKeyPairPool;
+
+	/**
+	 * Keys to issue and accept session tickets. {@code null}, if the server
+	 * doesn't use session tickets.
+	 * 
+	 * @since 3.0
+	 */
+	private SessionTicketKeys sessionTicketKeys;
+
+	/**
+	 * Request session tickets from the server.
+	 * 
+	 * @since 3.0
+	 */
+	private Boolean useSessionTickets;
+
 	/**
 	 * Use truncated certificate paths when sending the client's certificate message.
 	 * @since 2.1
@@ -532,6 +602,25 @@ public final class DtlsConnectorConfig {
 		return enableMultiHandshakeMessageRecords;
 	}
 
+	/**
+	 * Gets enable to send outgoing application data in UDP messages with
+	 * multiple dtls records.
+	 * 
+	 * If enabled, the application data queued for the same peer at the time
+	 * the first of them is processed, is encrypted into separate records, but
+	 * sent in as few UDP messages as the maximum datagram size allows. Not
+	 * applied to connections with a router of a cluster.
+	 * 
+	 * Default is {@code false}, send each application data in a separate UDP
+	 * message.
+	 * 
+	 * @return {@code true}, if enabled, {@code false}, otherwise.
+	 * @since 3.0
+	 */
+	public Boolean useMultiRecordApplicationData() {
+		return enableMultiRecordApplicationData;
+	}
+
 	/**
 	 * Get protocol version for hello verify requests to send.
 	 * 
@@ -751,6 +840,32 @@ public final class DtlsConnectorConfig {
 		return verifyPeersOnResumptionThreshold;
 	}
 
+	/**
+	 * Gets the maximum number of concurrent handshakes.
+	 * <p>
+	 * A handshake is pending, until its session is established or the
+	 * handshake fails. If the limit of pending handshakes is reached,
+	 * <ul>
+	 * <li>a HELLO_VERIFY_REQUEST is used for all CLIENT_HELLOs, including
+	 * resumption handshakes, which would otherwise be started without,</li>
+	 * <li>CLIENT_HELLOs with valid cookie are dropped and so the client
+	 * retransmits them after its backoff, and</li>
+	 * <li>new CLIENT_HELLOs are dropped before processing them, if more than
+	 * that number are already waiting for processing.</li>
+	 * </ul>
+	 * That keeps the processing of records of established connections and of
+	 * ongoing handshakes responsive during a reconnect storm.
+	 * <p>
+	 * The default value is {@code 0}, which doesn't limit the handshakes.
+	 * 
+	 * @return maximum number of concurrent handshakes. {@code 0}, if not
+	 *         limited.
+	 * @since 3.0
+	 */
+	public Integer getMaxConcurrentHandshakes() {
+		return maxConcurrentHandshakes;
+	}
+
 	/**
 	 * Gets connection ID generator.
 	 * 
@@ -920,6 +1035,49 @@ public final class DtlsConnectorConfig {
 		return applicationLevelInfoSupplier;
 	}
 
+	/**
+	 * Gets the pool of precomputed ECDHE key pairs.
+	 * 
+	 * @return pool of key pairs, or {@code null}, if the key pairs are
+	 *         generated on demand.
+	 * @since 3.0
+	 */
+	public XECDHEKeyPairPool getEcdheKeyPairPool() {
+		return ecdheKeyPairPool;
+	}
+
+	/**
+	 * Gets the keys to issue and accept session tickets.
+	 * 
+	 * If available, the server issues a session ticket, if the client
+	 * requests it, and resumes sessions from the tickets provided by the
+	 * clients without lookup in the session cache. On such an abbreviated
+	 * handshake a fresh ticket is issued as well, so the ticket of a client
+	 * doesn't expire with the rotation of the keys as long as the client
+	 * resumes the session in time.
+	 * 
+	 * @return keys for session tickets, or {@code null}, if session tickets
+	 *         are not used by the server.
+	 * @see <a href="https://tools.ietf.org/html/rfc5077">RFC 5077</a>
+	 * @since 3.0
+	 */
+	public SessionTicketKeys getSessionTicketKeys() {
+		return sessionTicketKeys;
+	}
+
+	/**
+	 * Indicates, that the client requests session tickets from the server
+	 * and provides them on resumption.
+	 * 
+	 * @return {@code true}, if session tickets are requested, {@code false},
+	 *         otherwise.
+	 * @see <a href="https://tools.ietf.org/html/rfc5077">RFC 5077</a>
+	 * @since 3.0
+	 */
+	public Boolean useSessionTickets() {
+		return useSessionTickets;
+	}
+
 	/**
 	 * Gets whether the connector wants (requests) DTLS x509/RPK clients to
 	 * authenticate during the handshake. The handshake doesn't fail, if the
@@ -1033,6 +1191,44 @@ public final class DtlsConnectorConfig {
 		return connectionThreadCount;
 	}
 
+	/**
+	 * Gets the tick of the hashed wheel timer.
+	 * <p>
+	 * The timer schedules the retransmissions and timeouts of the
+	 * handshakes. A hashed wheel timer is cheaper to schedule and cancel for
+	 * many concurrent handshakes, but less precise.
+	 * <p>
+	 * The default value is {@code 0}, which uses a scheduled executor service
+	 * as timer.
+	 * 
+	 * @return tick in milliseconds. {@code 0}, if no hashed wheel timer is
+	 *         used.
+	 * @see org.eclipse.californium.elements.util.HashedWheelTimer
+	 * @since 3.0
+	 */
+	public Integer getHashedWheelTimerTick() {
+		return hashedWheelTimerTick;
+	}
+
+	/**
+	 * Gets the number of threads to execute the crypto functions of
+	 * handshakes.
+	 * <p>
+	 * The server offloads the ECDH key agreement, the master secret
+	 * generation, and the verification of the client's signature to a
+	 * separate executor. That isolates the processing of application data
+	 * from bursts of handshakes.
+	 * <p>
+	 * The default value is {@code 0}, which executes the crypto functions with
+	 * the connection's executor.
+	 * 
+	 * @return number of threads. {@code 0}, if no separate executor is used.
+	 * @since 3.0
+	 */
+	public Integer getCryptoThreadCount() {
+		return cryptoThreadCount;
+	}
+
 	/**
 	 * Gets the number of threads which should be use to receive datagrams
 	 * from the socket.
@@ -1045,6 +1241,23 @@ public final class DtlsConnectorConfig {
 		return receiverThreadCount;
 	}
 
+	/**
+	 * Gets the number of sockets bound with {@code SO_REUSEPORT} to the same
+	 * address.
+	 * <p>
+	 * Each socket uses {@link #getReceiverThreadCount()} receiver threads.
+	 * The kernel distributes the datagrams on the sockets using a hash of the
+	 * 4-tuple, therefore the records of a peer are always received by the same
+	 * receiver threads. The default value is {@code 1}, using only one socket
+	 * without {@code SO_REUSEPORT}.
+	 * 
+	 * @return the number of sockets.
+	 * @since 3.0
+	 */
+	public Integer getReusePortSockets() {
+		return reusePortSockets;
+	}
+
 	/**
 	 * Gets size of the socket receive buffer.
 	 * 
@@ -1229,6 +1442,7 @@ public final class DtlsConnectorConfig {
 		cloned.maxFragmentedHandshakeMessageLength = maxFragmentedHandshakeMessageLength;
 		cloned.enableMultiRecordMessages = enableMultiRecordMessages;
 		cloned.enableMultiHandshakeMessageRecords = enableMultiHandshakeMessageRecords;
+		cloned.enableMultiRecordApplicationData = enableMultiRecordApplicationData;
 		cloned.protocolVersionForHelloVerifyRequests = protocolVersionForHelloVerifyRequests;
 		cloned.retransmissionTimeout = retransmissionTimeout;
 		cloned.maxRetransmissions = maxRetransmissions;
@@ -1255,7 +1469,10 @@ public final class DtlsConnectorConfig {
 		cloned.maxConnections = maxConnections;
 		cloned.staleConnectionThreshold = staleConnectionThreshold;
 		cloned.connectionThreadCount = connectionThreadCount;
+		cloned.hashedWheelTimerTick = hashedWheelTimerTick;
+		cloned.cryptoThreadCount = cryptoThreadCount;
 		cloned.receiverThreadCount = receiverThreadCount;
+		cloned.reusePortSockets = reusePortSockets;
 		cloned.socketReceiveBufferSize = socketReceiveBufferSize;
 		cloned.socketSendBufferSize = socketSendBufferSize;
 		cloned.healthStatusInterval = healthStatusInterval;
@@ -1263,6 +1480,7 @@ public final class DtlsConnectorConfig {
 		cloned.sniEnabled = sniEnabled;
 		cloned.extendedMasterSecretMode = extendedMasterSecretMode;
 		cloned.verifyPeersOnResumptionThreshold = verifyPeersOnResumptionThreshold;
+		cloned.maxConcurrentHandshakes = maxConcurrentHandshakes;
 		cloned.useNoServerSessionId = useNoServerSessionId;
 		cloned.loggingTag = loggingTag;
 		cloned.useAntiReplayFilter = useAntiReplayFilter;
@@ -1270,6 +1488,9 @@ public final class DtlsConnectorConfig {
 		cloned.useCidUpdateAddressOnNewerRecordFilter = useCidUpdateAddressOnNewerRecordFilter;
 		cloned.connectionIdGenerator = connectionIdGenerator;
 		cloned.applicationLevelInfoSupplier = applicationLevelInfoSupplier;
+		cloned.ecdheKeyPairPool = ecdheKeyPairPool;
+		cloned.sessionTicketKeys = sessionTicketKeys;
+		cloned.useSessionTickets = useSessionTickets;
 		cloned.useTruncatedCertificatePathForClientsCertificateMessage = useTruncatedCertificatePathForClientsCertificateMessage;
 		cloned.useTruncatedCertificatePathForValidation = useTruncatedCertificatePathForValidation;
 		cloned.connectionListener = connectionListener;
@@ -1449,6 +1670,9 @@ public final class DtlsConnectorConfig {
 			} else if (config.useNoServerSessionId != null && config.useNoServerSessionId.booleanValue()) {
 				throw new IllegalStateException(
 						"client only is in contradiction to server side 'no server session id'!");
+			} else if (config.sessionTicketKeys != null) {
+				throw new IllegalStateException(
+						"client only is in contradiction to server side session ticket keys!");
 			}
 			config.clientOnly = true;
 			return this;
@@ -1604,6 +1828,21 @@ public final class DtlsConnectorConfig {
 			return this;
 		}
 
+		/**
+		 * Enable to send outgoing application data, which is queued for the
+		 * same peer, in UDP messages with multiple dtls records.
+		 * 
+		 * @param enable {@code true}, to enabled, {@code false}, otherwise.
+		 *            Default {@code false}.
+		 * @return this builder for command chaining
+		 * @see DtlsConnectorConfig#useMultiRecordApplicationData()
+		 * @since 3.0
+		 */
+		public Builder setEnableMultiRecordApplicationData(boolean enable) {
+			config.enableMultiRecordApplicationData = enable;
+			return this;
+		}
+
 		/**
 		 * Set the protocol version to be used to send hello verify requests.
 		 * 
@@ -2470,6 +2709,59 @@ public final class DtlsConnectorConfig {
 			return this;
 		}
 
+		/**
+		 * Sets a pool of precomputed ECDHE key pairs.
+		 * 
+		 * The ephemeral key pairs of ECDHE handshakes are taken from that
+		 * pool. If the pool is empty, the key pair is generated on demand.
+		 * The pool is not started nor stopped by the connector, and may be
+		 * shared by several connectors.
+		 * 
+		 * @param pool pool of key pairs. {@code null}, to generate the key
+		 *            pairs on demand.
+		 * @return this builder for command chaining.
+		 * @since 3.0
+		 */
+		public Builder setEcdheKeyPairPool(XECDHEKeyPairPool pool) {
+			config.ecdheKeyPairPool = pool;
+			return this;
+		}
+
+		/**
+		 * Sets the keys to issue and accept session tickets.
+		 * 
+		 * Nodes of a cluster, which use keys with the same secret and rotation
+		 * period, are able to resume the sessions of each other without
+		 * sharing the session cache.
+		 * 
+		 * @param keys keys for session tickets. {@code null}, to not use
+		 *            session tickets on the server side.
+		 * @return this builder for command chaining.
+		 * @throws IllegalArgumentException if keys are provided and the
+		 *             configuration is for client only.
+		 * @since 3.0
+		 */
+		public Builder setSessionTicketKeys(SessionTicketKeys keys) {
+			if (Boolean.TRUE.equals(config.clientOnly) && keys != null) {
+				throw new IllegalArgumentException("not applicable for client only!");
+			}
+			config.sessionTicketKeys = keys;
+			return this;
+		}
+
+		/**
+		 * Sets whether the client requests session tickets from the server.
+		 * 
+		 * @param flag {@code true}, to request session tickets and provide
+		 *            them on resumption.
+		 * @return this builder for command chaining.
+		 * @since 3.0
+		 */
+		public Builder setUseSessionTickets(boolean flag) {
+			config.useSessionTickets = flag;
+			return this;
+		}
+
 		/**
 		 * Sets the certificate types for the trust of the other peer.
 		 * 
@@ -2629,6 +2921,49 @@ public final class DtlsConnectorConfig {
 			return this;
 		}
 
+		/**
+		 * Set the tick of the hashed wheel timer.
+		 * <p>
+		 * The default value is {@code 0}, which uses a scheduled executor
+		 * service as timer.
+		 * 
+		 * @param tickMillis tick in milliseconds. {@code 0}, to not use a
+		 *            hashed wheel timer.
+		 * @return this builder for command chaining.
+		 * @throws IllegalArgumentException if tick is negative
+		 * @see DtlsConnectorConfig#getHashedWheelTimerTick()
+		 * @since 3.0
+		 */
+		public Builder setHashedWheelTimerTick(int tickMillis) {
+			if (tickMillis < 0) {
+				throw new IllegalArgumentException("Tick must not be negative!");
+			}
+			config.hashedWheelTimerTick = tickMillis;
+			return this;
+		}
+
+		/**
+		 * Set the number of threads to execute the crypto functions of
+		 * handshakes.
+		 * <p>
+		 * The default value is {@code 0}, which executes the crypto functions
+		 * with the connection's executor.
+		 * 
+		 * @param threadCount number of threads. {@code 0}, to not use a
+		 *            separate executor.
+		 * @return this builder for command chaining.
+		 * @throws IllegalArgumentException if thread count is negative
+		 * @see DtlsConnectorConfig#getCryptoThreadCount()
+		 * @since 3.0
+		 */
+		public Builder setCryptoThreadCount(int threadCount) {
+			if (threadCount < 0) {
+				throw new IllegalArgumentException("Thread count must not be negative!");
+			}
+			config.cryptoThreadCount = threadCount;
+			return this;
+		}
+
 		/**
 		 * Set the number of thread which should be used to receive
 		 * datagrams from the socket.
@@ -2643,6 +2978,28 @@ public final class DtlsConnectorConfig {
 			return this;
 		}
 
+		/**
+		 * Set the number of sockets bound with {@code SO_REUSEPORT} to the
+		 * same address.
+		 * <p>
+		 * Each socket uses its own receiver threads. Requires java 9 and a
+		 * platform supporting {@code SO_REUSEPORT}, otherwise only one socket
+		 * is used. The default value is {@code 1}, using only one socket
+		 * without {@code SO_REUSEPORT}.
+		 * 
+		 * @param sockets the number of sockets.
+		 * @return this builder for command chaining.
+		 * @throws IllegalArgumentException if sockets is less than 1
+		 * @since 3.0
+		 */
+		public Builder setReusePortSockets(int sockets) {
+			if (sockets < 1) {
+				throw new IllegalArgumentException("number of sockets " + sockets + " must be at least 1!");
+			}
+			config.reusePortSockets = sockets;
+			return this;
+		}
+
 		/**
 		 * Set the timeout of automatic session resumption in milliseconds.
 		 * <p>
@@ -2734,6 +3091,26 @@ public final class DtlsConnectorConfig {
 			return this;
 		}
 
+		/**
+		 * Set the maximum number of concurrent handshakes.
+		 * <p>
+		 * The default value is {@code 0}, which doesn't limit the handshakes.
+		 * 
+		 * @param maxHandshakes maximum number of concurrent handshakes.
+		 *            {@code 0}, to not limit the handshakes.
+		 * @return this builder for command chaining.
+		 * @throws IllegalArgumentException if the maximum number is negative
+		 * @see DtlsConnectorConfig#getMaxConcurrentHandshakes()
+		 * @since 3.0
+		 */
+		public Builder setMaxConcurrentHandshakes(int maxHandshakes) {
+			if (maxHandshakes < 0) {
+				throw new IllegalArgumentException("Maximum handshakes must not be negative!");
+			}
+			config.maxConcurrentHandshakes = maxHandshakes;
+			return this;
+		}
+
 		/**
 		 * Set whether session id is used by this server or not.
 		 * 
@@ -2911,6 +3288,9 @@ public final class DtlsConnectorConfig {
 			if (config.useTruncatedCertificatePathForValidation == null) {
 				config.useTruncatedCertificatePathForValidation = Boolean.TRUE;
 			}
+			if (config.enableMultiRecordApplicationData == null) {
+				config.enableMultiRecordApplicationData = Boolean.FALSE;
+			}
 			if (config.earlyStopRetransmission == null) {
 				config.earlyStopRetransmission = Boolean.TRUE;
 			}
@@ -2955,6 +3335,9 @@ public final class DtlsConnectorConfig {
 					config.defaultHandshakeMode = DtlsEndpointContext.HANDSHAKE_MODE_AUTO;
 				}
 			}
+			if (config.useSessionTickets == null) {
+				config.useSessionTickets = Boolean.FALSE;
+			}
 			if (config.useNoServerSessionId == null) {
 				config.useNoServerSessionId = Boolean.FALSE;
 			}
@@ -2973,9 +3356,18 @@ public final class DtlsConnectorConfig {
 			if (config.connectionThreadCount == null) {
 				config.connectionThreadCount = DEFAULT_EXECUTOR_THREAD_POOL_SIZE;
 			}
+			if (config.hashedWheelTimerTick == null) {
+				config.hashedWheelTimerTick = 0;
+			}
+			if (config.cryptoThreadCount == null) {
+				config.cryptoThreadCount = 0;
+			}
 			if (config.receiverThreadCount == null) {
 				config.receiverThreadCount = DEFAULT_RECEIVER_THREADS;
 			}
+			if (config.reusePortSockets == null) {
+				config.reusePortSockets = 1;
+			}
 			if (config.staleConnectionThreshold == null) {
 				config.staleConnectionThreshold = DEFAULT_STALE_CONNECTION_TRESHOLD;
 			}
@@ -3000,6 +3392,9 @@ public final class DtlsConnectorConfig {
 			if (config.verifyPeersOnResumptionThreshold == null) {
 				config.verifyPeersOnResumptionThreshold = DEFAULT_VERIFY_PEERS_ON_RESUMPTION_THRESHOLD_IN_PERCENT;
 			}
+			if (config.maxConcurrentHandshakes == null) {
+				config.maxConcurrentHandshakes = 0;
+			}
 			if (config.trustCertificateTypes == null && config.advancedCertificateVerifier != null) {
 				config.trustCertificateTypes = config.advancedCertificateVerifier.getSupportedCertificateType();
 			} 
@@ -16,9 +16,12 @@
  *    Kai Hudalla (Bosch Software Innovations GmbH) - add accessor for message type
  *    Kai Hudalla (Bosch Software Innovations GmbH) - add accessor for peer address
  *    Achim Kraus (Bosch Software Innovations GmbH) - remove cloning of byte array
+ *    Bosch IO GmbH - support data in larger byte array
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
+import java.util.Arrays;
+
 import org.eclipse.californium.elements.util.StringUtil;
 
 /**
@@ -33,6 +36,16 @@ public final class ApplicationMessage implements DTLSMessage {
 	/** The (to the record layer) transparent data. */
 	private final byte[] data;
 
+	/**
+	 * Length of the data.
+	 * 
+	 * The data starts at index {@code 0} of {@link #data}. The array may be
+	 * larger, e.g. if the data is decrypted in place.
+	 * 
+	 * @since 3.0
+	 */
+	private final int length;
+
 	// Constructor ////////////////////////////////////////////////////
 
 	/**
@@ -46,10 +59,34 @@ public final class ApplicationMessage implements DTLSMessage {
 	 * @throws NullPointerException if peer or data is {@code null}
 	 */
 	public ApplicationMessage(byte[] data) {
+		this(data, data == null ? 0 : data.length);
+	}
+
+	/**
+	 * Creates a new <em>APPLICATION_DATA</em> message containing specific data
+	 * at the begin of the provided byte array.
+	 * <p>
+	 * The given byte array will not be cloned/copied, i.e. any changes made to
+	 * the byte array after this method has been invoked will be exposed in the
+	 * message's payload.
+	 * 
+	 * @param data byte array with the application data starting at index
+	 *            {@code 0}.
+	 * @param length length of the application data.
+	 * @throws NullPointerException if data is {@code null}
+	 * @throws IllegalArgumentException if length is negative or exceeds the
+	 *             byte array.
+	 * @since 3.0
+	 */
+	public ApplicationMessage(byte[] data, int length) {
 		if (data == null) {
 			throw new NullPointerException("data must not be null!");
 		}
+		if (length < 0 || length > data.length) {
+			throw new IllegalArgumentException("length " + length + " out of range [0..." + data.length + "]!");
+		}
 		this.data = data;
+		this.length = length;
 	}
 
 	// Methods ////////////////////////////////////////////////////////
@@ -62,7 +99,7 @@ public final class ApplicationMessage implements DTLSMessage {
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		sb.append("\tApplication Data: ").append(StringUtil.byteArray2Hex(data)).append(StringUtil.lineSeparator());
+		sb.append("\tApplication Data: ").append(StringUtil.byteArray2Hex(getData())).append(StringUtil.lineSeparator());
 		return sb.toString();
 	}
 
@@ -70,12 +107,12 @@ public final class ApplicationMessage implements DTLSMessage {
 
 	@Override
 	public int size() {
-		return data.length;
+		return length;
 	}
 
 	@Override
 	public byte[] toByteArray() {
-		return data;
+		return getData();
 	}
 
 	/**
@@ -93,9 +130,48 @@ public final class ApplicationMessage implements DTLSMessage {
 		return new ApplicationMessage(byteArray);
 	}
 
+	/**
+	 * Create message from the begin of a byte array.
+	 * <p>
+	 * The given byte array will not be cloned/copied.
+	 * 
+	 * @param byteArray byte array with the application data starting at
+	 *            index {@code 0}.
+	 * @param length length of the application data.
+	 * @return created message
+	 * @see #ApplicationMessage(byte[], int)
+	 * @since 3.0
+	 */
+	public static DTLSMessage fromByteArray(byte[] byteArray, int length) {
+		return new ApplicationMessage(byteArray, length);
+	}
+
 	// Getters and Setters ////////////////////////////////////////////
 
+	/**
+	 * Get application data.
+	 * 
+	 * @return application data. Copied, if the data is only a part of the
+	 *         backing array.
+	 * @see #getBackingArray()
+	 */
 	public byte[] getData() {
+		if (length < data.length) {
+			return Arrays.copyOf(data, length);
+		}
+		return data;
+	}
+
+	/**
+	 * Get backing array of the application data.
+	 * 
+	 * The data starts at index {@code 0} and has {@link #size()} bytes. The
+	 * array may be larger.
+	 * 
+	 * @return backing array
+	 * @since 3.0
+	 */
+	public byte[] getBackingArray() {
 		return data;
 	}
 }
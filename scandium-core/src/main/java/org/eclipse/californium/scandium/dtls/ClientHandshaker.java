@@ -42,6 +42,7 @@
  *                                                    process reordered handshake messages
  *    Achim Kraus (Bosch Software Innovations GmbH) - add dtls flight number
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign DTLSFlight and RecordLayer
+ *    Bosch IO GmbH - request session tickets
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -85,13 +86,15 @@ public class ClientHandshaker extends Handshaker {
 			new HandshakeState(HandshakeType.SERVER_HELLO), new HandshakeState(HandshakeType.CERTIFICATE),
 			new HandshakeState(HandshakeType.SERVER_KEY_EXCHANGE),
 			new HandshakeState(HandshakeType.CERTIFICATE_REQUEST, true),
-			new HandshakeState(HandshakeType.SERVER_HELLO_DONE), new HandshakeState(ContentType.CHANGE_CIPHER_SPEC),
-			new HandshakeState(HandshakeType.FINISHED) };
+			new HandshakeState(HandshakeType.SERVER_HELLO_DONE),
+			new HandshakeState(HandshakeType.NEW_SESSION_TICKET, true),
+			new HandshakeState(ContentType.CHANGE_CIPHER_SPEC), new HandshakeState(HandshakeType.FINISHED) };
 	private static HandshakeState[] NO_SEVER_CERTIFICATE = {
 			new HandshakeState(HandshakeType.HELLO_VERIFY_REQUEST, true),
 			new HandshakeState(HandshakeType.SERVER_HELLO), new HandshakeState(HandshakeType.SERVER_KEY_EXCHANGE, true),
-			new HandshakeState(HandshakeType.SERVER_HELLO_DONE), new HandshakeState(ContentType.CHANGE_CIPHER_SPEC),
-			new HandshakeState(HandshakeType.FINISHED) };
+			new HandshakeState(HandshakeType.SERVER_HELLO_DONE),
+			new HandshakeState(HandshakeType.NEW_SESSION_TICKET, true),
+			new HandshakeState(ContentType.CHANGE_CIPHER_SPEC), new HandshakeState(HandshakeType.FINISHED) };
 
 	// Members ////////////////////////////////////////////////////////
 
@@ -184,6 +187,28 @@ public class ClientHandshaker extends Handshaker {
 	/** The hash of all received handshake messages sent in the finished message. */
 	protected byte[] handshakeHash = null;
 
+	/**
+	 * Request session tickets from the server.
+	 * 
+	 * @since 3.0
+	 */
+	protected final boolean useSessionTickets;
+
+	/**
+	 * Indicates, that the server will send a {@link NewSessionTicket}.
+	 * 
+	 * @since 3.0
+	 */
+	protected boolean sessionTicketExpected;
+
+	/**
+	 * The client's finished message. Required to update the
+	 * {@link #handshakeHash}, if a {@link NewSessionTicket} is received.
+	 * 
+	 * @since 3.0
+	 */
+	private Finished clientFinished;
+
 	protected ServerNames indicatedServerNames;
 	protected SignatureAndHashAlgorithm negotiatedSignatureAndHashAlgorithm;
 
@@ -231,6 +256,7 @@ public class ClientHandshaker extends Handshaker {
 		this.supportedServerCertificateTypes = config.getTrustCertificateTypes();
 		this.supportedClientCertificateTypes = config.getIdentityCertificateTypes();
 		this.supportedSignatureAlgorithms = config.getSupportedSignatureAlgorithms();
+		this.useSessionTickets = Boolean.TRUE.equals(config.useSessionTickets());
 		this.probe = probe;
 	}
 
@@ -288,6 +314,10 @@ public class ClientHandshaker extends Handshaker {
 			receivedServerHelloDone((ServerHelloDone) message);
 			break;
 
+		case NEW_SESSION_TICKET:
+			receivedNewSessionTicket((NewSessionTicket) message);
+			break;
+
 		case FINISHED:
 			receivedServerFinished((Finished) message);
 			break;
@@ -314,6 +344,38 @@ public class ClientHandshaker extends Handshaker {
 		handshakeCompleted();
 	}
 
+	/**
+	 * Called when the client received the server's new session ticket. Stores
+	 * the ticket in the session and includes the message in the
+	 * {@link #handshakeHash} to verify the server's finished message.
+	 * 
+	 * @param message the {@link NewSessionTicket} message.
+	 * @throws HandshakeException if the server didn't announce the new session
+	 *             ticket in its SERVER_HELLO
+	 * @since 3.0
+	 */
+	private void receivedNewSessionTicket(NewSessionTicket message) throws HandshakeException {
+		if (!sessionTicketExpected || clientFinished == null) {
+			throw new HandshakeException(
+					String.format("Received unexpected handshake message [%s] from peer %s",
+							message.getMessageType(), peerToLog),
+					new AlertMessage(AlertLevel.FATAL, AlertDescription.UNEXPECTED_MESSAGE));
+		}
+		// remove last message - NewSessionTicket itself
+		handshakeMessages.remove(handshakeMessages.size() - 1);
+		MessageDigest md = getHandshakeMessageDigest();
+		// add NewSessionTicket again
+		handshakeMessages.add(message);
+		md.update(clientFinished.toByteArray());
+		md.update(message.toByteArray());
+		handshakeHash = md.digest();
+		byte[] ticket = message.getTicket();
+		if (ticket.length > 0) {
+			getSession().setOpaqueTicket(ticket);
+			LOGGER.debug("Received session ticket [{} bytes] from peer [{}]", ticket.length, peerToLog);
+		}
+	}
+
 	/**
 	 * A {@link HelloVerifyRequest} is sent by the server upon the arrival of
 	 * the client's {@link ClientHello}. It is sent by the server to prevent
@@ -357,6 +419,9 @@ public class ClientHandshaker extends Handshaker {
 		serverRandom = message.getRandom();
 		DTLSSession session = getSession();
 		session.setSessionIdentifier(message.getSessionId());
+		// a ticket of a previous session must not be used for the new one
+		session.setOpaqueTicket(null);
+		sessionTicketExpected = message.hasSessionTicketExtension();
 		CipherSuite cipherSuite = message.getCipherSuite();
 		if (!supportedCipherSuites.contains(cipherSuite)) {
 			throw new HandshakeException(
@@ -538,7 +603,7 @@ public class ClientHandshaker extends Handshaker {
 		if (KeyExchangeAlgorithm.ECDHE_PSK == keyExchangeAlgorithm
 				|| KeyExchangeAlgorithm.EC_DIFFIE_HELLMAN == keyExchangeAlgorithm) {
 			try {
-				ecdhe = new XECDHECryptography(serverKeyExchange.getSupportedGroup());
+				ecdhe = new XECDHECryptography(serverKeyExchange.getSupportedGroup(), ecdheKeyPairPool);
 				ecdheSecret = ecdhe.generateSecret(serverKeyExchange.getEncodedPoint());
 				encodedPoint = ecdhe.getEncodedPoint();
 			} catch (GeneralSecurityException ex) {
@@ -685,6 +750,7 @@ public class ClientHandshaker extends Handshaker {
 		// included, used for server's finished message
 		mdWithClientFinished.update(finished.toByteArray());
 		handshakeHash = mdWithClientFinished.digest();
+		clientFinished = finished;
 		sendFlight(flight5);
 
 		expectChangeCipherSpecMessage();
@@ -776,6 +842,8 @@ public class ClientHandshaker extends Handshaker {
 
 		addServerNameIndication(startMessage);
 
+		addSessionTicket(startMessage);
+
 		// store for later calculations
 		flightNumber = 1;
 		clientHello = startMessage;
@@ -836,6 +904,26 @@ public class ClientHandshaker extends Handshaker {
 		}
 	}
 
+	/**
+	 * Add session ticket extension, if configured in
+	 * {@link DtlsConnectorConfig#useSessionTickets()}. Contains the ticket of
+	 * the session, if available, or is empty to request a new ticket.
+	 * 
+	 * @param helloMessage client hello to add {@link SessionTicketExtension}.
+	 * @since 3.0
+	 */
+	protected void addSessionTicket(final ClientHello helloMessage) {
+		if (useSessionTickets) {
+			byte[] ticket = getSession().getOpaqueTicket();
+			if (ticket == null) {
+				helloMessage.addExtension(SessionTicketExtension.EMPTY);
+			} else {
+				helloMessage.addExtension(new SessionTicketExtension(ticket));
+				LOGGER.debug("adding session ticket [{} bytes] to CLIENT_HELLO message", ticket.length);
+			}
+		}
+	}
+
 	/**
 	 * Get PSK client identity.
 	 * 
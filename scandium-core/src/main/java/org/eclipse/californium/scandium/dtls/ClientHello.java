@@ -561,4 +561,15 @@ public final class ClientHello extends HandshakeMessage {
 		return extensions.getExtension(ExtensionType.EXTENDED_MASTER_SECRET) != null;
 	}
 
+	/**
+	 * Gets the <em>SessionTicket</em> extension data from this message.
+	 * 
+	 * @return the extension data or {@code null}, if this message does not
+	 *         contain the <em>SessionTicket</em> extension.
+	 * @since 3.0
+	 */
+	public SessionTicketExtension getSessionTicketExtension() {
+		return extensions.getExtension(ExtensionType.SESSION_TICKET_TLS);
+	}
+
 }
@@ -35,17 +35,23 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - add connection id as primary 
  *                                                    lookup key. redesign to make 
  *                                                    the connection modifiable
+ *    Bosch IO GmbH - add pending outgoing application data
+ *    Bosch IO GmbH - volatile peer address, router and connection id
+ *                    for lookups without lock
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.californium.elements.DtlsEndpointContext;
 import org.eclipse.californium.elements.MapBasedEndpointContext;
+import org.eclipse.californium.elements.RawData;
 import org.eclipse.californium.elements.util.ClockUtil;
 import org.eclipse.californium.elements.util.DatagramReader;
 import org.eclipse.californium.elements.util.DatagramWriter;
@@ -90,10 +96,16 @@ public final class Connection {
 	 */
 	private long lastMessageNanos;
 	private long lastPeerAddressNanos;
-	private SerialExecutor serialExecutor;
-	private InetSocketAddress peerAddress;
-	private InetSocketAddress router;
-	private ConnectionId cid;
+	private volatile SerialExecutor serialExecutor;
+	/**
+	 * Peer address. Note: read by the connection store without lock!
+	 */
+	private volatile InetSocketAddress peerAddress;
+	private volatile InetSocketAddress router;
+	/**
+	 * Connection id. Note: read by the connection store without lock!
+	 */
+	private volatile ConnectionId cid;
 	private DTLSSession resumeSession;
 
 	/**
@@ -113,6 +125,15 @@ public final class Connection {
 
 	private volatile ConnectionListener connectionListener;
 
+	/**
+	 * Outgoing application data, collected to be sent in UDP messages with
+	 * multiple records. Only accessed by the serial executor. {@code null}, if
+	 * no application data is pending.
+	 * 
+	 * @since 3.0
+	 */
+	private List<RawData> pendingOutgoingApplicationData;
+
 	/**
 	 * Creates a new connection to a given peer.
 	 * 
@@ -371,12 +392,13 @@ public final class Connection {
 	 * @return {@code true}, if the addresses are equal
 	 */
 	public boolean equalsPeerAddress(InetSocketAddress peerAddress) {
-		if (this.peerAddress == peerAddress) {
+		InetSocketAddress address = this.peerAddress;
+		if (address == peerAddress) {
 			return true;
-		} else if (this.peerAddress == null) {
+		} else if (address == null) {
 			return false;
 		}
-		return this.peerAddress.equals(peerAddress);
+		return address.equals(peerAddress);
 	}
 
 	/**
@@ -439,8 +461,9 @@ public final class Connection {
 		if (router != null) {
 			attributes.add(DtlsEndpointContext.KEY_VIA_ROUTER, "dtls-cid-router");
 		}
-		if (peerAddress != null) {
-			recordsPeer = peerAddress;
+		InetSocketAddress address = peerAddress;
+		if (address != null) {
+			recordsPeer = address;
 		}
 		DTLSSession session = establishedDtlsContext.getSession();
 		return new DtlsEndpointContext(recordsPeer, session.getHostName(), session.getPeerIdentity(), attributes);
@@ -644,6 +667,44 @@ public final class Connection {
 		updateConnectionState();
 	}
 
+	/**
+	 * Add outgoing application data to be sent with the pending application
+	 * data.
+	 * 
+	 * Must be called by the serial executor.
+	 * 
+	 * @param message outgoing application data
+	 * @return {@code true}, if this is the first pending application data and
+	 *         sending the pending application data must be scheduled,
+	 *         {@code false}, if that is already scheduled.
+	 * @see #takePendingOutgoingApplicationData()
+	 * @since 3.0
+	 */
+	public boolean addPendingOutgoingApplicationData(RawData message) {
+		boolean first = pendingOutgoingApplicationData == null;
+		if (first) {
+			pendingOutgoingApplicationData = new ArrayList<>();
+		}
+		pendingOutgoingApplicationData.add(message);
+		return first;
+	}
+
+	/**
+	 * Take pending outgoing application data.
+	 * 
+	 * Must be called by the serial executor.
+	 * 
+	 * @return list of pending outgoing application data, or {@code null}, if
+	 *         no application data is pending.
+	 * @see #addPendingOutgoingApplicationData(RawData)
+	 * @since 3.0
+	 */
+	public List<RawData> takePendingOutgoingApplicationData() {
+		List<RawData> pending = pendingOutgoingApplicationData;
+		pendingOutgoingApplicationData = null;
+		return pending;
+	}
+
 	/**
 	 * Check, if connection was closed.
 	 * 
@@ -748,6 +809,17 @@ public final class Connection {
 		lastMessageNanos = ClockUtil.nanoRealtime();
 	}
 
+	/**
+	 * Get system time in nanoseconds of the last connection usage.
+	 *
+	 * @return system time in nanoseconds
+	 * @see #lastMessageNanos
+	 * @since 3.0
+	 */
+	long getLastMessageNanos() {
+		return lastMessageNanos;
+	}
+
 	/**
 	 * Use to force an abbreviated handshake next time a data will be sent on
 	 * this connection.
@@ -761,9 +833,11 @@ public final class Connection {
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder("dtls-con: ");
+		ConnectionId cid = this.cid;
 		if (cid != null) {
 			builder.append(cid);
 		}
+		InetSocketAddress peerAddress = this.peerAddress;
 		if (peerAddress != null) {
 			builder.append(", ").append(StringUtil.toDisplayString(peerAddress));
 			Handshaker handshaker = getOngoingHandshake();
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Result of a crypto function offloaded by the {@link Handshaker}.
+ *
+ * On success contains the master secret of an offloaded key agreement, or
+ * neither master secret nor exception for an offloaded signature verification.
+ *
+ * @since 3.0
+ */
+public final class CryptoResult extends HandshakeResult {
+
+	/**
+	 * Type of the handshake message, which crypto function was offloaded.
+	 */
+	private final HandshakeType type;
+	/**
+	 * Master secret of key agreement.
+	 */
+	private final SecretKey masterSecret;
+	/**
+	 * Handshake exception.
+	 */
+	private final HandshakeException exception;
+
+	/**
+	 * Create result.
+	 *
+	 * @param cid connection id
+	 * @param type type of the handshake message
+	 * @param masterSecret master secret of key agreement. {@code null}, for
+	 *            signature verification.
+	 * @throws NullPointerException if cid or type is {@code null}.
+	 */
+	CryptoResult(ConnectionId cid, HandshakeType type, SecretKey masterSecret) {
+		super(cid, null);
+		if (type == null) {
+			throw new NullPointerException("type must not be null!");
+		}
+		this.type = type;
+		this.masterSecret = masterSecret;
+		this.exception = null;
+	}
+
+	/**
+	 * Create result.
+	 *
+	 * @param cid connection id
+	 * @param type type of the handshake message
+	 * @param exception handshake exception.
+	 * @throws NullPointerException if cid, type or exception is {@code null}.
+	 */
+	CryptoResult(ConnectionId cid, HandshakeType type, HandshakeException exception) {
+		super(cid, null);
+		if (type == null) {
+			throw new NullPointerException("type must not be null!");
+		}
+		if (exception == null) {
+			throw new NullPointerException("exception must not be null!");
+		}
+		this.type = type;
+		this.masterSecret = null;
+		this.exception = exception;
+	}
+
+	/**
+	 * Get type of the handshake message.
+	 *
+	 * @return type of the handshake message, which crypto function was
+	 *         offloaded.
+	 */
+	public HandshakeType getType() {
+		return type;
+	}
+
+	/**
+	 * Get master secret.
+	 *
+	 * @return master secret, {@code null}, if not available.
+	 */
+	public SecretKey getMasterSecret() {
+		return masterSecret;
+	}
+
+	/**
+	 * Get exception.
+	 *
+	 * @return exception, may be {@code null}, if no exception occurred.
+	 */
+	public HandshakeException getException() {
+		return exception;
+	}
+}
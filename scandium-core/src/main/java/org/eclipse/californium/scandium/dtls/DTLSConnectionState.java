@@ -62,6 +62,11 @@ public abstract class DTLSConnectionState implements Destroyable {
 			return fragment;
 		}
 
+		@Override
+		public int decryptInPlace(Record record, byte[] fragment) {
+			return fragment.length;
+		}
+
 		@Override
 		public final String toString() {
 			StringBuilder b = new StringBuilder("DtlsNullConnectionState:");
@@ -218,6 +223,29 @@ public abstract class DTLSConnectionState implements Destroyable {
 	 */
 	public abstract byte[] decrypt(Record record, byte[] ciphertextFragment) throws GeneralSecurityException;
 
+	/**
+	 * Decrypt fragment for provided record in place.
+	 * 
+	 * The decrypted fragment is written to the begin of the provided
+	 * ciphertext fragment. The default implementation uses
+	 * {@link #decrypt(Record, byte[])} and copies the result. Connection states,
+	 * which are able to decrypt without additional buffers, override this.
+	 * 
+	 * @param record record to decrypt fragment for
+	 * @param ciphertextFragment encrypted fragment. Contains the decrypted
+	 *            fragment starting at index {@code 0} after this call.
+	 * @return length of the decrypted fragment
+	 * @throws GeneralSecurityException if an error occurred during decryption
+	 * @since 3.0
+	 */
+	public int decryptInPlace(Record record, byte[] ciphertextFragment) throws GeneralSecurityException {
+		byte[] fragment = decrypt(record, ciphertextFragment);
+		if (fragment != ciphertextFragment) {
+			System.arraycopy(fragment, 0, ciphertextFragment, 0, fragment.length);
+		}
+		return fragment.length;
+	}
+
 	/**
 	 * Write cipher suite specific connection state to writer.
 	 * 
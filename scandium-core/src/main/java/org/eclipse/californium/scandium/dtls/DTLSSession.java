@@ -43,6 +43,7 @@
  *                                                    session and endpoint context.
  *    Achim Kraus (Bosch Software Innovations GmbH) - replace raw public key flags by
  *                                                    certificate types
+ *    Bosch IO GmbH - add opaque session ticket
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -160,6 +161,14 @@ public final class DTLSSession implements Destroyable {
 	private ServerNames serverNames;
 	private boolean peerSupportsSni;
 
+	/**
+	 * Opaque session ticket issued by the server. Only used by clients.
+	 * 
+	 * @see <a href="https://tools.ietf.org/html/rfc5077">RFC 5077</a>
+	 * @since 3.0
+	 */
+	private byte[] opaqueTicket;
+
 	// Constructor ////////////////////////////////////////////////////
 
 	/**
@@ -219,6 +228,7 @@ public final class DTLSSession implements Destroyable {
 		compressionMethod = session.getCompressionMethod();
 		extendedMasterSecret = session.useExtendedMasterSecret();
 		setServerNames(session.getServerNames());
+		opaqueTicket = session.getOpaqueTicket();
 	}
 
 	// Getters and Setters ////////////////////////////////////////////
@@ -713,6 +723,26 @@ public final class DTLSSession implements Destroyable {
 				masterSecret, getServerNames(), getPeerIdentity(), creationTime);
 	}
 
+	/**
+	 * Get the opaque session ticket issued by the server.
+	 * 
+	 * @return opaque session ticket, or {@code null}, if not available.
+	 * @since 3.0
+	 */
+	byte[] getOpaqueTicket() {
+		return opaqueTicket;
+	}
+
+	/**
+	 * Set the opaque session ticket issued by the server.
+	 * 
+	 * @param ticket opaque session ticket, or {@code null}, to reset it.
+	 * @since 3.0
+	 */
+	void setOpaqueTicket(byte[] ticket) {
+		this.opaqueTicket = ticket;
+	}
+
 	/**
 	 * Version number for serialization.
 	 */
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Slab allocator for direct memory.
+ *
+ * Slots are organized in size-classes, each class with the double size of the
+ * previous one, starting with {@link #MIN_SLOT_SIZE}. Slots are carved from
+ * direct {@link ByteBuffer} chunks and kept in a free list per size-class,
+ * when freed. Chunks are not returned to the system.
+ *
+ * Slots are zeroed, when freed, because they are intended to keep
+ * serialized connection states including their secrets.
+ *
+ * @since 3.0
+ */
+final class DirectMemorySlab {
+
+	/**
+	 * Size of the smallest size-class.
+	 */
+	static final int MIN_SLOT_SIZE = 128;
+	/**
+	 * Size of the chunks and largest size-class.
+	 */
+	static final int CHUNK_SIZE = 16 * 1024;
+
+	/**
+	 * Sizes of the size-classes.
+	 */
+	private final int[] slotSizes;
+	/**
+	 * Free slots per size-class.
+	 */
+	private final ArrayDeque<Slot>[] free;
+	/**
+	 * Number of allocated chunks.
+	 */
+	private int chunks;
+
+	/**
+	 * Create slab allocator.
+	 */
+	@SuppressWarnings("unchecked")
+	DirectMemorySlab() {
+		int classes = 1;
+		int size = MIN_SLOT_SIZE;
+		while (size < CHUNK_SIZE) {
+			size <<= 1;
+			++classes;
+		}
+		slotSizes = new int[classes];
+		free = new ArrayDeque[classes];
+		size = MIN_SLOT_SIZE;
+		for (int index = 0; index < classes; ++index) {
+			slotSizes[index] = size;
+			free[index] = new ArrayDeque<Slot>();
+			size <<= 1;
+		}
+	}
+
+	/**
+	 * Allocate slot and write data into it.
+	 *
+	 * @param data data to write
+	 * @return slot with data, or {@code null}, if the data exceeds the
+	 *         {@link #CHUNK_SIZE}.
+	 */
+	Slot allocate(byte[] data) {
+		int sizeClass = getSizeClass(data.length);
+		if (sizeClass < 0) {
+			return null;
+		}
+		Slot slot;
+		synchronized (this) {
+			slot = free[sizeClass].pollLast();
+			if (slot == null) {
+				ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+				int slotSize = slotSizes[sizeClass];
+				for (int offset = slotSize; offset < CHUNK_SIZE; offset += slotSize) {
+					free[sizeClass].addLast(new Slot(chunk, offset, sizeClass));
+				}
+				slot = new Slot(chunk, 0, sizeClass);
+				++chunks;
+			}
+		}
+		ByteBuffer buffer = slot.chunk.duplicate();
+		buffer.position(slot.offset);
+		buffer.put(data);
+		slot.length = data.length;
+		return slot;
+	}
+
+	/**
+	 * Read data from slot.
+	 *
+	 * @param slot slot to read
+	 * @return data of slot
+	 */
+	byte[] read(Slot slot) {
+		byte[] data = new byte[slot.length];
+		ByteBuffer buffer = slot.chunk.duplicate();
+		buffer.position(slot.offset);
+		buffer.get(data);
+		return data;
+	}
+
+	/**
+	 * Zero slot and return it to the free list.
+	 *
+	 * @param slot slot to free
+	 */
+	void free(Slot slot) {
+		ByteBuffer chunk = slot.chunk;
+		int end = slot.offset + slot.length;
+		for (int index = slot.offset; index < end; ++index) {
+			chunk.put(index, (byte) 0);
+		}
+		slot.length = 0;
+		synchronized (this) {
+			free[slot.sizeClass].addLast(slot);
+		}
+	}
+
+	/**
+	 * Get allocated direct memory.
+	 *
+	 * @return allocated direct memory in bytes
+	 */
+	synchronized long getAllocatedMemory() {
+		return (long) chunks * CHUNK_SIZE;
+	}
+
+	/**
+	 * Get size-class.
+	 *
+	 * @param size required size
+	 * @return index of the size-class, or {@code -1}, if the size is larger
+	 *         than the largest size-class.
+	 */
+	private int getSizeClass(int size) {
+		for (int index = 0; index < slotSizes.length; ++index) {
+			if (size <= slotSizes[index]) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Slot in direct memory.
+	 */
+	static final class Slot {
+
+		/**
+		 * Chunk of the slot.
+		 */
+		private final ByteBuffer chunk;
+		/**
+		 * Offset of the slot in the chunk.
+		 */
+		private final int offset;
+		/**
+		 * Size-class of the slot.
+		 */
+		private final int sizeClass;
+		/**
+		 * Length of the data in the slot.
+		 */
+		private int length;
+
+		private Slot(ByteBuffer chunk, int offset, int sizeClass) {
+			this.chunk = chunk;
+			this.offset = offset;
+			this.sizeClass = sizeClass;
+		}
+
+		/**
+		 * Get length of the data in the slot.
+		 *
+		 * @return length of data
+		 */
+		int getLength() {
+			return length;
+		}
+	}
+}
@@ -12,6 +12,7 @@
  *
  * Contributors:
  *    Bosch Software Innovations GmbH - initial implementation
+ *    Bosch IO GmbH - encrypt and decrypt into output buffers
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -40,6 +41,11 @@ public class DtlsAeadConnectionState extends DTLSConnectionState {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DtlsAeadConnectionState.class);
 
+	/**
+	 * Length of the nonce. Implicit iv (4 bytes) and explicit nonce (8 bytes).
+	 */
+	private static final int NONCE_LENGTH = 12;
+
 	private final SecretKey encryptionKey;
 	private final SecretIvParameterSpec iv;
 
@@ -101,10 +107,8 @@ public class DtlsAeadConnectionState extends DTLSConnectionState {
 		 * 
 		 * @return the 12 bytes nonce.
 		 */
-		DatagramWriter writer = new DatagramWriter(12, true);
-		iv.writeTo(writer);
-		record.writeExplicitNonce(writer);
-		byte[] nonce = writer.toByteArray();
+		byte[] nonce = new byte[NONCE_LENGTH];
+		record.writeExplicitNonce(nonce, iv.writeTo(nonce, 0));
 		byte[] additionalData = record.generateAdditionalData(fragment.length);
 
 		if (LOGGER.isTraceEnabled()) {
@@ -112,14 +116,17 @@ public class DtlsAeadConnectionState extends DTLSConnectionState {
 			LOGGER.trace("nonce: {}", StringUtil.byteArray2HexString(nonce));
 			LOGGER.trace("adata: {}", StringUtil.byteArray2HexString(additionalData));
 		}
-		byte[] encryptedFragment = AeadBlockCipher.encrypt(cipherSuite, encryptionKey, nonce, additionalData, fragment);
+		int recordIvLength = cipherSuite.getRecordIvLength();
+		byte[] encryptedFragment = new byte[recordIvLength + fragment.length + cipherSuite.getMacLength()];
+		AeadBlockCipher.encrypt(cipherSuite, encryptionKey, nonce, additionalData, fragment, 0, fragment.length,
+				encryptedFragment, recordIvLength);
 
 		/*
 		 * Prepend the explicit nonce as specified in
 		 * http://tools.ietf.org/html/rfc5246#section-6.2.3.3 and
 		 * http://tools.ietf.org/html/draft-mcgrew-tls-aes-ccm-04#section-3
 		 */
-		System.arraycopy(nonce, cipherSuite.getFixedIvLength(), encryptedFragment, 0, cipherSuite.getRecordIvLength());
+		System.arraycopy(nonce, cipherSuite.getFixedIvLength(), encryptedFragment, 0, recordIvLength);
 		Bytes.clear(nonce);
 		LOGGER.trace("==> {} bytes", encryptedFragment.length);
 
@@ -131,6 +138,36 @@ public class DtlsAeadConnectionState extends DTLSConnectionState {
 		if (ciphertextFragment == null) {
 			throw new NullPointerException("Ciphertext must not be null");
 		}
+		int applicationDataLength = ciphertextFragment.length - cipherSuite.getRecordIvLength()
+				- cipherSuite.getMacLength();
+		if (applicationDataLength <= 0) {
+			throw new GeneralSecurityException("Ciphertext too short!");
+		}
+		byte[] payload = new byte[applicationDataLength];
+		decrypt(record, ciphertextFragment, payload);
+		return payload;
+	}
+
+	@Override
+	public int decryptInPlace(Record record, byte[] ciphertextFragment) throws GeneralSecurityException {
+		if (ciphertextFragment == null) {
+			throw new NullPointerException("Ciphertext must not be null");
+		}
+		return decrypt(record, ciphertextFragment, ciphertextFragment);
+	}
+
+	/**
+	 * Decrypt fragment into the provided output buffer.
+	 * 
+	 * @param record record to decrypt fragment for
+	 * @param ciphertextFragment encrypted fragment
+	 * @param output output buffer for the decrypted fragment. The decrypted
+	 *            fragment starts at index {@code 0}. May be the ciphertext
+	 *            fragment itself.
+	 * @return length of the decrypted fragment
+	 * @throws GeneralSecurityException if an error occurred during decryption
+	 */
+	private int decrypt(Record record, byte[] ciphertextFragment, byte[] output) throws GeneralSecurityException {
 		int recordIvLength = cipherSuite.getRecordIvLength();
 		int applicationDataLength = ciphertextFragment.length - recordIvLength - cipherSuite.getMacLength();
 		if (applicationDataLength <= 0) {
@@ -146,10 +183,9 @@ public class DtlsAeadConnectionState extends DTLSConnectionState {
 		 */
 		byte[] additionalData = record.generateAdditionalData(applicationDataLength);
 
-		DatagramWriter writer = new DatagramWriter(12, true);
-		iv.writeTo(writer);
-		writer.writeBytes(ciphertextFragment, 0, recordIvLength);
-		byte[] nonce = writer.toByteArray();
+		byte[] nonce = new byte[NONCE_LENGTH];
+		int offset = iv.writeTo(nonce, 0);
+		System.arraycopy(ciphertextFragment, 0, nonce, offset, recordIvLength);
 
 		if (LOGGER.isTraceEnabled()) {
 			LOGGER.trace("decrypt: {} bytes", applicationDataLength);
@@ -161,8 +197,8 @@ public class DtlsAeadConnectionState extends DTLSConnectionState {
 			byte[] explicitNonceUsed = Arrays.copyOf(ciphertextFragment, recordIvLength);
 			// retrieve actual explicit nonce as contained in GenericAEADCipher
 			// struct (8 bytes long)
-			record.writeExplicitNonce(writer);
-			byte[] explicitNonce = writer.toByteArray();
+			byte[] explicitNonce = new byte[recordIvLength];
+			record.writeExplicitNonce(explicitNonce, 0);
 			if (!Arrays.equals(explicitNonce, explicitNonceUsed)) {
 				StringBuilder b = new StringBuilder(
 						"The explicit nonce used by the sender does not match the values provided in the DTLS record");
@@ -173,10 +209,10 @@ public class DtlsAeadConnectionState extends DTLSConnectionState {
 				LOGGER.debug(b.toString());
 			}
 		}
-		byte[] payload = AeadBlockCipher.decrypt(cipherSuite, encryptionKey, nonce, additionalData, ciphertextFragment,
-				recordIvLength, ciphertextFragment.length - recordIvLength);
+		int length = AeadBlockCipher.decrypt(cipherSuite, encryptionKey, nonce, additionalData, ciphertextFragment,
+				recordIvLength, ciphertextFragment.length - recordIvLength, output, 0);
 		Bytes.clear(nonce);
-		return payload;
+		return length;
 	}
 
 	@Override
@@ -366,6 +366,10 @@ public abstract class HandshakeMessage implements DTLSMessage {
 			body = HelloVerifyRequest.fromReader(reader);
 			break;
 
+		case NEW_SESSION_TICKET:
+			body = NewSessionTicket.fromReader(reader);
+			break;
+
 		case CERTIFICATE:
 			if (parameter == null) {
 				throw new MissingHandshakeParameterException("HandshakeParameter must not be null!");
@@ -55,6 +55,8 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign DTLSFlight and RecordLayer
  *    Achim Kraus (Bosch Software Innovations GmbH) - remove copy of master secret
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign wrapMessage
+ *    Bosch IO GmbH - add pool of precomputed ECDHE key pairs
+ *    Bosch IO GmbH - offload crypto functions
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -76,6 +78,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -103,6 +106,7 @@ import org.eclipse.californium.scandium.dtls.AlertMessage.AlertLevel;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.cipher.PseudoRandomFunction;
 import org.eclipse.californium.scandium.dtls.cipher.PseudoRandomFunction.Label;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHEKeyPairPool;
 import org.eclipse.californium.scandium.dtls.pskstore.AdvancedPskStore;
 import org.eclipse.californium.scandium.dtls.x509.NewAdvancedCertificateVerifier;
 import org.eclipse.californium.scandium.util.SecretIvParameterSpec;
@@ -170,6 +174,30 @@ public abstract class Handshaker implements Destroyable {
 	/** Used to retrieve identity/pre-shared-key for a given destination */
 	protected final AdvancedPskStore advancedPskStore;
 
+	/**
+	 * Pool of precomputed ECDHE key pairs. {@code null}, if the key pairs are
+	 * generated on demand.
+	 * 
+	 * @since 3.0
+	 */
+	protected final XECDHEKeyPairPool ecdheKeyPairPool;
+
+	/**
+	 * Executor for offloaded crypto functions. {@code null}, if the crypto
+	 * functions are executed by the connection's executor.
+	 *
+	 * @see #setCryptoExecutor(Executor, HandshakeResultHandler)
+	 * @since 3.0
+	 */
+	private Executor cryptoExecutor;
+
+	/**
+	 * Handler for the results of offloaded crypto functions.
+	 *
+	 * @since 3.0
+	 */
+	private HandshakeResultHandler cryptoResultHandler;
+
 	/**
 	 * The configured connection id length. {@code null}, not supported,
 	 * {@code 0} supported but not used.
@@ -352,6 +380,12 @@ public abstract class Handshaker implements Destroyable {
 	private boolean handshakeFailed = false;
 	private boolean pskRequestPending = false;
 	private boolean certificateVerificationPending = false;
+	/**
+	 * Number of pending offloaded crypto functions.
+	 *
+	 * @since 3.0
+	 */
+	private int cryptoFunctionsPending;
 	/**
 	 * Other secret for ECDHE-PSK cipher suites.
 	 * <a href="https://tools.ietf.org/html/rfc5489#page-4"> RFC 5489, other
@@ -435,6 +469,7 @@ public abstract class Handshaker implements Destroyable {
 		this.certificateChain = config.getCertificateChain();
 		this.certificateVerifier = config.getAdvancedCertificateVerifier();
 		this.advancedPskStore = config.getAdvancedPskStore();
+		this.ecdheKeyPairPool = config.getEcdheKeyPairPool();
 		this.applicationLevelInfoSupplier = config.getApplicationLevelInfoSupplier();
 		this.inboundMessageBuffer = new InboundMessageBuffer();
 		this.ipv6 = connection.getPeerAddress().getAddress() instanceof Inet6Address;
@@ -942,9 +977,10 @@ public abstract class Handshaker implements Destroyable {
 	 * 
 	 * @param handshakeResult asynchronous handshake result
 	 * @throws HandshakeException if an error occurs
-	 * @throws IllegalStateException if {@link #pskRequestPending} or
-	 *             {@link #certificateVerificationPending} is not pending, or
-	 *             the handshaker {@link #isDestroyed()}.
+	 * @throws IllegalStateException if {@link #pskRequestPending},
+	 *             {@link #certificateVerificationPending}, or
+	 *             {@link #cryptoFunctionsPending} is not pending, or the
+	 *             handshaker {@link #isDestroyed()}.
 	 * @since 2.5
 	 */
 	public void processAsyncHandshakeResult(HandshakeResult handshakeResult) throws HandshakeException {
@@ -952,6 +988,8 @@ public abstract class Handshaker implements Destroyable {
 			processPskSecretResult((PskSecretResult) handshakeResult);
 		} else if (handshakeResult instanceof CertificateVerificationResult) {
 			processCertificateVerificationResult((CertificateVerificationResult) handshakeResult);
+		} else if (handshakeResult instanceof CryptoResult) {
+			processCryptoResult((CryptoResult) handshakeResult);
 		}
 		if (changeCipherSuiteMessageExpected) {
 			processNextMessages(null);
@@ -1073,6 +1111,145 @@ public abstract class Handshaker implements Destroyable {
 	 */
 	protected abstract void processCertificateVerified() throws HandshakeException;
 
+	/**
+	 * Process result of offloaded crypto function.
+	 *
+	 * @param cryptoResult result of offloaded crypto function
+	 * @throws HandshakeException if an error occurred during processing
+	 * @throws IllegalStateException if {@link #cryptoFunctionsPending} is not
+	 *             pending, or the handshaker {@link #isDestroyed()}.
+	 * @since 3.0
+	 */
+	protected void processCryptoResult(CryptoResult cryptoResult) throws HandshakeException {
+		if (cryptoFunctionsPending == 0) {
+			SecretUtil.destroy(cryptoResult.getMasterSecret());
+			throw new IllegalStateException("crypto function not pending!");
+		}
+		--cryptoFunctionsPending;
+		if (isDestroyed()) {
+			SecretUtil.destroy(cryptoResult.getMasterSecret());
+			ensureUndestroyed();
+		}
+		if (cryptoResult.getException() != null) {
+			throw cryptoResult.getException();
+		}
+		processOffloadedCryptoFunction(cryptoResult.getType(), cryptoResult.getMasterSecret());
+	}
+
+	/**
+	 * Do the handshaker specific processing of offloaded crypto functions.
+	 *
+	 * @param type type of the handshake message, which crypto function was
+	 *            offloaded
+	 * @param masterSecret master secret of key agreement. {@code null}, for
+	 *            signature verification.
+	 * @throws HandshakeException if an error occurs
+	 * @throws IllegalStateException if the handshaker doesn't offload crypto
+	 *             functions of that message type
+	 * @since 3.0
+	 */
+	protected void processOffloadedCryptoFunction(HandshakeType type, SecretKey masterSecret)
+			throws HandshakeException {
+		SecretUtil.destroy(masterSecret);
+		throw new IllegalStateException("crypto function of " + type + " not offloaded!");
+	}
+
+	/**
+	 * Set executor for offloaded crypto functions.
+	 *
+	 * @param executor executor for crypto functions. {@code null}, to execute
+	 *            them on the connection's executor.
+	 * @param resultHandler handler to pass the {@link CryptoResult} back to
+	 *            the connection's executor.
+	 * @throws NullPointerException if executor is provided, but the result
+	 *             handler is {@code null}
+	 * @since 3.0
+	 */
+	public void setCryptoExecutor(Executor executor, HandshakeResultHandler resultHandler) {
+		if (executor != null && resultHandler == null) {
+			throw new NullPointerException("result handler must not be null!");
+		}
+		this.cryptoExecutor = executor;
+		this.cryptoResultHandler = resultHandler;
+	}
+
+	/**
+	 * Check, if crypto functions are offloaded.
+	 *
+	 * @return {@code true}, if a executor for crypto functions is available,
+	 *         {@code false}, if the crypto functions are executed by the
+	 *         connection's executor.
+	 * @since 3.0
+	 */
+	protected boolean useCryptoExecutor() {
+		return cryptoExecutor != null;
+	}
+
+	/**
+	 * Offload crypto function to the crypto executor.
+	 *
+	 * The result is passed back using the {@link HandshakeResultHandler} and
+	 * processed by {@link #processOffloadedCryptoFunction(HandshakeType, SecretKey)}.
+	 *
+	 * @param type type of the handshake message, which crypto function is
+	 *            offloaded
+	 * @param function crypto function
+	 * @throws IllegalStateException if no crypto executor is available
+	 * @since 3.0
+	 */
+	protected void offloadCryptoFunction(final HandshakeType type, final CryptoFunction function) {
+		if (cryptoExecutor == null) {
+			throw new IllegalStateException("crypto executor not available!");
+		}
+		final ConnectionId cid = connection.getConnectionId();
+		final HandshakeResultHandler resultHandler = cryptoResultHandler;
+		Runnable job = new Runnable() {
+
+			@Override
+			public void run() {
+				CryptoResult result;
+				try {
+					result = new CryptoResult(cid, type, function.apply());
+				} catch (HandshakeException ex) {
+					result = new CryptoResult(cid, type, ex);
+				} catch (RuntimeException ex) {
+					AlertMessage alert = new AlertMessage(AlertLevel.FATAL, AlertDescription.INTERNAL_ERROR);
+					result = new CryptoResult(cid, type, new HandshakeException(
+							"Cannot process " + type + " message, caused by " + ex.getMessage(), alert, ex));
+				}
+				resultHandler.apply(result);
+			}
+		};
+		++cryptoFunctionsPending;
+		try {
+			cryptoExecutor.execute(job);
+		} catch (RejectedExecutionException ex) {
+			LOGGER.debug("Execution of crypto function rejected, execute it directly [{}]", peerToLog);
+			job.run();
+		}
+	}
+
+	/**
+	 * Crypto function to be offloaded.
+	 *
+	 * @see Handshaker#offloadCryptoFunction(HandshakeType, CryptoFunction)
+	 * @since 3.0
+	 */
+	protected interface CryptoFunction {
+
+		/**
+		 * Apply crypto function.
+		 *
+		 * Executed by the crypto executor. Must not access the mutable state of
+		 * the handshaker.
+		 *
+		 * @return master secret of key agreement. {@code null}, for signature
+		 *         verification.
+		 * @throws HandshakeException if the crypto function fails
+		 */
+		SecretKey apply() throws HandshakeException;
+	}
+
 	// Methods ////////////////////////////////////////////////////////
 
 	/**
@@ -154,6 +154,8 @@ public abstract class HelloExtension {
 				return RecordSizeLimitExtension.fromExtensionDataReader(extensionDataReader);
 			case EXTENDED_MASTER_SECRET:
 				return ExtendedMasterSecretExtension.fromExtensionDataReader(extensionDataReader);
+			case SESSION_TICKET_TLS:
+				return SessionTicketExtension.fromExtensionDataReader(extensionDataReader);
 			default:
 				break;
 			}
@@ -31,6 +31,8 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - add putEstablishedSession
  *                                                    and removeFromEstablishedSessions
  *                                                    for faster find
+ *    Bosch IO GmbH - lock-free lookups and striped locks for
+ *                    modifications
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -103,7 +105,11 @@ import org.slf4j.LoggerFactory;
  * Insertion, lookup and removal of connections is done in <em>O(log n)</em>.
  * </p>
  * <p>
- * Storing and reading to/from the store is thread safe.
+ * Storing and reading to/from the store is thread safe. Lookups by peer
+ * address, connection id or session id don't lock. Modifications lock only a
+ * stripe selected by the connection id. Modifications of the secondary maps
+ * by peer address or session id are validated after the modification, if
+ * the connection is still contained in the store, and reverted, if not.
  * </p>
  * <p>
  * Supports also a {@link SessionCache} implementation to keep sessions for
@@ -121,12 +127,25 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	private static final int DEFAULT_LARGE_EXTRA_CID_LENGTH = 3; // extra cid bytes additionally to required bytes for large capacity.
 	private static final int DEFAULT_CACHE_SIZE = 150000;
 	private static final long DEFAULT_EXPIRATION_THRESHOLD = 36 * 60 * 60; // 36h
+	/**
+	 * Number of locks for modifications. Must be a power of two.
+	 * 
+	 * @since 3.0
+	 */
+	private static final int LOCK_STRIPES = 256;
 	private final SessionCache sessionCache;
 	protected final LeastRecentlyUsedCache<ConnectionId, Connection> connections;
 	protected final ConcurrentMap<InetSocketAddress, Connection> connectionsByAddress;
 	protected final ConcurrentMap<SessionId, Connection> connectionsByEstablishedSession;
+	/**
+	 * Striped locks for modifications.
+	 * 
+	 * @see #getLock(ConnectionId)
+	 * @since 3.0
+	 */
+	private final Object[] locks = new Object[LOCK_STRIPES];
 
-	private ConnectionListener connectionListener;
+	private volatile ConnectionListener connectionListener;
 	/**
 	 * Connection id generator.
 	 * 
@@ -186,6 +205,9 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		this.connectionsByEstablishedSession = new ConcurrentHashMap<>();
 		this.connectionsByAddress = new ConcurrentHashMap<>();
 		this.sessionCache = sessionCache;
+		for (int index = 0; index < LOCK_STRIPES; ++index) {
+			this.locks[index] = new Object();
+		}
 
 		// make sure that session state for stale (evicted) connections is removed from second level cache
 		connections.addEvictionListener(new LeastRecentlyUsedCache.EvictionListener<Connection>() {
@@ -196,18 +218,7 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 
 					@Override
 					public void run() {
-						Handshaker handshaker = staleConnection.getOngoingHandshake();
-						if (handshaker != null) {
-							handshaker.handshakeFailed(new ConnectionEvictedException("Evicted!"));
-						}
-						synchronized (InMemoryConnectionStore.this) {
-							removeFromAddressConnections(staleConnection);
-							removeFromEstablishedSessions(staleConnection);
-							ConnectionListener listener = connectionListener;
-							if (listener != null) {
-								listener.onConnectionRemoved(staleConnection);
-							}
-						}
+						handleEvictedConnection(staleConnection);
 					}
 				};
 				if (staleConnection.isExecuting()) {
@@ -222,6 +233,30 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 				capacity, threshold);
 	}
 
+	/**
+	 * Handle evicted connection.
+	 * 
+	 * Fails an ongoing handshake, removes the connection from the maps by
+	 * peer address and session id, and notifies the connection listener.
+	 * Executed by the serial executor of the connection, if executing.
+	 * 
+	 * @param staleConnection evicted connection
+	 * @since 3.0
+	 */
+	protected void handleEvictedConnection(Connection staleConnection) {
+		Handshaker handshaker = staleConnection.getOngoingHandshake();
+		if (handshaker != null) {
+			handshaker.handshakeFailed(new ConnectionEvictedException("Evicted!"));
+		}
+		// concurrent updates of the secondary maps are
+		// validated afterwards, so no lock is required
+		removeFromSecondaryMaps(staleConnection);
+		ConnectionListener listener = connectionListener;
+		if (listener != null) {
+			listener.onConnectionRemoved(staleConnection);
+		}
+	}
+
 	/**
 	 * Set tag for logging outputs.
 	 * 
@@ -233,9 +268,26 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		return this;
 	}
 
+	/**
+	 * Gets lock for modifications of the connection with the provided
+	 * connection id.
+	 * 
+	 * @param cid connection id
+	 * @return lock for modifications.
+	 * @since 3.0
+	 */
+	private Object getLock(ConnectionId cid) {
+		int hash = cid.hashCode();
+		hash ^= (hash >>> 16);
+		return locks[hash & (LOCK_STRIPES - 1)];
+	}
+
 	/**
 	 * Creates a new unused connection id.
 	 * 
+	 * Note: the connection id may get used concurrently. Therefore
+	 * {@link #put(Connection)} checks it again holding the lock.
+	 * 
 	 * @return connection id, or {@code null}, if no free connection id could
 	 *         created
 	 * @see #connectionIdGenerator
@@ -244,13 +296,40 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	private ConnectionId newConnectionId() {
 		for (int i = 0; i < 10; ++i) {
 			ConnectionId cid = connectionIdGenerator.createConnectionId();
-			if (connections.get(cid) == null) {
+			if (!containsConnectionId(cid)) {
 				return cid;
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Checks, if the connection id is used by a connection of this store.
+	 * 
+	 * @param cid connection id
+	 * @return {@code true}, if the connection id is used, {@code false},
+	 *         otherwise.
+	 * @since 3.0
+	 */
+	protected boolean containsConnectionId(ConnectionId cid) {
+		return connections.get(cid) != null;
+	}
+
+	/**
+	 * Checks, if the connection is contained in this store.
+	 * 
+	 * Used to validate modifications of the secondary maps, which are
+	 * executed without lock.
+	 * 
+	 * @param connection connection to check
+	 * @return {@code true}, if contained, {@code false}, otherwise.
+	 * @since 3.0
+	 */
+	private boolean contains(Connection connection) {
+		ConnectionId cid = connection.getConnectionId();
+		return cid != null && connections.get(cid) == connection;
+	}
+
 	@Override
 	public void setConnectionListener(ConnectionListener listener) {
 		this.connectionListener = listener;
@@ -309,7 +388,7 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	 * </ul>
 	 */
 	@Override
-	public synchronized boolean put(final Connection connection) {
+	public boolean put(final Connection connection) {
 
 		if (connection != null) {
 			if (!connection.isExecuting()) {
@@ -320,55 +399,130 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 				if (connectionIdGenerator == null) {
 					throw new IllegalStateException("Connection id generator must be attached before!");
 				}
-				connectionId = newConnectionId();
-				if (connectionId == null) {
-					throw new IllegalStateException("Connection ids exhausted!");
+				for (int i = 0; i < 10; ++i) {
+					connectionId = newConnectionId();
+					if (connectionId == null) {
+						break;
+					}
+					synchronized (getLock(connectionId)) {
+						if (!containsConnectionId(connectionId)) {
+							connection.setConnectionId(connectionId);
+							if (!add(connectionId, connection)) {
+								return false;
+							}
+						} else {
+							continue;
+						}
+					}
+					addToSecondaryMaps(connection);
+					return true;
 				}
-				connection.setConnectionId(connectionId);
+				throw new IllegalStateException("Connection ids exhausted!");
 			} else if (connectionId.isEmpty()) {
 				throw new IllegalStateException("Connection must have a none empty connection id!");
-			} else if (connections.get(connectionId) != null) {
-				throw new IllegalStateException("Connection id already used! " + connectionId);
 			}
-			if (connections.put(connectionId, connection)) {
-				if (LOGGER.isTraceEnabled()) {
-					LOGGER.trace("{}connection: add {} (size {})", tag, connection, connections.size(), new Throwable("connection added!"));
-				} else {
-					LOGGER.debug("{}connection: add {} (size {})", tag, connectionId, connections.size());
+			synchronized (getLock(connectionId)) {
+				if (containsConnectionId(connectionId)) {
+					throw new IllegalStateException("Connection id already used! " + connectionId);
 				}
-				addToAddressConnections(connection);
-				DTLSSession session = connection.getEstablishedSession();
-				if (session != null) {
-					putEstablishedSession(session, connection);
+				if (!add(connectionId, connection)) {
+					return false;
 				}
-				return true;
+			}
+			addToSecondaryMaps(connection);
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Add connection to the store.
+	 * 
+	 * Note: the lock of the connection id must be held by the caller. The
+	 * secondary maps must be updated by the caller using
+	 * {@link #addToSecondaryMaps(Connection)} after the lock is released.
+	 * 
+	 * @param connectionId connection id of the connection
+	 * @param connection connection to add
+	 * @return {@code true}, if added, {@code false}, if the store is full.
+	 * @since 3.0
+	 */
+	private boolean add(ConnectionId connectionId, Connection connection) {
+		if (connections.put(connectionId, connection)) {
+			if (LOGGER.isTraceEnabled()) {
+				LOGGER.trace("{}connection: add {} (size {})", tag, connection, connections.size(), new Throwable("connection added!"));
 			} else {
-				LOGGER.warn("{}connection store is full! {} max. entries.", tag, connections.getCapacity());
-				return false;
+				LOGGER.debug("{}connection: add {} (size {})", tag, connectionId, connections.size());
 			}
+			return true;
 		} else {
+			LOGGER.warn("{}connection store is full! {} max. entries.", tag, connections.getCapacity());
 			return false;
 		}
 	}
 
+	/**
+	 * Add connection to the maps by peer address and session id.
+	 * 
+	 * Executed without lock. Reverts the modification, if the connection is
+	 * concurrently removed from the store.
+	 * 
+	 * @param connection added connection
+	 * @since 3.0
+	 */
+	private void addToSecondaryMaps(Connection connection) {
+		addToAddressConnections(connection);
+		if (!contains(connection)) {
+			// concurrently removed
+			removeFromAddressConnections(connection);
+			return;
+		}
+		DTLSSession session = connection.getEstablishedSession();
+		if (session != null) {
+			putEstablishedSession(session, connection);
+		}
+	}
+
 	@Override
-	public synchronized boolean update(final Connection connection, InetSocketAddress newPeerAddress) {
+	public boolean update(final Connection connection, InetSocketAddress newPeerAddress) {
 		if (connection == null) {
 			return false;
 		}
 		connection.refreshAutoResumptionTime();
-		if (connections.update(connection.getConnectionId())) {
+		ConnectionId connectionId = connection.getConnectionId();
+		if (connectionId == null) {
+			return false;
+		}
+		synchronized (getLock(connectionId)) {
+			return update(connectionId, connection, newPeerAddress);
+		}
+	}
+
+	/**
+	 * Update last-access time and peer address of the connection.
+	 * 
+	 * Note: the lock of the connection id must be held by the caller.
+	 * 
+	 * @param connectionId connection id of the connection
+	 * @param connection connection to update
+	 * @param newPeerAddress new peer address. May be {@code null}.
+	 * @return {@code true}, if updated, {@code false}, otherwise.
+	 * @since 3.0
+	 */
+	private boolean update(ConnectionId connectionId, Connection connection, InetSocketAddress newPeerAddress) {
+		if (connections.update(connectionId)) {
 			if (newPeerAddress == null) {
-				LOGGER.debug("{}connection: {} updated usage!", tag, connection.getConnectionId());
+				LOGGER.debug("{}connection: {} updated usage!", tag, connectionId);
 			} else if (!connection.equalsPeerAddress(newPeerAddress)) {
 				InetSocketAddress oldPeerAddress = connection.getPeerAddress();
 				if (LOGGER.isTraceEnabled()) {
 					LOGGER.trace("{}connection: {} updated, address changed from {} to {}!", tag,
-							connection.getConnectionId(), StringUtil.toLog(oldPeerAddress), StringUtil.toLog(newPeerAddress),
+							connectionId, StringUtil.toLog(oldPeerAddress), StringUtil.toLog(newPeerAddress),
 							new Throwable("connection updated!"));
 				} else {
 					LOGGER.debug("{}connection: {} updated, address changed from {} to {}!", tag,
-							connection.getConnectionId(), StringUtil.toLog(oldPeerAddress), StringUtil.toLog(newPeerAddress));
+							connectionId, StringUtil.toLog(oldPeerAddress), StringUtil.toLog(newPeerAddress));
 				}
 				if (oldPeerAddress != null) {
 					connectionsByAddress.remove(oldPeerAddress, connection);
@@ -376,16 +530,21 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 				}
 				connection.updatePeerAddress(newPeerAddress);
 				addToAddressConnections(connection);
+				if (!contains(connection)) {
+					// concurrently evicted
+					removeFromAddressConnections(connection);
+					return false;
+				}
 			}
 			return true;
 		} else {
-			LOGGER.debug("{}connection: {} - {} update failed!", tag, connection.getConnectionId(), StringUtil.toLog(newPeerAddress));
+			LOGGER.debug("{}connection: {} - {} update failed!", tag, connectionId, StringUtil.toLog(newPeerAddress));
 			return false;
 		}
 	}
 
 	@Override
-	public synchronized void putEstablishedSession(final DTLSSession session, final Connection connection) {
+	public void putEstablishedSession(final DTLSSession session, final Connection connection) {
 		ConnectionListener listener = connectionListener;
 		if (listener != null) {
 			listener.onConnectionEstablished(connection);
@@ -400,6 +559,10 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 				}
 			}
 			final Connection previous = connectionsByEstablishedSession.put(sessionId, connection);
+			if (!contains(connection)) {
+				// concurrently removed
+				connectionsByEstablishedSession.remove(sessionId, connection);
+			}
 			if (previous != null && previous != connection) {
 				Runnable removePreviousConnection = new Runnable() {
 
@@ -418,7 +581,7 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	}
 
 	@Override
-	public synchronized void removeFromEstablishedSessions(final DTLSSession session, final Connection connection) {
+	public void removeFromEstablishedSessions(final DTLSSession session, final Connection connection) {
 		SessionId sessionId = session.getSessionIdentifier();
 		if (!sessionId.isEmpty()) {
 			connectionsByEstablishedSession.remove(sessionId, connection);
@@ -426,7 +589,7 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	}
 
 	@Override
-	public synchronized Connection find(final SessionId id) {
+	public Connection find(final SessionId id) {
 
 		if (id == null || id.isEmpty()) {
 			return null;
@@ -469,7 +632,7 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		}
 	}
 
-	private synchronized Connection findLocally(final SessionId id) {
+	private Connection findLocally(final SessionId id) {
 		if (id == null) {
 			throw new NullPointerException("DTLS Session ID must not be null!");
 		}
@@ -491,7 +654,7 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	}
 
 	@Override
-	public synchronized void markAllAsResumptionRequired() {
+	public void markAllAsResumptionRequired() {
 		for (Connection connection : connections.values()) {
 			if (connection.getPeerAddress() != null && !connection.isResumptionRequired()) {
 				connection.setResumptionRequired(true);
@@ -501,14 +664,14 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	}
 
 	@Override
-	public synchronized int remainingCapacity() {
+	public int remainingCapacity() {
 		int remaining = connections.remainingCapacity();
 		LOGGER.debug("{}connection: size {}, remaining {}!", tag, connections.size(), remaining);
 		return remaining;
 	}
 
 	@Override
-	public synchronized Connection get(final InetSocketAddress peerAddress) {
+	public Connection get(final InetSocketAddress peerAddress) {
 		Connection connection = connectionsByAddress.get(peerAddress);
 		if (connection == null) {
 			LOGGER.debug("{}connection: missing connection for {}!", tag, StringUtil.toLog(peerAddress));
@@ -526,7 +689,7 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	}
 
 	@Override
-	public synchronized Connection get(final ConnectionId cid) {
+	public Connection get(final ConnectionId cid) {
 		Connection connection = connections.get(cid);
 		if (connection == null) {
 			LOGGER.debug("{}connection: missing connection for {}!", tag, cid);
@@ -547,8 +710,31 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	}
 
 	@Override
-	public synchronized boolean remove(final Connection connection, final boolean removeFromSessionCache) {
-		boolean removed = connections.remove(connection.getConnectionId(), connection) == connection;
+	public boolean remove(final Connection connection, final boolean removeFromSessionCache) {
+		ConnectionId connectionId = connection.getConnectionId();
+		if (connectionId == null) {
+			return false;
+		}
+		synchronized (getLock(connectionId)) {
+			return remove(connectionId, connection, removeFromSessionCache);
+		}
+	}
+
+	/**
+	 * Remove connection from store.
+	 * 
+	 * Note: the lock of the connection id must be held by the caller.
+	 * 
+	 * @param connectionId connection id of the connection
+	 * @param connection connection to remove
+	 * @param removeFromSessionCache {@code true} if the session of the
+	 *            connection should be removed from the session cache,
+	 *            {@code false}, otherwise
+	 * @return {@code true}, if removed, {@code false}, otherwise.
+	 * @since 3.0
+	 */
+	private boolean remove(ConnectionId connectionId, Connection connection, boolean removeFromSessionCache) {
+		boolean removed = connections.remove(connectionId, connection) == connection;
 		if (removed) {
 			if (connection.isExecuting()) {
 				List<Runnable> pendings = connection.getExecutor().shutdownNow();
@@ -582,6 +768,19 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		return removed;
 	}
 
+	/**
+	 * Remove connection from the maps by peer address and session id.
+	 * 
+	 * Destroys the established session of the connection.
+	 * 
+	 * @param connection connection to remove
+	 * @since 3.0
+	 */
+	protected void removeFromSecondaryMaps(Connection connection) {
+		removeFromAddressConnections(connection);
+		removeFromEstablishedSessions(connection);
+	}
+
 	private void removeFromEstablishedSessions(Connection connection) {
 		DTLSSession establishedSession = connection.getEstablishedSession();
 		if (establishedSession != null) {
@@ -599,7 +798,7 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		}
 	}
 
-	private synchronized void removeSessionFromCache(final Connection connection) {
+	private void removeSessionFromCache(final Connection connection) {
 		if (sessionCache != null) {
 			DTLSSession establishedSession = connection.getEstablishedSession();
 			if (establishedSession != null) {
@@ -639,7 +838,26 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 	}
 
 	@Override
-	public final synchronized void clear() {
+	public synchronized void clear() {
+		clear(0);
+	}
+
+	/**
+	 * Clear the store holding all striped locks.
+	 * 
+	 * Takes the striped locks in ascending order, starting with the provided
+	 * stripe, and clears the store, when all locks are held.
+	 * 
+	 * @param stripe index of the next striped lock to take
+	 * @since 3.0
+	 */
+	private void clear(int stripe) {
+		if (stripe < LOCK_STRIPES) {
+			synchronized (locks[stripe]) {
+				clear(stripe + 1);
+			}
+			return;
+		}
 		for (Connection connection : connections.values()) {
 			SerialExecutor executor = connection.getExecutor();
 			if (executor != null) {
@@ -687,41 +905,39 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		try {
 			long startMillis = System.currentTimeMillis();
 			long startNanos = ClockUtil.nanoRealtime();
-			synchronized (connections) {
-				Iterator<LeastRecentlyUsedCache.Timestamped<Connection>> iterator = connections.timestampedIterator();
-				while (iterator.hasNext()) {
-					LeastRecentlyUsedCache.Timestamped<Connection> connection = iterator.next();
-					long updateNanos = connection.getLastUpdate();
-					long age = TimeUnit.NANOSECONDS.toSeconds(startNanos - updateNanos);
-					if (age > maxAgeInSeconds) {
-						LOGGER.trace("{}skip {} ts, {}s too aged!", tag, updateNanos, age);
-					} else {
-						LOGGER.trace("{}write {} ts, {}s ", tag, updateNanos, age);
-						int position = writer.space(Short.SIZE);
-						writer.writeLong(updateNanos, Long.SIZE);
-						if (connection.getValue().write(writer)) {
-							if (count == 0) {
-								DatagramWriter writerHeader = new DatagramWriter(32);
-								int positionHeader = writerHeader.space(Short.SIZE);
-								writerHeader.writeVarBytes(nonce, Byte.SIZE);
-								writerHeader.writeLong(startMillis, Long.SIZE);
-								writerHeader.writeLong(startNanos, Long.SIZE);
-								writerHeader.updateMessageDigest(positionHeader + 2, messageDigest);
-								writerHeader.writeSize(positionHeader, Short.SIZE);
-								writerHeader.writeTo(out);
-								writerHeader.close();
-								messageDigest.update(data);
-							}
-							AlgorithmParameterSpec parameterSpec = new IvParameterSpec(nonce);
-							writer.encrypt(position + 2, cipher, parameterSpec, key);
-							writer.updateMessageDigest(position + 2, messageDigest);
-							writer.writeSize(position, Short.SIZE);
-							writer.writeTo(out);
-							increment(nonce);
-							++count;
-						} else {
-							writer.reset();
+			Iterator<LeastRecentlyUsedCache.Timestamped<Connection>> iterator = connections.timestampedIterator();
+			while (iterator.hasNext()) {
+				LeastRecentlyUsedCache.Timestamped<Connection> connection = iterator.next();
+				long updateNanos = connection.getLastUpdate();
+				long age = TimeUnit.NANOSECONDS.toSeconds(startNanos - updateNanos);
+				if (age > maxAgeInSeconds) {
+					LOGGER.trace("{}skip {} ts, {}s too aged!", tag, updateNanos, age);
+				} else {
+					LOGGER.trace("{}write {} ts, {}s ", tag, updateNanos, age);
+					int position = writer.space(Short.SIZE);
+					writer.writeLong(updateNanos, Long.SIZE);
+					if (connection.getValue().write(writer)) {
+						if (count == 0) {
+							DatagramWriter writerHeader = new DatagramWriter(32);
+							int positionHeader = writerHeader.space(Short.SIZE);
+							writerHeader.writeVarBytes(nonce, Byte.SIZE);
+							writerHeader.writeLong(startMillis, Long.SIZE);
+							writerHeader.writeLong(startNanos, Long.SIZE);
+							writerHeader.updateMessageDigest(positionHeader + 2, messageDigest);
+							writerHeader.writeSize(positionHeader, Short.SIZE);
+							writerHeader.writeTo(out);
+							writerHeader.close();
+							messageDigest.update(data);
 						}
+						AlgorithmParameterSpec parameterSpec = new IvParameterSpec(nonce);
+						writer.encrypt(position + 2, cipher, parameterSpec, key);
+						writer.updateMessageDigest(position + 2, messageDigest);
+						writer.writeSize(position, Short.SIZE);
+						writer.writeTo(out);
+						increment(nonce);
+						++count;
+					} else {
+						writer.reset();
 					}
 				}
 			}
@@ -830,18 +1046,31 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 		return count;
 	}
 
-	private boolean restore(final Connection connection, long lastUsage) {
+	/**
+	 * Restore connection.
+	 * 
+	 * @param connection connection to restore. Must have a connection id.
+	 * @param lastUsage last usage of the connection in system nanoseconds.
+	 *            Must not be before the last usage of the other connections in
+	 *            this store.
+	 * @return {@code true}, if restored, {@code false}, if the store is full.
+	 * @throws IllegalStateException if the connection has no connection id or
+	 *             the connection id is already used
+	 * @since 3.0
+	 */
+	protected boolean restore(final Connection connection, long lastUsage) {
 
 		ConnectionId connectionId = connection.getConnectionId();
 		if (connectionId == null) {
 			throw new IllegalStateException("Connection must have a connection id!");
 		} else if (connectionId.isEmpty()) {
 			throw new IllegalStateException("Connection must have a none empty connection id!");
-		} else if (connections.get(connectionId) != null) {
-			throw new IllegalStateException("Connection id already used! " + connectionId);
 		}
 		LeastRecentlyUsedCache.Timestamped<Connection> timestamped = new LeastRecentlyUsedCache.Timestamped<>(connection, lastUsage);
-		synchronized (connections) {
+		synchronized (getLock(connectionId)) {
+			if (connections.get(connectionId) != null) {
+				throw new IllegalStateException("Connection id already used! " + connectionId);
+			}
 			if (connections.put(connectionId, timestamped)) {
 				if (LOGGER.isTraceEnabled()) {
 					LOGGER.trace("{}connection: add {} (size {})", tag, connection, connections.size(),
@@ -849,17 +1078,13 @@ public class InMemoryConnectionStore implements ResumptionSupportingConnectionSt
 				} else {
 					LOGGER.debug("{}connection: add {} (size {})", tag, connectionId, connections.size());
 				}
-				addToAddressConnections(connection);
-				DTLSSession session = connection.getEstablishedSession();
-				if (session != null) {
-					putEstablishedSession(session, connection);
-				}
-				return true;
 			} else {
 				LOGGER.warn("{}connection store is full! {} max. entries.", tag, connections.getCapacity());
 				return false;
 			}
 		}
+		addToSecondaryMaps(connection);
+		return true;
 	}
 
 	private static void increment(byte[] nonce) {
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
+import org.eclipse.californium.elements.util.StringUtil;
+
+/**
+ * The server sends this message before its CHANGE_CIPHER_SPEC in order to
+ * provide the client with a ticket to resume the session.
+ * <p>
+ * See <a href="https://tools.ietf.org/html/rfc5077#section-3.3">RFC 5077</a>
+ * for the definition.
+ * </p>
+ *
+ * <pre>
+ * struct {
+ *   uint32 ticket_lifetime_hint;
+ *   opaque ticket&lt;0..2^16-1&gt;;
+ * } NewSessionTicket;
+ * </pre>
+ *
+ * @since 3.0
+ */
+public final class NewSessionTicket extends HandshakeMessage {
+
+	private static final int LIFETIME_BITS = 32;
+
+	private static final int TICKET_LENGTH_BITS = 16;
+
+	/**
+	 * Lifetime hint in seconds. {@code 0}, if not specified.
+	 */
+	private final long lifetimeHint;
+
+	/**
+	 * Opaque ticket.
+	 */
+	private final byte[] ticket;
+
+	/**
+	 * Create new session ticket message.
+	 *
+	 * @param lifetimeHint lifetime hint in seconds. {@code 0}, if not
+	 *            specified.
+	 * @param ticket opaque ticket
+	 * @throws NullPointerException if ticket is {@code null}
+	 */
+	public NewSessionTicket(long lifetimeHint, byte[] ticket) {
+		if (ticket == null) {
+			throw new NullPointerException("ticket must not be null!");
+		}
+		this.lifetimeHint = lifetimeHint;
+		this.ticket = ticket;
+	}
+
+	@Override
+	public HandshakeType getMessageType() {
+		return HandshakeType.NEW_SESSION_TICKET;
+	}
+
+	@Override
+	public int getMessageLength() {
+		// fixed: lifetime (4) + ticket length (2)
+		return 6 + ticket.length;
+	}
+
+	@Override
+	public byte[] fragmentToByteArray() {
+		DatagramWriter writer = new DatagramWriter(getMessageLength());
+		writer.writeLong(lifetimeHint, LIFETIME_BITS);
+		writer.writeVarBytes(ticket, TICKET_LENGTH_BITS);
+		return writer.toByteArray();
+	}
+
+	public static HandshakeMessage fromReader(DatagramReader reader) {
+		long lifetimeHint = reader.readLong(LIFETIME_BITS);
+		byte[] ticket = reader.readVarBytes(TICKET_LENGTH_BITS);
+		return new NewSessionTicket(lifetimeHint, ticket);
+	}
+
+	/**
+	 * Get lifetime hint.
+	 *
+	 * @return lifetime hint in seconds. {@code 0}, if not specified.
+	 */
+	public long getLifetimeHint() {
+		return lifetimeHint;
+	}
+
+	/**
+	 * Get opaque ticket.
+	 *
+	 * @return opaque ticket
+	 */
+	public byte[] getTicket() {
+		return ticket;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(super.toString());
+		sb.append("\t\tLifetime Hint: ").append(lifetimeHint).append("s").append(StringUtil.lineSeparator());
+		sb.append("\t\tTicket Length: ").append(ticket.length).append(StringUtil.lineSeparator());
+		return sb.toString();
+	}
+}
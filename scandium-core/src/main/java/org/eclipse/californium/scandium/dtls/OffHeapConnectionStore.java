@@ -0,0 +1,593 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.elements.util.ClockUtil;
+import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
+import org.eclipse.californium.elements.util.SerialExecutor;
+import org.eclipse.californium.elements.util.StringUtil;
+import org.eclipse.californium.scandium.dtls.DirectMemorySlab.Slot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connection store, which keeps idle connections off-heap.
+ * <p>
+ * The most recently used connections are kept on the heap by the
+ * {@link InMemoryConnectionStore}. If a connection with established
+ * DTLS context and without ongoing handshake is idle for the provided idle
+ * threshold and the heap capacity is exhausted, the connection is
+ * <em>passivated</em>: its state is serialized using
+ * {@link Connection#write(DatagramWriter)} into direct memory and the heap
+ * instance is released. A passivated connection is <em>activated</em> again
+ * on lookup by connection id, peer address or session id, deserialized using
+ * {@link Connection#fromReader(DatagramReader, long, long)}. If the heap
+ * capacity is exhausted with connections, which are not idle, the least
+ * recently used connection on the heap is passivated to make room for the
+ * activated one.
+ * </p>
+ * <p>
+ * The serialized state contains the not encrypted keys of the connection.
+ * Therefore no memory mapped files are used and the direct memory is zeroed,
+ * when an entry is activated or removed.
+ * </p>
+ * <p>
+ * Passivation may be executed by the store's eviction while holding the
+ * store's locks. Therefore it must not block on the lock of an other
+ * passivated connection and discards such connections only, if that lock is
+ * available.
+ * </p>
+ * <p>
+ * Limitations:
+ * </p>
+ * <ul>
+ * <li>{@link #iterator()} and
+ * {@link #saveConnections(java.io.OutputStream, javax.crypto.SecretKey, long)}
+ * cover only the connections on the heap.</li>
+ * <li>The {@link org.eclipse.californium.scandium.ConnectionListener} is not
+ * informed about passivation. On activation
+ * {@link org.eclipse.californium.scandium.ConnectionListener#onConnectionEstablished(Connection)}
+ * is called again. If a passivated connection is evicted, the listener is
+ * not informed.</li>
+ * <li>Connections with a serialized state larger than
+ * {@link DirectMemorySlab#CHUNK_SIZE} (e.g. with large x509 certificate
+ * chains) are evicted instead of passivated.</li>
+ * </ul>
+ *
+ * @since 3.0
+ */
+public class OffHeapConnectionStore extends InMemoryConnectionStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapConnectionStore.class);
+
+	/**
+	 * Selects connections on the heap, which could be passivated.
+	 */
+	private static final LeastRecentlyUsedCache.Predicate<Connection> PASSIVATABLE = new LeastRecentlyUsedCache.Predicate<Connection>() {
+
+		@Override
+		public boolean accept(Connection connection) {
+			return isPassivatable(connection);
+		}
+	};
+
+	/**
+	 * Maximum number of connections, on the heap and passivated.
+	 */
+	private final int capacity;
+	/**
+	 * Maximum number of passivated connections.
+	 */
+	private final int offHeapCapacity;
+	/**
+	 * Threshold in nanoseconds to evict passivated connections.
+	 */
+	private final long thresholdNanos;
+	/**
+	 * Direct memory for the serialized connections.
+	 */
+	private final DirectMemorySlab slab = new DirectMemorySlab();
+	/**
+	 * Passivated connections by connection id.
+	 */
+	private final ConcurrentMap<ConnectionId, OffHeapEntry> passivatedByCid = new ConcurrentHashMap<>();
+	/**
+	 * Passivated connections by peer address.
+	 */
+	private final ConcurrentMap<InetSocketAddress, OffHeapEntry> passivatedByAddress = new ConcurrentHashMap<>();
+	/**
+	 * Passivated connections by session id.
+	 */
+	private final ConcurrentMap<SessionId, OffHeapEntry> passivatedBySession = new ConcurrentHashMap<>();
+	/**
+	 * Passivated connections in order of passivation.
+	 */
+	private final LinkedHashMap<ConnectionId, OffHeapEntry> passivated = new LinkedHashMap<>();
+	/**
+	 * Number of activations, which are making room on the heap. The off-heap
+	 * capacity of their entries is released after the activation and is
+	 * therefore lent to the passivated connections.
+	 */
+	private final AtomicInteger activations = new AtomicInteger();
+
+	/**
+	 * Creates a store based on given configuration parameters.
+	 *
+	 * @param capacity the maximum number of connections the store can manage,
+	 *            on the heap and passivated.
+	 * @param threshold the period of time of inactivity (in seconds) after
+	 *            which a passivated connection is considered stale and can be
+	 *            evicted from the store if a new connection is to be
+	 *            passivated
+	 * @param heapCapacity the maximum number of connections kept on the heap
+	 * @param idleThreshold the period of time of inactivity (in seconds) after
+	 *            which a connection on the heap may be passivated
+	 * @param sessionCache a second level cache to use for <em>current</em>
+	 *            connection state of established DTLS sessions. May be
+	 *            {@code null}.
+	 * @throws IllegalArgumentException if the heap capacity is not less than
+	 *             the capacity or the idle threshold is larger than the
+	 *             threshold
+	 */
+	public OffHeapConnectionStore(int capacity, long threshold, int heapCapacity, long idleThreshold,
+			SessionCache sessionCache) {
+		super(heapCapacity, idleThreshold, sessionCache);
+		if (heapCapacity >= capacity) {
+			throw new IllegalArgumentException(
+					"heap capacity " + heapCapacity + " must be less than capacity " + capacity + "!");
+		}
+		if (idleThreshold > threshold) {
+			throw new IllegalArgumentException(
+					"idle threshold " + idleThreshold + " must not be larger than threshold " + threshold + "!");
+		}
+		this.capacity = capacity;
+		this.offHeapCapacity = capacity - heapCapacity;
+		this.thresholdNanos = TimeUnit.SECONDS.toNanos(threshold);
+		LOGGER.info("Created new OffHeapConnectionStore [capacity: {}, heap: {}, idle threshold: {}s]", capacity,
+				heapCapacity, idleThreshold);
+	}
+
+	/**
+	 * Passivate idle connections.
+	 *
+	 * Intended to be called periodically in order to release heap for idle
+	 * connections before the heap capacity is exhausted.
+	 *
+	 * @param maxConnections maximum number of connections to passivate.
+	 *            {@code 0} for all idle connections.
+	 * @return number of passivated (or evicted) connections.
+	 */
+	public int passivateIdleConnections(int maxConnections) {
+		return connections.removeExpiredEntries(maxConnections);
+	}
+
+	/**
+	 * Get number of passivated connections.
+	 *
+	 * @return number of passivated connections
+	 */
+	public int getPassivatedConnections() {
+		return passivatedByCid.size();
+	}
+
+	/**
+	 * Get allocated direct memory.
+	 *
+	 * @return allocated direct memory in bytes
+	 */
+	public long getAllocatedDirectMemory() {
+		return slab.getAllocatedMemory();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Passivate the connection, if possible. Evict it otherwise.
+	 */
+	@Override
+	protected void handleEvictedConnection(Connection staleConnection) {
+		if (!passivate(staleConnection)) {
+			super.handleEvictedConnection(staleConnection);
+		}
+	}
+
+	/**
+	 * Passivate connection.
+	 *
+	 * @param connection connection to passivate. Already removed from the
+	 *            connections on the heap.
+	 * @return {@code true}, if passivated, {@code false}, if the connection
+	 *         must be evicted.
+	 */
+	private boolean passivate(Connection connection) {
+		if (!isPassivatable(connection)) {
+			return false;
+		}
+		ConnectionId cid = connection.getConnectionId();
+		if (!reserveOffHeapCapacity()) {
+			LOGGER.debug("{}connection: {} off-heap store is full!", tag, cid);
+			return false;
+		}
+		DatagramWriter writer = new DatagramWriter(512, true);
+		if (!connection.write(writer)) {
+			writer.close();
+			return false;
+		}
+		byte[] data = writer.toByteArray();
+		writer.close();
+		Slot slot = slab.allocate(data);
+		Bytes.clear(data);
+		if (slot == null) {
+			LOGGER.debug("{}connection: {} too large to passivate ({} bytes)!", tag, cid, data.length);
+			return false;
+		}
+		InetSocketAddress address = connection.getPeerAddress();
+		DTLSSession session = connection.getEstablishedSession();
+		SessionId sessionId = session == null ? null : session.getSessionIdentifier();
+		if (sessionId != null && sessionId.isEmpty()) {
+			sessionId = null;
+		}
+		OffHeapEntry entry = new OffHeapEntry(cid, slot, address, sessionId, connection.getLastMessageNanos(),
+				connection.isResumptionRequired());
+		if (passivatedByCid.putIfAbsent(cid, entry) != null || connections.get(cid) != null) {
+			// concurrently reused cid
+			passivatedByCid.remove(cid, entry);
+			slab.free(slot);
+			return false;
+		}
+		synchronized (passivated) {
+			passivated.put(cid, entry);
+		}
+		if (address != null) {
+			passivatedByAddress.put(address, entry);
+			Connection current = connectionsByAddress.get(address);
+			if (current != null && current != connection) {
+				// address already reused
+				removeAddress(address);
+			}
+		}
+		if (sessionId != null) {
+			passivatedBySession.put(sessionId, entry);
+			Connection current = connectionsByEstablishedSession.get(sessionId);
+			if (current != null && current != connection) {
+				// session already resumed
+				passivatedBySession.remove(sessionId, entry);
+			}
+		}
+		removeFromSecondaryMaps(connection);
+		connection.resetContext();
+		SerialExecutor executor = connection.getExecutor();
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+		LOGGER.debug("{}connection: {} passivated, {} bytes (off-heap {})", tag, cid, slot.getLength(),
+				passivatedByCid.size());
+		return true;
+	}
+
+	/**
+	 * Check, if connection could be passivated.
+	 *
+	 * @param connection connection to check
+	 * @return {@code true}, if the connection has a connection id, an
+	 *         established DTLS context and no ongoing handshake,
+	 *         {@code false}, otherwise.
+	 */
+	private static boolean isPassivatable(Connection connection) {
+		return connection.getConnectionId() != null && !connection.isClosed() && !connection.hasOngoingHandshake()
+				&& connection.hasEstablishedDtlsContext();
+	}
+
+	/**
+	 * Reserve capacity for a passivated connection.
+	 *
+	 * Evicts the eldest passivated connection, if the off-heap capacity is
+	 * exhausted and that connection is stale.
+	 *
+	 * @return {@code true}, if capacity is available, {@code false},
+	 *         otherwise.
+	 */
+	private boolean reserveOffHeapCapacity() {
+		if (passivatedByCid.size() - activations.get() < offHeapCapacity) {
+			return true;
+		}
+		OffHeapEntry eldest = null;
+		synchronized (passivated) {
+			Iterator<OffHeapEntry> iterator = passivated.values().iterator();
+			if (iterator.hasNext()) {
+				eldest = iterator.next();
+			}
+		}
+		if (eldest != null && ClockUtil.nanoRealtime() - eldest.passivationNanos >= thresholdNanos) {
+			return discard(eldest, false);
+		}
+		return false;
+	}
+
+	/**
+	 * Activate passivated connection.
+	 *
+	 * @param entry entry of passivated connection
+	 */
+	private void activate(OffHeapEntry entry) {
+		entry.lock.lock();
+		try {
+			if (entry.slot == null) {
+				// already activated or discarded
+				return;
+			}
+			byte[] data = slab.read(entry.slot);
+			Connection connection;
+			try {
+				connection = Connection.fromReader(new DatagramReader(data), 0, entry.lastMessageNanos);
+			} catch (RuntimeException ex) {
+				LOGGER.warn("{}connection: {} activation failed!", tag, entry.cid, ex);
+				connection = null;
+			} finally {
+				Bytes.clear(data);
+			}
+			if (connection == null) {
+				discard(entry, true);
+				return;
+			}
+			if (entry.address == null) {
+				connection.updatePeerAddress(null);
+			}
+			if (entry.resumptionRequired) {
+				connection.setResumptionRequired(true);
+			}
+			long now = ClockUtil.nanoRealtime();
+			if (!restore(connection, now) && !(makeRoom() && restore(connection, now))) {
+				// heap exhausted, keep it passivated
+				LOGGER.debug("{}connection: {} activation failed, heap exhausted!", tag, entry.cid);
+				connection.resetContext();
+				return;
+			}
+			discard(entry, true);
+			LOGGER.debug("{}connection: {} activated (off-heap {})", tag, entry.cid, passivatedByCid.size());
+		} finally {
+			entry.lock.unlock();
+		}
+	}
+
+	/**
+	 * Make room on the heap for an activated connection.
+	 *
+	 * Passivates the least recently used connection on the heap, even if it
+	 * is not idle. Connections with ongoing handshakes are not affected.
+	 *
+	 * @return {@code true}, if a connection was removed from the heap,
+	 *         {@code false}, otherwise.
+	 */
+	private boolean makeRoom() {
+		activations.incrementAndGet();
+		try {
+			return connections.evictEldest(PASSIVATABLE) != null;
+		} finally {
+			activations.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Discard passivated connection.
+	 *
+	 * Removes the entry and zeroes its direct memory.
+	 *
+	 * @param entry entry of passivated connection
+	 * @param wait {@code true}, to wait for the lock of the entry,
+	 *            {@code false}, to discard it only, if the lock is available.
+	 * @return {@code true}, if discarded, {@code false}, if already discarded
+	 *         or the lock is not available.
+	 */
+	private boolean discard(OffHeapEntry entry, boolean wait) {
+		if (wait) {
+			entry.lock.lock();
+		} else if (!entry.lock.tryLock()) {
+			return false;
+		}
+		try {
+			if (entry.slot == null) {
+				return false;
+			}
+			passivatedByCid.remove(entry.cid, entry);
+			synchronized (passivated) {
+				passivated.remove(entry.cid);
+			}
+			if (entry.address != null) {
+				passivatedByAddress.remove(entry.address, entry);
+			}
+			if (entry.sessionId != null) {
+				passivatedBySession.remove(entry.sessionId, entry);
+			}
+			slab.free(entry.slot);
+			entry.slot = null;
+			return true;
+		} finally {
+			entry.lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove peer address from passivated connection.
+	 *
+	 * @param address peer address used by a connection on the heap
+	 */
+	private void removeAddress(InetSocketAddress address) {
+		OffHeapEntry entry = passivatedByAddress.remove(address);
+		if (entry != null) {
+			entry.address = null;
+			LOGGER.debug("{}connection: {} - {} removed from passivated address.", tag, entry.cid,
+					StringUtil.toLog(address));
+		}
+	}
+
+	@Override
+	protected boolean containsConnectionId(ConnectionId cid) {
+		return super.containsConnectionId(cid) || passivatedByCid.containsKey(cid);
+	}
+
+	@Override
+	public boolean put(Connection connection) {
+		if (connection != null) {
+			InetSocketAddress address = connection.getPeerAddress();
+			if (address != null) {
+				removeAddress(address);
+			}
+		}
+		return super.put(connection);
+	}
+
+	@Override
+	public boolean update(Connection connection, InetSocketAddress newPeerAddress) {
+		if (newPeerAddress != null) {
+			removeAddress(newPeerAddress);
+		}
+		return super.update(connection, newPeerAddress);
+	}
+
+	@Override
+	public void putEstablishedSession(DTLSSession session, Connection connection) {
+		SessionId sessionId = session.getSessionIdentifier();
+		OffHeapEntry entry = passivatedBySession.get(sessionId);
+		if (entry != null && !entry.cid.equals(connection.getConnectionId())) {
+			// session resumed by other connection
+			discard(entry, false);
+		}
+		super.putEstablishedSession(session, connection);
+	}
+
+	@Override
+	public Connection find(SessionId id) {
+		if (id != null && !id.isEmpty() && connectionsByEstablishedSession.get(id) == null) {
+			OffHeapEntry entry = passivatedBySession.get(id);
+			if (entry != null) {
+				activate(entry);
+			}
+		}
+		return super.find(id);
+	}
+
+	@Override
+	public Connection get(InetSocketAddress peerAddress) {
+		if (connectionsByAddress.get(peerAddress) == null) {
+			OffHeapEntry entry = passivatedByAddress.get(peerAddress);
+			if (entry != null) {
+				activate(entry);
+			}
+		}
+		return super.get(peerAddress);
+	}
+
+	@Override
+	public Connection get(ConnectionId cid) {
+		if (connections.get(cid) == null) {
+			OffHeapEntry entry = passivatedByCid.get(cid);
+			if (entry != null) {
+				activate(entry);
+			}
+		}
+		return super.get(cid);
+	}
+
+	@Override
+	public void markAllAsResumptionRequired() {
+		super.markAllAsResumptionRequired();
+		for (OffHeapEntry entry : passivatedByCid.values()) {
+			if (entry.address != null) {
+				entry.resumptionRequired = true;
+			}
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		int remaining = capacity - connections.size() - passivatedByCid.size();
+		LOGGER.debug("{}connection: size {}, passivated {}, remaining {}!", tag, connections.size(),
+				passivatedByCid.size(), remaining);
+		return remaining < 0 ? 0 : remaining;
+	}
+
+	@Override
+	public synchronized void clear() {
+		super.clear();
+		for (OffHeapEntry entry : passivatedByCid.values()) {
+			discard(entry, true);
+		}
+	}
+
+	/**
+	 * Entry of passivated connection.
+	 */
+	private static final class OffHeapEntry {
+
+		/**
+		 * Connection id.
+		 */
+		private final ConnectionId cid;
+		/**
+		 * Session id of established session. {@code null}, if not available.
+		 */
+		private final SessionId sessionId;
+		/**
+		 * System time in nanoseconds of the last connection usage.
+		 */
+		private final long lastMessageNanos;
+		/**
+		 * System time in nanoseconds of the passivation.
+		 */
+		private final long passivationNanos;
+		/**
+		 * Lock for activation and discarding.
+		 */
+		private final ReentrantLock lock = new ReentrantLock();
+		/**
+		 * Slot with the serialized connection. {@code null}, if activated or
+		 * discarded. Guarded by {@link #lock}.
+		 */
+		private Slot slot;
+		/**
+		 * Peer address. {@code null}, if removed.
+		 */
+		private volatile InetSocketAddress address;
+		/**
+		 * Resumption required.
+		 */
+		private volatile boolean resumptionRequired;
+
+		private OffHeapEntry(ConnectionId cid, Slot slot, InetSocketAddress address, SessionId sessionId,
+				long lastMessageNanos, boolean resumptionRequired) {
+			this.cid = cid;
+			this.slot = slot;
+			this.address = address;
+			this.sessionId = sessionId;
+			this.lastMessageNanos = lastMessageNanos;
+			this.passivationNanos = ClockUtil.nanoRealtime();
+			this.resumptionRequired = resumptionRequired;
+		}
+	}
+}
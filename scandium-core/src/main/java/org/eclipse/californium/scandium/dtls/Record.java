@@ -480,6 +480,25 @@ public class Record {
 		writer.writeLong(sequenceNumber, SEQUENCE_NUMBER_BITS);
 	}
 
+	/**
+	 * Write explicit nonce to byte array.
+	 * 
+	 * Epoch and sequence number, 8 bytes in network byte order.
+	 * 
+	 * @param buffer byte array to write the explicit nonce to
+	 * @param offset offset within the byte array
+	 * @return offset after the written explicit nonce
+	 * @since 3.0
+	 */
+	protected int writeExplicitNonce(byte[] buffer, int offset) {
+		long nonce = ((long) epoch << SEQUENCE_NUMBER_BITS) | sequenceNumber;
+		for (int index = offset + 7; index >= offset; --index) {
+			buffer[index] = (byte) nonce;
+			nonce >>>= 8;
+		}
+		return offset + 8;
+	}
+
 	/**
 	 * See <a href="http://tools.ietf.org/html/rfc5246#section-6.2.3.3">RFC 5246</a>:
 	 * 
@@ -636,6 +655,10 @@ public class Record {
 	/**
 	 * Get fragment payload as byte array.
 	 * 
+	 * Note: since 3.0 received records are decrypted in place. After
+	 * {@link #decodeFragment(DTLSConnectionState)} the byte array starts with
+	 * the decrypted fragment.
+	 * 
 	 * @return fragments byte array.
 	 */
 	public byte[] getFragmentBytes() {
@@ -684,23 +707,23 @@ public class Record {
 		}
 
 		ContentType actualType = type;
-		// decide, which type of fragment need de-cryption
-		byte[] decryptedMessage = readState.decrypt(this, fragmentBytes);
+		// decrypt in place, the decrypted fragment starts at index 0
+		int length = readState.decryptInPlace(this, fragmentBytes);
 
 		if (ContentType.TLS12_CID == type) {
-			int index = decryptedMessage.length - 1;
-			while (index >= 0 && decryptedMessage[index] == 0) {
+			int index = length - 1;
+			while (index >= 0 && fragmentBytes[index] == 0) {
 				--index;
 			}
 			if (index < 0) {
 				throw new GeneralSecurityException("no inner type!");
 			}
-			int typeCode = decryptedMessage[index];
+			int typeCode = fragmentBytes[index];
 			actualType =  ContentType.getTypeByValue(typeCode);
 			if (actualType == null) {
 				throw new GeneralSecurityException("unknown inner type! " + typeCode);
 			}
-			decryptedMessage = Arrays.copyOf(decryptedMessage, index);
+			length = index;
 		}
 
 		switch (actualType) {
@@ -708,26 +731,27 @@ public class Record {
 			// http://tools.ietf.org/html/rfc5246#section-7.2:
 			// "Like other messages, alert messages are encrypted and
 			// compressed, as specified by the current connection state."
-			fragment = AlertMessage.fromByteArray(decryptedMessage);
+			fragment = AlertMessage.fromByteArray(getDecryptedFragment(length));
 			break;
 
 		case APPLICATION_DATA:
 			// http://tools.ietf.org/html/rfc5246#section-7.2:
 			// "Like other messages, alert messages are encrypted and
 			// compressed, as specified by the current connection state."
-			fragment = ApplicationMessage.fromByteArray(decryptedMessage);
+			// the application data is kept in place without copy
+			fragment = ApplicationMessage.fromByteArray(fragmentBytes, length);
 			break;
 
 		case CHANGE_CIPHER_SPEC:
 			// http://tools.ietf.org/html/rfc5246#section-7.1:
 			// "is encrypted and compressed under the current (not the pending)
 			// connection state"
-			fragment = ChangeCipherSpecMessage.fromByteArray(decryptedMessage);
+			fragment = ChangeCipherSpecMessage.fromByteArray(getDecryptedFragment(length));
 			break;
 
 		case HANDSHAKE:
 
-			fragment = HandshakeMessage.fromByteArray(decryptedMessage);
+			fragment = HandshakeMessage.fromByteArray(getDecryptedFragment(length));
 			break;
 
 		default:
@@ -736,6 +760,20 @@ public class Record {
 		type = actualType;
 	}
 
+	/**
+	 * Get decrypted fragment.
+	 * 
+	 * @param length length of the decrypted fragment
+	 * @return the decrypted fragment. Copied, if the length is less than the
+	 *         length of the fragment bytes.
+	 */
+	private byte[] getDecryptedFragment(int length) {
+		if (length < fragmentBytes.length) {
+			return Arrays.copyOf(fragmentBytes, length);
+		}
+		return fragmentBytes;
+	}
+
 	/**
 	 * Sets the DTLS fragment. At the same time, it creates the corresponding
 	 * raw binary representation and encrypts it if necessary (depending on
@@ -34,6 +34,8 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - adjust dtls flight number
  *                                                    for short resumption
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign DTLSFlight and RecordLayer
+ *    Bosch IO GmbH - provide session ticket on resumption
+ *    Bosch IO GmbH - receive renewed session ticket on resumption
 ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -87,7 +89,8 @@ import org.eclipse.californium.scandium.util.SecretUtil;
 public class ResumingClientHandshaker extends ClientHandshaker {
 
 	private static HandshakeState[] RESUME = { new HandshakeState(HandshakeType.HELLO_VERIFY_REQUEST, true),
-			new HandshakeState(HandshakeType.SERVER_HELLO), new HandshakeState(ContentType.CHANGE_CIPHER_SPEC),
+			new HandshakeState(HandshakeType.SERVER_HELLO), new HandshakeState(HandshakeType.NEW_SESSION_TICKET, true),
+			new HandshakeState(ContentType.CHANGE_CIPHER_SPEC),
 			new HandshakeState(HandshakeType.FINISHED) };
 
 	// flag to indicate if we must do a full handshake or an abbreviated one
@@ -145,6 +148,10 @@ public class ResumingClientHandshaker extends ClientHandshaker {
 			receivedServerHello((ServerHello)message);
 			break;
 
+		case NEW_SESSION_TICKET:
+			receivedRenewedSessionTicket((NewSessionTicket) message);
+			break;
+
 		case FINISHED:
 			receivedServerFinished((Finished) message);
 			break;
@@ -196,6 +203,7 @@ public class ResumingClientHandshaker extends ClientHandshaker {
 							AlertDescription.ILLEGAL_PARAMETER));
 		} else {
 			verifyServerHelloExtensions(message);
+			sessionTicketExpected = message.hasSessionTicketExtension();
 			serverRandom = message.getRandom();
 			if (connectionIdGenerator != null) {
 				ConnectionIdExtension extension = message.getConnectionIdExtension();
@@ -211,6 +219,34 @@ public class ResumingClientHandshaker extends ClientHandshaker {
 		}
 	}
 
+	/**
+	 * Stores the session ticket renewed by the server on the abbreviated
+	 * handshake.
+	 * 
+	 * The {@link NewSessionTicket} is sent before the server's finished
+	 * message and is therefore already included in the handshake hash.
+	 * 
+	 * @param message the {@link NewSessionTicket} message.
+	 * @throws HandshakeException if the server didn't announce the new session
+	 *             ticket in its SERVER_HELLO
+	 * @see <a href="https://tools.ietf.org/html/rfc5077#section-3.1">RFC 5077,
+	 *      Figure 2</a>
+	 * @since 3.0
+	 */
+	private void receivedRenewedSessionTicket(NewSessionTicket message) throws HandshakeException {
+		if (!sessionTicketExpected) {
+			throw new HandshakeException(
+					String.format("Received unexpected handshake message [%s] from peer %s",
+							message.getMessageType(), peerToLog),
+					new AlertMessage(AlertLevel.FATAL, AlertDescription.UNEXPECTED_MESSAGE));
+		}
+		byte[] ticket = message.getTicket();
+		if (ticket.length > 0) {
+			getSession().setOpaqueTicket(ticket);
+			LOGGER.debug("Received renewed session ticket [{} bytes] from peer [{}]", ticket.length, peerToLog);
+		}
+	}
+
 	/**
 	 * When the client received the server's finished message, it verifies the
 	 * finished message and sends the third and last flight of the short
@@ -280,6 +316,7 @@ public class ResumingClientHandshaker extends ClientHandshaker {
 		addRecordSizeLimit(message);
 		addMaxFragmentLength(message);
 		addServerNameIndication(message);
+		addSessionTicket(message);
 
 		clientHello = message;
 
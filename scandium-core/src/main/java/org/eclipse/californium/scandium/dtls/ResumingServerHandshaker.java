@@ -27,6 +27,7 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - adjust dtls flight number
  *                                                    for short resumption
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign DTLSFlight and RecordLayer
+ *    Bosch IO GmbH - renew session tickets on resumption
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -47,6 +48,10 @@ import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
  * generates the new keys from the previously established master secret.
  * The message flow is depicted in <a
  * href="http://tools.ietf.org/html/rfc5246#section-7.3">Figure 2</a>.
+ * 
+ * If session tickets are used and the client requests one, a fresh ticket is
+ * issued with the {@link NewSessionTicket} message according <a href=
+ * "https://tools.ietf.org/html/rfc5077#section-3.1">RFC 5077, Figure 2</a>.
  */
 @NoPublicAPI
 public class ResumingServerHandshaker extends ServerHandshaker {
@@ -181,6 +186,14 @@ public class ResumingServerHandshaker extends ServerHandshaker {
 			negotiateCipherSuite(clientHello, serverHelloExtensions);
 			processHelloExtensions(clientHello, serverHelloExtensions);
 
+			boolean issueSessionTicket = sessionTicketKeys != null
+					&& clientHello.getSessionTicketExtension() != null;
+			if (issueSessionTicket) {
+				// https://tools.ietf.org/html/rfc5077#section-3.1
+				// renew the ticket also on abbreviated handshakes
+				serverHelloExtensions.addExtension(SessionTicketExtension.EMPTY);
+			}
+
 			flightNumber += 2;
 			DTLSFlight flight = createFlight();
 
@@ -188,6 +201,10 @@ public class ResumingServerHandshaker extends ServerHandshaker {
 					cipherSuite, compressionMethod, serverHelloExtensions);
 			wrapMessage(flight, serverHello);
 
+			if (issueSessionTicket) {
+				wrapMessage(flight, createNewSessionTicket());
+			}
+
 			ChangeCipherSpecMessage changeCipherSpecMessage = new ChangeCipherSpecMessage();
 			wrapMessage(flight, changeCipherSpecMessage);
 
@@ -51,6 +51,9 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - add preSharedKeyIdentity to
  *                                                    support creating statistics.
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign DTLSFlight and RecordLayer
+ *    Bosch IO GmbH - issue session tickets
+ *    Bosch IO GmbH - offload key agreement and signature verification
+ *    Bosch IO GmbH - renew session tickets on resumption
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -69,6 +72,7 @@ import javax.security.auth.DestroyFailedException;
 
 import org.eclipse.californium.elements.auth.RawPublicKeyIdentity;
 import org.eclipse.californium.elements.auth.X509CertPath;
+import org.eclipse.californium.elements.util.Bytes;
 import org.eclipse.californium.elements.util.NoPublicAPI;
 import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
 import org.eclipse.californium.scandium.dtls.AlertMessage.AlertDescription;
@@ -162,6 +166,14 @@ public class ServerHandshaker extends Handshaker {
 	/** The client's {@link CertificateVerify}. Optional. */
 	private CertificateVerify certificateVerifyMessage = null;
 
+	/**
+	 * Indicates, that the signature of the client's {@link CertificateVerify}
+	 * has been verified.
+	 * 
+	 * @since 3.0
+	 */
+	private boolean clientSignatureVerified;
+
 	private PskPublicInformation preSharedKeyIdentity;
 
 	/**
@@ -171,6 +183,21 @@ public class ServerHandshaker extends Handshaker {
 	 */
 	private XECDHECryptography ecdhe;
 
+	/**
+	 * Keys to issue session tickets. {@code null}, if session tickets are not
+	 * used.
+	 * 
+	 * @since 3.0
+	 */
+	protected final SessionTicketKeys sessionTicketKeys;
+
+	/**
+	 * Indicates, that a session ticket is issued with the last flight.
+	 * 
+	 * @since 3.0
+	 */
+	private boolean issueSessionTicket;
+
 	// Constructors ///////////////////////////////////////////////////
 
 	/**
@@ -239,6 +266,7 @@ public class ServerHandshaker extends Handshaker {
 		this.supportedClientCertificateTypes = config.getTrustCertificateTypes();
 		this.supportedServerCertificateTypes = config.getIdentityCertificateTypes();
 		this.supportedSignatureAndHashAlgorithms = config.getSupportedSignatureAlgorithms();
+		this.sessionTicketKeys = config.getSessionTicketKeys();
 	}
 
 	// Methods ////////////////////////////////////////////////////////
@@ -282,8 +310,12 @@ public class ServerHandshaker extends Handshaker {
 				break;
 
 			case EC_DIFFIE_HELLMAN:
-				SecretKey masterSecret = receivedClientKeyExchange((ECDHClientKeyExchange) message);
-				processMasterSecret(masterSecret);
+				if (useCryptoExecutor()) {
+					offloadClientKeyExchange((ECDHClientKeyExchange) message);
+				} else {
+					SecretKey masterSecret = receivedClientKeyExchange((ECDHClientKeyExchange) message);
+					processMasterSecret(masterSecret);
+				}
 				break;
 
 			default:
@@ -294,7 +326,7 @@ public class ServerHandshaker extends Handshaker {
 
 		case CERTIFICATE_VERIFY:
 			receivedCertificateVerify((CertificateVerify) message);
-			if (masterSecret != null && certificateVerfied) {
+			if (masterSecret != null && certificateVerfied && clientSignatureVerified) {
 				expectChangeCipherSpecMessage();
 			}
 			break;
@@ -314,27 +346,42 @@ public class ServerHandshaker extends Handshaker {
 	protected void processMasterSecret(SecretKey masterSecret) {
 		applyMasterSecret(masterSecret);
 		SecretUtil.destroy(masterSecret);
-		if (states == NO_CLIENT_CERTIFICATE || (states == EMPTY_CLIENT_CERTIFICATE && certificateVerfied)) {
+		if (states == NO_CLIENT_CERTIFICATE || (certificateVerfied
+				&& (states == EMPTY_CLIENT_CERTIFICATE || clientSignatureVerified))) {
 			expectChangeCipherSpecMessage();
 		}
 	}
 
 	@Override
 	protected void processCertificateVerified() {
-		if (certificateVerifyMessage != null) {
-			if (peerCertPath != null) {
-				getSession().setPeerIdentity(new X509CertPath(peerCertPath));
-			} else {
-				getSession().setPeerIdentity(new RawPublicKeyIdentity(clientPublicKey));
-			}
+		if (clientSignatureVerified) {
+			setClientIdentity();
 		}
-		if (states == EMPTY_CLIENT_CERTIFICATE || certificateVerifyMessage != null) {
+		if (states == EMPTY_CLIENT_CERTIFICATE || clientSignatureVerified) {
 			if (masterSecret != null) {
 				expectChangeCipherSpecMessage();
 			}
 		}
 	}
 
+	@Override
+	protected void processOffloadedCryptoFunction(HandshakeType type, SecretKey masterSecret)
+			throws HandshakeException {
+		switch (type) {
+		case CLIENT_KEY_EXCHANGE:
+			processMasterSecret(masterSecret);
+			break;
+		case CERTIFICATE_VERIFY:
+			clientSignatureVerified();
+			if (this.masterSecret != null && certificateVerfied) {
+				expectChangeCipherSpecMessage();
+			}
+			break;
+		default:
+			super.processOffloadedCryptoFunction(type, masterSecret);
+		}
+	}
+
 	/**
 	 * If the server requires mutual authentication, the client must send its
 	 * certificate.
@@ -367,20 +414,55 @@ public class ServerHandshaker extends Handshaker {
 	 * @param message The client's <em>CERTIFICATE_VERIFY</em> message.
 	 * @throws HandshakeException if verification of the signature fails.
 	 */
-	private void receivedCertificateVerify(CertificateVerify message) throws HandshakeException {
+	private void receivedCertificateVerify(final CertificateVerify message) throws HandshakeException {
 		certificateVerifyMessage = message;
 		// remove last message - CertificateVerify itself
 		handshakeMessages.remove(handshakeMessages.size() - 1);
-		message.verifySignature(clientPublicKey, handshakeMessages);
-		// add CertificateVerify again
-		handshakeMessages.add(message);
+		if (useCryptoExecutor()) {
+			final PublicKey publicKey = clientPublicKey;
+			final List<HandshakeMessage> signedMessages = new ArrayList<>(handshakeMessages);
+			offloadCryptoFunction(HandshakeType.CERTIFICATE_VERIFY, new CryptoFunction() {
+
+				@Override
+				public SecretKey apply() throws HandshakeException {
+					message.verifySignature(publicKey, signedMessages);
+					return null;
+				}
+			});
+			// add CertificateVerify again
+			handshakeMessages.add(message);
+		} else {
+			message.verifySignature(clientPublicKey, handshakeMessages);
+			// add CertificateVerify again
+			handshakeMessages.add(message);
+			clientSignatureVerified();
+		}
+	}
+
+	/**
+	 * Called, when the signature of the client's {@link CertificateVerify} has
+	 * been verified.
+	 * 
+	 * @since 3.0
+	 */
+	private void clientSignatureVerified() {
+		clientSignatureVerified = true;
 		// at this point we have successfully authenticated the client
 		if (certificateVerfied) {
-			if (peerCertPath != null) {
-				getSession().setPeerIdentity(new X509CertPath(peerCertPath));
-			} else {
-				getSession().setPeerIdentity(new RawPublicKeyIdentity(clientPublicKey));
-			}
+			setClientIdentity();
+		}
+	}
+
+	/**
+	 * Set the authenticated identity of the client to the session.
+	 * 
+	 * @since 3.0
+	 */
+	private void setClientIdentity() {
+		if (peerCertPath != null) {
+			getSession().setPeerIdentity(new X509CertPath(peerCertPath));
+		} else {
+			getSession().setPeerIdentity(new RawPublicKeyIdentity(clientPublicKey));
 		}
 	}
 
@@ -434,23 +516,57 @@ public class ServerHandshaker extends Handshaker {
 		// Verify client's data
 		message.verifyData(mac, masterSecret, true, md.digest());
 
+		mdWithClientFinished.update(message.toByteArray());
+
 		/*
-		 * First, send ChangeCipherSpec
+		 * First, send NewSessionTicket, if requested
+		 */
+		if (issueSessionTicket) {
+			NewSessionTicket newSessionTicket = createNewSessionTicket();
+			wrapMessage(flight, newSessionTicket);
+			mdWithClientFinished.update(newSessionTicket.toByteArray());
+		}
+
+		/*
+		 * Second, send ChangeCipherSpec
 		 */
 		ChangeCipherSpecMessage changeCipherSpecMessage = new ChangeCipherSpecMessage();
 		wrapMessage(flight, changeCipherSpecMessage);
 		setCurrentWriteState();
 
 		/*
-		 * Second, send Finished message
+		 * Third, send Finished message
 		 */
-		mdWithClientFinished.update(message.toByteArray());
 		Finished finished = new Finished(mac, masterSecret, false, mdWithClientFinished.digest());
 		wrapMessage(flight, finished);
 		sendLastFlight(flight);
 		contextEstablished();
 	}
 
+	/**
+	 * Create the {@link NewSessionTicket} message with the sealed session
+	 * ticket of the negotiated session.
+	 * 
+	 * If the ticket could not be sealed, an empty ticket is sent according
+	 * <a href="https://tools.ietf.org/html/rfc5077#section-3.3">RFC 5077,
+	 * Section 3.3</a>.
+	 * 
+	 * @return new session ticket message
+	 * @since 3.0
+	 */
+	protected NewSessionTicket createNewSessionTicket() {
+		byte[] ticket = Bytes.EMPTY;
+		SessionTicket sessionTicket = getSession().getSessionTicket();
+		try {
+			ticket = sessionTicketKeys.seal(sessionTicket);
+		} catch (GeneralSecurityException ex) {
+			LOGGER.warn("Cannot seal session ticket for peer [{}]!", peerToLog, ex);
+		} finally {
+			SecretUtil.destroy(sessionTicket);
+		}
+		return new NewSessionTicket(sessionTicketKeys.getLifetimeHint(), ticket);
+	}
+
 	/**
 	 * Called after the server receives a {@link ClientHello} handshake message.
 	 * 
@@ -528,6 +644,13 @@ public class ServerHandshaker extends Handshaker {
 		negotiateCipherSuite(clientHello, serverHelloExtensions);
 		processHelloExtensions(clientHello, serverHelloExtensions);
 
+		if (sessionTicketKeys != null && !sessionId.isEmpty() && clientHello.getSessionTicketExtension() != null) {
+			// https://tools.ietf.org/html/rfc5077#section-3.2
+			// empty extension indicates the NewSessionTicket message
+			serverHelloExtensions.addExtension(SessionTicketExtension.EMPTY);
+			issueSessionTicket = true;
+		}
+
 		ServerHello serverHello = new ServerHello(serverVersion, serverRandom, sessionId,
 				session.getCipherSuite(), session.getCompressionMethod(), serverHelloExtensions);
 		wrapMessage(flight, serverHello);
@@ -561,7 +684,8 @@ public class ServerHandshaker extends Handshaker {
 		if (KeyExchangeAlgorithm.ECDHE_PSK == keyExchangeAlgorithm
 				|| KeyExchangeAlgorithm.EC_DIFFIE_HELLMAN == keyExchangeAlgorithm) {
 			try {
-				ecdhe = new XECDHECryptography(selectedCipherSuiteParameters.getSelectedSupportedGroup());
+				ecdhe = new XECDHECryptography(selectedCipherSuiteParameters.getSelectedSupportedGroup(),
+						ecdheKeyPairPool);
 			} catch (GeneralSecurityException ex) {
 				AlertMessage alert = new AlertMessage(AlertLevel.FATAL, AlertDescription.ILLEGAL_PARAMETER);
 				throw new HandshakeException("Cannot process handshake message, caused by " + ex.getMessage(), alert,
@@ -631,13 +755,66 @@ public class ServerHandshaker extends Handshaker {
 	 * @throws HandshakeException if the ECDHE key agreement fails 
 	 */
 	private SecretKey receivedClientKeyExchange(ECDHClientKeyExchange message) throws HandshakeException {
+		DTLSSession session = getSession();
+		return generateMasterSecret(ecdhe, session.getCipherSuite(), session.useExtendedMasterSecret(),
+				message.getEncodedPoint(), generateMasterSecretSeed());
+	}
+
+	/**
+	 * Offload the ECDH key agreement and the master secret generation to the
+	 * crypto executor.
+	 * 
+	 * All handshaker and session state used by the offloaded function is
+	 * captured here, on the serial executor. The crypto executor must not
+	 * access the handshaker, which may be destroyed concurrently.
+	 * 
+	 * @param message the client's key exchange message.
+	 * @since 3.0
+	 */
+	private void offloadClientKeyExchange(ECDHClientKeyExchange message) {
+		DTLSSession session = getSession();
+		final XECDHECryptography ecdhe = this.ecdhe;
+		final CipherSuite cipherSuite = session.getCipherSuite();
+		final boolean extendedMasterSecret = session.useExtendedMasterSecret();
+		final byte[] encodedPoint = message.getEncodedPoint();
+		final byte[] seed = generateMasterSecretSeed();
+		offloadCryptoFunction(HandshakeType.CLIENT_KEY_EXCHANGE, new CryptoFunction() {
+
+			@Override
+			public SecretKey apply() throws HandshakeException {
+				return generateMasterSecret(ecdhe, cipherSuite, extendedMasterSecret, encodedPoint, seed);
+			}
+		});
+	}
+
+	/**
+	 * Execute the ECDH key agreement and generate the master secret.
+	 * 
+	 * Static, in order to prevent the offloaded function from accessing the
+	 * handshaker's state.
+	 * 
+	 * @param ecdhe the server's ECDHE key agreement
+	 * @param cipherSuite the negotiated cipher suite. Provides the PRF MAC.
+	 * @param extendedMasterSecret {@code true}, if the extended master secret
+	 *            is used
+	 * @param encodedPoint the client's encoded public key
+	 * @param seed seed for the master secret
+	 * @return the master secret
+	 * @throws HandshakeException if the key agreement fails or the handshaker
+	 *             has already been destroyed
+	 * @since 3.0
+	 */
+	private static SecretKey generateMasterSecret(XECDHECryptography ecdhe, CipherSuite cipherSuite,
+			boolean extendedMasterSecret, byte[] encodedPoint, byte[] seed) throws HandshakeException {
+		if (ecdhe == null || ecdhe.isDestroyed()) {
+			AlertMessage alert = new AlertMessage(AlertLevel.FATAL, AlertDescription.INTERNAL_ERROR);
+			throw new HandshakeException("Cannot process handshake message, ECDHE already destroyed!", alert);
+		}
 		try {
-			DTLSSession session = getSession();
-			SecretKey premasterSecret = ecdhe.generateSecret(message.getEncodedPoint());
-			byte[] seed = generateMasterSecretSeed();
+			SecretKey premasterSecret = ecdhe.generateSecret(encodedPoint);
 			SecretKey masterSecret = PseudoRandomFunction.generateMasterSecret(
-					session.getCipherSuite().getThreadLocalPseudoRandomFunctionMac(), premasterSecret,
-					seed, session.useExtendedMasterSecret());
+					cipherSuite.getThreadLocalPseudoRandomFunctionMac(), premasterSecret, seed,
+					extendedMasterSecret);
 			SecretUtil.destroy(premasterSecret);
 			return masterSecret;
 		} catch (GeneralSecurityException ex) {
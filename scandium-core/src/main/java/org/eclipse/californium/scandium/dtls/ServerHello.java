@@ -344,6 +344,18 @@ public final class ServerHello extends HandshakeMessage {
 		return extensions.getExtension(ExtensionType.EXTENDED_MASTER_SECRET) != null;
 	}
 
+	/**
+	 * Checks whether <em>SessionTicket</em> extension is present in this
+	 * message.
+	 * 
+	 * @return {@code true}, if the <em>SessionTicket</em> extension is
+	 *         present, {@code false}, otherwise
+	 * @since 3.0
+	 */
+	boolean hasSessionTicketExtension() {
+		return extensions.getExtension(ExtensionType.SESSION_TICKET_TLS) != null;
+	}
+
 	/**
 	 * Gets the <em>Point Formats</em> extension data from this message.
 	 * 
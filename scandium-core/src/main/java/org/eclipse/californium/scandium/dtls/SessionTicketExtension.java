@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
+
+/**
+ * Session ticket extension.
+ * <p>
+ * See <a href="https://tools.ietf.org/html/rfc5077#section-3.2">RFC 5077</a>
+ * for additional details. An empty extension in the CLIENT_HELLO requests a
+ * new ticket, an empty extension in the SERVER_HELLO indicates, that the
+ * server will send a {@link NewSessionTicket}. A not empty extension in the
+ * CLIENT_HELLO contains the ticket to resume the session.
+ *
+ * @since 3.0
+ */
+public final class SessionTicketExtension extends HelloExtension {
+
+	/**
+	 * Empty session ticket extension.
+	 */
+	public static final SessionTicketExtension EMPTY = new SessionTicketExtension(Bytes.EMPTY);
+
+	/**
+	 * Opaque ticket.
+	 */
+	private final byte[] ticket;
+
+	/**
+	 * Create session ticket extension.
+	 *
+	 * @param ticket opaque ticket. {@link Bytes#EMPTY}, to request a new
+	 *            ticket.
+	 * @throws NullPointerException if ticket is {@code null}
+	 * @throws IllegalArgumentException if ticket exceeds 65535 bytes
+	 */
+	public SessionTicketExtension(byte[] ticket) {
+		super(ExtensionType.SESSION_TICKET_TLS);
+		if (ticket == null) {
+			throw new NullPointerException("ticket must not be null!");
+		}
+		if (ticket.length > 65535) {
+			throw new IllegalArgumentException("ticket length " + ticket.length + " exceeds 65535 bytes!");
+		}
+		this.ticket = ticket;
+	}
+
+	/**
+	 * Get opaque ticket.
+	 *
+	 * @return opaque ticket. Empty, if a new ticket is requested or will be
+	 *         sent.
+	 */
+	public byte[] getTicket() {
+		return ticket;
+	}
+
+	/**
+	 * Check, if the extension is empty.
+	 *
+	 * @return {@code true}, if no ticket is contained, {@code false},
+	 *         otherwise.
+	 */
+	public boolean isEmpty() {
+		return ticket.length == 0;
+	}
+
+	@Override
+	public int getLength() {
+		// 2 bytes indicating extension type,
+		// 2 bytes overall length,
+		// the ticket
+		return (TYPE_BITS + LENGTH_BITS) / Byte.SIZE + ticket.length;
+	}
+
+	@Override
+	protected void addExtensionData(final DatagramWriter writer) {
+		writer.write(ticket.length, LENGTH_BITS);
+		writer.writeBytes(ticket);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(super.toString());
+		sb.append("\t\t\t\tTicket: ").append(ticket.length).append(" bytes\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Create session ticket extension from extensions data bytes.
+	 *
+	 * @param extensionDataReader extension data bytes
+	 * @return created session ticket extension
+	 * @throws NullPointerException if extensionData is {@code null}
+	 */
+	public static SessionTicketExtension fromExtensionDataReader(DatagramReader extensionDataReader) {
+		if (extensionDataReader == null) {
+			throw new NullPointerException("session ticket must not be null!");
+		}
+		byte[] ticket = extensionDataReader.readBytesLeft();
+		if (ticket.length == 0) {
+			return EMPTY;
+		}
+		return new SessionTicketExtension(ticket);
+	}
+}
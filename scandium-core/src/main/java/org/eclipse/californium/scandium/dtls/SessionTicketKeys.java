@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
+import org.eclipse.californium.scandium.dtls.cipher.CCMBlockCipher;
+import org.eclipse.californium.scandium.dtls.cipher.RandomManager;
+import org.eclipse.californium.scandium.dtls.cipher.ThreadLocalMac;
+import org.eclipse.californium.scandium.util.SecretUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keys to seal and unseal session tickets.
+ * <p>
+ * The {@link SessionTicket} of a session is encoded, encrypted and
+ * authenticated with AES-CCM and sent to the client using
+ * <a href="https://tools.ietf.org/html/rfc5077">RFC 5077</a>. The client
+ * provides that opaque ticket on resumption and the server restores the
+ * session from it without lookup in a session cache.
+ * <p>
+ * The keys are rotated with the configured period. The key of a period is
+ * derived from the shared secret and the period's number using HMAC-SHA256.
+ * All nodes of a cluster configured with the same secret and period are
+ * therefore able to unseal the tickets of the other nodes without exchanging
+ * keys, assumed, that their clocks are synchronized. Tickets are accepted
+ * during the period of their issuance and the following one.
+ *
+ * <pre>
+ * struct {
+ *   uint64 period;
+ *   opaque nonce[12];
+ *   opaque encrypted_state&lt;0..2^16-1&gt;;
+ *   opaque mac[16];
+ * } ticket;
+ * </pre>
+ *
+ * The period is used as additional data for the authentication.
+ *
+ * @since 3.0
+ */
+public class SessionTicketKeys {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SessionTicketKeys.class);
+
+	private static final ThreadLocalMac HMAC = new ThreadLocalMac("HmacSHA256");
+
+	private static final byte[] LABEL = "session ticket key".getBytes(StandardCharsets.UTF_8);
+
+	private static final int PERIOD_BITS = 64;
+	private static final int NONCE_LENGTH = 12;
+	private static final int MAC_LENGTH = 16;
+	private static final int KEY_LENGTH = 16;
+	private static final int HEADER_LENGTH = PERIOD_BITS / Byte.SIZE + NONCE_LENGTH;
+
+	/**
+	 * Shared secret to derive the keys.
+	 */
+	private final SecretKey secret;
+	/**
+	 * Rotation period in milliseconds.
+	 */
+	private final long rotationPeriodMillis;
+	/**
+	 * Key of the current period.
+	 */
+	private volatile Key current;
+	/**
+	 * Key of the previous period.
+	 */
+	private volatile Key previous;
+
+	/**
+	 * Create session ticket keys.
+	 *
+	 * @param secret shared secret to derive the keys from. At least 16
+	 *            bytes. Copied.
+	 * @param rotationPeriod period to rotate the keys
+	 * @param unit time unit of the period
+	 * @throws NullPointerException if secret or unit is {@code null}
+	 * @throws IllegalArgumentException if the secret is too short or the
+	 *             period is less than a second.
+	 */
+	public SessionTicketKeys(SecretKey secret, long rotationPeriod, TimeUnit unit) {
+		if (secret == null) {
+			throw new NullPointerException("secret must not be null!");
+		}
+		if (unit == null) {
+			throw new NullPointerException("unit must not be null!");
+		}
+		byte[] encoded = secret.getEncoded();
+		if (encoded == null || encoded.length < KEY_LENGTH) {
+			throw new IllegalArgumentException("secret must have at least " + KEY_LENGTH + " bytes!");
+		}
+		Bytes.clear(encoded);
+		long millis = unit.toMillis(rotationPeriod);
+		if (millis < 1000) {
+			throw new IllegalArgumentException("rotation period must be at least 1s, not " + millis + "ms!");
+		}
+		this.secret = SecretUtil.create(secret);
+		this.rotationPeriodMillis = millis;
+	}
+
+	/**
+	 * Get lifetime hint for issued tickets.
+	 *
+	 * @return lifetime hint in seconds. Tickets are accepted at least for
+	 *         that time.
+	 */
+	public long getLifetimeHint() {
+		return TimeUnit.MILLISECONDS.toSeconds(rotationPeriodMillis);
+	}
+
+	/**
+	 * Seal session ticket.
+	 *
+	 * @param ticket session ticket
+	 * @return opaque ticket to be sent to the client
+	 * @throws GeneralSecurityException if the encryption fails
+	 */
+	public byte[] seal(SessionTicket ticket) throws GeneralSecurityException {
+		return seal(ticket, System.currentTimeMillis());
+	}
+
+	/**
+	 * Unseal session ticket.
+	 *
+	 * @param ticket opaque ticket provided by the client
+	 * @return session ticket, or {@code null}, if the ticket is malformed,
+	 *         expired or could not be authenticated.
+	 */
+	public SessionTicket unseal(byte[] ticket) {
+		return unseal(ticket, System.currentTimeMillis());
+	}
+
+	/**
+	 * Seal session ticket with the key of the period of the provided time.
+	 *
+	 * @param ticket session ticket
+	 * @param now current time in milliseconds
+	 * @return opaque ticket
+	 * @throws GeneralSecurityException if the encryption fails
+	 */
+	byte[] seal(SessionTicket ticket, long now) throws GeneralSecurityException {
+		long period = now / rotationPeriodMillis;
+		byte[] nonce = new byte[NONCE_LENGTH];
+		RandomManager.currentSecureRandom().nextBytes(nonce);
+
+		DatagramWriter writer = new DatagramWriter(true);
+		writer.writeLong(period, PERIOD_BITS);
+		byte[] additionalData = writer.toByteArray();
+		ticket.encode(writer);
+		byte[] state = writer.toByteArray();
+		writer.close();
+		byte[] encrypted;
+		try {
+			encrypted = CCMBlockCipher.encrypt(HEADER_LENGTH, getKey(period), nonce, additionalData, state,
+					MAC_LENGTH);
+		} finally {
+			Bytes.clear(state);
+		}
+		System.arraycopy(additionalData, 0, encrypted, 0, additionalData.length);
+		System.arraycopy(nonce, 0, encrypted, additionalData.length, NONCE_LENGTH);
+		return encrypted;
+	}
+
+	/**
+	 * Unseal session ticket with the key of its period.
+	 *
+	 * @param ticket opaque ticket
+	 * @param now current time in milliseconds
+	 * @return session ticket, or {@code null}, if the ticket is malformed,
+	 *         expired or could not be authenticated.
+	 */
+	SessionTicket unseal(byte[] ticket, long now) {
+		if (ticket == null || ticket.length < HEADER_LENGTH + MAC_LENGTH) {
+			return null;
+		}
+		DatagramReader reader = new DatagramReader(ticket, false);
+		byte[] additionalData = reader.readBytes(PERIOD_BITS / Byte.SIZE);
+		byte[] nonce = reader.readBytes(NONCE_LENGTH);
+		long period = new DatagramReader(additionalData, false).readLong(PERIOD_BITS);
+		long currentPeriod = now / rotationPeriodMillis;
+		if (period != currentPeriod && period != currentPeriod - 1) {
+			LOGGER.debug("session ticket of period {} expired, current {}", period, currentPeriod);
+			return null;
+		}
+		byte[] state = null;
+		try {
+			state = CCMBlockCipher.decrypt(getKey(period), nonce, additionalData, ticket, HEADER_LENGTH,
+					ticket.length - HEADER_LENGTH, MAC_LENGTH);
+			return SessionTicket.decode(new DatagramReader(state, false));
+		} catch (GeneralSecurityException ex) {
+			LOGGER.debug("session ticket of period {} not valid!", period, ex);
+		} catch (IllegalArgumentException ex) {
+			LOGGER.debug("session ticket of period {} malformed!", period, ex);
+		} finally {
+			if (state != null) {
+				Bytes.clear(state);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get key of period.
+	 *
+	 * Keeps the keys of the current and the previous period.
+	 *
+	 * @param period number of period
+	 * @return key of period
+	 * @throws GeneralSecurityException if the derivation fails
+	 */
+	private SecretKey getKey(long period) throws GeneralSecurityException {
+		Key key = current;
+		if (key != null && key.period == period) {
+			return key.key;
+		}
+		key = previous;
+		if (key != null && key.period == period) {
+			return key.key;
+		}
+		synchronized (this) {
+			key = current;
+			if (key == null || key.period != period) {
+				key = new Key(period, deriveKey(period));
+				Key last = current;
+				if (last == null || last.period < period) {
+					previous = last;
+					current = key;
+				} else if (previous == null || previous.period < period) {
+					previous = key;
+				}
+			}
+			return key.key;
+		}
+	}
+
+	/**
+	 * Derive key of period from the shared secret.
+	 *
+	 * @param period number of period
+	 * @return derived key
+	 * @throws GeneralSecurityException if the derivation fails
+	 */
+	private SecretKey deriveKey(long period) throws GeneralSecurityException {
+		DatagramWriter writer = new DatagramWriter(8);
+		writer.writeLong(period, PERIOD_BITS);
+		Mac mac = HMAC.currentWithCause();
+		mac.init(secret);
+		mac.update(LABEL);
+		mac.update(writer.toByteArray());
+		byte[] derived = mac.doFinal();
+		SecretKey key = SecretUtil.create(derived, 0, KEY_LENGTH, "AES");
+		Bytes.clear(derived);
+		return key;
+	}
+
+	private static class Key {
+
+		private final long period;
+		private final SecretKey key;
+
+		private Key(long period, SecretKey key) {
+			this.period = period;
+			this.key = key;
+		}
+	}
+}
@@ -18,17 +18,22 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesigned implementation
  *                                                    to improve performance
  *    Achim Kraus (Bosch Software Innovations GmbH) - use NoPadding for android support
+ *    Bosch IO GmbH - use per-thread scratch blocks and output buffers
+ *    Bosch IO GmbH - reference the key of the scratch weakly
+ *    Bosch IO GmbH - use CIPHER instead of a cipher in the scratch
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.cipher;
 
+import java.lang.ref.WeakReference;
 import java.security.GeneralSecurityException;
-import java.security.MessageDigest;
 import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.ShortBufferException;
 
+import org.eclipse.californium.scandium.util.SecretUtil;
+
 /**
  * A generic authenticated encryption block cipher mode which uses the 128-bit
  * block cipher AES. See <a href="http://tools.ietf.org/html/rfc3610">RFC
@@ -48,126 +53,151 @@ public class CCMBlockCipher {
 	public static final String CIPHER_NAME = "AES/ECB/NoPadding";
 	public static final ThreadLocalCipher CIPHER = new ThreadLocalCipher(CIPHER_NAME);
 
-	private static abstract class Block {
+	/**
+	 * Block size of AES.
+	 */
+	private static final int BLOCK_SIZE = 16;
 
-		protected final int blockSize;
-		protected final byte[] block;
+	/**
+	 * Per-thread scratch space.
+	 * 
+	 * Reused for all CCM operations of a thread in order to avoid the
+	 * allocation of intermediate blocks for each message.
+	 */
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
 
-		protected Block(int blockSize) {
-			this.blockSize = blockSize;
-			this.block = new byte[blockSize];
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
 		}
+	};
+
+	/**
+	 * Blocks of a thread.
+	 */
+	private static final class Scratch {
 
 		/**
-		 * Set integer at the end of the block.
-		 * 
-		 * Lowest byte at the end.
+		 * Counter block A_i.
+		 */
+		private final byte[] counter = new byte[BLOCK_SIZE];
+		/**
+		 * Key stream block S_i.
+		 */
+		private final byte[] stream = new byte[BLOCK_SIZE];
+		/**
+		 * Input block for CBC-MAC.
 		 * 
-		 * <pre>
-		 * block[end] = number & 0xff;
-		 * block[end - 1] = (number >>= 8) & 0xff;
-		 * block[end - 2] = (number >>= 8) & 0xff;
-		 * block[offset] = (number >>= 8) & 0xff;
-		 * </pre>
+		 * Separated from {@link #mac}, some providers copy the input, if the
+		 * output is written to the same array.
+		 */
+		private final byte[] block = new byte[BLOCK_SIZE];
+		/**
+		 * CBC-MAC block X_i.
+		 */
+		private final byte[] mac = new byte[BLOCK_SIZE];
+		/**
+		 * Received authentication value T.
+		 */
+		private final byte[] tag = new byte[BLOCK_SIZE];
+		/**
+		 * Key, the thread's {@link #CIPHER} is initialized with.
 		 * 
-		 * Return remaining bytes in number.
+		 * Referenced weakly, the scratch of an idle thread must not keep the
+		 * key of a closed connection.
+		 */
+		private WeakReference<SecretKey> key;
+
+		/**
+		 * Get the thread's {@link #CIPHER} initialized with the provided key.
 		 * 
-		 * <pre>
-		 * blockSize = 16;
-		 * number = 0x20103
-		 * left = updateBlock(14, number); // write number to two bytes
-		 * left == 2 // highest third byte 0x2 will be left
-		 * </pre>
+		 * The cipher is only initialized again, if the key differs from the
+		 * last used one. That saves the key expansion for the most common
+		 * case, where a thread processes records of the same connection. If
+		 * the initialization fails, e.g. for a destroyed key, the next call
+		 * initializes the cipher again.
 		 * 
-		 * @param offset offset at which the number will be written, right
-		 *            padded with 0
-		 * @param number number to write
-		 * @return left bytes of the number, if number is too large, 0, if the
-		 *         complete number could be set.
+		 * @param key key for encryption
+		 * @return initialized cipher
+		 * @throws GeneralSecurityException if the cipher is not supported or
+		 *             could not be initialized with the key
 		 */
-		protected int setIntAtEnd(int offset, int number) {
-			int backOffset = blockSize;
-			while (backOffset > offset) {
-				block[--backOffset] = (byte) number;
-				number >>>= 8;
+		private Cipher init(SecretKey key) throws GeneralSecurityException {
+			Cipher cipher = CIPHER.currentWithCause();
+			if (cipher == null) {
+				throw new GeneralSecurityException(CIPHER_NAME + " not available!");
 			}
-			return number;
-		}
-
-	}
-
-	private static class BlockCipher extends Block {
-
-		private final Cipher cipher;
-		private final byte[] xblock;
-		private final int nonceL;
-
-		private BlockCipher(Cipher cipher, byte[] nonce) {
-			super(cipher == null ? 0 : cipher.getBlockSize());
-			this.cipher = cipher;
-			this.nonceL = nonce.length;
-			int L = blockSize - 1 - nonceL;
-			if (L < 2 || L > 8) {
-				throw new IllegalArgumentException("Nonce length " + nonceL + " invalid for blocksize " + blockSize
-						+ " (valid length [" + (blockSize - 9) + "-" + (blockSize - 3) + "])");
+			SecretKey current = this.key == null ? null : this.key.get();
+			if (key == null || key != current || SecretUtil.isDestroyed(key)) {
+				this.key = null;
+				cipher.init(Cipher.ENCRYPT_MODE, key);
+				this.key = new WeakReference<SecretKey>(key);
 			}
+			return cipher;
+		}
 
-			xblock = new byte[blockSize];
-			// Octet Number Contents
-			// ------------ ---------
-			// 0 Flags
-			// 1 ... 15-L Nonce N
-			// 16-L ... 15 Counter i
-
-			// write the first byte: Flags
-			block[0] = (byte) (L - 1);
-			// the Nonce N
-			System.arraycopy(nonce, 0, block, 1, nonceL);
+		/**
+		 * Prepare counter block A_i.
+		 * 
+		 * <pre>
+		 * Octet Number   Contents
+		 * ------------   ---------
+		 * 0              Flags
+		 * 1 ... 15-L     Nonce N
+		 * 16-L ... 15    Counter i
+		 * </pre>
+		 * 
+		 * @param nonce nonce N
+		 */
+		private void initCounter(byte[] nonce) {
+			int nonceL = nonce.length;
+			counter[0] = (byte) (BLOCK_SIZE - 2 - nonceL);
+			System.arraycopy(nonce, 0, counter, 1, nonceL);
 		}
 
-		private byte[] updateBlock(int index) throws ShortBufferException {
+		/**
+		 * Create key stream block S_i.
+		 * 
+		 * @param cipher initialized cipher
+		 * @param nonceL length of nonce
+		 * @param index counter i
+		 * @return key stream block
+		 * @throws ShortBufferException if cipher can not be realized.
+		 */
+		private byte[] updateStream(Cipher cipher, int nonceL, int index) throws ShortBufferException {
 			// writer the Counter i (L bytes)
-			if (setIntAtEnd(nonceL + 1, index) != 0) {
+			if (setIntAtEnd(counter, nonceL + 1, index) != 0) {
 				throw new IllegalArgumentException("Index " + index + " too large for nonce " + nonceL
-						+ " and blocksize " + blockSize + " bytes.");
+						+ " and blocksize " + BLOCK_SIZE + " bytes.");
 			}
-
-			cipher.update(block, 0, blockSize, xblock);
-			return xblock;
+			cipher.update(counter, 0, BLOCK_SIZE, stream);
+			return stream;
 		}
-	}
-
-	private static class MacCipher extends Block {
-
-		private final Cipher cipher;
-		private final byte[] mac;
 
 		/**
 		 * Computes CBC-MAC. See
 		 * <a href="http://tools.ietf.org/html/rfc3610#section-2.2">RFC 3610 -
 		 * Authentication</a> for details.
 		 * 
-		 * @param cipher the cipher.
+		 * The first {@code numAuthenticationBytes} of the returned block are
+		 * the authentication value T.
+		 * 
+		 * @param cipher initialized cipher
 		 * @param nonce the nonce.
 		 * @param a the additional authenticated data.
-		 * @param m the message to authenticate and encrypt.
+		 * @param m the message to authenticate.
+		 * @param mOffset offset of the message
+		 * @param lengthM length of the message
 		 * @param numAuthenticationBytes Number of octets in authentication
 		 *            field.
+		 * @return block with CBC-MAC.
 		 * @throws ShortBufferException if cipher can not be realized.
 		 */
-		private MacCipher(Cipher cipher, byte[] nonce, byte[] a, byte[] m, int numAuthenticationBytes)
-				throws ShortBufferException {
-			super(cipher == null ? 0 : cipher.getBlockSize());
-			this.cipher = cipher;
-			int lengthM = m.length;
+		private byte[] updateMac(Cipher cipher, byte[] nonce, byte[] a, byte[] m, int mOffset, int lengthM,
+				int numAuthenticationBytes) throws ShortBufferException {
 			int lengthA = a.length;
 			int nonceL = nonce.length;
-			int L = blockSize - 1 - nonceL;
-
-			if (L < 2 || L > 8) {
-				throw new IllegalArgumentException("Nonce length " + nonceL + " invalid for blocksize " + blockSize
-						+ " (valid length [" + (blockSize - 9) + "-" + (blockSize - 3) + "])");
-			}
+			int L = BLOCK_SIZE - 1 - nonceL;
 
 			// build first block B_0
 
@@ -201,16 +231,15 @@ public class CCMBlockCipher {
 			System.arraycopy(nonce, 0, block, 1, nonceL);
 
 			// writer the length (L bytes)
-			if (setIntAtEnd(nonceL + 1, lengthM) != 0) {
+			if (setIntAtEnd(block, nonceL + 1, lengthM) != 0) {
 				throw new IllegalArgumentException("Length " + lengthM + " too large for nonce " + nonceL
-						+ " and blocksize " + blockSize + " bytes.");
+						+ " and blocksize " + BLOCK_SIZE + " bytes.");
 			}
 
-			cipher.update(block, 0, blockSize, block);
+			cipher.update(block, 0, BLOCK_SIZE, mac);
 
 			// If l(a)>0 (as indicated by the Adata field), then one or more
-			// blocks
-			// of authentication data are added.
+			// blocks of authentication data are added.
 			if (lengthA > 0) {
 
 				// First two octets Followed by Comment
@@ -232,51 +261,94 @@ public class CCMBlockCipher {
 				 * into 16-octet blocks, and then padding the last block with
 				 * zeroes if necessary.
 				 */
-				if (lengthA > 0 && lengthA < first) {
+				if (lengthA < first) {
 					// 2 bytes (0x0001 ... 0xFEFF)
-					xorInt(0, 2, lengthA);
+					xorInt(mac, 0, 2, lengthA);
 					offset = 2;
 				} else {
 					// 2 bytes (0xFFFE) + 4 octets of l(a)
-					xorInt(0, 2, 0xfffe);
-					xorInt(2, 6, lengthA);
+					xorInt(mac, 0, 2, 0xfffe);
+					xorInt(mac, 2, 6, lengthA);
 					offset = 6;
 				}
 
-				update(a, offset);
+				updateMac(cipher, a, 0, lengthA, offset);
 			}
-			update(m, 0);
-			mac = Arrays.copyOf(block, numAuthenticationBytes);
+			updateMac(cipher, m, mOffset, lengthM, 0);
+			return mac;
 		}
 
-		private void update(byte[] data, int initialBlockOffset) throws ShortBufferException {
-			int length = data.length;
+		private void updateMac(Cipher cipher, byte[] data, int offset, int length, int initialBlockOffset)
+				throws ShortBufferException {
 			for (int i = 0; i < length;) {
-				int blockEnd = i + blockSize - initialBlockOffset;
+				int blockEnd = i + BLOCK_SIZE - initialBlockOffset;
 				if (blockEnd > length) {
 					blockEnd = length;
 				}
 				for (int j = initialBlockOffset; i < blockEnd; ++i, ++j) {
-					block[j] ^= data[i];
+					mac[j] ^= data[offset + i];
 				}
 				initialBlockOffset = 0;
-				cipher.update(block, 0, blockSize, block);
+				cipher.update(mac, 0, BLOCK_SIZE, block);
+				System.arraycopy(block, 0, mac, 0, BLOCK_SIZE);
 			}
 		}
+	}
 
-		private byte[] getMac() {
-			return mac;
+	/**
+	 * Set integer at the end of the block.
+	 * 
+	 * Lowest byte at the end.
+	 * 
+	 * <pre>
+	 * block[end] = number & 0xff;
+	 * block[end - 1] = (number >>= 8) & 0xff;
+	 * block[end - 2] = (number >>= 8) & 0xff;
+	 * block[offset] = (number >>= 8) & 0xff;
+	 * </pre>
+	 * 
+	 * Return remaining bytes in number.
+	 * 
+	 * <pre>
+	 * blockSize = 16;
+	 * number = 0x20103
+	 * left = setIntAtEnd(block, 14, number); // write number to two bytes
+	 * left == 2 // highest third byte 0x2 will be left
+	 * </pre>
+	 * 
+	 * @param block block to write the number
+	 * @param offset offset at which the number will be written, right padded
+	 *            with 0
+	 * @param number number to write
+	 * @return left bytes of the number, if number is too large, 0, if the
+	 *         complete number could be set.
+	 */
+	private static int setIntAtEnd(byte[] block, int offset, int number) {
+		int backOffset = BLOCK_SIZE;
+		while (backOffset > offset) {
+			block[--backOffset] = (byte) number;
+			number >>>= 8;
 		}
+		return number;
+	}
 
-		protected int xorInt(int offset, int end, int number) {
-			while (end > offset) {
-				block[--end] ^= (byte) number;
-				number >>>= 8;
-			}
-			return number;
+	private static int xorInt(byte[] block, int offset, int end, int number) {
+		while (end > offset) {
+			block[--end] ^= (byte) number;
+			number >>>= 8;
 		}
+		return number;
+	}
 
+	private static void checkNonce(byte[] nonce) {
+		int nonceL = nonce.length;
+		int L = BLOCK_SIZE - 1 - nonceL;
+		if (L < 2 || L > 8) {
+			throw new IllegalArgumentException("Nonce length " + nonceL + " invalid for blocksize " + BLOCK_SIZE
+					+ " (valid length [" + (BLOCK_SIZE - 9) + "-" + (BLOCK_SIZE - 3) + "])");
+		}
 	}
+
 	// Static methods /////////////////////////////////////////////////
 
 	/**
@@ -318,36 +390,78 @@ public class CCMBlockCipher {
 	 */
 	public final static byte[] decrypt(SecretKey key, byte[] nonce, byte[] additionalData, byte[] crypted,
 			int cryptedOffset, int cryptedLength, int numAuthenticationBytes) throws GeneralSecurityException {
-
-		// instantiate the underlying block cipher
-		Cipher cipher = CIPHER.current();
-		cipher.init(Cipher.ENCRYPT_MODE, key);
-
 		int lengthM = cryptedLength - numAuthenticationBytes;
-		int blockSize = cipher.getBlockSize();
-
+		if (lengthM < 0) {
+			throw new GeneralSecurityException("Ciphertext too short!");
+		}
 		// decrypted data without MAC
 		byte[] decrypted = new byte[lengthM];
-		// separate MAC
-		byte[] T = new byte[numAuthenticationBytes];
+		decrypt(key, nonce, additionalData, crypted, cryptedOffset, cryptedLength, decrypted, 0,
+				numAuthenticationBytes);
+		return decrypted;
+	}
+
+	/**
+	 * Decrypt into the provided output buffer. See
+	 * <a href="http://tools.ietf.org/html/rfc3610#section-2.5">RFC 3610</a>
+	 * for details.
+	 * 
+	 * Uses per-thread scratch blocks and doesn't allocate intermediate arrays.
+	 * The output buffer may be the same array as crypted, if the
+	 * {@code outputOffset} is not larger than the {@code cryptedOffset}. That
+	 * enables to decrypt in place.
+	 * 
+	 * @param key the encryption key K.
+	 * @param nonce the nonce N.
+	 * @param additionalData the additional authenticated data a.
+	 * @param crypted the encrypted and authenticated message c.
+	 * @param cryptedOffset offset within crypted
+	 * @param cryptedLength length within crypted
+	 * @param output output buffer for the decrypted message
+	 * @param outputOffset offset within the output buffer
+	 * @param numAuthenticationBytes Number of octets in authentication field.
+	 * @return length of the decrypted message
+	 * 
+	 * @throws ShortBufferException if the output buffer is too small
+	 * @throws GeneralSecurityException if the message could not be de-crypted,
+	 *             e.g. because the ciphertext's block size is not correct
+	 * @throws InvalidMacException if the message could not be authenticated.
+	 *             The output buffer is cleared in that case.
+	 * @since 3.0
+	 */
+	public final static int decrypt(SecretKey key, byte[] nonce, byte[] additionalData, byte[] crypted,
+			int cryptedOffset, int cryptedLength, byte[] output, int outputOffset, int numAuthenticationBytes)
+			throws GeneralSecurityException {
+		checkNonce(nonce);
+		int lengthM = cryptedLength - numAuthenticationBytes;
+		if (lengthM < 0) {
+			throw new GeneralSecurityException("Ciphertext too short!");
+		}
+		if (output.length - outputOffset < lengthM) {
+			throw new ShortBufferException("Output buffer too short! " + (output.length - outputOffset) + " < " + lengthM);
+		}
+		Scratch scratch = SCRATCH.get();
+		Cipher cipher = scratch.init(key);
+		scratch.initCounter(nonce);
+		int nonceL = nonce.length;
 
-		BlockCipher blockCiper = new BlockCipher(cipher, nonce);
-		// block 0 for MAC
+		// block 0 for MAC, separate T before the output may overwrite it
 		int blockNo = 0;
-		byte[] block = blockCiper.updateBlock(blockNo++);
+		byte[] block = scratch.updateStream(cipher, nonceL, blockNo++);
+		byte[] T = scratch.tag;
 		int tOffset = cryptedOffset + lengthM;
 		for (int i = 0; i < numAuthenticationBytes; ++i) {
 			T[i] = (byte) (crypted[tOffset + i] ^ block[i]);
 		}
 
 		for (int i = 0; i < lengthM;) {
-			block = blockCiper.updateBlock(blockNo++);
-			int blockEnd = i + blockSize;
+			block = scratch.updateStream(cipher, nonceL, blockNo++);
+			int blockEnd = i + BLOCK_SIZE;
 			if (blockEnd > lengthM) {
 				blockEnd = lengthM;
 			}
 			for (int j = 0; i < blockEnd; ++i, ++j) {
-				decrypted[i] = (byte) (crypted[cryptedOffset + i] ^ block[j]);
+				output[outputOffset + i] = (byte) (crypted[cryptedOffset + i] ^ block[j]);
 			}
 		}
 
@@ -355,8 +469,7 @@ public class CCMBlockCipher {
 		 * The message and additional authentication data is then used to
 		 * recompute the CBC-MAC value and check T.
 		 */
-		MacCipher macCipher = new MacCipher(cipher, nonce, additionalData, decrypted, numAuthenticationBytes);
-		byte[] mac = macCipher.getMac();
+		byte[] mac = scratch.updateMac(cipher, nonce, additionalData, output, outputOffset, lengthM, numAuthenticationBytes);
 
 		/*
 		 * If the T value is not correct, the receiver MUST NOT reveal any
@@ -364,10 +477,16 @@ public class CCMBlockCipher {
 		 * MUST NOT reveal the decrypted message, the value T, or any other
 		 * information.
 		 */
-		if (MessageDigest.isEqual(T, mac)) {
-			return decrypted;
+		int diff = 0;
+		for (int i = 0; i < numAuthenticationBytes; ++i) {
+			diff |= T[i] ^ mac[i];
+		}
+		if (diff == 0) {
+			return lengthM;
 		} else {
-			throw new InvalidMacException(mac, T);
+			Arrays.fill(output, outputOffset, outputOffset + lengthM, (byte) 0);
+			throw new InvalidMacException(Arrays.copyOf(mac, numAuthenticationBytes),
+					Arrays.copyOf(T, numAuthenticationBytes));
 		}
 	}
 
@@ -406,44 +525,81 @@ public class CCMBlockCipher {
 	 */
 	public final static byte[] encrypt(int outputOffset, SecretKey key, byte[] nonce, byte[] additionalData, byte[] message,
 			int numAuthenticationBytes) throws GeneralSecurityException {
+		// encrypted data with MAC
+		byte[] encrypted = new byte[outputOffset + message.length + numAuthenticationBytes];
+		encrypt(key, nonce, additionalData, message, 0, message.length, encrypted, outputOffset,
+				numAuthenticationBytes);
+		return encrypted;
+	}
 
-		// instantiate the cipher
-		Cipher cipher = CIPHER.current();
-		cipher.init(Cipher.ENCRYPT_MODE, key);
-		int blockSize = cipher.getBlockSize();
-		int lengthM = message.length;
+	/**
+	 * Encrypt into the provided output buffer. See
+	 * <a href="http://tools.ietf.org/html/rfc3610#section-2.2">RFC 3610</a>
+	 * for details.
+	 * 
+	 * Uses per-thread scratch blocks and doesn't allocate intermediate arrays.
+	 * The output buffer may be the same array as message, if the
+	 * {@code outputOffset} is not larger than the {@code messageOffset}. That
+	 * enables to encrypt in place.
+	 * 
+	 * @param key the encryption key K.
+	 * @param nonce the nonce N.
+	 * @param additionalData the additional authenticated data a.
+	 * @param message the message to authenticate and encrypt.
+	 * @param messageOffset offset within message
+	 * @param messageLength length within message
+	 * @param output output buffer for the encrypted message and the
+	 *            authentication field
+	 * @param outputOffset offset within the output buffer
+	 * @param numAuthenticationBytes Number of octets in authentication field.
+	 * @return length of the encrypted and authenticated message.
+	 * @throws ShortBufferException if the output buffer is too small
+	 * @throws GeneralSecurityException if the data could not be encrypted, e.g.
+	 *             because the JVM does not support the AES cipher algorithm
+	 * @since 3.0
+	 */
+	public final static int encrypt(SecretKey key, byte[] nonce, byte[] additionalData, byte[] message,
+			int messageOffset, int messageLength, byte[] output, int outputOffset, int numAuthenticationBytes)
+			throws GeneralSecurityException {
+		checkNonce(nonce);
+		int length = messageLength + numAuthenticationBytes;
+		if (output.length - outputOffset < length) {
+			throw new ShortBufferException("Output buffer too short! " + (output.length - outputOffset) + " < " + length);
+		}
+		Scratch scratch = SCRATCH.get();
+		Cipher cipher = scratch.init(key);
+		scratch.initCounter(nonce);
+		int nonceL = nonce.length;
 
 		/*
 		 * First, authentication: http://tools.ietf.org/html/rfc3610#section-2.2
 		 */
 		// compute the authentication field T
-		MacCipher macCipher = new MacCipher(cipher, nonce, additionalData, message, numAuthenticationBytes);
-		byte[] mac = macCipher.getMac();
+		byte[] mac = scratch.updateMac(cipher, nonce, additionalData, message, messageOffset, messageLength,
+				numAuthenticationBytes);
 
 		/*
 		 * Second, encryption http://tools.ietf.org/html/rfc3610#section-2.3
 		 */
-		// encrypted data with MAC
-		byte[] encrypted = new byte[outputOffset + lengthM + numAuthenticationBytes];
-		BlockCipher blockCiper = new BlockCipher(cipher, nonce);
-		// block 0 for MAC
+		// block 0 for MAC, applied after the message in order to support
+		// encryption in place
 		int blockNo = 0;
-		byte[] block = blockCiper.updateBlock(blockNo++);
-		int tOffset = outputOffset + lengthM;
+		byte[] block = scratch.updateStream(cipher, nonceL, blockNo++);
+		byte[] T = scratch.tag;
 		for (int i = 0; i < numAuthenticationBytes; ++i) {
-			encrypted[i + tOffset] = (byte) (mac[i] ^ block[i]);
+			T[i] = (byte) (mac[i] ^ block[i]);
 		}
-		for (int i = 0; i < lengthM;) {
-			block = blockCiper.updateBlock(blockNo++);
-			int blockEnd = i + blockSize;
-			if (blockEnd > lengthM) {
-				blockEnd = lengthM;
+		for (int i = 0; i < messageLength;) {
+			block = scratch.updateStream(cipher, nonceL, blockNo++);
+			int blockEnd = i + BLOCK_SIZE;
+			if (blockEnd > messageLength) {
+				blockEnd = messageLength;
 			}
 			for (int j = 0; i < blockEnd; ++i, ++j) {
-				encrypted[i + outputOffset] = (byte) (message[i] ^ block[j]);
+				output[outputOffset + i] = (byte) (message[messageOffset + i] ^ block[j]);
 			}
 		}
-
-		return encrypted;
+		System.arraycopy(T, 0, output, outputOffset + messageLength, numAuthenticationBytes);
+		return length;
 	}
 }
@@ -13,6 +13,7 @@
  * Contributors:
  *    Bosch.IO GmbH - initial creation
  *                    derived from ECDHECryptography
+ *    Bosch IO GmbH - add pool of precomputed key pairs
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.cipher;
 
@@ -232,19 +233,28 @@ public final class XECDHECryptography implements Destroyable {
 	 *             provider doesn't support the group
 	 */
 	public XECDHECryptography(SupportedGroup supportedGroup) throws GeneralSecurityException {
-		KeyPair keyPair;
-		if (supportedGroup.getAlgorithmName().equals(EC_KEYPAIR_GENERATOR_ALGORITHM)) {
-			KeyPairGenerator keyPairGenerator = EC_KEYPAIR_GENERATOR.currentWithCause();
-			ECGenParameterSpec params = new ECGenParameterSpec(supportedGroup.name());
-			keyPairGenerator.initialize(params, RandomManager.currentSecureRandom());
-			keyPair = keyPairGenerator.generateKeyPair();
-		} else if (supportedGroup.getAlgorithmName().equals(XDH_KEYPAIR_GENERATOR_ALGORITHM)) {
-			KeyPairGenerator keyPairGenerator = XDH_KEYPAIR_GENERATOR.currentWithCause();
-			ECGenParameterSpec params = new ECGenParameterSpec(supportedGroup.name());
-			keyPairGenerator.initialize(params, RandomManager.currentSecureRandom());
-			keyPair = keyPairGenerator.generateKeyPair();
-		} else {
-			throw new GeneralSecurityException(supportedGroup.name() + " not supported by KeyPairGenerator!");
+		this(supportedGroup, null);
+	}
+
+	/**
+	 * Creates an ephemeral ECDH key pair for a given supported group.
+	 * 
+	 * Takes the key pair from the provided pool, if available. Otherwise the
+	 * key pair is generated.
+	 * 
+	 * @param supportedGroup a curve as defined in the <a href=
+	 *            "http://www.iana.org/assignments/tls-parameters/tls-parameters.xhtml#tls-parameters-8">
+	 *            IANA Supported Groups Registry</a>
+	 * @param pool pool of precomputed key pairs. May be {@code null}.
+	 * @throws GeneralSecurityException if the key pair cannot be created from
+	 *             the given supported group, e.g. because the JRE's crypto
+	 *             provider doesn't support the group
+	 * @since 3.0
+	 */
+	public XECDHECryptography(SupportedGroup supportedGroup, XECDHEKeyPairPool pool) throws GeneralSecurityException {
+		KeyPair keyPair = pool == null ? null : pool.take(supportedGroup);
+		if (keyPair == null) {
+			keyPair = generateKeyPair(supportedGroup);
 		}
 		privateKey = keyPair.getPrivate();
 		publicKey = keyPair.getPublic();
@@ -252,6 +262,29 @@ public final class XECDHECryptography implements Destroyable {
 		this.encodedPoint = encodedPoint(keyPair.getPublic());
 	}
 
+	/**
+	 * Generates an ephemeral ECDH key pair for a given supported group.
+	 * 
+	 * @param supportedGroup supported group (curve)
+	 * @return generated key pair
+	 * @throws GeneralSecurityException if the key pair cannot be created from
+	 *             the given supported group
+	 * @since 3.0
+	 */
+	static KeyPair generateKeyPair(SupportedGroup supportedGroup) throws GeneralSecurityException {
+		KeyPairGenerator keyPairGenerator;
+		if (supportedGroup.getAlgorithmName().equals(EC_KEYPAIR_GENERATOR_ALGORITHM)) {
+			keyPairGenerator = EC_KEYPAIR_GENERATOR.currentWithCause();
+		} else if (supportedGroup.getAlgorithmName().equals(XDH_KEYPAIR_GENERATOR_ALGORITHM)) {
+			keyPairGenerator = XDH_KEYPAIR_GENERATOR.currentWithCause();
+		} else {
+			throw new GeneralSecurityException(supportedGroup.name() + " not supported by KeyPairGenerator!");
+		}
+		ECGenParameterSpec params = new ECGenParameterSpec(supportedGroup.name());
+		keyPairGenerator.initialize(params, RandomManager.currentSecureRandom());
+		return keyPairGenerator.generateKeyPair();
+	}
+
 	/**
 	 * Get public key.
 	 * 
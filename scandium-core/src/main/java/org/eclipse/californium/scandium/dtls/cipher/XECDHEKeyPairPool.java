@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.security.auth.DestroyFailedException;
+
+import org.eclipse.californium.elements.util.DaemonThreadFactory;
+import org.eclipse.californium.elements.util.NamedThreadFactory;
+import org.eclipse.californium.elements.util.SimpleCounterStatistic;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHECryptography.SupportedGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of precomputed ephemeral key pairs for ECDHE.
+ *
+ * Generating the ephemeral key pair is a considerable part of the processing
+ * of an ECDHE handshake. This pool generates key pairs for the configured
+ * {@link SupportedGroup}s in advance using a background thread with minimum
+ * priority. {@link XECDHECryptography} takes the key pairs from the pool and
+ * falls back to generate the key pair itself, if the pool is empty.
+ *
+ * A key pair is only used once. Pooled key pairs are dropped on
+ * {@link #stop()}.
+ *
+ * <pre>
+ * XECDHEKeyPairPool pool = new XECDHEKeyPairPool(64,
+ * 		Arrays.asList(SupportedGroup.X25519, SupportedGroup.secp256r1));
+ * pool.start();
+ * DtlsConnectorConfig.Builder builder = DtlsConnectorConfig.builder();
+ * builder.setEcdheKeyPairPool(pool);
+ * </pre>
+ *
+ * @since 3.0
+ */
+public class XECDHEKeyPairPool {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(XECDHEKeyPairPool.class);
+
+	/**
+	 * Thread factory for the background thread.
+	 */
+	private static final NamedThreadFactory THREAD_FACTORY = new DaemonThreadFactory("ECDHE-KeyPairPool#",
+			NamedThreadFactory.SCANDIUM_THREAD_GROUP);
+
+	/**
+	 * Maximum number of key pairs per group.
+	 */
+	private final int size;
+	/**
+	 * Key pairs per supported group.
+	 */
+	private final Map<SupportedGroup, BlockingQueue<KeyPair>> pools;
+	/**
+	 * Indicates, that key pairs are taken from the pool since the last
+	 * refill.
+	 */
+	private final AtomicBoolean refill = new AtomicBoolean();
+	/**
+	 * Number of key pairs taken from the pool.
+	 */
+	private final SimpleCounterStatistic hits = new SimpleCounterStatistic("hits");
+	/**
+	 * Number of requests for key pairs, which are not available in the pool.
+	 */
+	private final SimpleCounterStatistic misses = new SimpleCounterStatistic("misses");
+	/**
+	 * Background thread to refill the pool. {@code null}, if not started.
+	 */
+	private volatile Thread thread;
+
+	/**
+	 * Create pool of ephemeral key pairs.
+	 *
+	 * @param size maximum number of pooled key pairs per group
+	 * @param groups list of groups. Groups not usable by the JCE are
+	 *            ignored.
+	 * @throws NullPointerException if groups is {@code null}
+	 * @throws IllegalArgumentException if size is less than {@code 1} or the
+	 *             list of groups is empty
+	 */
+	public XECDHEKeyPairPool(int size, List<SupportedGroup> groups) {
+		if (groups == null) {
+			throw new NullPointerException("groups must not be null!");
+		}
+		if (size < 1) {
+			throw new IllegalArgumentException("size " + size + " must be at least 1!");
+		}
+		if (groups.isEmpty()) {
+			throw new IllegalArgumentException("groups must not be empty!");
+		}
+		Map<SupportedGroup, BlockingQueue<KeyPair>> pools = new EnumMap<>(SupportedGroup.class);
+		for (SupportedGroup group : groups) {
+			if (group.isUsable()) {
+				pools.put(group, new ArrayBlockingQueue<KeyPair>(size));
+			} else {
+				LOGGER.warn("Group [{}] is not supported by JRE, not pooled!", group.name());
+			}
+		}
+		this.size = size;
+		this.pools = Collections.unmodifiableMap(pools);
+	}
+
+	/**
+	 * Start the background thread to fill the pool.
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			thread = THREAD_FACTORY.newThread(new Runnable() {
+
+				@Override
+				public void run() {
+					LOGGER.info("ECDHE key pair pool started.");
+					while (thread == Thread.currentThread()) {
+						refill.set(false);
+						fill();
+						if (!refill.get()) {
+							LockSupport.park(XECDHEKeyPairPool.this);
+						}
+					}
+					LOGGER.info("ECDHE key pair pool stopped.");
+				}
+			});
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stop the background thread and drop the pooled key pairs.
+	 */
+	public synchronized void stop() {
+		Thread current = thread;
+		if (current != null) {
+			thread = null;
+			LockSupport.unpark(current);
+			for (BlockingQueue<KeyPair> pool : pools.values()) {
+				KeyPair keyPair;
+				while ((keyPair = pool.poll()) != null) {
+					destroy(keyPair);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check, if the background thread is running.
+	 *
+	 * @return {@code true}, if running, {@code false}, otherwise.
+	 */
+	public boolean isRunning() {
+		return thread != null;
+	}
+
+	/**
+	 * Take key pair from pool.
+	 *
+	 * @param group supported group of the key pair
+	 * @return key pair, or {@code null}, if not available.
+	 */
+	public KeyPair take(SupportedGroup group) {
+		BlockingQueue<KeyPair> pool = pools.get(group);
+		if (pool == null) {
+			return null;
+		}
+		KeyPair keyPair = pool.poll();
+		if (keyPair == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		Thread current = thread;
+		if (current != null && refill.compareAndSet(false, true)) {
+			LockSupport.unpark(current);
+		}
+		return keyPair;
+	}
+
+	/**
+	 * Get number of pooled key pairs.
+	 *
+	 * @param group supported group
+	 * @return number of pooled key pairs
+	 */
+	public int size(SupportedGroup group) {
+		BlockingQueue<KeyPair> pool = pools.get(group);
+		return pool == null ? 0 : pool.size();
+	}
+
+	/**
+	 * Get number of key pairs taken from the pool.
+	 *
+	 * @return number of key pairs taken from the pool
+	 */
+	public long getHits() {
+		return hits.getCounter();
+	}
+
+	/**
+	 * Get number of requested key pairs, which are not available in the
+	 * pool.
+	 *
+	 * @return number of missing key pairs
+	 */
+	public long getMisses() {
+		return misses.getCounter();
+	}
+
+	@Override
+	public String toString() {
+		return "ecdhe-key-pairs: " + hits + ", " + misses;
+	}
+
+	/**
+	 * Fill the pools.
+	 *
+	 * Generates one key pair per group in turn, until all pools are full or
+	 * the pool is stopped. That prevents, that one exhausted group is
+	 * starving the others.
+	 *
+	 * A key pair, which is generated while the pool is stopped, is destroyed
+	 * and not left in the pool.
+	 */
+	private void fill() {
+		boolean full = false;
+		while (!full && thread == Thread.currentThread()) {
+			full = true;
+			for (Map.Entry<SupportedGroup, BlockingQueue<KeyPair>> entry : pools.entrySet()) {
+				BlockingQueue<KeyPair> pool = entry.getValue();
+				if (pool.size() < size) {
+					try {
+						KeyPair keyPair = XECDHECryptography.generateKeyPair(entry.getKey());
+						if (!pool.offer(keyPair)) {
+							destroy(keyPair);
+						} else if (thread != Thread.currentThread()) {
+							// stopped concurrently, after the pool is cleared
+							if (pool.remove(keyPair)) {
+								destroy(keyPair);
+							}
+							return;
+						}
+						full = false;
+					} catch (GeneralSecurityException ex) {
+						LOGGER.warn("Group [{}] failed to generate key pair!", entry.getKey().name(), ex);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Destroy private key of key pair.
+	 *
+	 * Not all JCE providers support to destroy private keys.
+	 *
+	 * @param keyPair key pair to destroy
+	 */
+	private static void destroy(KeyPair keyPair) {
+		try {
+			keyPair.getPrivate().destroy();
+		} catch (DestroyFailedException e) {
+			// not supported by the JCE provider
+			LOGGER.trace("Destroy private key not supported!");
+		}
+	}
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.x509;
+
+import java.security.MessageDigest;
+import java.security.cert.CertPath;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.util.LeastRecentlyUsedCache;
+import org.eclipse.californium.scandium.dtls.cipher.ThreadLocalMessageDigest;
+
+/**
+ * Cache for successfully validated certificate chains.
+ *
+ * The entries are identified by the SHA-256 fingerprint of the certificate
+ * chain, the fingerprint of the trust anchors, the usage and the truncation
+ * flag. An entry is valid until the earliest expiration of the certificates
+ * of the chain, but not longer than the maximum lifetime of the cache. The
+ * number of entries is limited, the least recently used entries are evicted
+ * first.
+ *
+ * Changing the trust anchors changes their fingerprint, therefore entries
+ * validated with other trust anchors are not used. That enables to share a
+ * cache between verifiers, e.g. when a verifier is replaced with new trust
+ * anchors. {@link #clear()} may be used to remove all entries.
+ *
+ * Note: the revocation of certificates is not considered by the
+ * {@link StaticNewAdvancedCertificateVerifier}. Therefore a cached validation
+ * is equivalent to a new validation until the certificates expire.
+ *
+ * @since 3.0
+ */
+public class CertificateChainCache {
+
+	private static final ThreadLocalMessageDigest SHA256 = new ThreadLocalMessageDigest("SHA-256");
+
+	/**
+	 * Cache of validated certificate chains.
+	 */
+	private final LeastRecentlyUsedCache<Key, Entry> cache;
+	/**
+	 * Maximum lifetime of an entry in milliseconds.
+	 */
+	private final long maxLifetimeMillis;
+
+	/**
+	 * Create cache for validated certificate chains.
+	 *
+	 * @param capacity maximum number of cached certificate chains
+	 * @param maxLifetime maximum lifetime of an entry. Entries are also
+	 *            evicted, if not used for that time.
+	 * @param unit time unit of maximum lifetime
+	 * @throws IllegalArgumentException if capacity or maximum lifetime is less
+	 *             than {@code 1}
+	 */
+	public CertificateChainCache(int capacity, long maxLifetime, TimeUnit unit) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity " + capacity + " must be at least 1!");
+		}
+		if (maxLifetime < 1) {
+			throw new IllegalArgumentException("max. lifetime " + maxLifetime + " must be at least 1!");
+		}
+		this.cache = new LeastRecentlyUsedCache<>(
+				Math.min(capacity, LeastRecentlyUsedCache.DEFAULT_INITIAL_CAPACITY), capacity, maxLifetime, unit);
+		this.cache.setEvictingOnReadAccess(true);
+		this.maxLifetimeMillis = unit.toMillis(maxLifetime);
+	}
+
+	/**
+	 * Create key for certificate chain.
+	 *
+	 * @param certPath certificate chain to validate
+	 * @param trustAnchorsFingerprint fingerprint of trust anchors
+	 * @param clientUsage {@code true}, if the certificate is used by a client,
+	 *            {@code false}, if used by a server.
+	 * @param truncateCertificatePath {@code true}, if the certificate path is
+	 *            truncated by the validation.
+	 * @return key, or {@code null}, if the fingerprint could not be
+	 *         calculated.
+	 * @see #getFingerprint(List)
+	 */
+	public Key createKey(CertPath certPath, byte[] trustAnchorsFingerprint, boolean clientUsage,
+			boolean truncateCertificatePath) {
+		if (trustAnchorsFingerprint == null) {
+			return null;
+		}
+		byte[] fingerprint = getFingerprint(certPath.getCertificates());
+		if (fingerprint == null) {
+			return null;
+		}
+		return new Key(fingerprint, trustAnchorsFingerprint, clientUsage, truncateCertificatePath);
+	}
+
+	/**
+	 * Get validated certificate chain.
+	 *
+	 * @param key key of certificate chain. May be {@code null}.
+	 * @return validated certificate chain, or {@code null}, if not available.
+	 */
+	public CertPath get(Key key) {
+		if (key == null) {
+			return null;
+		}
+		Entry entry = cache.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.validUntilMillis - System.currentTimeMillis() < 0) {
+			cache.remove(key, entry);
+			return null;
+		}
+		return entry.certPath;
+	}
+
+	/**
+	 * Add validated certificate chain.
+	 *
+	 * @param key key of the certificate chain. May be {@code null}.
+	 * @param validatedCertPath validated, maybe truncated, certificate chain
+	 */
+	public void put(Key key, CertPath validatedCertPath) {
+		if (key == null || validatedCertPath == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		long validUntil = now + maxLifetimeMillis;
+		for (Certificate certificate : validatedCertPath.getCertificates()) {
+			if (certificate instanceof X509Certificate) {
+				long notAfter = ((X509Certificate) certificate).getNotAfter().getTime();
+				if (notAfter - validUntil < 0) {
+					validUntil = notAfter;
+				}
+			}
+		}
+		if (validUntil - now > 0) {
+			cache.put(key, new Entry(validatedCertPath, validUntil));
+		}
+	}
+
+	/**
+	 * Get number of cached certificate chains.
+	 *
+	 * @return number of cached certificate chains
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Remove all cached certificate chains.
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Get fingerprint of list of certificates.
+	 *
+	 * @param certificates list of certificates
+	 * @return SHA-256 fingerprint, or {@code null}, if not available.
+	 */
+	public static byte[] getFingerprint(List<? extends Certificate> certificates) {
+		MessageDigest md = SHA256.current();
+		if (md == null) {
+			return null;
+		}
+		md.reset();
+		try {
+			for (Certificate certificate : certificates) {
+				md.update(certificate.getEncoded());
+			}
+		} catch (CertificateEncodingException e) {
+			return null;
+		}
+		return md.digest();
+	}
+
+	/**
+	 * Key of validated certificate chain.
+	 */
+	public static final class Key {
+
+		private final byte[] fingerprint;
+		private final byte[] trustAnchorsFingerprint;
+		private final boolean clientUsage;
+		private final boolean truncateCertificatePath;
+		private final int hash;
+
+		private Key(byte[] fingerprint, byte[] trustAnchorsFingerprint, boolean clientUsage,
+				boolean truncateCertificatePath) {
+			this.fingerprint = fingerprint;
+			this.trustAnchorsFingerprint = trustAnchorsFingerprint;
+			this.clientUsage = clientUsage;
+			this.truncateCertificatePath = truncateCertificatePath;
+			int hash = Arrays.hashCode(fingerprint);
+			hash = hash * 31 + Arrays.hashCode(trustAnchorsFingerprint);
+			hash = hash * 31 + (clientUsage ? 1 : 0);
+			this.hash = hash * 31 + (truncateCertificatePath ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return clientUsage == other.clientUsage && truncateCertificatePath == other.truncateCertificatePath
+					&& Arrays.equals(fingerprint, other.fingerprint)
+					&& Arrays.equals(trustAnchorsFingerprint, other.trustAnchorsFingerprint);
+		}
+	}
+
+	/**
+	 * Entry of validated certificate chain.
+	 */
+	private static final class Entry {
+
+		private final CertPath certPath;
+		/**
+		 * End of validity in milliseconds.
+		 */
+		private final long validUntilMillis;
+
+		private Entry(CertPath certPath, long validUntilMillis) {
+			this.certPath = certPath;
+			this.validUntilMillis = validUntilMillis;
+		}
+	}
+}
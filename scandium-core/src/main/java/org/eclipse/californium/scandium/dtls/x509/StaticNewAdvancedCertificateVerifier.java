@@ -12,6 +12,7 @@
  * 
  * Contributors:
  *    Bosch.IO GmbH - initial creation
+ *    Bosch IO GmbH - add cache for validated certificate chains
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.x509;
 
@@ -70,6 +71,21 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 	 */
 	private final List<CertificateType> supportedCertificateTypes;
 
+	/**
+	 * Cache for validated certificate chains. {@code null}, if not used.
+	 * 
+	 * @since 3.0
+	 */
+	private final CertificateChainCache certificateChainCache;
+
+	/**
+	 * Fingerprint of the trusted x509 certificates. {@code null}, if not
+	 * available.
+	 * 
+	 * @since 3.0
+	 */
+	private final byte[] trustedCertificatesFingerprint;
+
 	/**
 	 * Create delegating certificate verifier for x509 and RPK.
 	 * 
@@ -85,6 +101,28 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 	 */
 	public StaticNewAdvancedCertificateVerifier(X509Certificate[] trustedCertificates,
 			RawPublicKeyIdentity[] trustedRPKs, List<CertificateType> supportedCertificateTypes) {
+		this(trustedCertificates, trustedRPKs, supportedCertificateTypes, null);
+	}
+
+	/**
+	 * Create delegating certificate verifier for x509 and RPK.
+	 * 
+	 * @param trustedCertificates trusted x509 certificates. {@code null} not
+	 *            support x.509, empty, to trust all.
+	 * @param trustedRPKs trusted RPK identities. {@code null} not support RPK,
+	 *            empty, to trust all.
+	 * @param supportedCertificateTypes list of supported certificate type in
+	 *            order of preference.
+	 * @param certificateChainCache cache for validated certificate chains.
+	 *            {@code null}, to validate each certificate chain.
+	 * @throws IllegalArgumentException if both verifier are {@code null}.
+	 * @throws NullPointerException if the list of supported certificate types
+	 *             is {@code null}
+	 * @since 3.0
+	 */
+	public StaticNewAdvancedCertificateVerifier(X509Certificate[] trustedCertificates,
+			RawPublicKeyIdentity[] trustedRPKs, List<CertificateType> supportedCertificateTypes,
+			CertificateChainCache certificateChainCache) {
 		if (trustedCertificates == null && trustedRPKs == null) {
 			throw new IllegalArgumentException("no trusts provided!");
 		}
@@ -110,6 +148,14 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 				: Arrays.copyOf(trustedCertificates, trustedCertificates.length);
 		this.trustedRPKs = trustedRPKs == null ? null : new HashSet<>(Arrays.asList(trustedRPKs));
 		this.supportedCertificateTypes = Collections.unmodifiableList(supportedCertificateTypes);
+		if (certificateChainCache != null && this.trustedCertificates != null) {
+			this.certificateChainCache = certificateChainCache;
+			this.trustedCertificatesFingerprint = CertificateChainCache
+					.getFingerprint(Arrays.asList(this.trustedCertificates));
+		} else {
+			this.certificateChainCache = null;
+			this.trustedCertificatesFingerprint = null;
+		}
 	}
 
 	@Override
@@ -155,8 +201,21 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 							}
 						}
 					}
+					CertificateChainCache.Key key = null;
+					if (certificateChainCache != null && !message.isEmpty()) {
+						key = certificateChainCache.createKey(certPath, trustedCertificatesFingerprint, clientUsage,
+								truncateCertificatePath);
+						CertPath validatedChain = certificateChainCache.get(key);
+						if (validatedChain != null) {
+							LOGGER.debug("Certificate chain already validated");
+							return new CertificateVerificationResult(cid, validatedChain, null);
+						}
+					}
 					certChain = CertPathUtil.validateCertificatePathWithIssuer(truncateCertificatePath, certPath,
 							trustedCertificates);
+					if (key != null) {
+						certificateChainCache.put(key, certChain);
+					}
 					return new CertificateVerificationResult(cid, certChain, null);
 				} catch (GeneralSecurityException e) {
 					if (LOGGER.isTraceEnabled()) {
@@ -206,6 +265,12 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 		 * List of supported certificate type in order of preference.
 		 */
 		protected List<CertificateType> supportedCertificateTypes;
+		/**
+		 * Cache for validated certificate chains.
+		 * 
+		 * @since 3.0
+		 */
+		protected CertificateChainCache certificateChainCache;
 
 		public Builder setTrustedCertificates(Certificate... trustedCertificates) {
 			if (trustedCertificates == null) {
@@ -241,13 +306,29 @@ public class StaticNewAdvancedCertificateVerifier implements NewAdvancedCertific
 			return this;
 		}
 
+		/**
+		 * Set cache for validated certificate chains.
+		 * 
+		 * The cache may be shared between verifiers.
+		 * 
+		 * @param certificateChainCache cache for validated certificate
+		 *            chains. {@code null}, to validate each certificate
+		 *            chain.
+		 * @return this builder for chaining
+		 * @since 3.0
+		 */
+		public Builder setCertificateChainCache(CertificateChainCache certificateChainCache) {
+			this.certificateChainCache = certificateChainCache;
+			return this;
+		}
+
 		public boolean hasTrusts() {
 			return trustedCertificates != null || trustedRPKs != null;
 		}
 
 		public NewAdvancedCertificateVerifier build() {
 			return new StaticNewAdvancedCertificateVerifier(trustedCertificates, trustedRPKs,
-					supportedCertificateTypes);
+					supportedCertificateTypes, certificateChainCache);
 		}
 	}
 }
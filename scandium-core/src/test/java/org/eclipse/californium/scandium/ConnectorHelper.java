@@ -59,6 +59,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -122,6 +123,14 @@ public class ConnectorHelper {
 	AlertCatcher serverAlertCatcher;
 
 	DtlsConnectorConfig serverConfig;
+	/**
+	 * Simulate platform without support for {@code SO_REUSEPORT}.
+	 */
+	volatile boolean reusePortUnsupported;
+	/**
+	 * Number of sockets with enabled {@code SO_REUSEPORT}.
+	 */
+	final AtomicInteger reusePortEnabled = new AtomicInteger();
 
 	/**
 	 * Configures and starts a connector representing the <em>server side</em> of a DTLS connection.
@@ -758,6 +767,15 @@ public class ConnectorHelper {
 			handshaker.addSessionListener(listener);
 			sessionListenerMap.put(handshaker.getPeerAddress(), listener);
 		}
+
+		@Override
+		protected boolean enableReusePort(DatagramSocket socket) {
+			if (reusePortUnsupported || !super.enableReusePort(socket)) {
+				return false;
+			}
+			reusePortEnabled.incrementAndGet();
+			return true;
+		}
 	}
 
 	public static interface BuilderSetup {
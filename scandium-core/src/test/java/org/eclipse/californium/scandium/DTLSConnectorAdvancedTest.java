@@ -495,6 +495,75 @@ public class DTLSConnectorAdvancedTest {
 		}
 	}
 
+	@Test
+	public void testLimitedServerRejectsConcurrentHandshake() throws Exception {
+		alternativeServerHelper = new ConnectorHelper();
+
+		DtlsConnectorConfig.Builder builder = DtlsConnectorConfig.builder()
+				.setRetransmissionTimeout(RETRANSMISSION_TIMEOUT_MS * 2)
+				.setMaxRetransmissions(MAX_RETRANSMISSIONS * 2)
+				.setMaxConcurrentHandshakes(1)
+				.setHealthHandler(serverHealth)
+				.setConnectionIdGenerator(serverCidGenerator);
+
+		// Configure and create UDP connectors
+		RecordCollectorDataHandler collector1 = new RecordCollectorDataHandler(clientCidGenerator);
+		UdpConnector rawClient1 = new UdpConnector(0, collector1);
+		TestRecordLayer recordLayer1 = new TestRecordLayer(rawClient1);
+		RecordCollectorDataHandler collector2 = new RecordCollectorDataHandler(clientCidGenerator);
+		UdpConnector rawClient2 = new UdpConnector(0, collector2);
+		TestRecordLayer recordLayer2 = new TestRecordLayer(rawClient2);
+		try {
+			// create limited server
+			alternativeServerHelper.startServer(builder);
+
+			// Start connectors
+			rawClient1.start();
+			rawClient2.start();
+
+			LatchSessionListener sessionListener1 = new LatchSessionListener();
+			ClientHandshaker clientHandshaker1 = new ClientHandshaker(null, recordLayer1, timer,
+					createConnection(clientCidGenerator, alternativeServerHelper.serverEndpoint),
+					clientConfigSingleRecord, false);
+			clientHandshaker1.addSessionListener(sessionListener1);
+			ClientHandshaker clientHandshaker2 = new ClientHandshaker(null, recordLayer2, timer,
+					createConnection(clientCidGenerator, alternativeServerHelper.serverEndpoint),
+					clientConfigSingleRecord, false);
+
+			// Start 1. handshake (Send CLIENT HELLO)
+			clientHandshaker1.startHandshake();
+			List<Record> rs = waitForFlightReceived("flight 2", collector1, 1);
+			processAll(clientHandshaker1, rs);
+			rs = waitForFlightReceived("flight 4", collector1, 5);
+
+			// Start 2. handshake, still gets a HELLO VERIFY REQUEST
+			clientHandshaker2.startHandshake();
+			List<Record> rs2 = waitForFlightReceived("flight 2", collector2, 1);
+			// CLIENT HELLO with cookie is rejected
+			processAll(clientHandshaker2, rs2);
+			TestConditionTools.assertStatisticCounter(serverHealth, "handshakes rejected", is(1L),
+					MAX_TIME_TO_WAIT_SECS, TimeUnit.SECONDS);
+			List<Record> records = collector2.waitForRecords(500, TimeUnit.MILLISECONDS);
+			assertThat("unexpected messages!", records, is(nullValue()));
+
+			// Complete 1. handshake
+			processAll(clientHandshaker1, rs);
+			rs = waitForFlightReceived("flight 6", collector1, 2);
+			processAll(clientHandshaker1, rs);
+			assertTrue("client handshake failed",
+					sessionListener1.waitForSessionEstablished(MAX_TIME_TO_WAIT_SECS, TimeUnit.SECONDS));
+
+			// retransmitted CLIENT HELLO with cookie is accepted
+			timer.executeJobs();
+			waitForFlightReceived("flight 4", collector2, 5);
+		} finally {
+			rawClient1.stop();
+			rawClient2.stop();
+			alternativeServerHelper.destroyServer();
+			serverHealth.reset();
+		}
+	}
+
 	@Test
 	public void testClientReceivingMessagesInBadOrderDuringHandshake() throws Exception {
 		// Configure UDP connector we will use as Server
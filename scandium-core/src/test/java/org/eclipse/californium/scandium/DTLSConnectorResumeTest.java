@@ -39,6 +39,7 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.security.Principal;
 import java.security.PrivateKey;
+import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -60,6 +61,7 @@ import org.eclipse.californium.elements.auth.X509CertPath;
 import org.eclipse.californium.elements.category.Medium;
 import org.eclipse.californium.elements.rule.TestNameLoggerRule;
 import org.eclipse.californium.elements.rule.ThreadsRule;
+import org.eclipse.californium.elements.util.Bytes;
 import org.eclipse.californium.elements.util.ExecutorsUtil;
 import org.eclipse.californium.elements.util.SimpleMessageCallback;
 import org.eclipse.californium.elements.util.TestScope;
@@ -80,11 +82,13 @@ import org.eclipse.californium.scandium.dtls.InMemoryConnectionStore;
 import org.eclipse.californium.scandium.dtls.Record;
 import org.eclipse.californium.scandium.dtls.SessionId;
 import org.eclipse.californium.scandium.dtls.SessionTicket;
+import org.eclipse.californium.scandium.dtls.SessionTicketKeys;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.pskstore.AdvancedMultiPskStore;
 import org.eclipse.californium.scandium.dtls.pskstore.AsyncAdvancedPskStore;
 import org.eclipse.californium.scandium.dtls.x509.AsyncNewAdvancedCertificateVerifier;
 import org.eclipse.californium.scandium.rule.DtlsNetworkRule;
+import org.eclipse.californium.scandium.util.SecretUtil;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -408,7 +412,9 @@ public class DTLSConnectorResumeTest {
 				.setSniEnabled(true)
 				.setApplicationLevelInfoSupplier(supplier)
 				.setAdvancedCertificateVerifier(serverCertificateVerifier)
-				.setAdvancedPskStore(serverPskStore);
+				.setAdvancedPskStore(serverPskStore)
+				.setSessionTicketKeys(new SessionTicketKeys(
+						SecretUtil.create(Bytes.createBytes(new SecureRandom(), 32), "MAC"), 1, TimeUnit.HOURS));
 
 		serverHelper = new ConnectorHelper();
 		serverHelper.startServer(builder);
@@ -481,6 +487,17 @@ public class DTLSConnectorResumeTest {
 		client.setExecutor(executor);
 	}
 
+	private void sessionTicketSetUp() throws Exception {
+		cleanUp();
+		clientConnectionStore = new InMemoryConnectionStore(CLIENT_CONNECTION_STORE_CAPACITY, 60);
+
+		DtlsConnectorConfig.Builder builder = createClientConfigBuilder("client-session-ticket", null);
+		builder.setUseSessionTickets(true);
+		DtlsConnectorConfig clientConfig = builder.build();
+		client = new DTLSConnector(clientConfig, clientConnectionStore);
+		client.setExecutor(executor);
+	}
+
 	private DtlsConnectorConfig.Builder createClientConfigBuilder(String tag, InetSocketAddress clientEndpoint) {
 		if (clientEndpoint == null) {
 			clientEndpoint = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
@@ -709,6 +726,79 @@ public class DTLSConnectorResumeTest {
 		assertClientIdentity(clientPrincipalType);
 	}
 
+	@Test
+	public void testConnectorResumesSessionFromNewSessionTicket() throws Exception {
+		sessionTicketSetUp();
+		// Do a first handshake
+		LatchDecrementingRawDataChannel clientRawDataChannel = serverHelper.givenAnEstablishedSession(client);
+		InetSocketAddress clientAddress = clientRawDataChannel.getAddress();
+		SessionId establishedSessionId = serverHelper.establishedServerSession.getSessionIdentifier();
+
+		// Force a resume session the next time we send data
+		client.forceResumeSessionFor(serverHelper.serverEndpoint);
+		Connection connection = clientConnectionStore.get(serverHelper.serverEndpoint);
+		assertThat(connection.getEstablishedSession().getSessionIdentifier(), is(establishedSessionId));
+		client.start();
+
+		// remove connection and session from server, only the client's
+		// ticket is left to resume the session
+		serverHelper.remove(clientAddress, true);
+		assertThat(serverHelper.serverSessionCache.get(establishedSessionId), is(nullValue()));
+
+		// Prepare message sending
+		final String msg = "Hello Again";
+		clientRawDataChannel.setLatchCount(1);
+
+		// send message
+		RawData data = RawData.outbound(msg.getBytes(), new AddressEndpointContext(serverHelper.serverEndpoint), null, false);
+		client.send(data);
+		assertTrue(clientRawDataChannel.await(MAX_TIME_TO_WAIT_SECS, TimeUnit.SECONDS));
+
+		// check we use the same session id
+		connection = clientConnectionStore.get(serverHelper.serverEndpoint);
+		assertThat(connection.getEstablishedSession().getSessionIdentifier(), is(establishedSessionId));
+		assertClientIdentity(clientPrincipalType);
+	}
+
+	@Test
+	public void testConnectorRenewsSessionTicketOnResumption() throws Exception {
+		sessionTicketSetUp();
+		// Do a first handshake
+		LatchDecrementingRawDataChannel clientRawDataChannel = serverHelper.givenAnEstablishedSession(client);
+		InetSocketAddress clientAddress = clientRawDataChannel.getAddress();
+		SessionId establishedSessionId = serverHelper.establishedServerSession.getSessionIdentifier();
+		Connection connection = clientConnectionStore.get(serverHelper.serverEndpoint);
+		byte[] ticket = DtlsTestTools.getOpaqueTicket(connection.getEstablishedSession());
+		assertThat(ticket, is(notNullValue()));
+
+		final String msg = "Hello Again";
+		for (int resumption = 0; resumption < 2; ++resumption) {
+			// Force a resume session the next time we send data
+			client.forceResumeSessionFor(serverHelper.serverEndpoint);
+			client.start();
+
+			// remove connection and session from server, only the client's
+			// ticket is left to resume the session
+			serverHelper.remove(clientAddress, true);
+			clientRawDataChannel.setLatchCount(1);
+
+			// send message
+			RawData data = RawData.outbound(msg.getBytes(), new AddressEndpointContext(serverHelper.serverEndpoint),
+					null, false);
+			client.send(data);
+			assertTrue(clientRawDataChannel.await(MAX_TIME_TO_WAIT_SECS, TimeUnit.SECONDS));
+
+			// check we use the same session id, but a renewed ticket
+			connection = clientConnectionStore.get(serverHelper.serverEndpoint);
+			assertThat(connection.getEstablishedSession().getSessionIdentifier(), is(establishedSessionId));
+			byte[] renewedTicket = DtlsTestTools.getOpaqueTicket(connection.getEstablishedSession());
+			assertThat(renewedTicket, is(notNullValue()));
+			assertThat(renewedTicket, is(not(ticket)));
+			ticket = renewedTicket;
+		}
+		assertClientIdentity(clientPrincipalType);
+	}
+
 	@Test
 	public void testConnectorResumesSessionFromExistingConnection() throws Exception {
 		// Do a first handshake
@@ -62,15 +62,20 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.californium.elements.AddressEndpointContext;
 import org.eclipse.californium.elements.RawData;
@@ -80,6 +85,7 @@ import org.eclipse.californium.elements.rule.TestNameLoggerRule;
 import org.eclipse.californium.elements.rule.ThreadsRule;
 import org.eclipse.californium.elements.util.ClockUtil;
 import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramSocketUtil;
 import org.eclipse.californium.elements.util.DatagramWriter;
 import org.eclipse.californium.elements.util.ExecutorsUtil;
 import org.eclipse.californium.elements.util.SerialExecutor;
@@ -171,6 +177,11 @@ public class DTLSConnectorTest {
 
 		executor = ExecutorsUtil.newFixedThreadPool(2, new TestThreadFactory("DTLS-"));
 
+		serverHelper = new ConnectorHelper();
+		serverHelper.startServer(newServerConfigBuilder());
+	}
+
+	private static DtlsConnectorConfig.Builder newServerConfigBuilder() throws IOException, GeneralSecurityException {
 		AdvancedSinglePskStore pskStore = new AdvancedSinglePskStore(CLIENT_IDENTITY, CLIENT_IDENTITY_SECRET.getBytes());
 
 		NewAdvancedCertificateVerifier verifier = StaticNewAdvancedCertificateVerifier.builder().setTrustedCertificates(DtlsTestTools.getTrustedCertificates()).setTrustAllRPKs().build();
@@ -194,8 +205,7 @@ public class DTLSConnectorTest {
 			.setLoggingTag("server")
 			.setRetransmissionTimeout(500)
 			.setMaxRetransmissions(2);
-		serverHelper = new ConnectorHelper();
-		serverHelper.startServer(builder);
+		return builder;
 	}
 
 	@AfterClass
@@ -265,6 +275,133 @@ public class DTLSConnectorTest {
 		givenAnEstablishedSession();
 	}
 
+	@Test
+	public void testConnectorEstablishesSecureSessionWithHashedWheelTimer() throws Exception {
+		client.destroy();
+		clientConnectionStore = new InMemoryConnectionStore(CLIENT_CONNECTION_STORE_CAPACITY, 60);
+		clientConnectionStore.setTag("client");
+		clientConfig = newStandardConfigBuilder(clientEndpoint).setHashedWheelTimerTick(10).build();
+		client = serverHelper.createClient(clientConfig, clientConnectionStore);
+		client.setExecutor(executor);
+		givenAnEstablishedSession();
+	}
+
+	@Test
+	public void testConnectorEstablishesSecureSessionWithCryptoExecutor() throws Exception {
+		ConnectorHelper cryptoServerHelper = new ConnectorHelper();
+		try {
+			cryptoServerHelper.startServer(newServerConfigBuilder().setCryptoThreadCount(2));
+			RawData raw = RawData.outbound("Hello World".getBytes(),
+					new AddressEndpointContext(cryptoServerHelper.serverEndpoint), null, false);
+			cryptoServerHelper.givenAnEstablishedSession(client, raw, true);
+			// the client's signature is verified by the crypto executor
+			assertThat(cryptoServerHelper.establishedServerSession.getPeerIdentity(), is(notNullValue()));
+		} finally {
+			cryptoServerHelper.destroyServer();
+		}
+	}
+
+	/**
+	 * Verifies, that a bad signature of the client's CERTIFICATE_VERIFY, which
+	 * is verified by the crypto executor, fails the handshake.
+	 */
+	@Test
+	public void testConnectorRejectsBadCertificateVerifyWithCryptoExecutor() throws Exception {
+		ConnectorHelper cryptoServerHelper = new ConnectorHelper();
+		try {
+			cryptoServerHelper.startServer(newServerConfigBuilder().setCryptoThreadCount(2));
+			client.destroy();
+			clientConnectionStore = new InMemoryConnectionStore(CLIENT_CONNECTION_STORE_CAPACITY, 60);
+			clientConnectionStore.setTag("client");
+			// the client signs with a private key, which doesn't match its
+			// certificate
+			clientConfig = newStandardConfigBuilder(clientEndpoint)
+					.setIdentity(DtlsTestTools.getPrivateKey(), DtlsTestTools.getClientCertificateChain(),
+							CertificateType.X_509)
+					.setRetransmissionTimeout(250)
+					.setMaxRetransmissions(1)
+					.build();
+			client = cryptoServerHelper.createClient(clientConfig, clientConnectionStore);
+			client.setExecutor(executor);
+			client.start();
+			SimpleMessageCallback callback = new SimpleMessageCallback();
+			RawData data = RawData.outbound("Hello".getBytes(),
+					new AddressEndpointContext(cryptoServerHelper.serverEndpoint), callback, false);
+			client.send(data);
+
+			AlertMessage alert = cryptoServerHelper.serverAlertCatcher.waitForAlert(MAX_TIME_TO_WAIT_SECS,
+					TimeUnit.SECONDS);
+			assertThat("server side internal alert", alert,
+					is(new AlertMessage(AlertLevel.FATAL, AlertDescription.DECRYPT_ERROR)));
+			Throwable error = callback.getError(TimeUnit.SECONDS.toMillis(MAX_TIME_TO_WAIT_SECS * 5));
+			assertThat("client side handshake failure missing", error, is(notNullValue()));
+			assertThat(cryptoServerHelper.serverRawDataProcessor.getLatestInboundMessage(), is(nullValue()));
+			Connection connection = cryptoServerHelper.serverConnectionStore.get(client.getAddress());
+			assertThat(connection == null || !connection.hasEstablishedDtlsContext(), is(true));
+		} finally {
+			cryptoServerHelper.destroyServer();
+		}
+	}
+
+	@Test
+	public void testConnectorEstablishesSecureSessionsWithReusePortSockets() throws Exception {
+		assumeTrue("SO_REUSEPORT not supported", isReusePortSupported());
+		ConnectorHelper shardedServerHelper = new ConnectorHelper();
+		try {
+			shardedServerHelper.startServer(newServerConfigBuilder().setReusePortSockets(3));
+			assertThat(shardedServerHelper.reusePortEnabled.get(), is(3));
+			assertEstablishedSessions(shardedServerHelper, 3);
+		} finally {
+			shardedServerHelper.destroyServer();
+		}
+	}
+
+	@Test
+	public void testConnectorEstablishesSecureSessionsWithoutReusePortSupport() throws Exception {
+		ConnectorHelper fallbackServerHelper = new ConnectorHelper();
+		fallbackServerHelper.reusePortUnsupported = true;
+		try {
+			fallbackServerHelper.startServer(newServerConfigBuilder().setReusePortSockets(3));
+			assertThat(fallbackServerHelper.reusePortEnabled.get(), is(0));
+			assertEstablishedSessions(fallbackServerHelper, 3);
+		} finally {
+			fallbackServerHelper.destroyServer();
+		}
+	}
+
+	private void assertEstablishedSessions(ConnectorHelper helper, int clients) throws Exception {
+		List<DTLSConnector> connectors = new ArrayList<>();
+		connectors.add(client);
+		try {
+			for (int index = 1; index < clients; ++index) {
+				InMemoryConnectionStore store = new InMemoryConnectionStore(CLIENT_CONNECTION_STORE_CAPACITY, 60);
+				DTLSConnector connector = helper.createClient(newStandardConfig(clientEndpoint), store);
+				connector.setExecutor(executor);
+				connectors.add(connector);
+			}
+			for (DTLSConnector connector : connectors) {
+				RawData raw = RawData.outbound("Hello World".getBytes(),
+						new AddressEndpointContext(helper.serverEndpoint), null, false);
+				helper.givenAnEstablishedSession(connector, raw, false);
+			}
+		} finally {
+			for (DTLSConnector connector : connectors) {
+				if (connector != client) {
+					connector.destroy();
+				}
+			}
+		}
+	}
+
+	private static boolean isReusePortSupported() throws IOException {
+		DatagramSocket socket = new DatagramSocket(null);
+		try {
+			return DatagramSocketUtil.enableReusePort(socket);
+		} finally {
+			socket.close();
+		}
+	}
+
 	/**
 	 * Verifies that a DTLSConnector terminates its connection with a peer when receiving
 	 * a CLOSE_NOTIFY alert from the peer (bug #478538).
@@ -1177,6 +1314,50 @@ public class DTLSConnectorTest {
 		assertThat(callback.isConnecting(), is(false));
 	}
 
+	@Test
+	public void testSendMultiRecordApplicationData() throws Exception {
+		// GIVEN a client, which sends queued application data in datagrams
+		// with multiple records
+		final AtomicInteger datagrams = new AtomicInteger();
+		client.destroy();
+		clientConnectionStore = new InMemoryConnectionStore(CLIENT_CONNECTION_STORE_CAPACITY, 60);
+		clientConnectionStore.setTag("client");
+		clientConfig = newStandardConfigBuilder(clientEndpoint).setEnableMultiRecordApplicationData(true).build();
+		client = serverHelper.new DtlsTestConnector(clientConfig, clientConnectionStore) {
+
+			@Override
+			protected void sendNextDatagramOverNetwork(DatagramPacket datagramPacket) throws IOException {
+				datagrams.incrementAndGet();
+				super.sendNextDatagramOverNetwork(datagramPacket);
+			}
+		};
+		client.setExecutor(executor);
+		givenAnEstablishedSession(false);
+		Connection connection = clientConnectionStore.get(serverHelper.serverEndpoint);
+
+		// WHEN sending messages, which are queued at once
+		final int count = 10;
+		final SimpleMessageCallback callback = new SimpleMessageCallback(count, false);
+		clientRawDataChannel.setLatchCount(count);
+		datagrams.set(0);
+		connection.getExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				for (int index = 0; index < count; ++index) {
+					client.send(RawData.outbound(new byte[100],
+							new AddressEndpointContext(serverHelper.serverEndpoint), callback, false));
+				}
+			}
+		});
+
+		// THEN assert that all messages are sent and responded
+		assertTrue(callback.await(TimeUnit.SECONDS.toMillis(MAX_TIME_TO_WAIT_SECS)));
+		assertTrue(clientRawDataChannel.await(MAX_TIME_TO_WAIT_SECS, TimeUnit.SECONDS));
+		// THEN assert that all messages are sent in one datagram
+		assertThat(datagrams.get(), is(1));
+	}
+
 	private ClientHello createClientHello(CipherSuite... cipherSuites) {
 		return createClientHello(ProtocolVersion.VERSION_DTLS_1_2, cipherSuites);
 	}
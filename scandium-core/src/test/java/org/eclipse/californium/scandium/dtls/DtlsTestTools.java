@@ -124,6 +124,16 @@ public final class DtlsTestTools extends TestCertificatesTools {
 		return fromHandshakeMessage(hmsg, parameter);
 	}
 
+	/**
+	 * Gets the opaque session ticket of a client's session.
+	 * 
+	 * @param session client session
+	 * @return opaque session ticket, or {@code null}, if not available.
+	 */
+	public static byte[] getOpaqueTicket(DTLSSession session) {
+		return session.getOpaqueTicket();
+	}
+
 	@SuppressWarnings("unchecked")
 	public static <T extends HandshakeMessage> T fromHandshakeMessage(HandshakeMessage message,
 			HandshakeParameter parameter) throws HandshakeException {
@@ -15,6 +15,7 @@
  *    Achim Kraus (Bosch Software Innovations GmbH) - redesign connection session listener to
  *                                                    ensure, that the session listener methods
  *                                                    are called via the handshaker.
+ *    Bosch IO GmbH - add test for concurrent access
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls;
 
@@ -28,6 +29,14 @@ import static org.junit.Assert.assertTrue;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.californium.elements.category.Small;
 import org.eclipse.californium.elements.rule.ThreadsRule;
@@ -292,6 +301,100 @@ public class InMemoryConnectionStoreTest {
 		assertThat(store.find(session.getSessionIdentifier()), is(con2));
 	}
 
+	@Test
+	public void testConcurrentPutUpdateAddressAndGet() throws Exception {
+		final int writers = 4;
+		final int connections = 50;
+		final int rounds = 20;
+		store = new InMemoryConnectionStore(writers * connections, 1000);
+		store.attach(null);
+		final Queue<Connection> added = new ConcurrentLinkedQueue<>();
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final CountDownLatch writing = new CountDownLatch(writers);
+		List<Thread> threads = new ArrayList<>();
+
+		for (int index = 0; index < writers; ++index) {
+			final int writer = index;
+			threads.add(new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						// unique addresses for all writers and rounds
+						long base = writer * (rounds + 1) * connections;
+						List<Connection> own = new ArrayList<>(connections);
+						for (int i = 0; i < connections; ++i) {
+							Connection connection = newConnection(base + i);
+							assertTrue(store.put(connection));
+							added.add(connection);
+							own.add(connection);
+						}
+						for (int round = 1; round <= rounds; ++round) {
+							for (int i = 0; i < connections; ++i) {
+								Connection connection = own.get(i);
+								InetSocketAddress address = new InetSocketAddress(
+										InetAddress.getByAddress(longToIp(base + round * connections + i)), 0);
+								assertTrue(store.update(connection, address));
+							}
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					} finally {
+						writing.countDown();
+					}
+				}
+			}, "writer-" + writer));
+		}
+		for (int index = 0; index < writers; ++index) {
+			threads.add(new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						while (running.get()) {
+							for (Connection connection : added) {
+								assertThat(store.get(connection.getConnectionId()), is(connection));
+								InetSocketAddress address = connection.getPeerAddress();
+								if (address != null) {
+									// the address is unique, but may be
+									// replaced concurrently
+									Connection found = store.get(address);
+									if (found != null) {
+										assertThat(found, is(connection));
+									}
+								}
+							}
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+			}, "reader-" + index));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		try {
+			assertTrue("writers timed out", writing.await(10, TimeUnit.SECONDS));
+		} finally {
+			running.set(false);
+			for (Thread thread : threads) {
+				thread.join(1000);
+			}
+		}
+		if (failure.get() != null) {
+			throw new AssertionError("concurrent access failed", failure.get());
+		}
+
+		assertThat(added.size(), is(writers * connections));
+		assertThat(store.remainingCapacity(), is(0));
+		for (Connection connection : added) {
+			assertThat(store.get(connection.getConnectionId()), is(connection));
+			assertThat(store.get(connection.getPeerAddress()), is(connection));
+		}
+	}
+
 	private Connection newConnection(long ip) throws HandshakeException, UnknownHostException {
 		InetAddress addr = InetAddress.getByAddress(longToIp(ip));
 		InetSocketAddress peerAddress = new InetSocketAddress(addr, 0);
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.elements.rule.TestTimeRule;
+import org.eclipse.californium.elements.rule.ThreadsRule;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(Small.class)
+public class OffHeapConnectionStoreTest {
+
+	@Rule
+	public ThreadsRule cleanup = new ThreadsRule();
+
+	@Rule
+	public TestTimeRule time = new TestTimeRule();
+
+	private static final int CAPACITY = 10;
+	private static final int HEAP_CAPACITY = 2;
+
+	OffHeapConnectionStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		// idle threshold 0, passivate on exhausted heap
+		store = new OffHeapConnectionStore(CAPACITY, 1000, HEAP_CAPACITY, 0, null);
+		store.attach(null);
+	}
+
+	@Test
+	public void testPutPassivatesEldestConnection() throws Exception {
+		Connection con1 = newConnection(1L);
+		ConnectionId cid1 = putEstablished(con1);
+		putEstablished(newConnection(2L));
+		putEstablished(newConnection(3L));
+
+		assertThat(store.getPassivatedConnections(), is(1));
+		assertThat(store.remainingCapacity(), is(CAPACITY - 3));
+		assertThat(con1.hasEstablishedDtlsContext(), is(false));
+		assertThat(store.getAllocatedDirectMemory(), is((long) DirectMemorySlab.CHUNK_SIZE));
+
+		Connection activated = store.get(cid1);
+		assertThat(activated, is(notNullValue()));
+		assertThat(activated, is(not(sameInstance(con1))));
+		assertThat(activated.getConnectionId(), is(cid1));
+		assertThat(activated.hasEstablishedDtlsContext(), is(true));
+		// activation passivates the next eldest
+		assertThat(store.getPassivatedConnections(), is(1));
+		assertThat(store.remainingCapacity(), is(CAPACITY - 3));
+	}
+
+	@Test
+	public void testActivationPassivatesLeastRecentlyUsedConnectionOnFullHeap() throws Exception {
+		// idle threshold 10s, heap connections are not passivated before
+		store = new OffHeapConnectionStore(CAPACITY, 1000, HEAP_CAPACITY, 10, null);
+		store.attach(null);
+		Connection con1 = newConnection(1L);
+		InetSocketAddress address = con1.getPeerAddress();
+		ConnectionId cid1 = putEstablished(con1);
+		time.addTestTimeShift(20, TimeUnit.SECONDS);
+		assertThat(store.passivateIdleConnections(0), is(1));
+
+		// fill the heap with not idle connections
+		Connection con2 = newConnection(2L);
+		ConnectionId cid2 = putEstablished(con2);
+		Connection con3 = newConnection(3L);
+		putEstablished(con3);
+		assertThat(store.getPassivatedConnections(), is(1));
+
+		Connection activated = store.get(cid1);
+		assertThat(activated, is(notNullValue()));
+		assertThat(activated.getConnectionId(), is(cid1));
+		assertThat(activated.hasEstablishedDtlsContext(), is(true));
+		assertThat(store.get(address), is(sameInstance(activated)));
+		// the least recently used connection is passivated
+		assertThat(con2.hasEstablishedDtlsContext(), is(false));
+		assertThat(con3.hasEstablishedDtlsContext(), is(true));
+		assertThat(store.getPassivatedConnections(), is(1));
+		assertThat(store.remainingCapacity(), is(CAPACITY - 3));
+
+		activated = store.get(cid2);
+		assertThat(activated, is(notNullValue()));
+		assertThat(activated.hasEstablishedDtlsContext(), is(true));
+		assertThat(store.getPassivatedConnections(), is(1));
+	}
+
+	@Test
+	public void testGetAddressActivatesConnection() throws Exception {
+		Connection con1 = newConnection(1L);
+		InetSocketAddress address = con1.getPeerAddress();
+		ConnectionId cid1 = putEstablished(con1);
+		store.passivateIdleConnections(0);
+		assertThat(store.getPassivatedConnections(), is(1));
+
+		Connection activated = store.get(address);
+		assertThat(activated, is(notNullValue()));
+		assertThat(activated.getConnectionId(), is(cid1));
+		assertThat(activated.getPeerAddress(), is(address));
+		assertThat(store.getPassivatedConnections(), is(0));
+	}
+
+	@Test
+	public void testFindActivatesConnection() throws Exception {
+		Connection con1 = newConnection(1L);
+		SessionId sessionId = con1.getEstablishedSession().getSessionIdentifier();
+		ConnectionId cid1 = putEstablished(con1);
+		store.passivateIdleConnections(0);
+
+		Connection activated = store.find(sessionId);
+		assertThat(activated, is(notNullValue()));
+		assertThat(activated.getConnectionId(), is(cid1));
+		assertThat(activated.getEstablishedSession().getSessionIdentifier(), is(sessionId));
+	}
+
+	@Test
+	public void testPutRemovesAddressFromPassivatedConnection() throws Exception {
+		Connection con1 = newConnection(1L);
+		InetSocketAddress address = con1.getPeerAddress();
+		ConnectionId cid1 = putEstablished(con1);
+		store.passivateIdleConnections(0);
+
+		Connection con2 = newConnection(1L);
+		putEstablished(con2);
+		assertThat(store.get(address), is(sameInstance(con2)));
+
+		Connection activated = store.get(cid1);
+		assertThat(activated, is(notNullValue()));
+		assertThat(activated.getPeerAddress(), is(nullValue()));
+		assertThat(store.get(address), is(sameInstance(con2)));
+	}
+
+	@Test
+	public void testMarkAllAsResumptionRequired() throws Exception {
+		ConnectionId cid1 = putEstablished(newConnection(1L));
+		store.passivateIdleConnections(0);
+		store.markAllAsResumptionRequired();
+
+		Connection activated = store.get(cid1);
+		assertThat(activated.isResumptionRequired(), is(true));
+	}
+
+	@Test
+	public void testClearRemovesPassivatedConnections() throws Exception {
+		ConnectionId cid1 = putEstablished(newConnection(1L));
+		store.passivateIdleConnections(0);
+		store.clear();
+
+		assertThat(store.getPassivatedConnections(), is(0));
+		assertThat(store.get(cid1), is(nullValue()));
+		assertThat(store.remainingCapacity(), is(CAPACITY));
+	}
+
+	private ConnectionId putEstablished(Connection connection) {
+		assertThat(store.put(connection), is(true));
+		store.putEstablishedSession(connection.getEstablishedSession(), connection);
+		return connection.getConnectionId();
+	}
+
+	private Connection newConnection(long ip) throws HandshakeException, UnknownHostException {
+		InetAddress addr = InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte) ip });
+		InetSocketAddress peerAddress = new InetSocketAddress(addr, 5684);
+		Connection con = new Connection(peerAddress, new SyncSerialExecutor());
+		con.getSessionListener().contextEstablished(null,
+				DTLSContextTest.newEstablishedServerDtlsContext(CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8, true));
+		return con;
+	}
+}
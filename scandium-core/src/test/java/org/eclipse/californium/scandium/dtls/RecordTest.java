@@ -20,6 +20,7 @@
 package org.eclipse.californium.scandium.dtls;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.security.GeneralSecurityException;
@@ -147,6 +148,19 @@ public class RecordTest {
 		assertTrue(Arrays.equals(decryptedData, payloadData));
 	}
 
+	@Test
+	public void testDecryptAEADInPlace() throws Exception {
+
+		byte[] fragment = newGenericAEADCipherFragment();
+		Record record = new Record(ContentType.APPLICATION_DATA, protocolVer, EPOCH, SEQUENCE_NO, null, fragment, ClockUtil.nanoRealtime(), false);
+		record.decodeFragment(context.getReadState());
+
+		ApplicationMessage message = (ApplicationMessage) record.getFragment();
+		assertSame(fragment, message.getBackingArray());
+		assertEquals(payloadLength, message.size());
+		assertTrue(Arrays.equals(payloadData, Arrays.copyOf(fragment, payloadLength)));
+	}
+
 	byte[] newGenericAEADCipherFragment() throws GeneralSecurityException {
 		// 64bit sequence number, consisting of 16bit epoch (0) + 48bit sequence number (5)
 		byte[] seq_num = new byte[]{0x00, (byte) EPOCH, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) SEQUENCE_NO};
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.elements.util.Bytes;
+import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
+import org.eclipse.californium.scandium.util.SecretUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link SessionTicketKeys}.
+ */
+@Category(Small.class)
+public class SessionTicketKeysTest {
+
+	private static final long PERIOD_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private SessionTicketKeys keys;
+	private SessionTicket ticket;
+	private long now;
+
+	@Before
+	public void setUp() {
+		keys = new SessionTicketKeys(SecretUtil.create(Bytes.createBytes(new Random(), 32), "MAC"), 1,
+				TimeUnit.HOURS);
+		DTLSSession session = DTLSSessionTest
+				.newEstablishedServerSession(CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CCM_8, true);
+		ticket = session.getSessionTicket();
+		now = System.currentTimeMillis();
+	}
+
+	@Test
+	public void testUnsealSealedTicket() throws GeneralSecurityException {
+		byte[] sealed = keys.seal(ticket, now);
+		SessionTicket unsealed = keys.unseal(sealed, now);
+		assertThatTicketIsRestored(unsealed);
+	}
+
+	@Test
+	public void testTicketOfPreviousPeriodIsAccepted() throws GeneralSecurityException {
+		byte[] sealed = keys.seal(ticket, now);
+		assertThatTicketIsRestored(keys.unseal(sealed, now + PERIOD_MILLIS));
+	}
+
+	@Test
+	public void testExpiredTicketIsRejected() throws GeneralSecurityException {
+		byte[] sealed = keys.seal(ticket, now);
+		assertThat(keys.unseal(sealed, now + 2 * PERIOD_MILLIS), is(nullValue()));
+	}
+
+	@Test
+	public void testTamperedTicketIsRejected() throws GeneralSecurityException {
+		byte[] sealed = keys.seal(ticket, now);
+		sealed[sealed.length / 2] ^= 0x55;
+		assertThat(keys.unseal(sealed, now), is(nullValue()));
+	}
+
+	@Test
+	public void testTruncatedTicketIsRejected() throws GeneralSecurityException {
+		assertThat(keys.unseal(new byte[16], now), is(nullValue()));
+		assertThat(keys.unseal(null, now), is(nullValue()));
+	}
+
+	@Test
+	public void testTicketIsSharedBySameSecret() throws GeneralSecurityException {
+		byte[] secret = Bytes.createBytes(new Random(), 32);
+		SessionTicketKeys keys1 = new SessionTicketKeys(SecretUtil.create(secret, "MAC"), 1, TimeUnit.HOURS);
+		SessionTicketKeys keys2 = new SessionTicketKeys(SecretUtil.create(secret, "MAC"), 1, TimeUnit.HOURS);
+		byte[] sealed = keys1.seal(ticket, now);
+		assertThatTicketIsRestored(keys2.unseal(sealed, now));
+		// different secret
+		assertThat(keys.unseal(sealed, now), is(nullValue()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testShortSecretIsRejected() {
+		new SessionTicketKeys(SecretUtil.create(new byte[8], "MAC"), 1, TimeUnit.HOURS);
+	}
+
+	private void assertThatTicketIsRestored(SessionTicket unsealed) {
+		// the timestamp is encoded in seconds, therefore compare the
+		// properties relevant for the resumption
+		assertThat(unsealed, is(notNullValue()));
+		assertThat(unsealed.getMasterSecret(), is(ticket.getMasterSecret()));
+		assertThat(unsealed.getCipherSuite(), is(ticket.getCipherSuite()));
+		assertThat(unsealed.getProtocolVersion(), is(ticket.getProtocolVersion()));
+		assertThat(unsealed.getClientIdentity(), is(ticket.getClientIdentity()));
+		assertThat(unsealed.useExtendedMasterSecret(), is(ticket.useExtendedMasterSecret()));
+	}
+}
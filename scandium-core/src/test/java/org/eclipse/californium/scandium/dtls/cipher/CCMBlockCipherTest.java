@@ -15,7 +15,9 @@
  ******************************************************************************/
 package org.eclipse.californium.scandium.dtls.cipher;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
 import java.util.ArrayList;
@@ -30,6 +32,7 @@ import javax.crypto.spec.SecretKeySpec;
 import org.eclipse.californium.elements.category.Small;
 import org.eclipse.californium.elements.util.Bytes;
 import org.eclipse.californium.scandium.dtls.ProtocolVersion;
+import org.eclipse.californium.scandium.util.SecretUtil;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -184,6 +187,52 @@ public class CCMBlockCipherTest {
 		assertTrue(Arrays.equals(decryptedData, payloadData));
 	}
 
+	@Test
+	public void testOutputBufferCryption() throws Exception {
+		byte[] expected = CCMBlockCipher.encrypt(aesKey, nonce, additionalData, payloadData, 8);
+		byte[] buffer = new byte[payloadLength + 8 + 16];
+		System.arraycopy(payloadData, 0, buffer, 8, payloadLength);
+		int length = CCMBlockCipher.encrypt(aesKey, nonce, additionalData, buffer, 8, payloadLength, buffer, 8, 8);
+		assertEquals(expected.length, length);
+		assertTrue(Arrays.equals(expected, Arrays.copyOfRange(buffer, 8, 8 + length)));
+
+		// decrypt in place with smaller offset
+		length = CCMBlockCipher.decrypt(aesKey, nonce, additionalData, buffer, 8, length, buffer, 3, 8);
+		assertEquals(payloadLength, length);
+		assertTrue(Arrays.equals(payloadData, Arrays.copyOfRange(buffer, 3, 3 + length)));
+	}
+
+	@Test
+	public void testOutputBufferInvalidMacClearsOutput() throws Exception {
+		assumeTrue(payloadLength > 0);
+		byte[] encryptedData = CCMBlockCipher.encrypt(aesKey, nonce, additionalData, payloadData, 8);
+		encryptedData[encryptedData.length - 1] ^= 0x55;
+		byte[] output = new byte[payloadLength];
+		try {
+			CCMBlockCipher.decrypt(aesKey, nonce, additionalData, encryptedData, 0, encryptedData.length, output, 0,
+					8);
+			fail("InvalidMacException expected!");
+		} catch (InvalidMacException ex) {
+			assertTrue(Arrays.equals(new byte[payloadLength], output));
+		}
+	}
+
+	@Test
+	public void testDestroyedKeyIsNotUsed() throws Exception {
+		byte[] expected = CCMBlockCipher.encrypt(aesKey, nonce, additionalData, payloadData, 8);
+		SecretKey key = SecretUtil.create(aesKeyBytes, "AES");
+		assertTrue(Arrays.equals(expected, CCMBlockCipher.encrypt(key, nonce, additionalData, payloadData, 8)));
+		SecretUtil.destroy(key);
+		try {
+			// the thread's scratch is still initialized with that key
+			CCMBlockCipher.encrypt(key, nonce, additionalData, payloadData, 8);
+			fail("destroyed key must not be used!");
+		} catch (IllegalStateException ex) {
+			// destroyed key
+		}
+		assertTrue(Arrays.equals(expected, CCMBlockCipher.encrypt(aesKey, nonce, additionalData, payloadData, 8)));
+	}
+
 	@Test(expected = InvalidMacException.class)
 	public void testDifferentNonce() throws Exception {
 
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.cipher;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.crypto.SecretKey;
+
+import org.eclipse.californium.elements.category.Medium;
+import org.eclipse.californium.elements.util.NamedThreadFactory;
+import org.eclipse.californium.scandium.dtls.cipher.XECDHECryptography.SupportedGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link XECDHEKeyPairPool}.
+ */
+@Category(Medium.class)
+public class XECDHEKeyPairPoolTest {
+
+	private static final int SIZE = 4;
+
+	private XECDHEKeyPairPool pool;
+	private SupportedGroup group;
+
+	@Before
+	public void setUp() {
+		group = SupportedGroup.getUsableGroups().get(0);
+		pool = new XECDHEKeyPairPool(SIZE, Arrays.asList(group));
+	}
+
+	@After
+	public void tearDown() {
+		pool.stop();
+	}
+
+	@Test
+	public void testPoolIsFilled() throws InterruptedException {
+		assertThat(pool.take(group), is(nullValue()));
+		assertThat(pool.getMisses(), is(1L));
+
+		pool.start();
+		waitForPool(SIZE);
+		KeyPair keyPair1 = pool.take(group);
+		KeyPair keyPair2 = pool.take(group);
+		assertThat(keyPair1, is(notNullValue()));
+		assertThat(keyPair2, is(notNullValue()));
+		assertThat(keyPair1, is(not(keyPair2)));
+		assertThat(pool.getHits(), is(2L));
+
+		// refilled after take
+		waitForPool(SIZE);
+	}
+
+	@Test
+	public void testStopDropsKeyPairs() throws InterruptedException {
+		pool.start();
+		waitForPool(SIZE);
+		pool.stop();
+		assertThat(pool.isRunning(), is(false));
+		assertThat(pool.size(group), is(0));
+	}
+
+	@Test
+	public void testStopWhileFillingDropsLateKeyPairs() throws InterruptedException {
+		pool = new XECDHEKeyPairPool(1000, Arrays.asList(group));
+		Set<Thread> threads = new HashSet<>(Thread.getAllStackTraces().keySet());
+		pool.start();
+		Set<Thread> started = new HashSet<>(Thread.getAllStackTraces().keySet());
+		started.removeAll(threads);
+		assertThat(started.size(), is(1));
+		Thread thread = started.iterator().next();
+		assertThat(thread.getThreadGroup(), is(NamedThreadFactory.SCANDIUM_THREAD_GROUP));
+		assertThat(thread.isDaemon(), is(true));
+
+		for (int loop = 0; loop < 100 && pool.size(group) == 0; ++loop) {
+			Thread.sleep(10);
+		}
+		assertThat(pool.size(group), is(not(0)));
+		// stop while filling
+		pool.stop();
+		thread.join(2000);
+		assertThat(thread.isAlive(), is(false));
+		assertThat(pool.size(group), is(0));
+	}
+
+	@Test
+	public void testKeyExchangeWithPooledKeyPair() throws GeneralSecurityException, InterruptedException {
+		pool.start();
+		waitForPool(SIZE);
+
+		XECDHECryptography ecdhe1 = new XECDHECryptography(group, pool);
+		XECDHECryptography ecdhe2 = new XECDHECryptography(group);
+		assertThat(pool.getHits(), is(1L));
+
+		SecretKey secret1 = ecdhe1.generateSecret(ecdhe2.getEncodedPoint());
+		SecretKey secret2 = ecdhe2.generateSecret(ecdhe1.getEncodedPoint());
+		assertThat(secret1, is(secret2));
+	}
+
+	@Test
+	public void testFallbackForGroupNotInPool() throws GeneralSecurityException {
+		for (SupportedGroup other : SupportedGroup.getUsableGroups()) {
+			if (other != group) {
+				XECDHECryptography ecdhe = new XECDHECryptography(other, pool);
+				assertThat(ecdhe.getSupportedGroup(), is(other));
+				assertThat(ecdhe.getEncodedPoint(), is(notNullValue()));
+				break;
+			}
+		}
+		assertThat(pool.getMisses(), is(0L));
+	}
+
+	private void waitForPool(int size) throws InterruptedException {
+		for (int loop = 0; loop < 100 && pool.size(group) < size; ++loop) {
+			Thread.sleep(50);
+		}
+		assertThat(pool.size(group), is(size));
+	}
+}
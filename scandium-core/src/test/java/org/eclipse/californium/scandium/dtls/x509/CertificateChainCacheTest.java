@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2021 Bosch IO GmbH and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v2.0
+ * and Eclipse Distribution License v1.0 which accompany this distribution.
+ *
+ * The Eclipse Public License is available at
+ *    http://www.eclipse.org/legal/epl-v20.html
+ * and the Eclipse Distribution License is available at
+ *    http://www.eclipse.org/org/documents/edl-v10.html.
+ *
+ * Contributors:
+ *    Bosch IO GmbH - initial implementation
+ ******************************************************************************/
+package org.eclipse.californium.scandium.dtls.x509;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.security.cert.CertPath;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.californium.elements.category.Small;
+import org.eclipse.californium.scandium.dtls.CertificateMessage;
+import org.eclipse.californium.scandium.dtls.CertificateVerificationResult;
+import org.eclipse.californium.scandium.dtls.ConnectionId;
+import org.eclipse.californium.scandium.dtls.DtlsTestTools;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Verifies behavior of {@link CertificateChainCache}.
+ */
+@Category(Small.class)
+public class CertificateChainCacheTest {
+
+	private final ConnectionId cid = new ConnectionId(new byte[] { 1, 2, 3, 4 });
+	private CertificateChainCache cache;
+	private CertificateMessage message;
+
+	@Before
+	public void setUp() {
+		cache = new CertificateChainCache(10, 1, TimeUnit.HOURS);
+		message = new CertificateMessage(Arrays.asList(DtlsTestTools.getServerCertificateChain()));
+	}
+
+	@Test
+	public void testValidatedChainIsCached() {
+		NewAdvancedCertificateVerifier verifier = StaticNewAdvancedCertificateVerifier.builder()
+				.setTrustedCertificates(DtlsTestTools.getTrustedCertificates()).setCertificateChainCache(cache)
+				.build();
+
+		CertificateVerificationResult result1 = verifier.verifyCertificate(cid, null, false, true, message);
+		assertThat(result1.getException(), is(nullValue()));
+		assertThat(cache.size(), is(1));
+
+		CertificateVerificationResult result2 = verifier.verifyCertificate(cid, null, false, true, message);
+		assertThat(result2.getException(), is(nullValue()));
+		assertThat(result2.getCertificatePath(), is(sameInstance(result1.getCertificatePath())));
+	}
+
+	@Test
+	public void testCachedChainIsNotUsedWithOtherTrustAnchors() {
+		NewAdvancedCertificateVerifier verifier = StaticNewAdvancedCertificateVerifier.builder()
+				.setTrustedCertificates(DtlsTestTools.getTrustedCertificates()).setCertificateChainCache(cache)
+				.build();
+		CertificateVerificationResult result = verifier.verifyCertificate(cid, null, false, true, message);
+		assertThat(result.getException(), is(nullValue()));
+		assertThat(cache.size(), is(1));
+
+		verifier = StaticNewAdvancedCertificateVerifier.builder()
+				.setTrustedCertificates(DtlsTestTools.getAlternativeCA()).setCertificateChainCache(cache).build();
+		result = verifier.verifyCertificate(cid, null, false, true, message);
+		assertThat(result.getException(), is(notNullValue()));
+	}
+
+	@Test
+	public void testKeyContainsUsageAndTruncation() {
+		CertPath certPath = message.getCertificateChain();
+		byte[] trust = CertificateChainCache.getFingerprint(Arrays.asList(DtlsTestTools.getTrustedCertificates()));
+		CertificateChainCache.Key key = cache.createKey(certPath, trust, false, true);
+
+		assertThat(cache.createKey(certPath, trust, false, true), is(key));
+		assertThat(cache.createKey(certPath, trust, true, true), is(not(key)));
+		assertThat(cache.createKey(certPath, trust, false, false), is(not(key)));
+	}
+
+	@Test
+	public void testClear() {
+		CertPath certPath = message.getCertificateChain();
+		byte[] trust = CertificateChainCache.getFingerprint(Arrays.asList(DtlsTestTools.getTrustedCertificates()));
+		CertificateChainCache.Key key = cache.createKey(certPath, trust, false, true);
+		cache.put(key, certPath);
+		assertThat(cache.get(key), is(sameInstance(certPath)));
+
+		cache.clear();
+		assertThat(cache.get(key), is(nullValue()));
+	}
+}